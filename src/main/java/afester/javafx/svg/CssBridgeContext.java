@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.anim.dom.SVGOMElement;
+import org.apache.batik.anim.dom.SVGOMGradientElement;
+import org.apache.batik.anim.dom.SVGOMSVGElement;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.CSSUtilities;
+import org.apache.batik.bridge.DocumentLoader;
+import org.apache.batik.bridge.SVGSVGElementBridge.SVGSVGElementViewport;
+import org.apache.batik.bridge.UserAgent;
+import org.apache.batik.css.engine.SVGCSSEngine;
+import org.apache.batik.dom.svg.SVGContext;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.svg.SVGRect;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * A BridgeContext which only sets up the CSS engine and style cascade of
+ * an SVG document, without building the GVT tree.
+ * Since no graphics node bridges are attached to the elements, each
+ * element gets a light-weight {@link SVGContext} which resolves the
+ * units of SVG DOM lengths (like "mm", "em" or percentages).
+ */
+class CssBridgeContext extends BridgeContext {
+
+    CssBridgeContext(UserAgent userAgent, DocumentLoader loader) {
+        super(userAgent, loader);
+    }
+
+
+    /**
+     * Initializes the CSS engine of the given document and attaches the
+     * SVG contexts which are required to compute length values.
+     *
+     * @param document The document to initialize.
+     */
+    void initializeStyles(SVGOMDocument document) {
+        setDocument(document);
+        initializeDocument(document);
+        attachContexts(document.getRootElement(), false);
+
+        // define the viewport of the outermost svg element, which is the
+        // reference for percentage values
+        SVGOMSVGElement root = (SVGOMSVGElement) document.getRootElement();
+        float width;
+        float height;
+        if (root.hasAttributeNS(null, "viewBox")) {
+            SVGRect viewBox = root.getViewBox().getBaseVal();
+            width = viewBox.getWidth();
+            height = viewBox.getHeight();
+        } else {
+            width = root.getWidth().getBaseVal().getValue();
+            height = root.getHeight().getBaseVal().getValue();
+        }
+        openViewport(root, new SVGSVGElementViewport(width, height));
+        closeViewport(root);
+    }
+
+
+    private void attachContexts(Element element, boolean inGradient) {
+        // Like in the GVT based conversion, the lengths of gradients are
+        // resolved without a viewport and font
+        inGradient |= element instanceof SVGOMGradientElement;
+        if (element instanceof SVGOMElement) {
+            ((SVGOMElement) element).setSVGContext(new ElementContext(element, !inGradient));
+        }
+
+        for (Node child = element.getFirstChild();  child != null;
+                                                    child = child.getNextSibling()) {
+            if (child instanceof Element) {
+                attachContexts((Element) child, inGradient);
+            }
+        }
+    }
+
+
+    /**
+     * An {@link SVGContext} which provides the unit conversion parameters
+     * for an element, but no geometry.
+     */
+    private final class ElementContext implements SVGContext {
+        private final Element element;
+
+        // whether percentages and em units are resolved, or are 0
+        private final boolean resolveLengths;
+
+        ElementContext(Element element, boolean resolveLengths) {
+            this.element = element;
+            this.resolveLengths = resolveLengths;
+        }
+
+        @Override
+        public float getPixelUnitToMillimeter() {
+            return CssBridgeContext.this.getPixelUnitToMillimeter();
+        }
+
+        @Override
+        public float getPixelToMM() {
+            return getPixelUnitToMillimeter();
+        }
+
+        @Override
+        public Rectangle2D getBBox() {
+            return null;
+        }
+
+        @Override
+        public AffineTransform getScreenTransform() {
+            return null;
+        }
+
+        @Override
+        public void setScreenTransform(AffineTransform at) {
+        }
+
+        @Override
+        public AffineTransform getCTM() {
+            return null;
+        }
+
+        @Override
+        public AffineTransform getGlobalTransform() {
+            return null;
+        }
+
+        @Override
+        public float getViewportWidth() {
+            return resolveLengths ? getBlockWidth(element) : 0;
+        }
+
+        @Override
+        public float getViewportHeight() {
+            return resolveLengths ? getBlockHeight(element) : 0;
+        }
+
+        @Override
+        public float getFontSize() {
+            if (!resolveLengths) {
+                return 0;
+            }
+            return CSSUtilities.getComputedStyle(element, SVGCSSEngine.FONT_SIZE_INDEX)
+                               .getFloatValue();
+        }
+    }
+}
@@ -21,6 +21,7 @@ import javafx.scene.paint.CycleMethod;
 import javafx.scene.paint.LinearGradient;
 import javafx.scene.paint.RadialGradient;
 import javafx.scene.paint.Stop;
+import javafx.scene.transform.Affine;
 
 import org.apache.batik.anim.dom.SVGOMAnimatedTransformList;
 import org.apache.batik.anim.dom.SVGOMGradientElement;
@@ -68,6 +69,14 @@ public class GradientFactory {
     }
 
 
+    /**
+     * @return The gradient transformation policy of the factory.
+     */
+    public GradientPolicy getTransformationPolicy() {
+        return gradientTransformPolicy;
+    }
+
+
     /**
      * Creates a JavaFX LinearGradient from an SVG linearGradient element.
      * Since JavaFX does not yet support gradient transformations, some fuzziness
@@ -88,6 +97,27 @@ public class GradientFactory {
         double endX = element.getX2().getBaseVal().getValue();
         double endY = element.getY2().getBaseVal().getValue();
 
+        return createLinearGradient(startX, startY, endX, endY,
+                                    getGradientTransform(element), stops);
+    }
+
+
+    /**
+     * Creates a JavaFX LinearGradient from the already resolved attributes
+     * of an SVG linearGradient element.
+     *
+     * @param startX The x1 attribute of the gradient.
+     * @param startY The y1 attribute of the gradient.
+     * @param endX The x2 attribute of the gradient.
+     * @param endY The y2 attribute of the gradient.
+     * @param matrix The gradientTransform of the gradient, or <code>null</code>.
+     * @param stops The stops of the gradient.
+     *
+     * @return A JavaFX LinearGradient based on the given attributes.
+     */
+    LinearGradient createLinearGradient(double startX, double startY,
+                                        double endX, double endY,
+                                        Affine matrix, List<Stop> stops) {
         /*
 ATTENTION:
 A gradientTransform in SVG does not transform the gradient parameter coordinates.
@@ -101,7 +131,6 @@ angle regarding the gradient vector, a skew transformation would never be possib
 by just transforming start and end coordinates of the gradient.
          */
 
-        SVGMatrix matrix = getGradientTransform(element);
         if (matrix != null) {
             switch (gradientTransformPolicy) {
               case DISCARD :
@@ -110,18 +139,18 @@ by just transforming start and end coordinates of the gradient.
 
               case USE_AS_IS :
               {
-                  TransformationOperations to1 = TransformationOperations.getFromSvg(matrix);
+                  TransformationOperations to1 = TransformationOperations.getFromAffine(matrix);
                   if (to1.hasSkew() || to1.hasScale()) {
                       System.err.print(
                               "GradientTransform includes scale or skew - "
                             + "this is not yet supported! Rendering might be inaccurate.");
                   }
-                  final double newX1 = matrix.getA() * startX + matrix.getB() * startY 
-                                       + matrix.getC();
-                  final double newY1 = matrix.getD() * startX + matrix.getE() * startY 
-                                       + matrix.getF();
-                  final double newX2 = matrix.getA() * endX + matrix.getB() * endY + matrix.getC();
-                  final double newY2 = matrix.getD() * endX + matrix.getE() * endY + matrix.getF();
+                  final double newX1 = matrix.getMxx() * startX + matrix.getMyx() * startY 
+                                       + matrix.getMxy();
+                  final double newY1 = matrix.getMyy() * startX + matrix.getTx() * startY 
+                                       + matrix.getTy();
+                  final double newX2 = matrix.getMxx() * endX + matrix.getMyx() * endY + matrix.getMxy();
+                  final double newY2 = matrix.getMyy() * endX + matrix.getTx() * endY + matrix.getTy();
                   startX = newX1;
                   startY = newY1;
                   endX = newX2;
@@ -132,7 +161,7 @@ by just transforming start and end coordinates of the gradient.
               case USE_SUPPORTED :  // is default - fall through intended
 
               default: {
-                  TransformationOperations to1 = TransformationOperations.getFromSvg(matrix);
+                  TransformationOperations to1 = TransformationOperations.getFromAffine(matrix);
                   if (to1.hasSkew() || to1.hasScale()) {
                       System.err.print("GradientTransform includes scale or skew - "
                                 + "using rotation and translation part only! "
@@ -156,14 +185,14 @@ by just transforming start and end coordinates of the gradient.
                       endX = newX2;
                       endY = newY2;
                   } else { // USE_AS_IS
-                      final double newX1 = matrix.getA() * startX + matrix.getB() * startY
-                                     + matrix.getC();
-                      final double newY1 = matrix.getD() * startX + matrix.getE() * startY
-                                     + matrix.getF();
-                      final double newX2 = matrix.getA() * endX + matrix.getB() * endY 
-                                     + matrix.getC();
-                      final double newY2 = matrix.getD() * endX + matrix.getE() * endY 
-                                     + matrix.getF();
+                      final double newX1 = matrix.getMxx() * startX + matrix.getMyx() * startY
+                                     + matrix.getMxy();
+                      final double newY1 = matrix.getMyy() * startX + matrix.getTx() * startY
+                                     + matrix.getTy();
+                      final double newX2 = matrix.getMxx() * endX + matrix.getMyx() * endY 
+                                     + matrix.getMxy();
+                      final double newY2 = matrix.getMyy() * endX + matrix.getTx() * endY 
+                                     + matrix.getTy();
                       startX = newX1;
                       startY = newY1;
                       endX = newX2;
@@ -200,6 +229,28 @@ by just transforming start and end coordinates of the gradient.
         float fx = element.getFx().getBaseVal().getValue();
         float fy = element.getFy().getBaseVal().getValue();
 
+        return createRadialGradient(centerX, centerY, radius, fx, fy,
+                                    getGradientTransform(element), stops);
+    }
+
+
+    /**
+     * Creates a JavaFX RadialGradient from the already resolved attributes
+     * of an SVG radialGradient element.
+     *
+     * @param centerX The cx attribute of the gradient.
+     * @param centerY The cy attribute of the gradient.
+     * @param radius The r attribute of the gradient.
+     * @param fx The fx attribute of the gradient.
+     * @param fy The fy attribute of the gradient.
+     * @param matrix The gradientTransform of the gradient, or <code>null</code>.
+     * @param stops The stops of the gradient.
+     *
+     * @return A JavaFX RadialGradient based on the given attributes.
+     */
+    RadialGradient createRadialGradient(float centerX, float centerY, float radius,
+                                        float fx, float fy,
+                                        Affine matrix, List<Stop> stops) {
         // SVG defines a focus point in absolute coordinates, while 
         // JavaFX uses Polar coordinates
         float dx = fx - centerX;
@@ -207,7 +258,6 @@ by just transforming start and end coordinates of the gradient.
         float focusDistance = (float) Math.sqrt(Math.pow(dx, 2) + Math.pow(dy, 2));
         float focusAngle = (float) Math.atan2(dx,  dy);
 
-        SVGMatrix matrix = getGradientTransform(element);
         if (matrix != null) {
             System.err.print("GradientTransform for RadialGradient not yet implemented!");
         }
@@ -221,12 +271,11 @@ by just transforming start and end coordinates of the gradient.
     /**
      * @param element The SVG gradient element for which to return its transformation matrix.
      *
-     * @return The SVGMatrix interface which can be used to access a gradients
-     *         transformation matrix or <code>null</code> if the SVG gradient 
-     *         element does not contain a gradientTransform attribute.
+     * @return The gradient's transformation matrix or <code>null</code> if the
+     *         SVG gradient element does not contain a gradientTransform attribute.
      */
-    private SVGMatrix getGradientTransform(SVGOMGradientElement element) {
-        SVGMatrix result = null;
+    private Affine getGradientTransform(SVGOMGradientElement element) {
+        Affine result = null;
 
         // TODO: this should be part of Apache batik
         // However, SVGOMGradientElement.getGradientTransform() is not yet implemented.
@@ -243,7 +292,9 @@ by just transforming start and end coordinates of the gradient.
             }
             if (svgTransformations.getNumberOfItems() == 1) {
                 SVGTransform svgTrans = svgTransformations.getItem(0);
-                result = svgTrans.getMatrix();
+                SVGMatrix matrix = svgTrans.getMatrix();
+                result = new Affine(matrix.getA(), matrix.getC(), matrix.getE(),
+                                    matrix.getB(), matrix.getD(), matrix.getF());
             }
         }
 
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.scene.Group;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * An SVG document which is loaded asynchronously through
+ * {@link SvgLoader#loadSvgAsync(String, Group)}.
+ * <p>
+ * The document is parsed and converted on a background thread. The
+ * resulting node tree is then attached to the target group on the JavaFX
+ * application thread, in chunks which are limited by a time budget per
+ * pulse, so that the scene keeps rendering while a large document appears.
+ * <p>
+ * The progress is -1 (indeterminate) while the document is converted, and
+ * then runs from 0 to 1 while the nodes are attached. The progress property
+ * is only updated on the JavaFX application thread.
+ */
+public final class SvgAsyncLoad {
+    private final Group target;
+    private final long budgetNanos;
+
+    private final ReadOnlyDoubleWrapper progress = new ReadOnlyDoubleWrapper(this, "progress", -1);
+    private final CompletableFuture<Group> completion = new CompletableFuture<>();
+
+    private CompletableFuture<Group> conversion;
+    private AnimationTimer timer = null;
+    private SvgAttacher attacher = null;
+
+    SvgAsyncLoad(Group target, long budgetNanos) {
+        this.target = target;
+        this.budgetNanos = budgetNanos;
+    }
+
+
+    void start(CompletableFuture<Group> converted) {
+        this.conversion = converted;
+        converted.whenComplete((root, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException 
+                                  && error.getCause() != null ? error.getCause() : error;
+                completion.completeExceptionally(cause);
+            } else {
+                Platform.runLater(() -> startAttaching(root));
+            }
+        });
+    }
+
+
+    private void startAttaching(Group root) {
+        if (completion.isDone()) {
+            return;     // cancelled
+        }
+
+        attacher = new SvgAttacher(target, root);
+        progress.set(0);
+        timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                boolean done = attacher.attachChunk(budgetNanos);
+                progress.set(attacher.getProgress());
+                if (done) {
+                    stop();
+                    completion.complete(attacher.getRoot());
+                }
+            }
+        };
+        timer.start();
+    }
+
+
+    /**
+     * Stops loading the document. If the document is already being attached,
+     * the partially attached node tree is removed from the target group.
+     * Must be called on the JavaFX application thread.
+     *
+     * @return <code>true</code> if the load has been cancelled, or
+     *         <code>false</code> if it had already been completed.
+     */
+    public boolean cancel() {
+        if (!completion.cancel(false)) {
+            return false;
+        }
+
+        conversion.cancel(false);
+        if (timer != null) {
+            timer.stop();
+            target.getChildren().remove(attacher.getRoot());
+        }
+        return true;
+    }
+
+
+    /**
+     * @return The progress of the load - -1 while the document is converted,
+     *         and then the fraction of the attached nodes.
+     */
+    public ReadOnlyDoubleProperty progressProperty() {
+        return progress.getReadOnlyProperty();
+    }
+
+
+    /**
+     * @return The current progress of the load.
+     */
+    public double getProgress() {
+        return progress.get();
+    }
+
+
+    /**
+     * @return A future which is completed with the root of the document on
+     *         the JavaFX application thread when all nodes have been attached,
+     *         or completed exceptionally if the document could not be loaded.
+     */
+    public CompletableFuture<Group> getCompletion() {
+        return completion;
+    }
+
+
+    /**
+     * @return The group to which the document is attached.
+     */
+    public Group getTarget() {
+        return target;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Attaches a node tree to a live scene graph in chunks.
+ * Attaching a large node tree at once blocks the JavaFX application thread
+ * until the whole tree has been added. An SvgAttacher instead adds the nodes
+ * in pre-order, a limited number per call to {@link #attachChunk(long)},
+ * so that the tree appears from the top down while the scene keeps rendering.
+ * <p>
+ * The attacher is created with a detached node tree and takes it apart,
+ * so the tree must not be used otherwise until it has been attached
+ * completely. {@link #attachChunk(long)} must be called on the JavaFX
+ * application thread if the target is part of a live scene.
+ */
+public final class SvgAttacher {
+
+    // the maximum number of consecutive siblings which are added at once
+    private static final int MAX_RUN = 64;
+
+    private final Group root;
+
+    // the nodes in pre-order, and the parent to which each node is attached
+    private final List<Group> parents = new ArrayList<>();
+    private final List<Node> nodes = new ArrayList<>();
+
+    private int next = 0;
+
+    /**
+     * Creates a new SvgAttacher.
+     *
+     * @param target The group to which the node tree is attached.
+     * @param root The root of the detached node tree to attach.
+     */
+    public SvgAttacher(Group target, Group root) {
+        this.root = root;
+        parents.add(target);
+        nodes.add(root);
+        collect(root);
+    }
+
+
+    private void collect(Group group) {
+        List<Node> children = new ArrayList<>(group.getChildren());
+        group.getChildren().clear();
+
+        for (Node child : children) {
+            parents.add(group);
+            nodes.add(child);
+            if (child instanceof Group) {
+                collect((Group) child);
+            }
+        }
+    }
+
+
+    /**
+     * Attaches the next nodes of the tree, until either the whole tree
+     * has been attached or the time budget is exhausted. At least one
+     * node is attached with each call.
+     *
+     * @param budgetNanos The time budget for this call, in nanoseconds.
+     * @return <code>true</code> if the whole tree has been attached.
+     */
+    public boolean attachChunk(long budgetNanos) {
+        final long start = System.nanoTime();
+
+        while (next < nodes.size()) {
+            // add consecutive siblings in one operation
+            Group parent = parents.get(next);
+            int end = next + 1;
+            while (end < nodes.size() && end - next < MAX_RUN && parents.get(end) == parent) {
+                end++;
+            }
+            parent.getChildren().addAll(nodes.subList(next, end));
+            next = end;
+
+            if (System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+        }
+
+        return isDone();
+    }
+
+
+    /**
+     * @return <code>true</code> if the whole tree has been attached.
+     */
+    public boolean isDone() {
+        return next == nodes.size();
+    }
+
+
+    /**
+     * @return The fraction of the nodes which have been attached, from 0 to 1.
+     */
+    public double getProgress() {
+        return (double) next / nodes.size();
+    }
+
+
+    /**
+     * @return The number of nodes which have been attached.
+     */
+    public int getAttachedCount() {
+        return next;
+    }
+
+
+    /**
+     * @return The total number of nodes in the tree.
+     */
+    public int getNodeCount() {
+        return nodes.size();
+    }
+
+
+    /**
+     * @return The root of the node tree.
+     */
+    public Group getRoot() {
+        return root;
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.scene.transform.Affine;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parses the raw attribute values of SVG elements (numbers, lengths,
+ * point lists, transformations and style declarations) without going
+ * through the Batik DOM.
+ */
+final class SvgAttributeParser {
+
+    // pixel unit to millimeter ratio used by Batik's UserAgentAdapter (96 dpi)
+    private static final double PIXEL_TO_MM = 0.26458333333333333;
+
+    // the font size which corresponds to the "medium" keyword (9pt)
+    static final double MEDIUM_FONT_SIZE = 9.0 * 25.4 / (72.0 * PIXEL_TO_MM);
+
+    private final String text;
+    private int pos;
+
+    private SvgAttributeParser(String text) {
+        this.text = text;
+    }
+
+
+    /**
+     * @param value A list of numbers, separated by white space and/or commas.
+     * @return The numbers contained in the given list.
+     */
+    static double[] parseNumbers(String value) {
+        if (value == null) {
+            return new double[0];
+        }
+
+        SvgAttributeParser parser = new SvgAttributeParser(value);
+        double[] result = new double[16];
+        int count = 0;
+        parser.skipSeparators();
+        while (parser.pos < parser.text.length()) {
+            if (count == result.length) {
+                result = Arrays.copyOf(result, 2 * count);
+            }
+            result[count++] = parser.readNumber();
+            parser.skipSeparators();
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+
+    /**
+     * @param value The points attribute of a polygon or polyline element.
+     * @return The coordinates of the points as x/y pairs, rounded to float
+     *         precision like the coordinates which Batik provides.
+     */
+    static double[] parsePoints(String value) {
+        double[] coordinates = parseNumbers(value);
+        for (int i = 0;  i < coordinates.length;  i++) {
+            coordinates[i] = (float) coordinates[i];
+        }
+        return coordinates;
+    }
+
+
+    /**
+     * @param coordinates The coordinates of the points of a polygon or
+     *                    polyline as x/y pairs.
+     * @param closed Whether the path is closed, like a polygon.
+     * @return SVG path data which describes the polygon or polyline.
+     */
+    static String formatPoints(double[] coordinates, boolean closed) {
+        StringBuilder result = new StringBuilder(coordinates.length * 8);
+        for (int i = 0;  i + 1 < coordinates.length;  i += 2) {
+            result.append(i == 0 ? "M" : i == 2 ? " L" : " ");
+            appendNumber(result, coordinates[i]);
+            result.append(',');
+            appendNumber(result, coordinates[i + 1]);
+        }
+        if (closed && result.length() > 0) {
+            result.append(" Z");
+        }
+        return result.toString();
+    }
+
+
+    private static void appendNumber(StringBuilder result, double value) {
+        String number = Float.toString((float) value);
+        if (number.endsWith(".0")) {
+            result.append(number, 0, number.length() - 2);
+        } else {
+            result.append(number);
+        }
+    }
+
+
+    /**
+     * Parses an SVG length value and converts it into user units.
+     *
+     * @param value The length value, like "12", "3.5mm" or "50%".
+     * @param fontSize The font size to use for "em" and "ex" units.
+     * @param percentBase The reference length to use for percentage values.
+     * @param defaultValue The value to return if no length is given.
+     *
+     * @return The length in user units.
+     */
+    static double parseLength(String value, double fontSize, double percentBase,
+                              double defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        value = value.trim();
+        if (value.isEmpty()) {
+            return defaultValue;
+        }
+
+        SvgAttributeParser parser = new SvgAttributeParser(value);
+        double number = parser.readNumber();
+        String unit = value.substring(parser.pos).trim();
+        switch (unit) {
+          case "" :
+          case "px" : return number;
+          case "pt" : return number * 25.4 / (72.0 * PIXEL_TO_MM);
+          case "pc" : return number * 25.4 / (6.0 * PIXEL_TO_MM);
+          case "mm" : return number / PIXEL_TO_MM;
+          case "cm" : return number * 10.0 / PIXEL_TO_MM;
+          case "in" : return number * 25.4 / PIXEL_TO_MM;
+          case "em" : return number * fontSize;
+          case "ex" : return number * fontSize / 2;
+          case "%" : return number * percentBase / 100.0;
+          default:
+              System.err.println("Unsupported length unit: " + value);
+              return number;
+        }
+    }
+
+
+    /**
+     * Parses the value of an SVG transform attribute.
+     *
+     * @param value The transform attribute, like "translate(10,20) rotate(45)".
+     * @return The resulting transformation, or <code>null</code> if the
+     *         attribute does not define any transformation.
+     */
+    static Affine parseTransform(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        SvgAttributeParser parser = new SvgAttributeParser(value);
+        Affine result = null;
+
+        parser.skipSeparators();
+        while (parser.pos < parser.text.length()) {
+            int nameStart = parser.pos;
+            while (parser.pos < parser.text.length()
+                   && Character.isLetter(parser.text.charAt(parser.pos))) {
+                parser.pos++;
+            }
+            String name = parser.text.substring(nameStart, parser.pos);
+            int argStart = parser.text.indexOf('(', parser.pos);
+            int argEnd = parser.text.indexOf(')', parser.pos);
+            if (name.isEmpty() || argStart < 0 || argEnd < argStart) {
+                throw new IllegalArgumentException("Invalid transform: " + value);
+            }
+            double[] args = parseNumbers(parser.text.substring(argStart + 1, argEnd));
+            parser.pos = argEnd + 1;
+
+            Affine transformation = createTransform(name, args);
+            if (result == null) {
+                result = transformation;
+            } else {
+                result.append(transformation);
+            }
+
+            parser.skipSeparators();
+        }
+
+        return result;
+    }
+
+
+    private static Affine createTransform(String name, double[] args) {
+        switch (name) {
+          case "matrix" :
+              if (args.length != 6) {
+                  break;
+              }
+              return new Affine(args[0], args[2], args[4],
+                                args[1], args[3], args[5]);
+
+          case "translate" :
+              if (args.length == 1) {
+                  return new Affine(1, 0, args[0], 0, 1, 0);
+              } else if (args.length == 2) {
+                  return new Affine(1, 0, args[0], 0, 1, args[1]);
+              }
+              break;
+
+          case "scale" :
+              if (args.length == 1) {
+                  return new Affine(args[0], 0, 0, 0, args[0], 0);
+              } else if (args.length == 2) {
+                  return new Affine(args[0], 0, 0, 0, args[1], 0);
+              }
+              break;
+
+          case "rotate" :
+              if (args.length == 1 || args.length == 3) {
+                  double angle = Math.toRadians(args[0]);
+                  double cos = Math.cos(angle);
+                  double sin = Math.sin(angle);
+                  Affine result = new Affine(cos, -sin, 0, sin, cos, 0);
+                  if (args.length == 3) {
+                      result.prependTranslation(args[1], args[2]);
+                      result.appendTranslation(-args[1], -args[2]);
+                  }
+                  return result;
+              }
+              break;
+
+          case "skewX" :
+              if (args.length == 1) {
+                  return new Affine(1, Math.tan(Math.toRadians(args[0])), 0, 0, 1, 0);
+              }
+              break;
+
+          case "skewY" :
+              if (args.length == 1) {
+                  return new Affine(1, 0, 0, Math.tan(Math.toRadians(args[0])), 1, 0);
+              }
+              break;
+
+          default:
+              break;
+        }
+
+        throw new IllegalArgumentException("Invalid transform: " + name
+                                           + Arrays.toString(args));
+    }
+
+
+    /**
+     * Parses the declarations of an inline style attribute.
+     *
+     * @param value The style attribute, like "fill:#ff0000;stroke:none".
+     * @return A map with the property names and their (trimmed) values.
+     */
+    static Map<String, String> parseStyle(String value) {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (value == null) {
+            return result;
+        }
+
+        for (String declaration : value.split(";")) {
+            int colon = declaration.indexOf(':');
+            if (colon > 0) {
+                String property = declaration.substring(0, colon).trim();
+                String propertyValue = declaration.substring(colon + 1).trim();
+                if (propertyValue.endsWith("!important")) {
+                    propertyValue = propertyValue.substring(0,
+                            propertyValue.length() - "!important".length()).trim();
+                }
+                result.put(property, propertyValue);
+            }
+        }
+
+        return result;
+    }
+
+
+    private void skipSeparators() {
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c != ',' && !Character.isWhitespace(c)) {
+                break;
+            }
+            pos++;
+        }
+    }
+
+
+    private double readNumber() {
+        int start = pos;
+        int length = text.length();
+
+        if (pos < length && (text.charAt(pos) == '+' || text.charAt(pos) == '-')) {
+            pos++;
+        }
+        while (pos < length && Character.isDigit(text.charAt(pos))) {
+            pos++;
+        }
+        if (pos < length && text.charAt(pos) == '.') {
+            pos++;
+            while (pos < length && Character.isDigit(text.charAt(pos))) {
+                pos++;
+            }
+        }
+        if (pos < length && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')
+            && pos + 1 < length && text.charAt(pos + 1) != 'm' && text.charAt(pos + 1) != 'x') {
+            pos++;
+            if (pos < length && (text.charAt(pos) == '+' || text.charAt(pos) == '-')) {
+                pos++;
+            }
+            while (pos < length && Character.isDigit(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        if (start == pos) {
+            throw new NumberFormatException("Invalid number in \"" + text + "\" at " + pos);
+        }
+
+        return Double.parseDouble(text.substring(start, pos));
+    }
+}
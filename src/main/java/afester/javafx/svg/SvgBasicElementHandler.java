@@ -16,28 +16,16 @@
 
 package afester.javafx.svg;
 
-import javafx.scene.Group;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.LinearGradient;
 import javafx.scene.paint.Paint;
 import javafx.scene.paint.RadialGradient;
 import javafx.scene.paint.Stop;
-import javafx.scene.shape.Circle;
-import javafx.scene.shape.CubicCurve;
-import javafx.scene.shape.Ellipse;
-import javafx.scene.shape.Line;
-import javafx.scene.shape.Polygon;
-import javafx.scene.shape.Polyline;
-import javafx.scene.shape.Rectangle;
-import javafx.scene.shape.SVGPath;
-import javafx.scene.shape.Shape;
-import javafx.scene.text.Text;
 import javafx.scene.transform.Affine;
 
-import org.apache.batik.anim.dom.SVGOMAnimatedPathData;
-import org.apache.batik.anim.dom.SVGOMAnimatedPathData.BaseSVGPathSegList;
 import org.apache.batik.anim.dom.SVGOMCircleElement;
 import org.apache.batik.anim.dom.SVGOMDefsElement;
+import org.apache.batik.anim.dom.SVGOMElement;
 import org.apache.batik.anim.dom.SVGOMEllipseElement;
 import org.apache.batik.anim.dom.SVGOMGElement;
 import org.apache.batik.anim.dom.SVGOMGradientElement;
@@ -56,43 +44,108 @@ import org.apache.batik.anim.dom.SVGOMTSpanElement;
 import org.apache.batik.anim.dom.SVGOMTextElement;
 import org.apache.batik.css.dom.CSSOMSVGColor;
 import org.apache.batik.css.dom.CSSOMValue;
-import org.apache.batik.dom.svg.SVGPathSegItem;
 
 import org.w3c.dom.css.CSSPrimitiveValue;
 import org.w3c.dom.css.CSSStyleDeclaration;
 import org.w3c.dom.svg.SVGRect;
-import org.w3c.dom.svg.SVGPoint;
-import org.w3c.dom.svg.SVGPointList;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 
+/**
+ * Converts the elements of an SVG document into JavaFX nodes or into an
+ * {@link SvgScene}, depending on the {@link SvgNodeSink} to which the
+ * converted elements are emitted.
+ * A new handler is created for each document which is converted - it holds
+ * the state of the traversal, so that an {@link SvgLoader} can convert
+ * several documents concurrently.
+ */
 public class SvgBasicElementHandler {
+    private static final double[] NO_VALUES = new double[0];
+
     public SvgStyleTools styleTools = null;
-    private SvgLoader loader = null;
-    GradientFactory gradientFactory = new GradientFactory();
+    final GradientFactory gradientFactory;
+
+    // the pool of shared paints, fonts and path data, or null
+    private final SvgInternPool internPool;
+
+    // flag whether to add a rectangle in the size of the drawing
+    private final boolean addRootRect;
+
+    // flag whether to add separate nodes for the path elements
+    private final boolean useSeparatePathElements;
+
+    // flag whether to add a single SvgSegmentPath node for the path elements
+    private final boolean useSegmentPaths;
+
+    // polygons and polylines with more points are converted into SVGPath nodes
+    private final int largeShapeThreshold;
+
+    // the sink which receives the converted elements
+    private final SvgNodeSink sink;
+
+    // the number of groups which have been started in the sink and not yet ended
+    int openGroups = 0;
+
+    // the source elements by their id, or null if the ids are not indexed
+    Map<String, SVGOMElement> elementIndex = null;
 
-    SvgBasicElementHandler(SvgLoader svgLoader) {
-        this.loader = svgLoader;
+    SvgBasicElementHandler(SvgNodeSink sink, boolean addRootRect,
+                           boolean useSeparatePathElements,
+                           boolean useSegmentPaths, int largeShapeThreshold,
+                           GradientFactory gradientFactory, SvgInternPool internPool) {
+        this.sink = sink;
+        this.addRootRect = addRootRect;
+        this.useSeparatePathElements = useSeparatePathElements;
+        this.useSegmentPaths = useSegmentPaths;
+        this.largeShapeThreshold = largeShapeThreshold;
+        this.gradientFactory = gradientFactory;
+        this.internPool = internPool;
+    }
+
+
+    private String getId(SVGOMElement element) {
+        String id = element.getId();
+        if (elementIndex != null && id != null && !id.isEmpty()) {
+            elementIndex.putIfAbsent(id, element);
+        }
+        return id;
+    }
+
+
+    /**
+     * Ends the groups which have been started since a previous state of the
+     * traversal.
+     *
+     * @param groups The number of open groups to return to.
+     */
+    void endGroups(int groups) {
+        while (openGroups > groups) {
+            sink.endGroup();
+            openGroups--;
+        }
+    }
+
+
+    private void addShape(SvgSceneNode.Kind kind, SVGOMElement element, Affine transformation,
+                          double[] geometry, String content, SvgStyle style) {
+        sink.addShape(kind, getId(element), transformation, geometry, content, style);
     }
 
 
     // <svg>
     void handleElement(SVGOMSVGElement element) {
-        styleTools = new SvgStyleTools(element);
+        styleTools = new SvgStyleTools(element, internPool);
 
         // optionally add a rectangle using the size of the whole drawing
-        if (loader.addRootRect) {
+        if (addRootRect) {
             SVGRect viewPort = element.getViewBox().getBaseVal();
             float height = viewPort.getHeight();
             float width = viewPort.getWidth();
-            Rectangle result = new Rectangle(width,  height, null);
-            result.setId(element.getId());
-            result.setStroke(Color.BLACK);
-            result.getStrokeDashArray().addAll(3.0,7.0,3.0,7.0);
-
-            loader.parentNode.getChildren().add(result);    
+            addShape(SvgSceneNode.Kind.RECTANGLE, element, null,
+                     new double[] {0, 0, width, height, 0, 0}, null, SvgStyle.ROOT_RECT);
         }
     }
 
@@ -104,16 +157,8 @@ public class SvgBasicElementHandler {
 
     // <svg:g>
     void handleElement(SVGOMGElement element) {
-        Group result = new Group();
-        result.setId(element.getId());
-
-        Affine transformation = styleTools.getTransform(element);
-        if (transformation != null) {
-            result.getTransforms().add(transformation);
-        }
-
-        loader.parentNode.getChildren().add(result);
-        loader.parentNode = result;
+        sink.startGroup(getId(element), styleTools.getTransform(element));
+        openGroups++;
     }
 
 
@@ -121,8 +166,10 @@ public class SvgBasicElementHandler {
     }
 
 
-    void handleElement(SVGOMPathElement element, boolean useSeparateShapes) {
-        if (useSeparateShapes) {
+    void handleElement(SVGOMPathElement element) {
+        if (useSegmentPaths) {
+            handleSegmentPathElement(element);
+        } else if (useSeparatePathElements) {
             handlePathElementsSeparately(element);
         } else {
             handlePathElement(element);
@@ -139,20 +186,9 @@ public class SvgBasicElementHandler {
         float cornerWidth = element.getRx().getBaseVal().getValue();
         float cornerHeight = element.getRy().getBaseVal().getValue();
 
-        // Create JavaFX Rectangle object
-        Rectangle result = new Rectangle(xpos, ypos, width, height);
-        result.setId(element.getId());
-        result.setArcWidth(2 * cornerWidth);
-        result.setArcHeight(2 * cornerHeight);
-
-        Affine transformation = styleTools.getTransform(element);
-        if (transformation != null) {
-            result.getTransforms().add(transformation);
-        }
-
-        styleTools.applyStyle(result, element);
-
-        loader.parentNode.getChildren().add(result);
+        addShape(SvgSceneNode.Kind.RECTANGLE, element, styleTools.getTransform(element),
+                 new double[] {xpos, ypos, width, height, 2 * cornerWidth, 2 * cornerHeight},
+                 null, styleTools.getStyle(element, false));
     }
 
 
@@ -162,18 +198,8 @@ public class SvgBasicElementHandler {
         float xpos = element.getX().getBaseVal().getItem(0).getValue();
         float ypos = element.getY().getBaseVal().getItem(0).getValue();
 
-        // Create JavaFX text object
-        Text result = new Text(xpos, ypos, text);
-        result.setId(element.getId());
-
-        Affine transformation = styleTools.getTransform(element);
-        if (transformation != null) {
-            result.getTransforms().add(transformation);
-        }
-
-        styleTools.applyTextStyle(result, element);
-
-        loader.parentNode.getChildren().add(result);
+        addShape(SvgSceneNode.Kind.TEXT, element, styleTools.getTransform(element),
+                 new double[] {xpos, ypos}, text, styleTools.getStyle(element, true));
     }
 
 
@@ -192,18 +218,8 @@ public class SvgBasicElementHandler {
         float x2 = element.getX2().getBaseVal().getValue();
         float y2 = element.getY2().getBaseVal().getValue();
 
-        // Create JavaFX Line object
-        Line result = new Line(x1, y1, x2, y2);
-        result.setId(element.getId());
-
-        Affine transformation = styleTools.getTransform(element);
-        if (transformation != null) {
-            result.getTransforms().add(transformation);
-        }
-
-        styleTools.applyStyle(result, element);
-
-        loader.parentNode.getChildren().add(result);
+        addShape(SvgSceneNode.Kind.LINE, element, styleTools.getTransform(element),
+                 new double[] {x1, y1, x2, y2}, null, styleTools.getStyle(element, false));
     }
 
 
@@ -213,18 +229,9 @@ public class SvgBasicElementHandler {
         float centerY = element.getCy().getBaseVal().getValue();
         float radius = element.getR().getBaseVal().getValue();
 
-        // Create JavaFX Circle object
-        Circle result = new Circle(centerX, centerY, radius);
-        result.setId(element.getId());
-
-        Affine transformation = styleTools.getTransform(element);
-        if (transformation != null) {
-            result.getTransforms().add(transformation);
-        }
-
-        styleTools.applyStyle(result, element);
-
-        loader.parentNode.getChildren().add(result);
+        addShape(SvgSceneNode.Kind.CIRCLE, element, styleTools.getTransform(element),
+                 new double[] {centerX, centerY, radius}, null,
+                 styleTools.getStyle(element, false));
     }
 
 
@@ -235,18 +242,9 @@ public class SvgBasicElementHandler {
         float rx = element.getRx().getBaseVal().getValue();
         float ry = element.getRy().getBaseVal().getValue();
 
-        // Create JavaFX Ellipse object
-        Ellipse result = new Ellipse(centerX, centerY, rx, ry);
-        result.setId(element.getId());
-
-        Affine transformation = styleTools.getTransform(element);
-        if (transformation != null) {
-            result.getTransforms().add(transformation);
-        }
-
-        styleTools.applyStyle(result, element);
-
-        loader.parentNode.getChildren().add(result);
+        addShape(SvgSceneNode.Kind.ELLIPSE, element, styleTools.getTransform(element),
+                 new double[] {centerX, centerY, rx, ry}, null,
+                 styleTools.getStyle(element, false));
     }
 
 
@@ -278,20 +276,10 @@ public class SvgBasicElementHandler {
      */
     void handleElement(SVGOMPolygonElement element) {
         // Get attributes from SVG node
-        double[] coordinates = getCoordinates(element.getPoints());
+        double[] coordinates = SvgAttributeParser.parsePoints(element.getAttribute("points"));
 
-        // Create JavaFX Polygon object
-        Polygon result = new Polygon(coordinates);
-        result.setId(element.getId());
-
-        Affine transformation = styleTools.getTransform(element);
-        if (transformation != null) {
-            result.getTransforms().add(transformation);
-        }
-
-        styleTools.applyStyle(result, element);
-
-        loader.parentNode.getChildren().add(result);
+        addPolyShape(element, styleTools.getTransform(element),
+                     styleTools.getStyle(element, false), coordinates, true);
     }
 
     
@@ -302,40 +290,32 @@ public class SvgBasicElementHandler {
      */
     void handleElement(SVGOMPolylineElement element) {
         // Get attributes from SVG node
-        double[] coordinates = getCoordinates(element.getPoints());
-
-        // Create JavaFX Polygon object
-        Polyline result = new Polyline(coordinates);
-        result.setId(element.getId());
-
-        Affine transformation = styleTools.getTransform(element);
-        if (transformation != null) {
-            result.getTransforms().add(transformation);
-        }
-
-        styleTools.applyStyle(result, element);
+        double[] coordinates = SvgAttributeParser.parsePoints(element.getAttribute("points"));
 
-        loader.parentNode.getChildren().add(result);
+        addPolyShape(element, styleTools.getTransform(element),
+                     styleTools.getStyle(element, false), coordinates, false);
     }
 
     
     /**
-     * Returns an array with coordinate pairs from an SVGPointList.
+     * Adds a polygon or polyline, or an SVGPath if it has more points than
+     * the large shape threshold, to avoid boxing each coordinate.
      *
-     * @param points The SVGPointList which contains the svg points.
-     * @return An array of X/Y coordinate pairs which correspond to the 
-     *         given svg point list.
+     * @param element The svg Polygon or PolyLine node to convert.
+     * @param transformation The transformation of the element, or <code>null</code>.
+     * @param style The resolved style of the element.
+     * @param coordinates An array of X/Y coordinate pairs.
+     * @param closed Whether to create a polygon instead of a polyline.
      */
-    private static double[] getCoordinates(SVGPointList points) {
-        int numberOfPoints = points.getNumberOfItems();
-        double[] coordinates = new double[2 * numberOfPoints];
-
-        for (int i = 0; i < numberOfPoints; i++) {
-            SVGPoint point = points.getItem(i);
-            coordinates[2 * i] = point.getX();
-            coordinates[2 * i + 1] = point.getY();
+    private void addPolyShape(SVGOMElement element, Affine transformation, SvgStyle style,
+                              double[] coordinates, boolean closed) {
+        if (coordinates.length / 2 > largeShapeThreshold) {
+            addShape(SvgSceneNode.Kind.PATH, element, transformation, NO_VALUES,
+                     SvgAttributeParser.formatPoints(coordinates, closed), style);
+        } else {
+            addShape(closed ? SvgSceneNode.Kind.POLYGON : SvgSceneNode.Kind.POLYLINE,
+                     element, transformation, coordinates, null, style);
         }
-        return coordinates;
     }
 
 
@@ -343,20 +323,23 @@ public class SvgBasicElementHandler {
         // Get attributes from SVG node
         String path = element.getAttribute("d");
 
-        // Create JavaFX SVGPath object
-        SVGPath result = new SVGPath();
-        result.setId(element.getId());
-        result.setContent(path);
-
-        Affine transformation = styleTools.getTransform(element);
-        if (transformation != null) {
-            result.getTransforms().add(transformation);
-        }
+        addShape(SvgSceneNode.Kind.PATH, element, styleTools.getTransform(element), NO_VALUES,
+                 internPool != null ? internPool.internPathData(path) : path,
+                 styleTools.getStyle(element, false));
+    }
 
-        styleTools.applyStyle(result, element);
 
-        //fxObj.setStroke(Color.VIOLET);
-        loader.parentNode.getChildren().add(result);
+    /**
+     * Alternative handling of an SVG path.
+     * Creates one JavaFX Path whose segments can be addressed individually.
+     * 
+     * @param element The SVG path element to handle.
+     */
+    private void handleSegmentPathElement(SVGOMPathElement element) {
+        String path = element.getAttribute("d");
+        addShape(SvgSceneNode.Kind.SEGMENT_PATH, element, styleTools.getTransform(element),
+                 NO_VALUES, internPool != null ? internPool.internPathData(path) : path,
+                 styleTools.getStyle(element, false));
     }
 
 
@@ -368,96 +351,10 @@ public class SvgBasicElementHandler {
      */
     private void handlePathElementsSeparately(SVGOMPathElement element) {
 
-        Group result = new Group();
-        result.setId(element.getId());
-
-        double xpos = 0.0;
-        double ypos = 0.0;
-
-        SVGOMAnimatedPathData.BaseSVGPathSegList list = 
-                                    (BaseSVGPathSegList) element.getPathSegList();
-        for (int i = 0;  i < list.getNumberOfItems();  i++) {
-            SVGPathSegItem item = (SVGPathSegItem) list.getItem(i);
-            Shape fxObj = null;
-
-            switch (item.getPathSegType()) { 
-              case SVGPathSegItem.PATHSEG_UNKNOWN : 
-                  break;
-
-              case SVGPathSegItem.PATHSEG_CLOSEPATH : 
-                  break;
-
-              case SVGPathSegItem.PATHSEG_MOVETO_ABS : 
-                  xpos = item.getX();
-                  ypos = item.getY();
-                  break;
-                
-              case SVGPathSegItem.PATHSEG_MOVETO_REL :
-                  xpos += item.getX();
-                  ypos += item.getY();
-                  break;
-
-              case SVGPathSegItem.PATHSEG_LINETO_ABS  : { 
-                  double x2 = item.getX();
-                  double y2 = item.getY();
-                        
-                  fxObj = new Line(xpos, ypos, x2, y2);
-                        
-                  xpos = x2;
-                  ypos = y2;
-              }
-              break;
-
-              case SVGPathSegItem.PATHSEG_LINETO_REL  : {
-                  double x2 = xpos + item.getX();
-                  double y2 = ypos + item.getY();
-                        
-                  fxObj = new Line(xpos, ypos, x2, y2);
-                        
-                  xpos = x2;
-                  ypos = y2;
-              }
-              break;
-
-              case SVGPathSegItem.PATHSEG_CURVETO_CUBIC_ABS  : {
-                  double endX = xpos + item.getX();
-                  double endY = ypos + item.getY();
-                        
-                  fxObj = new CubicCurve(xpos, ypos, item.getX1(), item.getY1(), 
-                                         item.getX2(), item.getY2(), endX, endY);
-
-                  xpos = endX;
-                  ypos = endY;
-              }
-              break;
-
-              case SVGPathSegItem.PATHSEG_CURVETO_CUBIC_REL : { 
-                  double endX = xpos + item.getX();
-                  double endY = ypos + item.getY();
-                  double x1 = xpos + item.getX1();
-                  double y1 = ypos + item.getY1();
-                  double x2 = xpos + item.getX2();
-                  double y2 = ypos + item.getY2();
-                        
-                  fxObj = new CubicCurve(xpos, ypos, x1, y1, x2, y2, endX, endY);
-
-                  xpos = endX;
-                  ypos = endY;
-              }
-              break;
-
-              default:
-                  break;
-            }
-
-            if (fxObj != null) {
-                styleTools.applyStyle(fxObj, element);
-
-                result.getChildren().add(fxObj);
-            }
-        }
-
-        loader.parentNode.getChildren().add(result);
+        sink.startGroup(getId(element), null);
+        SvgPathParser.parse(element.getAttribute("d"), new SvgPathParser.SegmentShapes(
+                                sink, styleTools.getStyle(element, false)));
+        sink.endGroup();
     }
 
     private List<Stop> getStops(SVGOMGradientElement element) {
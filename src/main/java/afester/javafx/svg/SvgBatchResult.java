@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.scene.Group;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The result of loading several SVG documents concurrently through
+ * {@link SvgLoader#loadSvgBatch(java.util.Collection)}.
+ * The documents are identified by keys - the file names, or the keys of the
+ * streams which have been passed to the loader. Each document is loaded
+ * independently, so a document which can not be loaded does not affect
+ * the other documents of the batch.
+ * <p>
+ * The returned node trees are not attached to a scene yet, so they can be
+ * attached to a scene on the JavaFX application thread.
+ *
+ * @param <K> The type of the keys which identify the documents.
+ */
+public final class SvgBatchResult<K> {
+    private final Map<K, CompletableFuture<Group>> futures;
+    private final CompletableFuture<Void> all;
+
+    SvgBatchResult(Map<K, CompletableFuture<Group>> futures) {
+        this.futures = Collections.unmodifiableMap(futures);
+        this.all = CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]));
+    }
+
+
+    /**
+     * @return The futures of the individual documents, in the order in
+     *         which the documents have been passed to the loader.
+     */
+    public Map<K, CompletableFuture<Group>> getFutures() {
+        return futures;
+    }
+
+
+    /**
+     * @return The number of documents in the batch.
+     */
+    public int size() {
+        return futures.size();
+    }
+
+
+    /**
+     * @return A future which is completed with this result when all documents
+     *         of the batch have either been loaded or failed.
+     */
+    public CompletableFuture<SvgBatchResult<K>> whenDone() {
+        return all.handle((result, error) -> this);
+    }
+
+
+    /**
+     * Waits until all documents of the batch have either been loaded or failed.
+     *
+     * @return This result.
+     */
+    public SvgBatchResult<K> await() {
+        whenDone().join();
+        return this;
+    }
+
+
+    /**
+     * Waits until all documents of the batch have been processed and returns
+     * the documents which have been loaded successfully.
+     *
+     * @return The JavaFX nodes of the successfully loaded documents.
+     */
+    public Map<K, Group> getGroups() {
+        await();
+
+        Map<K, Group> result = new LinkedHashMap<>();
+        for (Map.Entry<K, CompletableFuture<Group>> entry : futures.entrySet()) {
+            if (!entry.getValue().isCompletedExceptionally()) {
+                result.put(entry.getKey(), entry.getValue().join());
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Waits until all documents of the batch have been processed and returns
+     * the errors of the documents which could not be loaded.
+     *
+     * @return The errors which occurred while loading the documents.
+     */
+    public Map<K, Throwable> getErrors() {
+        await();
+
+        Map<K, Throwable> result = new LinkedHashMap<>();
+        for (Map.Entry<K, CompletableFuture<Group>> entry : futures.entrySet()) {
+            CompletableFuture<Group> future = entry.getValue();
+            if (future.isCompletedExceptionally()) {
+                try {
+                    future.join();
+                } catch (CompletionException e) {
+                    result.put(entry.getKey(), e.getCause() != null ? e.getCause() : e);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * An in-memory cache of converted SVG documents.
+ * The cache is content addressed: documents are identified by a hash of
+ * their content together with the loader options which affect the
+ * conversion, so the same document loaded from different files or streams
+ * is converted only once. The cache keeps the converted documents as
+ * immutable {@link SvgScene}s, so each cache hit creates a new, independent
+ * node tree which can be modified and attached to a scene graph without
+ * affecting other trees.
+ * <p>
+ * The size of the cache is bounded by its weight, which is the total
+ * number of JavaFX nodes of all cached documents. When the bound is
+ * exceeded, the least recently used documents are evicted.
+ * A cache can be shared by several {@link SvgLoader}s and threads.
+ */
+public class SvgCache {
+    private final long maximumWeight;
+
+    // access ordered, the eldest entry is the least recently used one
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long weight = 0;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     * Creates a new, empty SvgCache.
+     *
+     * @param maximumWeight The maximum total number of JavaFX nodes which
+     *                      are kept in the cache.
+     */
+    public SvgCache(long maximumWeight) {
+        if (maximumWeight < 0) {
+            throw new IllegalArgumentException("maximumWeight must not be negative");
+        }
+        this.maximumWeight = maximumWeight;
+    }
+
+
+    /**
+     * Creates the key for a document.
+     *
+     * @param content The content of the SVG document.
+     * @param options The loader options which affect the conversion.
+     * @return The key which identifies the converted document.
+     */
+    static Key createKey(byte[] content, String options) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return new Key(digest.digest(content), options);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+
+    /**
+     * @param key The key of the document.
+     * @return The cached scene for the given key, or <code>null</code> if
+     *         the document is not cached.
+     */
+    synchronized SvgScene get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+
+        hitCount++;
+        return entry.scene;
+    }
+
+
+    /**
+     * Adds a converted document to the cache.
+     *
+     * @param key The key of the document.
+     * @param scene The converted document.
+     */
+    synchronized void put(Key key, SvgScene scene) {
+        Entry entry = new Entry(scene);
+        if (entry.weight <= maximumWeight) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                weight -= previous.weight;
+            }
+            weight += entry.weight;
+            evict();
+        }
+    }
+
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (weight > maximumWeight && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            weight -= eldest.weight;
+            evictionCount++;
+        }
+    }
+
+
+    /**
+     * Removes all documents from the cache. The statistics are not reset.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+
+    /**
+     * @return The number of documents in the cache.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+
+    /**
+     * @return The total number of JavaFX nodes of all cached documents.
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+
+    /**
+     * @return The maximum total number of JavaFX nodes kept in the cache.
+     */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+
+    /**
+     * @return The number of documents which have been returned from the cache.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+
+    /**
+     * @return The number of documents which were not found in the cache
+     *         and had to be converted.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+
+    /**
+     * @return The number of documents which have been removed from the
+     *         cache to keep its weight within the bound.
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+
+    @Override
+    public synchronized String toString() {
+        return String.format("SvgCache[size=%d, weight=%d/%d, hits=%d, misses=%d, evictions=%d]",
+                             entries.size(), weight, maximumWeight,
+                             hitCount, missCount, evictionCount);
+    }
+
+
+    /**
+     * Identifies a converted document by the hash of its content and the
+     * loader options.
+     */
+    static final class Key {
+        private final byte[] hash;
+        private final String options;
+
+        Key(byte[] hash, String options) {
+            this.hash = hash;
+            this.options = options;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return Arrays.equals(hash, other.hash) && options.equals(other.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(hash) + options.hashCode();
+        }
+    }
+
+
+    private static final class Entry {
+        final SvgScene scene;
+        final int weight;
+
+        Entry(SvgScene scene) {
+            this.scene = scene;
+            this.weight = scene.getNodeCount();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Region;
+
+/**
+ * A region which displays an {@link SvgDisplayList} on a {@link Canvas}.
+ * The whole drawing is rendered by one node, instead of one node per SVG
+ * element, which keeps the CSS and layout passes of the scene graph short
+ * for large read only drawings.
+ * <p>
+ * The canvas always has the size of the region. The display list is only
+ * replayed when the size of the region, the zoom factor or the display list
+ * changes - in particular, it is not replayed on each pulse.
+ */
+public class SvgCanvas extends Region {
+
+    private final Canvas canvas = new Canvas();
+
+    private final ObjectProperty<SvgDisplayList> displayList =
+            new SimpleObjectProperty<>(this, "displayList");
+
+    private final DoubleProperty zoom = new SimpleDoubleProperty(this, "zoom", 1.0);
+
+    // whether the display list needs to be replayed on the next layout pass
+    private boolean dirty = true;
+
+    private int renderCount = 0;
+
+    /**
+     * Creates an empty SvgCanvas.
+     */
+    public SvgCanvas() {
+        this(null);
+    }
+
+
+    /**
+     * Creates an SvgCanvas which displays a display list.
+     *
+     * @param list The display list to show.
+     */
+    public SvgCanvas(SvgDisplayList list) {
+        getChildren().add(canvas);
+        displayList.set(list);
+
+        displayList.addListener((observable, oldValue, newValue) -> invalidate());
+        zoom.addListener((observable, oldValue, newValue) -> invalidate());
+        canvas.widthProperty().addListener((observable, oldValue, newValue) -> invalidate());
+        canvas.heightProperty().addListener((observable, oldValue, newValue) -> invalidate());
+    }
+
+
+    private void invalidate() {
+        dirty = true;
+        requestLayout();
+    }
+
+
+    @Override
+    protected void layoutChildren() {
+        canvas.setWidth(getWidth());
+        canvas.setHeight(getHeight());
+        if (dirty) {
+            render();
+        }
+    }
+
+
+    private void render() {
+        dirty = false;
+        renderCount++;
+
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setTransform(1, 0, 0, 1, 0, 0);
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+
+        SvgDisplayList list = displayList.get();
+        if (list != null) {
+            double scale = zoom.get();
+            gc.setTransform(scale, 0, 0, scale, 0, 0);
+            list.render(gc);
+        }
+    }
+
+
+    /**
+     * @return The property which holds the display list to show.
+     */
+    public ObjectProperty<SvgDisplayList> displayListProperty() {
+        return displayList;
+    }
+
+    public SvgDisplayList getDisplayList() {
+        return displayList.get();
+    }
+
+    public void setDisplayList(SvgDisplayList list) {
+        displayList.set(list);
+    }
+
+
+    /**
+     * @return The property which holds the zoom factor of the drawing.
+     */
+    public DoubleProperty zoomProperty() {
+        return zoom;
+    }
+
+    public double getZoom() {
+        return zoom.get();
+    }
+
+    public void setZoom(double factor) {
+        zoom.set(factor);
+    }
+
+
+    /**
+     * @return The number of times the display list has been replayed.
+     */
+    public int getRenderCount() {
+        return renderCount;
+    }
+}
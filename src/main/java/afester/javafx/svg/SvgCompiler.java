@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles SVG documents into the precompiled binary format which can be
+ * loaded with {@link SvgLoader#loadPrecompiled(String)}, without using
+ * Batik or an XML parser at runtime.
+ * <p>
+ * The compiler is usually run during the build of an application:
+ * <pre>
+ * java -cp javafx-svg.jar:... afester.javafx.svg.SvgCompiler
+ *      [-rootRect] [-separatePaths] [-flatten] [-optimize] [-keepId id]
+ *      [-gradientPolicy USE_AS_IS|USE_SUPPORTED|DISCARD]
+ *      [-d outputDirectory] file.svg ...
+ * </pre>
+ * Each file.svg is compiled into file.svgc, in the output directory or
+ * next to the source file.
+ */
+public final class SvgCompiler {
+
+    /** The file name extension of precompiled SVG documents. */
+    public static final String EXTENSION = ".svgc";
+
+    private SvgCompiler() {
+    }
+
+
+    /**
+     * Writes a converted SVG document in the precompiled binary format.
+     *
+     * @param scene The converted SVG document.
+     * @param out The stream to write the precompiled document to.
+     *            The stream is not closed.
+     * @throws IOException if writing to the stream fails.
+     */
+    public static void compile(SvgScene scene, OutputStream out) throws IOException {
+        SvgSceneFormat.write(scene, out);
+    }
+
+
+    /**
+     * Compiles an SVG file into a precompiled file.
+     *
+     * @param loader The loader which converts the SVG file.
+     * @param svgFile The SVG file to compile.
+     * @param targetFile The precompiled file to write.
+     * @throws IOException if the SVG file can not be loaded or if writing
+     *                     the precompiled file fails.
+     */
+    public static void compile(SvgLoader loader, File svgFile, File targetFile)
+                                                            throws IOException {
+        SvgScene scene = loader.loadSvgScene(svgFile.getPath());
+        if (scene == null) {
+            throw new IOException("Could not load " + svgFile);
+        }
+
+        try (OutputStream out = new FileOutputStream(targetFile)) {
+            compile(scene, out);
+        }
+    }
+
+
+    private static void usage() {
+        System.err.println("Usage: SvgCompiler [-rootRect] [-separatePaths] [-flatten] "
+                         + "[-optimize] [-keepId id] [-gradientPolicy policy] "
+                         + "[-d outputDirectory] file.svg ...");
+        System.exit(2);
+    }
+
+
+    /**
+     * The command line entry point of the compiler.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        SvgLoader.Builder builder = SvgLoader.builder();
+        File outputDirectory = null;
+        boolean optimize = false;
+        List<String> keepIds = new ArrayList<>();
+
+        int idx = 0;
+        while (idx < args.length && args[idx].startsWith("-")) {
+            String option = args[idx++];
+            if ("-rootRect".equals(option)) {
+                builder.addViewboxRect(true);
+            } else if ("-separatePaths".equals(option)) {
+                builder.useSeparatePathElements(true);
+            } else if ("-flatten".equals(option)) {
+                builder.flattenTransforms(true);
+            } else if ("-optimize".equals(option)) {
+                optimize = true;
+            } else if ("-keepId".equals(option) && idx < args.length) {
+                keepIds.add(args[idx++]);
+            } else if ("-gradientPolicy".equals(option) && idx < args.length) {
+                builder.gradientTransformPolicy(GradientPolicy.valueOf(args[idx++]));
+            } else if ("-d".equals(option) && idx < args.length) {
+                outputDirectory = new File(args[idx++]);
+            } else {
+                usage();
+            }
+        }
+        if (idx == args.length) {
+            usage();
+        }
+
+        if (optimize) {
+            builder.optimizer(new SvgOptimizer(keepIds));
+        }
+
+        SvgLoader loader = builder.build();
+        boolean success = true;
+        for ( ;  idx < args.length;  idx++) {
+            File svgFile = new File(args[idx]);
+            String name = svgFile.getName();
+            if (name.endsWith(".svg")) {
+                name = name.substring(0, name.length() - 4);
+            }
+            File directory = outputDirectory != null ? outputDirectory
+                                                     : svgFile.getAbsoluteFile().getParentFile();
+            File targetFile = new File(directory, name + EXTENSION);
+
+            try {
+                compile(loader, svgFile, targetFile);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Could not compile " + svgFile + ": " + e.getMessage());
+                success = false;
+            }
+        }
+
+        if (!success) {
+            System.exit(1);
+        }
+    }
+}
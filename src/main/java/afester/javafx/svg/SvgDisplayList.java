@@ -0,0 +1,441 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.FillRule;
+import javafx.scene.text.Font;
+import javafx.scene.transform.Affine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A compiled, immutable list of drawing operations which renders an SVG
+ * document onto a {@link GraphicsContext}. A display list renders the same
+ * image as the node tree of the document, but does not need any scene
+ * graph nodes - it is meant for read only drawings, which are displayed
+ * with an {@link SvgCanvas}.
+ * <p>
+ * The operations are stored in flat arrays. State changes (transformation,
+ * paints, line width, dashes and font) are only recorded when they differ
+ * from the previous state, so that replaying the list does not need to
+ * save and restore the state of the graphics context for each element.
+ */
+public final class SvgDisplayList {
+
+    // operation codes
+    private static final byte SET_TRANSFORM = 0;    // 6 values
+    private static final byte SET_FILL = 1;         // 1 object
+    private static final byte SET_STROKE = 2;       // 1 object
+    private static final byte SET_LINE_WIDTH = 3;   // 1 value
+    private static final byte SET_DASHES = 4;       // 1 object, 1 value
+    private static final byte SET_FONT = 5;         // 1 object
+    private static final byte FILL_RECT = 6;        // 6 values
+    private static final byte STROKE_RECT = 7;      // 6 values
+    private static final byte FILL_OVAL = 8;        // 4 values
+    private static final byte STROKE_OVAL = 9;      // 4 values
+    private static final byte STROKE_LINE = 10;     // 4 values
+    private static final byte FILL_POLYGON = 11;    // 1 object (double[])
+    private static final byte STROKE_POLYGON = 12;  // 1 object (double[])
+    private static final byte STROKE_POLYLINE = 13; // 1 object (double[])
+    private static final byte FILL_CURVE = 14;      // 8 values
+    private static final byte STROKE_CURVE = 15;    // 8 values
+    private static final byte FILL_PATH = 16;       // 1 object (String)
+    private static final byte STROKE_PATH = 17;     // 1 object (String)
+    private static final byte FILL_TEXT = 18;       // 1 object (String), 2 values
+    private static final byte STROKE_TEXT = 19;     // 1 object (String), 2 values
+
+    private final byte[] operations;
+    private final double[] values;
+    private final Object[] objects;
+
+    private SvgDisplayList(byte[] operations, double[] values, Object[] objects) {
+        this.operations = operations;
+        this.values = values;
+        this.objects = objects;
+    }
+
+
+    /**
+     * Compiles the display list of a converted SVG document.
+     *
+     * @param scene The converted SVG document.
+     * @return The display list which renders the document.
+     */
+    public static SvgDisplayList fromScene(SvgScene scene) {
+        Compiler compiler = new Compiler();
+        compiler.compile(scene.getRoot(), new Affine());
+        return compiler.createList();
+    }
+
+
+    /**
+     * @return The number of drawing operations, including state changes.
+     */
+    public int getOperationCount() {
+        return operations.length;
+    }
+
+
+    /**
+     * Renders the display list. The current transformation of the graphics
+     * context is applied to the whole drawing, so that the drawing can be
+     * scaled and translated by the caller. All other attributes of the
+     * graphics context are set by the display list as required, and the
+     * state of the graphics context is restored afterwards.
+     *
+     * @param gc The graphics context to render the display list to.
+     */
+    public void render(GraphicsContext gc) {
+        gc.save();
+
+        Affine base = gc.getTransform();
+        gc.setFill(null);
+        gc.setStroke(null);
+        gc.setLineDashes((double[]) null);
+        gc.setLineDashOffset(0);
+        gc.setFillRule(FillRule.NON_ZERO);
+
+        int val = 0;
+        int obj = 0;
+        double[] v = values;
+        for (byte operation : operations) {
+            switch (operation) {
+              case SET_TRANSFORM :
+                  gc.setTransform(base.getMxx() * v[val] + base.getMxy() * v[val + 3],
+                                  base.getMyx() * v[val] + base.getMyy() * v[val + 3],
+                                  base.getMxx() * v[val + 1] + base.getMxy() * v[val + 4],
+                                  base.getMyx() * v[val + 1] + base.getMyy() * v[val + 4],
+                                  base.getMxx() * v[val + 2] + base.getMxy() * v[val + 5]
+                                                             + base.getTx(),
+                                  base.getMyx() * v[val + 2] + base.getMyy() * v[val + 5]
+                                                             + base.getTy());
+                  val += 6;
+                  break;
+
+              case SET_FILL : gc.setFill((Paint) objects[obj++]); break;
+              case SET_STROKE : gc.setStroke((Paint) objects[obj++]); break;
+              case SET_LINE_WIDTH : gc.setLineWidth(v[val++]); break;
+              case SET_DASHES :
+                  gc.setLineDashes((double[]) objects[obj++]);
+                  gc.setLineDashOffset(v[val++]);
+                  break;
+              case SET_FONT : gc.setFont((Font) objects[obj++]); break;
+
+              case FILL_RECT :
+              case STROKE_RECT :
+                  if (v[val + 4] == 0 && v[val + 5] == 0) {
+                      if (operation == FILL_RECT) {
+                          gc.fillRect(v[val], v[val + 1], v[val + 2], v[val + 3]);
+                      } else {
+                          gc.strokeRect(v[val], v[val + 1], v[val + 2], v[val + 3]);
+                      }
+                  } else if (operation == FILL_RECT) {
+                      gc.fillRoundRect(v[val], v[val + 1], v[val + 2], v[val + 3],
+                                       v[val + 4], v[val + 5]);
+                  } else {
+                      gc.strokeRoundRect(v[val], v[val + 1], v[val + 2], v[val + 3],
+                                         v[val + 4], v[val + 5]);
+                  }
+                  val += 6;
+                  break;
+
+              case FILL_OVAL :
+                  gc.fillOval(v[val], v[val + 1], v[val + 2], v[val + 3]);
+                  val += 4;
+                  break;
+              case STROKE_OVAL :
+                  gc.strokeOval(v[val], v[val + 1], v[val + 2], v[val + 3]);
+                  val += 4;
+                  break;
+              case STROKE_LINE :
+                  gc.strokeLine(v[val], v[val + 1], v[val + 2], v[val + 3]);
+                  val += 4;
+                  break;
+
+              case FILL_POLYGON :
+              case STROKE_POLYGON :
+              case STROKE_POLYLINE :
+                  double[] points = (double[]) objects[obj++];
+                  gc.beginPath();
+                  for (int i = 0;  i < points.length;  i += 2) {
+                      if (i == 0) {
+                          gc.moveTo(points[i], points[i + 1]);
+                      } else {
+                          gc.lineTo(points[i], points[i + 1]);
+                      }
+                  }
+                  if (operation != STROKE_POLYLINE) {
+                      gc.closePath();
+                  }
+                  if (operation == FILL_POLYGON) {
+                      gc.fill();
+                  } else {
+                      gc.stroke();
+                  }
+                  break;
+
+              case FILL_CURVE :
+              case STROKE_CURVE :
+                  gc.beginPath();
+                  gc.moveTo(v[val], v[val + 1]);
+                  gc.bezierCurveTo(v[val + 2], v[val + 3], v[val + 4], v[val + 5],
+                                   v[val + 6], v[val + 7]);
+                  if (operation == FILL_CURVE) {
+                      gc.fill();
+                  } else {
+                      gc.stroke();
+                  }
+                  val += 8;
+                  break;
+
+              case FILL_PATH :
+              case STROKE_PATH :
+                  gc.beginPath();
+                  gc.appendSVGPath((String) objects[obj++]);
+                  if (operation == FILL_PATH) {
+                      gc.fill();
+                  } else {
+                      gc.stroke();
+                  }
+                  break;
+
+              case FILL_TEXT :
+                  gc.fillText((String) objects[obj++], v[val], v[val + 1]);
+                  val += 2;
+                  break;
+              case STROKE_TEXT :
+                  gc.strokeText((String) objects[obj++], v[val], v[val + 1]);
+                  val += 2;
+                  break;
+
+              default :
+                  throw new IllegalStateException("Invalid operation " + operation);
+            }
+        }
+
+        gc.restore();
+    }
+
+
+    /**
+     * Creates the operations of a display list from the nodes of a scene.
+     */
+    private static final class Compiler {
+        private byte[] operations = new byte[256];
+        private int operationCount = 0;
+        private double[] values = new double[1024];
+        private int valueCount = 0;
+        private final List<Object> objects = new ArrayList<>();
+
+        // the current state of the graphics context
+        private Affine transform = null;
+        private SvgScenePaint fill = null;
+        private SvgScenePaint stroke = null;
+        private double lineWidth = 1.0;
+        private double[] dashes = null;
+        private double dashOffset = 0;
+        private SvgSceneFont font = null;
+
+        void compile(SvgSceneNode node, Affine parentTransform) {
+            Affine nodeTransform = parentTransform;
+            double[] transforms = node.getTransforms();
+            for (int i = 0;  i < transforms.length;  i += 6) {
+                if (nodeTransform == parentTransform) {
+                    nodeTransform = new Affine(parentTransform);
+                }
+                nodeTransform.append(transforms[i], transforms[i + 1], transforms[i + 2],
+                                     transforms[i + 3], transforms[i + 4], transforms[i + 5]);
+            }
+
+            if (node.getKind() == SvgSceneNode.Kind.GROUP) {
+                for (SvgSceneNode child : node.getChildren()) {
+                    compile(child, nodeTransform);
+                }
+                return;
+            }
+
+            SvgScenePaint nodeFill = node.getKind() == SvgSceneNode.Kind.LINE
+                                     ? null : node.getFill();
+            SvgScenePaint nodeStroke = node.getStroke();
+            if (nodeFill == null && nodeStroke == null) {
+                return;
+            }
+
+            setTransform(nodeTransform);
+            if (nodeFill != null) {
+                setFill(nodeFill);
+                compileShape(node, true);
+            }
+            if (nodeStroke != null) {
+                setStroke(nodeStroke, node.getStrokeWidth(), node.getStrokeDashArray(),
+                          node.getStrokeDashOffset());
+                compileShape(node, false);
+            }
+        }
+
+
+        private void compileShape(SvgSceneNode node, boolean filled) {
+            double[] geometry = node.getGeometry();
+
+            switch (node.getKind()) {
+              case RECTANGLE :
+                  add(filled ? FILL_RECT : STROKE_RECT, geometry);
+                  break;
+
+              case CIRCLE :
+                  add(filled ? FILL_OVAL : STROKE_OVAL,
+                      geometry[0] - geometry[2], geometry[1] - geometry[2],
+                      2 * geometry[2], 2 * geometry[2]);
+                  break;
+
+              case ELLIPSE :
+                  add(filled ? FILL_OVAL : STROKE_OVAL,
+                      geometry[0] - geometry[2], geometry[1] - geometry[3],
+                      2 * geometry[2], 2 * geometry[3]);
+                  break;
+
+              case LINE :
+                  add(STROKE_LINE, geometry);
+                  break;
+
+              case CUBIC_CURVE :
+                  add(filled ? FILL_CURVE : STROKE_CURVE, geometry);
+                  break;
+
+              case POLYGON :
+                  addObject(filled ? FILL_POLYGON : STROKE_POLYGON, geometry);
+                  break;
+
+              case POLYLINE :
+                  addObject(filled ? FILL_POLYGON : STROKE_POLYLINE, geometry);
+                  break;
+
+              case PATH :
+              case SEGMENT_PATH :
+                  addObject(filled ? FILL_PATH : STROKE_PATH, node.getContent());
+                  break;
+
+              case TEXT :
+                  setFont(node.getFont());
+                  addObject(filled ? FILL_TEXT : STROKE_TEXT, node.getContent());
+                  addValues(geometry);
+                  break;
+
+              default :
+                  break;
+            }
+        }
+
+
+        private void setTransform(Affine nodeTransform) {
+            if (transform != null && isEqual(transform, nodeTransform)) {
+                return;
+            }
+            transform = nodeTransform;
+            add(SET_TRANSFORM, nodeTransform.getMxx(), nodeTransform.getMxy(),
+                nodeTransform.getTx(), nodeTransform.getMyx(), nodeTransform.getMyy(),
+                nodeTransform.getTy());
+        }
+
+
+        private void setFill(SvgScenePaint paint) {
+            if (!paint.equals(fill)) {
+                fill = paint;
+                addObject(SET_FILL, paint.toPaint());
+            }
+        }
+
+
+        private void setStroke(SvgScenePaint paint, double width, double[] dashArray,
+                               double offset) {
+            if (!paint.equals(stroke)) {
+                stroke = paint;
+                addObject(SET_STROKE, paint.toPaint());
+            }
+            if (width != lineWidth) {
+                lineWidth = width;
+                add(SET_LINE_WIDTH, width);
+            }
+
+            double[] nodeDashes = dashArray.length > 0 ? dashArray : null;
+            if (!Arrays.equals(nodeDashes, dashes) || offset != dashOffset) {
+                dashes = nodeDashes;
+                dashOffset = offset;
+                addObject(SET_DASHES, nodeDashes);
+                addValues(offset);
+            }
+        }
+
+
+        private void setFont(SvgSceneFont nodeFont) {
+            if (nodeFont != null && !Objects.equals(nodeFont, font)) {
+                font = nodeFont;
+                addObject(SET_FONT, nodeFont.toFont());
+            }
+        }
+
+
+        private static boolean isEqual(Affine t1, Affine t2) {
+            return t1.getMxx() == t2.getMxx() && t1.getMxy() == t2.getMxy()
+                && t1.getTx() == t2.getTx() && t1.getMyx() == t2.getMyx()
+                && t1.getMyy() == t2.getMyy() && t1.getTy() == t2.getTy();
+        }
+
+
+        private void add(byte operation, double... operationValues) {
+            addOperation(operation);
+            addValues(operationValues);
+        }
+
+
+        private void addObject(byte operation, Object object) {
+            addOperation(operation);
+            objects.add(object);
+        }
+
+
+        private void addOperation(byte operation) {
+            if (operationCount == operations.length) {
+                operations = Arrays.copyOf(operations, 2 * operationCount);
+            }
+            operations[operationCount++] = operation;
+        }
+
+
+        private void addValues(double... operationValues) {
+            if (valueCount + operationValues.length > values.length) {
+                values = Arrays.copyOf(values,
+                                       Math.max(2 * values.length,
+                                                valueCount + operationValues.length));
+            }
+            System.arraycopy(operationValues, 0, values, valueCount, operationValues.length);
+            valueCount += operationValues.length;
+        }
+
+
+        SvgDisplayList createList() {
+            return new SvgDisplayList(Arrays.copyOf(operations, operationCount),
+                                      Arrays.copyOf(values, valueCount),
+                                      objects.toArray());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides the executors which are used for concurrent loading and
+ * rendering when the application does not specify its own executor.
+ */
+final class SvgExecutors {
+
+    private SvgExecutors() {
+    }
+
+
+    private static final class Holder {
+        static final ExecutorService DEFAULT = createDefaultExecutor();
+    }
+
+
+    private static final class RenderHolder {
+        static final ExecutorService RENDER =
+                    Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                                                 new DaemonThreadFactory("SvgRenderer-"));
+    }
+
+
+    /**
+     * @return The shared default executor - an executor which starts a new
+     *         virtual thread for each task if the Java runtime supports
+     *         virtual threads, or a pool of daemon threads with one thread
+     *         per available processor otherwise.
+     */
+    static ExecutorService getDefaultExecutor() {
+        return Holder.DEFAULT;
+    }
+
+
+    /**
+     * @return The shared render executor - a pool of daemon threads with one
+     *         thread per available processor. Rendering is CPU bound and each
+     *         rendering thread keeps its own copy of the rendered document,
+     *         so the number of threads is bounded also on runtimes which
+     *         support virtual threads.
+     */
+    static ExecutorService getRenderExecutor() {
+        return RenderHolder.RENDER;
+    }
+
+
+    private static ExecutorService createDefaultExecutor() {
+        try {
+            // only available on Java 21 and later
+            return (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            return Executors.newFixedThreadPool(threads, new DaemonThreadFactory("SvgLoader-"));
+        }
+    }
+
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread result = new Thread(runnable, prefix + count.incrementAndGet());
+            result.setDaemon(true);
+            return result;
+        }
+    }
+}
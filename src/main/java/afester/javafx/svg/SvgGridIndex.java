@@ -0,0 +1,251 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A uniform grid which indexes the bounds of a fixed number of items.
+ * Items are identified by their index, and their bounds are given as
+ * four values per item: min x, min y, max x, max y. Items without bounds
+ * have <code>NaN</code> values and are never found. Items which are
+ * unbounded or which cover a large part of the grid are kept in a
+ * separate list, which is checked by each query.
+ * <p>
+ * The index is immutable after it has been created, and queries can be
+ * run concurrently.
+ */
+final class SvgGridIndex {
+
+    private static final int MAXIMUM_CELLS_PER_AXIS = 256;
+
+    // items which cover more cells are not added to the cells
+    private static final int MAXIMUM_ITEM_CELLS = 64;
+
+    private final double[] bounds;
+    private final int count;
+
+    private final double originX;
+    private final double originY;
+    private final double cellWidth;
+    private final double cellHeight;
+    private final int columns;
+    private final int rows;
+
+    // the items of each cell, row by row
+    private final int[][] cells;
+
+    // the items which are not added to the cells
+    private final int[] large;
+
+    /**
+     * Creates a new index.
+     *
+     * @param bounds The bounds of the items, four values per item.
+     */
+    SvgGridIndex(double[] bounds) {
+        this.bounds = bounds;
+        this.count = bounds.length / 4;
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int item = 0;  item < count;  item++) {
+            if (isFinite(item)) {
+                minX = Math.min(minX, bounds[item * 4]);
+                minY = Math.min(minY, bounds[item * 4 + 1]);
+                maxX = Math.max(maxX, bounds[item * 4 + 2]);
+                maxY = Math.max(maxY, bounds[item * 4 + 3]);
+            }
+        }
+        if (minX > maxX) {
+            minX = minY = maxX = maxY = 0;
+        }
+
+        int cellsPerAxis = (int) Math.ceil(Math.sqrt(count));
+        cellsPerAxis = Math.max(1, Math.min(MAXIMUM_CELLS_PER_AXIS, cellsPerAxis));
+        this.originX = minX;
+        this.originY = minY;
+        this.columns = cellsPerAxis;
+        this.rows = cellsPerAxis;
+        this.cellWidth = Math.max(maxX - minX, Double.MIN_NORMAL) / columns;
+        this.cellHeight = Math.max(maxY - minY, Double.MIN_NORMAL) / rows;
+
+        // count the items of each cell first, to allocate the cells with their final size
+        int[] cellSizes = new int[columns * rows];
+        int largeCount = 0;
+        for (int item = 0;  item < count;  item++) {
+            if (isLarge(item)) {
+                largeCount++;
+            } else if (isFinite(item)) {
+                forEachCell(item, cell -> cellSizes[cell]++);
+            }
+        }
+
+        this.cells = new int[columns * rows][];
+        for (int cell = 0;  cell < cells.length;  cell++) {
+            cells[cell] = new int[cellSizes[cell]];
+            cellSizes[cell] = 0;
+        }
+        this.large = new int[largeCount];
+        largeCount = 0;
+        for (int item = 0;  item < count;  item++) {
+            if (isLarge(item)) {
+                large[largeCount++] = item;
+            } else if (isFinite(item)) {
+                final int added = item;
+                forEachCell(item, cell -> cells[cell][cellSizes[cell]++] = added);
+            }
+        }
+    }
+
+
+    private boolean isFinite(int item) {
+        for (int i = item * 4;  i < item * 4 + 4;  i++) {
+            if (Double.isNaN(bounds[i]) || Double.isInfinite(bounds[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private boolean isLarge(int item) {
+        if (Double.isNaN(bounds[item * 4]) || Double.isNaN(bounds[item * 4 + 2])) {
+            return false;
+        }
+        if (!isFinite(item)) {
+            return true;
+        }
+        long cellCount = (long) (getColumn(bounds[item * 4 + 2]) - getColumn(bounds[item * 4]) + 1)
+                         * (getRow(bounds[item * 4 + 3]) - getRow(bounds[item * 4 + 1]) + 1);
+        return cellCount > MAXIMUM_ITEM_CELLS;
+    }
+
+
+    private void forEachCell(int item, IntConsumer consumer) {
+        int lastColumn = getColumn(bounds[item * 4 + 2]);
+        int lastRow = getRow(bounds[item * 4 + 3]);
+        for (int row = getRow(bounds[item * 4 + 1]);  row <= lastRow;  row++) {
+            for (int column = getColumn(bounds[item * 4]);  column <= lastColumn;  column++) {
+                consumer.accept(row * columns + column);
+            }
+        }
+    }
+
+
+    private int getColumn(double x) {
+        int column = (int) Math.floor((x - originX) / cellWidth);
+        return Math.max(0, Math.min(columns - 1, column));
+    }
+
+
+    private int getRow(double y) {
+        int row = (int) Math.floor((y - originY) / cellHeight);
+        return Math.max(0, Math.min(rows - 1, row));
+    }
+
+
+    /**
+     * @return The number of items in the index.
+     */
+    int getCount() {
+        return count;
+    }
+
+
+    /**
+     * @return The larger of the width and the height of a grid cell.
+     */
+    double getCellSize() {
+        return Math.max(cellWidth, cellHeight);
+    }
+
+
+    /**
+     * @return The distance between a point and the farthest corner of the
+     *         grid, which is the maximum distance to any item with finite bounds.
+     */
+    double getMaximumDistance(double x, double y) {
+        double dx = Math.max(Math.abs(x - originX), Math.abs(originX + columns * cellWidth - x));
+        double dy = Math.max(Math.abs(y - originY), Math.abs(originY + rows * cellHeight - y));
+        return Math.hypot(dx, dy);
+    }
+
+
+    /**
+     * @param item The index of an item.
+     * @return The distance between a point and the bounds of the item, which
+     *         is <code>0</code> if the point is inside the bounds.
+     */
+    double getDistance(int item, double x, double y) {
+        int i = item * 4;
+        double dx = Math.max(0, Math.max(bounds[i] - x, x - bounds[i + 2]));
+        double dy = Math.max(0, Math.max(bounds[i + 1] - y, y - bounds[i + 3]));
+        return Math.hypot(dx, dy);
+    }
+
+
+    /**
+     * @param item The index of an item.
+     * @return Whether the bounds of the item intersect the given area.
+     */
+    boolean intersects(int item, double minX, double minY, double maxX, double maxY) {
+        int i = item * 4;
+        return bounds[i] <= maxX && bounds[i + 2] >= minX
+            && bounds[i + 1] <= maxY && bounds[i + 3] >= minY;
+    }
+
+
+    /**
+     * Calls a consumer for each item whose bounds intersect an area. Each
+     * item is reported once, in no particular order.
+     *
+     * @param consumer The consumer which is called with the index of each item.
+     */
+    void query(double minX, double minY, double maxX, double maxY, IntConsumer consumer) {
+        for (int item : large) {
+            if (intersects(item, minX, minY, maxX, maxY)) {
+                consumer.accept(item);
+            }
+        }
+
+        if (maxX < originX || maxY < originY
+            || minX > originX + columns * cellWidth || minY > originY + rows * cellHeight) {
+            return;
+        }
+
+        int firstColumn = getColumn(minX);
+        int firstRow = getRow(minY);
+        int lastColumn = getColumn(maxX);
+        int lastRow = getRow(maxY);
+        for (int row = firstRow;  row <= lastRow;  row++) {
+            for (int column = firstColumn;  column <= lastColumn;  column++) {
+                for (int item : cells[row * columns + column]) {
+                    // an item which spans several cells is reported in its first queried cell
+                    int itemColumn = Math.max(firstColumn, getColumn(bounds[item * 4]));
+                    int itemRow = Math.max(firstRow, getRow(bounds[item * 4 + 1]));
+                    if (itemColumn == column && itemRow == row
+                        && intersects(item, minX, minY, maxX, maxY)) {
+                        consumer.accept(item);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+
+import org.apache.batik.parser.AWTPathProducer;
+import org.apache.batik.parser.ParseException;
+
+import java.awt.BasicStroke;
+import java.awt.Shape;
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.RoundRectangle2D;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A spatial index which maps positions in an SVG document to the ids of
+ * the elements at these positions, without using JavaFX picking and
+ * without walking the node tree.
+ * <p>
+ * Each shape of the document is indexed with its bounds, including all
+ * transformations of the shape and its parent groups. A shape is reported
+ * with its own id, or with the id of its nearest parent group if it does
+ * not have an id; shapes without any id are not indexed. Optionally, the
+ * index also checks whether a position is inside the fill or the stroke of
+ * a shape, instead of only inside its bounds.
+ * <p>
+ * All coordinates are in the local coordinate system of the root group of
+ * the document, as returned for example by <code>Node.sceneToLocal()</code>
+ * of the root group. The index is immutable and can be queried concurrently.
+ */
+public final class SvgHitIndex {
+
+    private final String[] ids;
+    private final SvgGridIndex index;
+
+    // the transformation of each shape and its outlines, only for exact hit tests
+    private final double[][] transforms;
+    private final Shape[] fills;
+    private final Shape[] strokes;
+
+    private SvgHitIndex(SvgScene scene, boolean exact) {
+        List<String> idList = new ArrayList<>();
+        List<double[]> boundsList = new ArrayList<>();
+        List<SvgSceneNode> shapes = new ArrayList<>();
+        List<double[]> transformList = new ArrayList<>();
+
+        SvgSceneNode root = scene.getRoot();
+        String rootId = root.getId() == null || root.getId().isEmpty() ? null : root.getId();
+        for (SvgSceneNode child : root.getChildren()) {
+            collect(child, rootId, SvgSceneBounds.IDENTITY,
+                    idList, boundsList, shapes, transformList);
+        }
+
+        int count = idList.size();
+        ids = idList.toArray(new String[count]);
+        double[] bounds = new double[count * 4];
+        for (int item = 0;  item < count;  item++) {
+            double[] b = boundsList.get(item);
+            for (int i = 0;  i < 4;  i++) {
+                bounds[item * 4 + i] = b == null ? Double.NaN : b[i];
+            }
+        }
+        index = new SvgGridIndex(bounds);
+
+        if (exact) {
+            transforms = transformList.toArray(new double[count][]);
+            fills = new Shape[count];
+            strokes = new Shape[count];
+            for (int item = 0;  item < count;  item++) {
+                SvgSceneNode shape = shapes.get(item);
+                Shape outline = createOutline(shape);
+                if (outline != null) {
+                    if (shape.getFill() != null) {
+                        fills[item] = outline;
+                    }
+                    if (shape.getStroke() != null && shape.getStrokeWidth() > 0) {
+                        strokes[item] = new BasicStroke((float) shape.getStrokeWidth())
+                                                .createStrokedShape(outline);
+                    }
+                }
+            }
+        } else {
+            transforms = null;
+            fills = null;
+            strokes = null;
+        }
+    }
+
+
+    private static void collect(SvgSceneNode node, String parentId, double[] parentTransform,
+                                List<String> ids, List<double[]> bounds,
+                                List<SvgSceneNode> shapes, List<double[]> transforms) {
+        String id = node.getId() == null || node.getId().isEmpty() ? parentId : node.getId();
+        double[] transform = SvgSceneBounds.concatenate(parentTransform, node);
+
+        if (node.getKind() == SvgSceneNode.Kind.GROUP) {
+            for (SvgSceneNode child : node.getChildren()) {
+                collect(child, id, transform, ids, bounds, shapes, transforms);
+            }
+        } else if (id != null) {
+            ids.add(id);
+            bounds.add(SvgSceneBounds.compute(parentTransform, node));
+            shapes.add(node);
+            transforms.add(transform);
+        }
+    }
+
+
+    /**
+     * Creates the hit index of a scene, which only checks the bounds of
+     * the shapes.
+     *
+     * @param scene The scene to index.
+     * @return The hit index of the scene.
+     */
+    public static SvgHitIndex fromScene(SvgScene scene) {
+        return new SvgHitIndex(scene, false);
+    }
+
+
+    /**
+     * Creates the hit index of a scene.
+     *
+     * @param scene The scene to index.
+     * @param exact Whether the index checks if a position is inside the fill
+     *              or the stroke of a shape. Exact checks require more memory
+     *              and time to create the index.
+     * @return The hit index of the scene.
+     */
+    public static SvgHitIndex fromScene(SvgScene scene, boolean exact) {
+        return new SvgHitIndex(scene, exact);
+    }
+
+
+    /**
+     * Creates the hit index of a JavaFX node tree, as returned from
+     * {@link SvgLoader#loadSvg(String)}.
+     *
+     * @param group The root of the JavaFX node tree.
+     * @param exact Whether the index checks if a position is inside the fill
+     *              or the stroke of a shape.
+     * @return The hit index of the node tree.
+     */
+    public static SvgHitIndex fromGroup(Group group, boolean exact) {
+        return new SvgHitIndex(SvgScene.fromGroup(group), exact);
+    }
+
+
+    private static Shape createOutline(SvgSceneNode node) {
+        double[] g = node.getGeometry();
+
+        switch (node.getKind()) {
+            case RECTANGLE :
+                return new RoundRectangle2D.Double(g[0], g[1], g[2], g[3], g[4], g[5]);
+
+            case CIRCLE :
+                return new Ellipse2D.Double(g[0] - g[2], g[1] - g[2], 2 * g[2], 2 * g[2]);
+
+            case ELLIPSE :
+                return new Ellipse2D.Double(g[0] - g[2], g[1] - g[3], 2 * g[2], 2 * g[3]);
+
+            case LINE :
+                return new Line2D.Double(g[0], g[1], g[2], g[3]);
+
+            case CUBIC_CURVE :
+                return new CubicCurve2D.Double(g[0], g[1], g[2], g[3], g[4], g[5], g[6], g[7]);
+
+            case POLYGON :
+            case POLYLINE :
+                Path2D.Double poly = new Path2D.Double();
+                for (int i = 0;  i + 1 < g.length;  i += 2) {
+                    if (i == 0) {
+                        poly.moveTo(g[i], g[i + 1]);
+                    } else {
+                        poly.lineTo(g[i], g[i + 1]);
+                    }
+                }
+                if (node.getKind() == SvgSceneNode.Kind.POLYGON) {
+                    poly.closePath();
+                }
+                return poly;
+
+            case PATH :
+            case SEGMENT_PATH :
+                try {
+                    return AWTPathProducer.createShape(new StringReader(node.getContent()),
+                                                       Path2D.WIND_NON_ZERO);
+                } catch (ParseException | IOException e) {
+                    return null;
+                }
+
+            default :
+                // texts are only checked by their bounds
+                return null;
+        }
+    }
+
+
+    private boolean contains(int item, double x, double y) {
+        if (transforms == null || (fills[item] == null && strokes[item] == null)) {
+            return true;
+        }
+
+        double[] t = transforms[item];
+        double det = t[0] * t[4] - t[1] * t[3];
+        if (det == 0) {
+            return true;
+        }
+        double dx = x - t[2];
+        double dy = y - t[5];
+        double localX = (t[4] * dx - t[1] * dy) / det;
+        double localY = (t[0] * dy - t[3] * dx) / det;
+
+        return (fills[item] != null && fills[item].contains(localX, localY))
+            || (strokes[item] != null && strokes[item].contains(localX, localY));
+    }
+
+
+    /**
+     * @return The number of indexed shapes.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+
+    /**
+     * @param x The x coordinate of the position.
+     * @param y The y coordinate of the position.
+     * @return The id of the topmost shape at the position, or
+     *         <code>null</code> if there is no shape at the position.
+     */
+    public String getIdAt(double x, double y) {
+        int[] topmost = {-1};
+        index.query(x, y, x, y, item -> {
+            if (item > topmost[0] && contains(item, x, y)) {
+                topmost[0] = item;
+            }
+        });
+        return topmost[0] < 0 ? null : ids[topmost[0]];
+    }
+
+
+    /**
+     * @param x The x coordinate of the position.
+     * @param y The y coordinate of the position.
+     * @return The ids of all shapes at the position, starting with the topmost
+     *         one. Each id is only returned once.
+     */
+    public List<String> getIdsAt(double x, double y) {
+        List<Integer> items = new ArrayList<>();
+        index.query(x, y, x, y, item -> {
+            if (contains(item, x, y)) {
+                items.add(item);
+            }
+        });
+        items.sort(Collections.reverseOrder());
+        return toIds(items);
+    }
+
+
+    /**
+     * @param area An area of the document.
+     * @return The ids of all shapes whose bounds intersect the area, in
+     *         document order. Each id is only returned once.
+     */
+    public List<String> getIdsIn(Bounds area) {
+        List<Integer> items = new ArrayList<>();
+        index.query(area.getMinX(), area.getMinY(), area.getMaxX(), area.getMaxY(), items::add);
+        Collections.sort(items);
+        return toIds(items);
+    }
+
+
+    private List<String> toIds(List<Integer> items) {
+        Set<String> result = new LinkedHashSet<>();
+        for (int item : items) {
+            result.add(ids[item]);
+        }
+        return new ArrayList<>(result);
+    }
+
+
+    /**
+     * @param x The x coordinate of the position.
+     * @param y The y coordinate of the position.
+     * @param maximumDistance The maximum distance between the position and
+     *                        the bounds of the shape.
+     * @return The id of the shape whose bounds are nearest to the position,
+     *         or <code>null</code> if there is no shape within the maximum
+     *         distance. If several shapes have the same distance, the
+     *         topmost one is returned.
+     */
+    public String getNearestId(double x, double y, double maximumDistance) {
+        double limit = Math.min(maximumDistance, index.getMaximumDistance(x, y));
+        double radius = Math.min(index.getCellSize(), limit);
+        while (true) {
+            final double range = radius;
+            double[] best = {Double.POSITIVE_INFINITY, -1};
+            index.query(x - range, y - range, x + range, y + range, item -> {
+                double distance = index.getDistance(item, x, y);
+                if (distance <= range
+                    && (distance < best[0] || (distance == best[0] && item > best[1]))) {
+                    best[0] = distance;
+                    best[1] = item;
+                }
+            });
+
+            if (best[1] >= 0) {
+                return ids[(int) best[1]];
+            }
+            if (radius >= limit) {
+                return null;
+            }
+            radius = Math.min(radius * 2, limit);
+        }
+    }
+}
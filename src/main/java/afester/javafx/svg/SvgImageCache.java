@@ -0,0 +1,372 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.scene.image.Image;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * A cache of SVG documents which are rendered into raster images, for
+ * example icons which are shown at a few fixed sizes in many
+ * <code>ImageView</code>s. All views which show the same icon at the same
+ * size share one image, instead of each view holding its own node tree.
+ * <p>
+ * Images are identified by the asset name and the size of the image in
+ * pixels, which is the requested size multiplied by the output scale (for
+ * example <code>2.0</code> on a HiDPI screen). The resulting image has
+ * the size in pixels, so an <code>ImageView</code> which shows an image
+ * rendered with an output scale needs to set its <code>fitWidth</code>
+ * and <code>fitHeight</code> to the requested size.
+ * <p>
+ * The size of the cache is bounded by the total number of bytes of all
+ * cached images. When the bound is exceeded, the least recently used images
+ * are evicted. Concurrent requests for the same image are collapsed, so
+ * that each image is rendered only once. A cache can be shared by several
+ * threads; the images are rendered without the JavaFX application thread.
+ */
+public class SvgImageCache {
+
+    /**
+     * Provides the content of an SVG asset.
+     */
+    @FunctionalInterface
+    public interface AssetSource {
+
+        /**
+         * @param asset The name of the asset.
+         * @return A new stream which provides the SVG document of the asset.
+         * @throws IOException if the asset can not be opened.
+         */
+        InputStream open(String asset) throws IOException;
+    }
+
+    private final long maximumBytes;
+    private final AssetSource source;
+    private final SvgParserPool parserPool = new SvgParserPool();
+
+    // access ordered, the eldest entry is the least recently used one
+    private final LinkedHashMap<Key, Image> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // the images which are currently rendered
+    private final Map<Key, CompletableFuture<Image>> pending = new HashMap<>();
+
+    private long bytes = 0;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long collapsedCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     * Creates a new, empty SvgImageCache which reads the assets from files.
+     *
+     * @param maximumBytes The maximum total number of bytes of all images
+     *                     which are kept in the cache.
+     */
+    public SvgImageCache(long maximumBytes) {
+        this(maximumBytes, FileInputStream::new);
+    }
+
+
+    /**
+     * Creates a new, empty SvgImageCache.
+     *
+     * @param maximumBytes The maximum total number of bytes of all images
+     *                     which are kept in the cache.
+     * @param source The source which provides the content of the assets.
+     */
+    public SvgImageCache(long maximumBytes, AssetSource source) {
+        if (maximumBytes < 0) {
+            throw new IllegalArgumentException("maximumBytes must not be negative");
+        }
+        if (source == null) {
+            throw new IllegalArgumentException("source must not be null");
+        }
+        this.maximumBytes = maximumBytes;
+        this.source = source;
+    }
+
+
+    /**
+     * Returns a square image of an asset. The asset is scaled to the image
+     * size, keeping its aspect ratio.
+     *
+     * @param asset The name of the asset.
+     * @param size The width and height of the image.
+     * @param outputScale The scale factor of the output device.
+     * @return The image, or <code>null</code> if the asset could not be rendered.
+     */
+    public Image getImage(String asset, double size, double outputScale) {
+        return getImage(asset, size, size, outputScale);
+    }
+
+
+    /**
+     * Returns an image of an asset. The asset is scaled to the image size,
+     * keeping its aspect ratio, and centered in the image.
+     * If the image is not cached, it is rendered on the calling thread, or
+     * the calling thread waits until a concurrent request for the same image
+     * has rendered it.
+     *
+     * @param asset The name of the asset.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param outputScale The scale factor of the output device.
+     * @return The image, or <code>null</code> if the asset could not be rendered.
+     */
+    public Image getImage(String asset, double width, double height, double outputScale) {
+        try {
+            return getImageAsync(asset, width, height, outputScale, Runnable::run).join();
+        } catch (CompletionException e) {
+            e.getCause().printStackTrace();
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Returns an image of an asset, rendering it on the default executor
+     * if it is not cached.
+     * See {@link #getImageAsync(String, double, double, double, Executor)}.
+     *
+     * @param asset The name of the asset.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param outputScale The scale factor of the output device.
+     * @return The future which completes with the image.
+     */
+    public CompletableFuture<Image> getImageAsync(String asset, double width, double height,
+                                                  double outputScale) {
+        return getImageAsync(asset, width, height, outputScale, SvgExecutors.getDefaultExecutor());
+    }
+
+
+    /**
+     * Returns an image of an asset, rendering it on the given executor if it
+     * is not cached. The returned future is already completed if the image
+     * is cached; if the same image is already being rendered, the future
+     * of that request is returned.
+     *
+     * @param asset The name of the asset.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param outputScale The scale factor of the output device.
+     * @param executor The executor which renders the image.
+     * @return The future which completes with the image, or completes
+     *         exceptionally if the asset could not be rendered.
+     */
+    public CompletableFuture<Image> getImageAsync(String asset, double width, double height,
+                                                  double outputScale, Executor executor) {
+        if (!(width > 0 && height > 0 && outputScale > 0)) {
+            throw new IllegalArgumentException("width, height and outputScale must be positive");
+        }
+        Key key = new Key(asset, toPixels(width * outputScale), toPixels(height * outputScale));
+
+        CompletableFuture<Image> result;
+        synchronized (this) {
+            Image image = entries.get(key);
+            if (image != null) {
+                hitCount++;
+                return CompletableFuture.completedFuture(image);
+            }
+
+            result = pending.get(key);
+            if (result != null) {
+                collapsedCount++;
+                return result;
+            }
+
+            missCount++;
+            result = new CompletableFuture<>();
+            pending.put(key, result);
+        }
+
+        CompletableFuture<Image> future = result;
+        executor.execute(() -> render(key, future));
+        return result;
+    }
+
+
+    private static int toPixels(double size) {
+        return Math.max(1, (int) Math.round(size));
+    }
+
+
+    private void render(Key key, CompletableFuture<Image> future) {
+        Image image;
+        try (InputStream in = source.open(key.asset)) {
+            SvgRasterizer rasterizer = SvgRasterizer.create(parserPool, in);
+            image = SvgRasterizer.toImage(rasterizer.renderDocument(key.width, key.height));
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                pending.remove(key);
+            }
+            future.completeExceptionally(e);
+            return;
+        }
+
+        put(key, image);
+        future.complete(image);
+    }
+
+
+    private synchronized void put(Key key, Image image) {
+        pending.remove(key);
+
+        long imageBytes = key.getBytes();
+        if (imageBytes <= maximumBytes) {
+            Image previous = entries.put(key, image);
+            if (previous == null) {
+                bytes += imageBytes;
+            }
+            evict();
+        }
+    }
+
+
+    private void evict() {
+        Iterator<Key> iterator = entries.keySet().iterator();
+        while (bytes > maximumBytes && iterator.hasNext()) {
+            Key eldest = iterator.next();
+            iterator.remove();
+            bytes -= eldest.getBytes();
+            evictionCount++;
+        }
+    }
+
+
+    /**
+     * Removes all images from the cache. The statistics are not reset.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+
+    /**
+     * @return The number of images in the cache.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+
+    /**
+     * @return The total number of bytes of all cached images.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+
+    /**
+     * @return The maximum total number of bytes of the images kept in the cache.
+     */
+    public long getMaximumBytes() {
+        return maximumBytes;
+    }
+
+
+    /**
+     * @return The number of images which have been returned from the cache.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+
+    /**
+     * @return The number of images which were not found in the cache and
+     *         had to be rendered.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+
+    /**
+     * @return The number of requests which have waited for a concurrent
+     *         request of the same image instead of rendering it again.
+     */
+    public synchronized long getCollapsedCount() {
+        return collapsedCount;
+    }
+
+
+    /**
+     * @return The number of images which have been removed from the
+     *         cache to keep its size within the bound.
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+
+    @Override
+    public synchronized String toString() {
+        return String.format("SvgImageCache[size=%d, bytes=%d/%d, hits=%d, misses=%d, "
+                             + "collapsed=%d, evictions=%d]",
+                             entries.size(), bytes, maximumBytes,
+                             hitCount, missCount, collapsedCount, evictionCount);
+    }
+
+
+    /**
+     * Identifies an image by its asset and its size in pixels.
+     */
+    private static final class Key {
+        private final String asset;
+        private final int width;
+        private final int height;
+
+        Key(String asset, int width, int height) {
+            this.asset = asset;
+            this.width = width;
+            this.height = height;
+        }
+
+        long getBytes() {
+            return 4L * width * height;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return asset.equals(other.asset) && width == other.width && height == other.height;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * asset.hashCode() + width) + height;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of canonical instances of the immutable objects which are
+ * referenced by converted SVG documents - paints, fonts and path data.
+ * All documents which are loaded through loaders sharing the same pool
+ * share equal objects, instead of holding their own copies.
+ * <p>
+ * The pool only holds weak references to its objects, so that an object
+ * is removed from the pool as soon as no converted document uses it anymore.
+ * The pool is split into stripes which are locked independently, so that
+ * several threads can load documents concurrently without contending for
+ * the pool.
+ */
+public final class SvgInternPool {
+
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private static final SvgInternPool SHARED = new SvgInternPool();
+
+    private final Stripe[] stripes;
+
+    private final LongAdder lookupCount = new LongAdder();
+    private final LongAdder hitCount = new LongAdder();
+
+    /**
+     * Creates a new, empty pool with a default number of stripes.
+     */
+    public SvgInternPool() {
+        this(DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+
+    /**
+     * Creates a new, empty pool.
+     *
+     * @param concurrencyLevel The expected number of threads which use the
+     *                         pool concurrently. Determines the number of
+     *                         independently locked stripes.
+     */
+    public SvgInternPool(int concurrencyLevel) {
+        if (concurrencyLevel < 1) {
+            throw new IllegalArgumentException("concurrencyLevel must be positive");
+        }
+
+        int size = Integer.highestOneBit(Math.min(concurrencyLevel, 1 << 16));
+        if (size < concurrencyLevel) {
+            size <<= 1;
+        }
+        stripes = new Stripe[size];
+        for (int i = 0;  i < size;  i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+
+    /**
+     * @return The pool which is used by all {@link SvgLoader}s unless
+     *         a different pool is configured.
+     */
+    public static SvgInternPool getShared() {
+        return SHARED;
+    }
+
+
+    /**
+     * @param paint A paint, or <code>null</code>.
+     * @return The canonical instance which is equal to the given paint.
+     */
+    public Paint internPaint(Paint paint) {
+        return intern(paint);
+    }
+
+
+    /**
+     * @param font A font, or <code>null</code>.
+     * @return The canonical instance which is equal to the given font.
+     */
+    public Font internFont(Font font) {
+        return intern(font);
+    }
+
+
+    /**
+     * @param paint A scene paint, or <code>null</code>.
+     * @return The canonical instance which is equal to the given scene paint.
+     */
+    SvgScenePaint internPaint(SvgScenePaint paint) {
+        return intern(paint);
+    }
+
+
+    /**
+     * @param font A scene font, or <code>null</code>.
+     * @return The canonical instance which is equal to the given scene font.
+     */
+    SvgSceneFont internFont(SvgSceneFont font) {
+        return intern(font);
+    }
+
+
+    /**
+     * @param pathData The content of an SVG path, or <code>null</code>.
+     * @return The canonical instance which is equal to the given path data.
+     */
+    public String internPathData(String pathData) {
+        return intern(pathData);
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private <T> T intern(T value) {
+        if (value == null) {
+            return null;
+        }
+
+        lookupCount.increment();
+
+        int hash = value.hashCode();
+        hash ^= hash >>> 16;
+        Stripe stripe = stripes[hash & (stripes.length - 1)];
+        synchronized (stripe) {
+            WeakReference<Object> ref = stripe.objects.get(value);
+            Object result = ref != null ? ref.get() : null;
+            if (result != null) {
+                hitCount.increment();
+                return (T) result;
+            }
+
+            stripe.objects.put(value, new WeakReference<>(value));
+            return value;
+        }
+    }
+
+
+    /**
+     * Removes all objects from the pool and resets the statistics.
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.objects.clear();
+            }
+        }
+        lookupCount.reset();
+        hitCount.reset();
+    }
+
+
+    /**
+     * @return The number of objects in the pool which are still in use.
+     */
+    public int size() {
+        int result = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                result += stripe.objects.size();
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * @return The number of objects which have been looked up in the pool.
+     */
+    public long getLookupCount() {
+        return lookupCount.sum();
+    }
+
+
+    /**
+     * @return The number of lookups which returned an already pooled object,
+     *         instead of adding the looked up object to the pool.
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format("SvgInternPool[size=%d, lookups=%d, hits=%d]",
+                             size(), getLookupCount(), getHitCount());
+    }
+
+
+    /**
+     * One independently locked part of the pool.
+     */
+    private static final class Stripe {
+        // the value references the key, so that the canonical instance can be
+        // returned - it is a weak reference so that the key can still be collected
+        final WeakHashMap<Object, WeakReference<Object>> objects = new WeakHashMap<>();
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.Node;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A group which creates the JavaFX nodes of an {@link SvgScene} only for
+ * the visible part of the document. The scene is split into units - single
+ * shapes or small subtrees - whose bounds are kept in a spatial index.
+ * Larger groups are always created, without their children, so that the
+ * structure, the ids and the transformations of the document are kept.
+ * <p>
+ * The nodes of a unit are created when the unit intersects the viewport,
+ * and are released again when the unit is outside of the viewport extended
+ * by the release margin, so that small scroll movements do not recreate
+ * nodes. Units are always inserted in document order. Initially, no units
+ * are created - the application sets the viewport with
+ * {@link #setViewport(Bounds)}, for example whenever a surrounding
+ * <code>ScrollPane</code> is scrolled or zoomed.
+ */
+public class SvgLazyGroup extends Group {
+
+    // groups with more nodes are split into smaller units
+    private static final int MAXIMUM_UNIT_NODES = 64;
+
+    private final List<SvgSceneNode> units = new ArrayList<>();
+    private final List<Container> unitContainers = new ArrayList<>();
+    private final List<Integer> unitSlots = new ArrayList<>();
+    private final int[] unitNodeCounts;
+    private final SvgGridIndex index;
+
+    private final BitSet materialized = new BitSet();
+    private int nodeCount = 0;
+    private int groupCount = 1;
+
+    private double releaseMargin = 1.0;
+
+    /**
+     * Creates a lazy group for a scene.
+     *
+     * @param scene The scene whose nodes are created by the group.
+     */
+    SvgLazyGroup(SvgScene scene) {
+        SvgSceneNode root = scene.getRoot();
+        root.initNode(this);
+
+        List<double[]> bounds = new ArrayList<>();
+        split(root, new Container(this), SvgSceneBounds.IDENTITY, bounds);
+
+        int count = units.size();
+        double[] allBounds = new double[count * 4];
+        unitNodeCounts = new int[count];
+        for (int unit = 0;  unit < count;  unit++) {
+            double[] b = bounds.get(unit);
+            for (int i = 0;  i < 4;  i++) {
+                allBounds[unit * 4 + i] = b == null ? Double.NaN : b[i];
+            }
+            unitNodeCounts[unit] = units.get(unit).countNodes();
+        }
+        index = new SvgGridIndex(allBounds);
+    }
+
+
+    private void split(SvgSceneNode node, Container container,
+                       double[] transform, List<double[]> bounds) {
+        List<SvgSceneNode> children = node.getChildren();
+        for (int slot = 0;  slot < children.size();  slot++) {
+            SvgSceneNode child = children.get(slot);
+            if (child.getKind() == SvgSceneNode.Kind.GROUP
+                && child.countNodes() > MAXIMUM_UNIT_NODES) {
+                Group group = child.createEmptyGroup();
+                container.insert(slot, group);
+                groupCount++;
+                split(child, new Container(group), SvgSceneBounds.concatenate(transform, child),
+                      bounds);
+            } else {
+                units.add(child);
+                unitContainers.add(container);
+                unitSlots.add(slot);
+                bounds.add(SvgSceneBounds.compute(transform, child));
+            }
+        }
+    }
+
+
+    /**
+     * Sets the visible area of the document. The nodes of all units which
+     * intersect the area are created, and the nodes of all units which are
+     * outside of the area extended by the release margin are released.
+     *
+     * @param viewport The visible area in the local coordinate system of
+     *                 the children of this group, which is the user
+     *                 coordinate system of the SVG document.
+     */
+    public void setViewport(Bounds viewport) {
+        double marginX = viewport.getWidth() * releaseMargin;
+        double marginY = viewport.getHeight() * releaseMargin;
+        double minX = viewport.getMinX() - marginX;
+        double minY = viewport.getMinY() - marginY;
+        double maxX = viewport.getMaxX() + marginX;
+        double maxY = viewport.getMaxY() + marginY;
+        for (int unit = materialized.nextSetBit(0);  unit >= 0;
+                 unit = materialized.nextSetBit(unit + 1)) {
+            if (!index.intersects(unit, minX, minY, maxX, maxY)) {
+                release(unit);
+            }
+        }
+
+        index.query(viewport.getMinX(), viewport.getMinY(),
+                    viewport.getMaxX(), viewport.getMaxY(), unit -> {
+            if (!materialized.get(unit)) {
+                materialize(unit);
+            }
+        });
+    }
+
+
+    private void materialize(int unit) {
+        unitContainers.get(unit).insert(unitSlots.get(unit), units.get(unit).createNode());
+        materialized.set(unit);
+        nodeCount += unitNodeCounts[unit];
+    }
+
+
+    private void release(int unit) {
+        unitContainers.get(unit).remove(unitSlots.get(unit));
+        materialized.clear(unit);
+        nodeCount -= unitNodeCounts[unit];
+    }
+
+
+    /**
+     * Releases the nodes of all units.
+     */
+    public void releaseAll() {
+        for (int unit = materialized.nextSetBit(0);  unit >= 0;
+                 unit = materialized.nextSetBit(unit + 1)) {
+            release(unit);
+        }
+    }
+
+
+    /**
+     * @return The margin around the viewport within which the nodes of
+     *         units are kept, relative to the size of the viewport.
+     */
+    public double getReleaseMargin() {
+        return releaseMargin;
+    }
+
+
+    /**
+     * @param margin The margin around the viewport within which the nodes
+     *               of units are kept, relative to the size of the viewport.
+     *               The default is 1.0, which keeps the nodes within one
+     *               viewport size in each direction.
+     */
+    public void setReleaseMargin(double margin) {
+        if (margin < 0) {
+            throw new IllegalArgumentException("margin must not be negative");
+        }
+        this.releaseMargin = margin;
+    }
+
+
+    /**
+     * @return The number of units into which the document has been split.
+     */
+    public int getUnitCount() {
+        return units.size();
+    }
+
+
+    /**
+     * @return The number of units whose nodes are currently created.
+     */
+    public int getMaterializedUnitCount() {
+        return materialized.cardinality();
+    }
+
+
+    /**
+     * @return The number of JavaFX nodes which currently exist, including
+     *         this group and the groups which are always created.
+     */
+    public int getNodeCount() {
+        return groupCount + nodeCount;
+    }
+
+
+    /**
+     * A group which contains units. The children of the group are the
+     * created units and the contained groups, in document order.
+     */
+    private static final class Container {
+        private final Group group;
+
+        // the slots of the children which currently exist
+        private final BitSet present = new BitSet();
+
+        Container(Group group) {
+            this.group = group;
+        }
+
+        void insert(int slot, Node node) {
+            group.getChildren().add(getPosition(slot), node);
+            present.set(slot);
+        }
+
+        void remove(int slot) {
+            group.getChildren().remove(getPosition(slot));
+            present.clear(slot);
+        }
+
+        private int getPosition(int slot) {
+            return slot == 0 ? 0 : present.get(0, slot).cardinality();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+
+import org.apache.batik.anim.dom.SVGOMElement;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A converted SVG document together with an index of its nodes by their id.
+ * The index allows to look up the node of an SVG element in constant time,
+ * for example to update its colors, instead of searching the node tree with
+ * <code>Node.lookup()</code>.
+ * <p>
+ * The index is created while the document is converted and reflects the
+ * ids at that time. If several nodes have the same id, the first one in
+ * document order is indexed. Optionally, the index also contains the
+ * source elements of the SVG document - see
+ * {@link SvgLoader.Builder#indexSourceElements(boolean)}.
+ */
+public final class SvgLoadResult {
+    private final Group group;
+    private final Map<String, Node> nodes;
+    private final Map<String, SVGOMElement> elements;
+
+    SvgLoadResult(Group group, Map<String, Node> nodes, Map<String, SVGOMElement> elements) {
+        this.group = group;
+        this.nodes = Collections.unmodifiableMap(nodes);
+        this.elements = elements == null ? Collections.emptyMap()
+                                         : Collections.unmodifiableMap(elements);
+    }
+
+
+    /**
+     * Creates the result for a node tree by collecting the ids of all nodes.
+     *
+     * @param group The root of the node tree.
+     * @return The result with the index of the node tree, without source elements.
+     */
+    static SvgLoadResult fromGroup(Group group) {
+        Map<String, Node> nodes = new HashMap<>();
+        collect(group, nodes);
+        return new SvgLoadResult(group, nodes, null);
+    }
+
+
+    private static void collect(Node node, Map<String, Node> nodes) {
+        String id = node.getId();
+        if (id != null && !id.isEmpty()) {
+            nodes.putIfAbsent(id, node);
+        }
+        if (node instanceof Parent) {
+            for (Node child : ((Parent) node).getChildrenUnmodifiable()) {
+                collect(child, nodes);
+            }
+        }
+    }
+
+
+    /**
+     * @return The JavaFX node representing the SVG document.
+     */
+    public Group getGroup() {
+        return group;
+    }
+
+
+    /**
+     * @param id The id of an SVG element.
+     * @return The node which has been created for the element, or
+     *         <code>null</code> if there is no node with this id.
+     */
+    public Node getNode(String id) {
+        return nodes.get(id);
+    }
+
+
+    /**
+     * @param id The id of an SVG element.
+     * @param type The expected type of the node.
+     * @return The node which has been created for the element, or
+     *         <code>null</code> if there is no node with this id or if the
+     *         node is not of the expected type.
+     */
+    public <T extends Node> T getNode(String id, Class<T> type) {
+        Node result = nodes.get(id);
+        return type.isInstance(result) ? type.cast(result) : null;
+    }
+
+
+    /**
+     * @return An unmodifiable map of all nodes of the document by their id.
+     */
+    public Map<String, Node> getNodes() {
+        return nodes;
+    }
+
+
+    /**
+     * @param id The id of an SVG element.
+     * @return The SVG element with this id, or <code>null</code> if there is
+     *         no such element or if the source elements are not indexed.
+     */
+    public SVGOMElement getElement(String id) {
+        return elements.get(id);
+    }
+
+
+    /**
+     * @return An unmodifiable map of the source elements of the document
+     *         by their id, which is empty if the source elements are not indexed.
+     */
+    public Map<String, SVGOMElement> getElements() {
+        return elements;
+    }
+}
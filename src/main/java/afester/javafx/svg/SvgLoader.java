@@ -17,6 +17,7 @@
 package afester.javafx.svg;
 
 import javafx.scene.Group;
+import javafx.scene.Node;
 
 import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
 import org.apache.batik.anim.dom.SVGOMCircleElement;
@@ -45,56 +46,72 @@ import org.apache.batik.bridge.UserAgentAdapter;
 import org.apache.batik.util.XMLResourceDescriptor;
 import org.w3c.dom.NodeList;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
+import javax.xml.stream.XMLStreamException;
 
-public class SvgLoader {
-    Group parentNode;
-
-    // flag whether to add a rectangle in the size of the drawing
-    boolean addRootRect = false;
 
-    // flag whether to use the alternative SVG Path element handling which adds
-    // separate nodes for the path elements instead of an SVGPath node
-    private boolean useSeparatePathElements = false;
-
-    private Map<String, Consumer<SVGOMElement>> elementMap = new HashMap<>();
+/**
+ * Loads SVG documents and converts them into JavaFX node trees.
+ * <p>
+ * The configuration of a loader is immutable and is defined through a
+ * {@link Builder}:
+ * <pre>
+ * SvgLoader loader = SvgLoader.builder()
+ *                             .addViewboxRect(true)
+ *                             .gradientTransformPolicy(GradientPolicy.USE_AS_IS)
+ *                             .build();
+ * </pre>
+ * All state of a conversion is kept in a separate context for each call,
+ * so one loader can be shared and used concurrently by several threads.
+ */
+public class SvgLoader {
 
-    private SvgBasicElementHandler bh;
+    /** The default time per pulse for attaching asynchronously loaded nodes. */
+    public static final Duration DEFAULT_ATTACH_BUDGET = Duration.ofMillis(4);
 
-    /**
-     * Creates a new SVGLoader.
-     */
-    public SvgLoader() {
-        bh = new SvgBasicElementHandler(this);
+    // dispatches the conversion of an element to its handler
+    private static final Map<String, BiConsumer<SvgBasicElementHandler, SVGOMElement>> elementMap
+                                                                    = new HashMap<>();
 
-        elementMap.put("svg", e -> bh.handleElement((SVGOMSVGElement) e));
-        elementMap.put("defs", e -> bh.handleElement((SVGOMDefsElement) e));
-        elementMap.put("metadata", e -> bh.handleElement((SVGOMMetadataElement) e));
+    static {
+        elementMap.put("svg", (bh, e) -> bh.handleElement((SVGOMSVGElement) e));
+        elementMap.put("defs", (bh, e) -> bh.handleElement((SVGOMDefsElement) e));
+        elementMap.put("metadata", (bh, e) -> bh.handleElement((SVGOMMetadataElement) e));
         // elementMap.put("title", e -> {} );
 
-        elementMap.put("g", e -> bh.handleElement((SVGOMGElement) e));
-        elementMap.put("path", e -> bh.handleElement((SVGOMPathElement) e, 
-                                                     useSeparatePathElements));
-        elementMap.put("line", e -> bh.handleElement((SVGOMLineElement) e));
-        elementMap.put("rect", e -> bh.handleElement((SVGOMRectElement) e));
-        elementMap.put("polygon", e -> bh.handleElement((SVGOMPolygonElement) e));
-        elementMap.put("polyline", e -> bh.handleElement((SVGOMPolylineElement) e));
-        elementMap.put("circle", e -> bh.handleElement((SVGOMCircleElement) e));
-        elementMap.put("ellipse", e -> bh.handleElement((SVGOMEllipseElement) e));
-        elementMap.put("text", e -> bh.handleElement((SVGOMTextElement) e));
+        elementMap.put("g", (bh, e) -> bh.handleElement((SVGOMGElement) e));
+        elementMap.put("path", (bh, e) -> bh.handleElement((SVGOMPathElement) e));
+        elementMap.put("line", (bh, e) -> bh.handleElement((SVGOMLineElement) e));
+        elementMap.put("rect", (bh, e) -> bh.handleElement((SVGOMRectElement) e));
+        elementMap.put("polygon", (bh, e) -> bh.handleElement((SVGOMPolygonElement) e));
+        elementMap.put("polyline", (bh, e) -> bh.handleElement((SVGOMPolylineElement) e));
+        elementMap.put("circle", (bh, e) -> bh.handleElement((SVGOMCircleElement) e));
+        elementMap.put("ellipse", (bh, e) -> bh.handleElement((SVGOMEllipseElement) e));
+        elementMap.put("text", (bh, e) -> bh.handleElement((SVGOMTextElement) e));
         
-        elementMap.put("tspan", e -> bh.handleElement((SVGOMTSpanElement) e));
-        elementMap.put("pattern", e -> bh.handleElement((SVGOMPatternElement) e));
+        elementMap.put("tspan", (bh, e) -> bh.handleElement((SVGOMTSpanElement) e));
+        elementMap.put("pattern", (bh, e) -> bh.handleElement((SVGOMPatternElement) e));
 
-        elementMap.put("linearGradient", e -> bh.handleElement((SVGOMLinearGradientElement) e));
-        elementMap.put("radialGradient", e -> bh.handleElement((SVGOMRadialGradientElement) e));
-        elementMap.put("stop", e -> { } );
+        elementMap.put("linearGradient", 
+                       (bh, e) -> bh.handleElement((SVGOMLinearGradientElement) e));
+        elementMap.put("radialGradient", 
+                       (bh, e) -> bh.handleElement((SVGOMRadialGradientElement) e));
+        elementMap.put("stop", (bh, e) -> { } );
 
         /*
          * <title>
@@ -115,16 +132,67 @@ public class SvgLoader {
          */
     }
 
-    
+    // the current configuration. Each load uses the configuration which
+    // is current when the load starts.
+    private volatile Config config;
+
+    // flag whether the configuration can be changed through the deprecated setters
+    private final boolean mutable;
+
+    /**
+     * Creates a new SVGLoader with the default configuration.
+     */
+    public SvgLoader() {
+        this(new Builder(), true);
+    }
+
+
+    private SvgLoader(Builder builder, boolean mutable) {
+        this.config = new Config(builder);
+        this.mutable = mutable;
+    }
+
+
+    /**
+     * @return A new builder with the default configuration.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+
+    /**
+     * @return A new builder which is initialized with the configuration
+     *         of this loader.
+     */
+    public Builder toBuilder() {
+        return new Builder(config);
+    }
+
+
+    private void configure(Consumer<Builder> modification) {
+        if (!mutable) {
+            throw new UnsupportedOperationException(
+                    "The configuration of a loader created by a Builder can not be modified");
+        }
+
+        Builder builder = toBuilder();
+        modification.accept(builder);
+        config = new Config(builder);
+    }
+
+
     /**
      * Defines whether the returned JavaFX group shall contain a rectangle
      * in the size of the svg document's viewbox.
      * 
      * @param flag Flag to determine whether or not to add a rectangle in the
      *             size of the drawing's viewbox.
+     * @deprecated Use {@link Builder#addViewboxRect(boolean)}.
      */
+    @Deprecated
     public void setAddViewboxRect(boolean flag) {
-        this.addRootRect = flag;
+        configure(b -> b.addViewboxRect(flag));
     }
 
     
@@ -133,21 +201,24 @@ public class SvgLoader {
      * gradient element contains a gradientTransform attribute.
      *
      * @param policy The {@link GradientPolicy} to use.
+     * @deprecated Use {@link Builder#gradientTransformPolicy(GradientPolicy)}.
      */
+    @Deprecated
     public void setGradientTransformPolicy(GradientPolicy policy) {
-        bh.gradientFactory.setTransformationPolicy(policy);
+        configure(b -> b.gradientTransformPolicy(policy));
     }
 
     
-    private void handle(org.w3c.dom.Node node) {
-        Group par = parentNode; // save current parent
+    private static void handle(SvgBasicElementHandler bh, org.w3c.dom.Node node) {
+        int groups = bh.openGroups; // save current parent
 
         // Dispatch handling of the current node to its handler
         String localName = node.getLocalName();
         if (localName != null) {
-            Consumer<SVGOMElement> consumer = elementMap.get(node.getLocalName());
+            BiConsumer<SvgBasicElementHandler, SVGOMElement> consumer = 
+                                                     elementMap.get(node.getLocalName());
             if (consumer != null) {
-                consumer.accept((SVGOMElement) node);
+                consumer.accept(bh, (SVGOMElement) node);
             } else {
                 System.err.print("Unknown element" + node.getLocalName() + "+ (" + node + "):");
             }
@@ -157,10 +228,10 @@ public class SvgLoader {
         NodeList children = node.getChildNodes();
         for (int i = 0; i < children.getLength(); i++) {
             org.w3c.dom.Node element = children.item(i);
-            handle(element);
+            handle(bh, element);
         }
 
-        parentNode = par; // restore current parent
+        bh.endGroups(groups); // restore current parent
     }
 
     
@@ -188,24 +259,53 @@ public class SvgLoader {
      */
     public SVGOMDocument loadSvgDocument(InputStream svgFile) {
         try {
+            return parseSvgDocument(config, svgFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+
+    private static SVGOMDocument parseSvgDocument(Config config, InputStream svgFile)
+                                                                    throws IOException {
+        SvgParserPool parserPool = config.parserPool;
+        SvgParserPool.Setup setup = null;
+        SAXSVGDocumentFactory factory;
+        UserAgent userAgent;
+        if (parserPool != null) {
+            setup = parserPool.acquire();
+            factory = setup.factory;
+            userAgent = setup.userAgent;
+        } else {
             String parser = XMLResourceDescriptor.getXMLParserClassName();
-            SAXSVGDocumentFactory factory = new SAXSVGDocumentFactory(parser);
+            factory = new SAXSVGDocumentFactory(parser);
+            userAgent = new UserAgentAdapter();
+        }
+
+        try {
             SVGOMDocument document = (SVGOMDocument) factory.createDocument("", svgFile);
 
-            UserAgent userAgent = new UserAgentAdapter();
             DocumentLoader loader = new DocumentLoader(userAgent);
-            BridgeContext bridgeContext = new BridgeContext(userAgent, loader);
-            bridgeContext.setDynamicState(BridgeContext.DYNAMIC);
 
-            // Enable CSS- and SVG-specific enhancements.
-            (new GVTBuilder()).build(bridgeContext, document);
+            if (config.useCssOnlyBridge) {
+                CssBridgeContext bridgeContext = new CssBridgeContext(userAgent, loader);
+                bridgeContext.initializeStyles(document);
+            } else {
+                BridgeContext bridgeContext = new BridgeContext(userAgent, loader);
+                bridgeContext.setDynamicState(BridgeContext.DYNAMIC);
+
+                // Enable CSS- and SVG-specific enhancements.
+                (new GVTBuilder()).build(bridgeContext, document);
+            }
 
             return document;
-        } catch (IOException e) {
-            e.printStackTrace();
+        } finally {
+            if (setup != null) {
+                parserPool.release(setup);
+            }
         }
-
-        return null;
     }
 
     
@@ -218,14 +318,13 @@ public class SvgLoader {
      * @return A JavaFX node representing the SVG file.
      */
     public Group loadSvg(String fileName) {
-        // note: uses the DOM approach.
-        // probably a SAX based approach would be better from a performance
-        // perspective.
-        SVGOMDocument doc = loadSvgDocument(fileName);
+        try (InputStream svgFile = new FileInputStream(fileName)) {
+            return loadSvg(svgFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
 
-        parentNode = new Group();
-        handle(doc);
-        return parentNode;
+        return null;
     }
 
 
@@ -238,15 +337,1065 @@ public class SvgLoader {
      * @return A JavaFX node representing the SVG file.
      */
     public Group loadSvg(InputStream svgFile) {
-        // note: uses the DOM approach.
-        // probably a SAX based approach would be better from a performance
-        // perspective.
-        SVGOMDocument doc = loadSvgDocument(svgFile);
+        try {
+            return loadGroup(config, svgFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
 
-        parentNode = new Group();
-        handle(doc);
+        return null;
+    }
+
+
+    /**
+     * Loads an SVG file from a file with a specified name and returns an
+     * immutable {@link SvgScene} from which any number of JavaFX node trees
+     * can be created.
+     *
+     * @param fileName The name of the SVG file to load.
+     *
+     * @return A scene representing the SVG file.
+     */
+    public SvgScene loadSvgScene(String fileName) {
+        try (InputStream svgFile = new FileInputStream(fileName)) {
+            return loadSvgScene(svgFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
 
-        return parentNode;
+        return null;
     }
 
+
+    /**
+     * Loads an SVG file from an InputStream and returns an immutable 
+     * {@link SvgScene} from which any number of JavaFX node trees can be
+     * created.
+     *
+     * @param svgFile A stream which provides the SVG document.
+     *
+     * @return A scene representing the SVG file.
+     */
+    public SvgScene loadSvgScene(InputStream svgFile) {
+        try {
+            return loadScene(config, svgFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Loads an SVG file from a file with a specified name and returns the
+     * corresponding JavaFX Group node together with an index of its nodes
+     * by their id.
+     *
+     * @param fileName The name of the SVG file to load.
+     *
+     * @return The JavaFX node representing the SVG file and its index.
+     */
+    public SvgLoadResult loadSvgIndexed(String fileName) {
+        try (InputStream svgFile = new FileInputStream(fileName)) {
+            return loadSvgIndexed(svgFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Loads an SVG file from an InputStream and returns the corresponding
+     * JavaFX Group node together with an index of its nodes by their id.
+     * The index is created while the document is converted, so that looking
+     * up a node does not need to search the node tree.
+     *
+     * @param svgFile A stream which provides the SVG document.
+     *
+     * @return The JavaFX node representing the SVG file and its index.
+     */
+    public SvgLoadResult loadSvgIndexed(InputStream svgFile) {
+        try {
+            return loadIndexed(config, svgFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Loads an SVG file and returns a display list which renders the document
+     * onto a canvas, without creating any scene graph nodes.
+     *
+     * @param fileName The name of the SVG file to load.
+     *
+     * @return A display list representing the SVG file.
+     * @see SvgCanvas
+     */
+    public SvgDisplayList loadSvgDisplayList(String fileName) {
+        try (InputStream svgFile = new FileInputStream(fileName)) {
+            return loadSvgDisplayList(svgFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Loads an SVG file from an InputStream and returns a display list which
+     * renders the document onto a canvas, without creating any scene graph
+     * nodes.
+     *
+     * @param svgFile A stream which provides the SVG document.
+     *
+     * @return A display list representing the SVG document.
+     * @see SvgCanvas
+     */
+    public SvgDisplayList loadSvgDisplayList(InputStream svgFile) {
+        try {
+            return SvgDisplayList.fromScene(loadScene(config, svgFile));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Loads an SVG file and returns a group which only creates the JavaFX
+     * nodes for the visible part of the document.
+     *
+     * @param fileName The name of the SVG file to load.
+     *
+     * @return A lazy JavaFX node representing the SVG file.
+     */
+    public SvgLazyGroup loadSvgLazy(String fileName) {
+        try (InputStream svgFile = new FileInputStream(fileName)) {
+            return loadSvgLazy(svgFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Loads an SVG file from an InputStream and returns a group which only
+     * creates the JavaFX nodes for the visible part of the document.
+     * No nodes are created until the viewport is set with
+     * {@link SvgLazyGroup#setViewport(javafx.geometry.Bounds)}.
+     *
+     * @param svgFile A stream which provides the SVG document.
+     *
+     * @return A lazy JavaFX node representing the SVG document.
+     */
+    public SvgLazyGroup loadSvgLazy(InputStream svgFile) {
+        try {
+            return new SvgLazyGroup(loadScene(config, svgFile));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Loads an SVG file and returns a group which shows a level of detail of
+     * the document which matches the scale at which it is displayed. The
+     * coarser levels are created for the scales 0.5 and 0.125, and remove
+     * elements which are smaller than one pixel at these scales.
+     *
+     * @param fileName The name of the SVG file to load.
+     *
+     * @return A JavaFX node with the levels of detail of the SVG file.
+     */
+    public SvgLodGroup loadSvgLevels(String fileName) {
+        try (InputStream svgFile = new FileInputStream(fileName)) {
+            return loadSvgLevels(svgFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Loads an SVG file from an InputStream and returns a group which shows
+     * a level of detail of the document which matches the scale at which it
+     * is displayed. The coarser levels are created for the scales 0.5 and
+     * 0.125, and remove elements which are smaller than one pixel at these
+     * scales.
+     *
+     * @param svgFile A stream which provides the SVG document.
+     *
+     * @return A JavaFX node with the levels of detail of the SVG document.
+     */
+    public SvgLodGroup loadSvgLevels(InputStream svgFile) {
+        return loadSvgLevels(svgFile, SvgLodGroup.DEFAULT_MINIMUM_SIZE,
+                             SvgLodGroup.DEFAULT_LEVEL_SCALES);
+    }
+
+
+    /**
+     * Loads an SVG file from an InputStream and returns a group which shows
+     * a level of detail of the document which matches the scale at which it
+     * is displayed. The document is converted once with the options of this
+     * loader, which results in the level with all details, and each coarser
+     * level is derived from it.
+     *
+     * @param svgFile A stream which provides the SVG document.
+     * @param minimumSize The width and height in pixels below which elements
+     *                    are removed from a coarser level.
+     * @param levelScales The scales for which the coarser levels are created,
+     *                    in decreasing order.
+     *
+     * @return A JavaFX node with the levels of detail of the SVG document.
+     * @see SvgLodGroup
+     */
+    public SvgLodGroup loadSvgLevels(InputStream svgFile, double minimumSize,
+                                     double... levelScales) {
+        try {
+            return new SvgLodGroup(loadScene(config, svgFile), minimumSize, levelScales);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Loads an SVG file and returns a renderer which renders the document
+     * into raster tiles, using the default tile size, cache size and
+     * render executor.
+     *
+     * @param fileName The name of the SVG file to load.
+     *
+     * @return A tile renderer for the SVG file.
+     * @see SvgTileView
+     */
+    public SvgTileRenderer loadSvgTiles(String fileName) {
+        try (InputStream svgFile = new FileInputStream(fileName)) {
+            return loadSvgTiles(svgFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Loads an SVG file from an InputStream and returns a renderer which
+     * renders the document into raster tiles, using the default tile size,
+     * cache size and render executor.
+     *
+     * @param svgFile A stream which provides the SVG document.
+     *
+     * @return A tile renderer for the SVG document.
+     * @see SvgTileView
+     */
+    public SvgTileRenderer loadSvgTiles(InputStream svgFile) {
+        return loadSvgTiles(svgFile, SvgTileRenderer.DEFAULT_TILE_SIZE,
+                            SvgTileRenderer.DEFAULT_MAXIMUM_TILES,
+                            SvgExecutors.getRenderExecutor());
+    }
+
+
+    /**
+     * Loads an SVG file from an InputStream and returns a renderer which
+     * renders the document into raster tiles. The tiles are rendered by
+     * Batik directly from the SVG document, so the options of this loader
+     * which affect the conversion into JavaFX nodes are not used.
+     *
+     * @param svgFile A stream which provides the SVG document.
+     * @param tileSize The width and height of a tile in pixels.
+     * @param maximumTiles The maximum number of tiles which are kept in the cache.
+     * @param executor The executor which renders the tiles.
+     *
+     * @return A tile renderer for the SVG document.
+     * @see SvgTileView
+     */
+    public SvgTileRenderer loadSvgTiles(InputStream svgFile, int tileSize, int maximumTiles,
+                                        Executor executor) {
+        try {
+            return new SvgTileRenderer(svgFile.readAllBytes(), config.parserPool,
+                                       tileSize, maximumTiles, executor);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Loads a precompiled SVG document, as created by the {@link SvgCompiler},
+     * and returns a corresponding JavaFX Group node. Loading a precompiled
+     * document neither uses Batik nor an XML parser. The options of this
+     * loader are not used - they have been applied when the document was
+     * compiled.
+     *
+     * @param fileName The name of the precompiled file to load.
+     *
+     * @return A JavaFX node representing the SVG document.
+     */
+    public Group loadPrecompiled(String fileName) {
+        try (InputStream compiledFile = new FileInputStream(fileName)) {
+            return loadPrecompiled(compiledFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Loads a precompiled SVG document, as created by the {@link SvgCompiler},
+     * from an InputStream and returns a corresponding JavaFX Group node.
+     *
+     * @param compiledFile A stream which provides the precompiled document.
+     *
+     * @return A JavaFX node representing the SVG document.
+     */
+    public Group loadPrecompiled(InputStream compiledFile) {
+        SvgScene scene = loadPrecompiledScene(compiledFile);
+        return scene == null ? null : scene.createGroup();
+    }
+
+
+    /**
+     * Loads a precompiled SVG document, as created by the {@link SvgCompiler},
+     * from an InputStream and returns an immutable {@link SvgScene}.
+     *
+     * @param compiledFile A stream which provides the precompiled document.
+     *
+     * @return A scene representing the SVG document.
+     */
+    public SvgScene loadPrecompiledScene(InputStream compiledFile) {
+        try {
+            return SvgSceneFormat.read(compiledFile, config.internPool);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Loads several SVG files concurrently, using the default executor. 
+     * The default executor starts a virtual thread for each file if the
+     * Java runtime supports virtual threads, or uses a pool with one thread
+     * per available processor otherwise.
+     *
+     * @param fileNames The names of the SVG files to load.
+     *
+     * @return The result of the batch, which provides the JavaFX nodes and
+     *         the errors for the individual files.
+     */
+    public SvgBatchResult<String> loadSvgBatch(Collection<String> fileNames) {
+        return loadSvgBatch(fileNames, SvgExecutors.getDefaultExecutor());
+    }
+
+
+    /**
+     * Loads several SVG files concurrently, using a specific executor.
+     *
+     * @param fileNames The names of the SVG files to load.
+     * @param executor The executor which loads the files.
+     *
+     * @return The result of the batch, which provides the JavaFX nodes and
+     *         the errors for the individual files.
+     */
+    public SvgBatchResult<String> loadSvgBatch(Collection<String> fileNames, Executor executor) {
+        Map<String, Callable<InputStream>> sources = new LinkedHashMap<>();
+        for (String fileName : fileNames) {
+            sources.put(fileName, () -> new FileInputStream(fileName));
+        }
+        return loadBatch(sources, executor);
+    }
+
+
+    /**
+     * Loads several SVG documents from InputStreams concurrently, using the
+     * default executor. The streams are closed when they have been loaded.
+     *
+     * @param streams The streams which provide the SVG documents, by the
+     *                keys which identify the documents in the result.
+     * @param <K> The type of the keys which identify the documents.
+     *
+     * @return The result of the batch, which provides the JavaFX nodes and
+     *         the errors for the individual documents.
+     */
+    public <K> SvgBatchResult<K> loadSvgStreams(Map<K, ? extends InputStream> streams) {
+        return loadSvgStreams(streams, SvgExecutors.getDefaultExecutor());
+    }
+
+
+    /**
+     * Loads several SVG documents from InputStreams concurrently, using a
+     * specific executor. The streams are closed when they have been loaded.
+     *
+     * @param streams The streams which provide the SVG documents, by the
+     *                keys which identify the documents in the result.
+     * @param executor The executor which loads the documents.
+     * @param <K> The type of the keys which identify the documents.
+     *
+     * @return The result of the batch, which provides the JavaFX nodes and
+     *         the errors for the individual documents.
+     */
+    public <K> SvgBatchResult<K> loadSvgStreams(Map<K, ? extends InputStream> streams,
+                                                Executor executor) {
+        Map<K, Callable<InputStream>> sources = new LinkedHashMap<>();
+        for (Map.Entry<K, ? extends InputStream> entry : streams.entrySet()) {
+            InputStream svgFile = entry.getValue();
+            sources.put(entry.getKey(), () -> svgFile);
+        }
+        return loadBatch(sources, executor);
+    }
+
+
+    private <K> SvgBatchResult<K> loadBatch(Map<K, Callable<InputStream>> sources, 
+                                            Executor executor) {
+        Config current = config;
+
+        Map<K, CompletableFuture<Group>> futures = new LinkedHashMap<>();
+        for (Map.Entry<K, Callable<InputStream>> entry : sources.entrySet()) {
+            futures.put(entry.getKey(), loadGroupAsync(current, entry.getValue(), executor));
+        }
+
+        return new SvgBatchResult<>(futures);
+    }
+
+
+    private static CompletableFuture<Group> loadGroupAsync(Config config, 
+                                                           Callable<InputStream> source,
+                                                           Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (InputStream svgFile = source.call()) {
+                return loadGroup(config, svgFile);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+
+    /**
+     * Loads an SVG file asynchronously and attaches the resulting JavaFX
+     * nodes to a group, using the default executor.
+     * See {@link #loadSvgAsync(InputStream, Group, Executor)}.
+     *
+     * @param fileName The name of the SVG file to load.
+     * @param target The group to which the nodes are attached.
+     *
+     * @return The asynchronous load, which provides the progress and the
+     *         completion of the load.
+     */
+    public SvgAsyncLoad loadSvgAsync(String fileName, Group target) {
+        return loadSvgAsync(() -> new FileInputStream(fileName), target, 
+                            SvgExecutors.getDefaultExecutor());
+    }
+
+
+    /**
+     * Loads an SVG document asynchronously and attaches the resulting JavaFX
+     * nodes to a group, using the default executor.
+     * See {@link #loadSvgAsync(InputStream, Group, Executor)}.
+     *
+     * @param svgFile A stream which provides the SVG document.
+     * @param target The group to which the nodes are attached.
+     *
+     * @return The asynchronous load, which provides the progress and the
+     *         completion of the load.
+     */
+    public SvgAsyncLoad loadSvgAsync(InputStream svgFile, Group target) {
+        return loadSvgAsync(svgFile, target, SvgExecutors.getDefaultExecutor());
+    }
+
+
+    /**
+     * Loads an SVG document asynchronously and attaches the resulting JavaFX
+     * nodes to a group. The document is parsed and converted by the given
+     * executor, off the JavaFX application thread. The nodes are then added
+     * to the target group on the JavaFX application thread, in chunks which
+     * take at most the attach budget of this loader per pulse 
+     * (see {@link Builder#attachBudget(Duration)}), so that the scene keeps
+     * rendering while the document is attached. The stream is closed when
+     * the document has been loaded.
+     *
+     * @param svgFile A stream which provides the SVG document.
+     * @param target The group to which the nodes are attached.
+     * @param executor The executor which parses and converts the document.
+     *
+     * @return The asynchronous load, which provides the progress and the
+     *         completion of the load.
+     */
+    public SvgAsyncLoad loadSvgAsync(InputStream svgFile, Group target, Executor executor) {
+        return loadSvgAsync(() -> svgFile, target, executor);
+    }
+
+
+    private SvgAsyncLoad loadSvgAsync(Callable<InputStream> source, Group target, 
+                                      Executor executor) {
+        Config current = config;
+        SvgAsyncLoad result = new SvgAsyncLoad(target, current.attachBudgetNanos);
+        result.start(loadGroupAsync(current, source, executor));
+        return result;
+    }
+
+
+    private static Group loadGroup(Config config, InputStream svgFile) throws IOException {
+        if (config.sceneCache != null) {
+            return loadCachedScene(config, svgFile).createGroup();
+        }
+
+        return convertSvg(config, svgFile);
+    }
+
+
+    private static SvgScene loadScene(Config config, InputStream svgFile) throws IOException {
+        if (config.sceneCache != null) {
+            return loadCachedScene(config, svgFile);
+        }
+
+        return createScene(config, svgFile);
+    }
+
+
+    private static SvgScene loadCachedScene(Config config, InputStream svgFile) 
+                                                                throws IOException {
+        byte[] content = svgFile.readAllBytes();
+
+        SvgCache.Key key = SvgCache.createKey(content, config.optionsKey);
+        SvgScene result = config.sceneCache.get(key);
+        if (result == null) {
+            result = createScene(config, new ByteArrayInputStream(content));
+            config.sceneCache.put(key, result);
+        }
+
+        return result;
+    }
+
+
+    private static SvgLoadResult loadIndexed(Config config, InputStream svgFile)
+                                                                throws IOException {
+        if (config.sceneCache != null) {
+            return SvgLoadResult.fromGroup(loadCachedScene(config, svgFile).createGroup());
+        }
+
+        Map<String, Node> nodeIndex = new HashMap<>();
+        Map<String, SVGOMElement> elementIndex =
+                config.indexSourceElements ? new HashMap<>() : null;
+        SvgNodeSink.GroupSink sink = new SvgNodeSink.GroupSink(nodeIndex);
+        createNodes(config, svgFile, sink, elementIndex);
+        Group result = sink.getRoot();
+        postProcess(config, result);
+        if (config.occlusionCuller != null || config.optimizer != null) {
+            // nodes have been removed, so the index is created from the remaining ones
+            return new SvgLoadResult(result, SvgLoadResult.fromGroup(result).getNodes(),
+                                     elementIndex);
+        }
+        return new SvgLoadResult(result, nodeIndex, elementIndex);
+    }
+
+
+    private static Group convertSvg(Config config, InputStream svgFile) throws IOException {
+        SvgNodeSink.GroupSink sink = new SvgNodeSink.GroupSink(null);
+        createNodes(config, svgFile, sink, null);
+        Group result = sink.getRoot();
+        postProcess(config, result);
+        return result;
+    }
+
+
+    private static SvgScene createScene(Config config, InputStream svgFile) throws IOException {
+        if (config.flattenTransforms || config.simplifier != null
+            || config.occlusionCuller != null || config.optimizer != null) {
+            // the post processing steps work on the JavaFX nodes
+            return SvgScene.fromGroup(convertSvg(config, svgFile));
+        }
+
+        SvgNodeSink.SceneSink sink = new SvgNodeSink.SceneSink(config.internPool);
+        createNodes(config, svgFile, sink, null);
+        return sink.getScene();
+    }
+
+
+    private static void postProcess(Config config, Group result) {
+        if (config.flattenTransforms) {
+            SvgTransformFlattener.flatten(result, config.internPool);
+        }
+        if (config.simplifier != null) {
+            config.simplifier.simplify(result);
+        }
+        if (config.occlusionCuller != null) {
+            config.occlusionCuller.cull(result);
+        }
+        if (config.optimizer != null) {
+            config.optimizer.optimize(result);
+        }
+    }
+
+
+    private static void createNodes(Config config, InputStream svgFile, SvgNodeSink sink,
+                                    Map<String, SVGOMElement> elementIndex) throws IOException {
+        GradientFactory gradientFactory = new GradientFactory();
+        gradientFactory.setTransformationPolicy(config.gradientPolicy);
+
+        if (config.useStreamingParser) {
+            try {
+                SvgStreamingHandler handler = new SvgStreamingHandler(sink,
+                                                    config.addRootRect, 
+                                                    config.useSeparatePathElements, 
+                                                    config.useSegmentPaths,
+                                                    config.largeShapeThreshold,
+                                                    gradientFactory, config.internPool);
+                handler.load(svgFile);
+                return;
+            } catch (XMLStreamException e) {
+                throw new IOException(e);
+            }
+        }
+
+        SVGOMDocument doc = parseSvgDocument(config, svgFile);
+
+        SvgBasicElementHandler bh = new SvgBasicElementHandler(sink, config.addRootRect, 
+                                                               config.useSeparatePathElements,
+                                                               config.useSegmentPaths,
+                                                               config.largeShapeThreshold,
+                                                               gradientFactory,
+                                                               config.internPool);
+        bh.elementIndex = elementIndex;
+        handle(bh, doc);
+    }
+
+
+    /**
+     * The immutable configuration of a loader.
+     */
+    private static final class Config {
+        final boolean addRootRect;
+        final boolean useSeparatePathElements;
+        final boolean useSegmentPaths;
+        final int largeShapeThreshold;
+        final GradientPolicy gradientPolicy;
+        final boolean useStreamingParser;
+        final boolean useCssOnlyBridge;
+        final boolean flattenTransforms;
+        final SvgSimplifier simplifier;
+        final SvgOcclusionCuller occlusionCuller;
+        final SvgOptimizer optimizer;
+        final boolean indexSourceElements;
+        final SvgParserPool parserPool;
+        final SvgCache sceneCache;
+        final SvgInternPool internPool;
+        final long attachBudgetNanos;
+
+        // identifies the options which affect the conversion of a document
+        final String optionsKey;
+
+        Config(Builder builder) {
+            addRootRect = builder.addRootRect;
+            useSeparatePathElements = builder.useSeparatePathElements;
+            useSegmentPaths = builder.useSegmentPaths;
+            largeShapeThreshold = builder.largeShapeThreshold;
+            gradientPolicy = builder.gradientPolicy;
+            useStreamingParser = builder.useStreamingParser;
+            useCssOnlyBridge = builder.useCssOnlyBridge;
+            flattenTransforms = builder.flattenTransforms;
+            simplifier = builder.simplifier;
+            occlusionCuller = builder.occlusionCuller;
+            optimizer = builder.optimizer;
+            indexSourceElements = builder.indexSourceElements;
+            parserPool = builder.parserPool;
+            sceneCache = builder.sceneCache;
+            internPool = builder.internPool;
+            attachBudgetNanos = builder.attachBudgetNanos;
+
+            optionsKey = "rootRect=" + addRootRect
+                       + ",separatePaths=" + useSeparatePathElements
+                       + ",segmentPaths=" + useSegmentPaths
+                       + ",largeShapes=" + largeShapeThreshold
+                       + ",gradientPolicy=" + gradientPolicy
+                       + ",streaming=" + useStreamingParser
+                       + ",cssOnly=" + useCssOnlyBridge
+                       + ",flatten=" + flattenTransforms
+                       + ",simplifier=" + (simplifier == null ? "none" : simplifier.getOptionsKey())
+                       + ",culler=" + (occlusionCuller == null ? "none"
+                                                               : occlusionCuller.getOptionsKey())
+                       + ",optimizer=" + (optimizer == null ? "none" : optimizer.getOptionsKey());
+        }
+    }
+
+
+    /**
+     * Creates {@link SvgLoader}s with a specific configuration.
+     * A builder can be used to create any number of loaders. Loaders which
+     * are created by a builder can not be modified anymore.
+     */
+    public static final class Builder {
+
+        // flag whether to add a rectangle in the size of the drawing
+        private boolean addRootRect = false;
+
+        // flag whether to use the alternative SVG Path element handling which adds
+        // separate nodes for the path elements instead of an SVGPath node
+        private boolean useSeparatePathElements = false;
+
+        // flag whether to convert SVG paths into SvgSegmentPath nodes
+        private boolean useSegmentPaths = false;
+
+        // polygons and polylines with more points are converted into SVGPath nodes
+        private int largeShapeThreshold = Integer.MAX_VALUE;
+
+        private GradientPolicy gradientPolicy = GradientPolicy.USE_SUPPORTED;
+
+        // flag whether to convert the document directly from the XML event stream
+        // instead of building the Batik DOM and GVT trees first
+        private boolean useStreamingParser = false;
+
+        // flag whether to only set up the CSS engine of the document instead of
+        // building the complete GVT tree
+        private boolean useCssOnlyBridge = false;
+
+        // flag whether to bake the transformations into the geometry of the shapes
+        private boolean flattenTransforms = false;
+
+        // the simplifier which is applied to the converted documents, or null
+        private SvgSimplifier simplifier = null;
+
+        // the culler which removes hidden nodes from the converted documents, or null
+        private SvgOcclusionCuller occlusionCuller = null;
+
+        // the optimizer which is applied to the converted documents, or null
+        private SvgOptimizer optimizer = null;
+
+        // flag whether indexed loading also indexes the source elements
+        private boolean indexSourceElements = false;
+
+        // the pool which provides the parser infrastructure, or null to create
+        // a new parser for each document
+        private SvgParserPool parserPool = null;
+
+        // the cache of converted documents, or null to convert each document
+        private SvgCache sceneCache = null;
+
+        // the pool of shared paints, fonts and path data, or null to not share them
+        private SvgInternPool internPool = SvgInternPool.getShared();
+
+        // the time per pulse for attaching asynchronously loaded nodes
+        private long attachBudgetNanos = DEFAULT_ATTACH_BUDGET.toNanos();
+
+        private Builder() {
+        }
+
+
+        private Builder(Config config) {
+            addRootRect = config.addRootRect;
+            useSeparatePathElements = config.useSeparatePathElements;
+            useSegmentPaths = config.useSegmentPaths;
+            largeShapeThreshold = config.largeShapeThreshold;
+            gradientPolicy = config.gradientPolicy;
+            useStreamingParser = config.useStreamingParser;
+            useCssOnlyBridge = config.useCssOnlyBridge;
+            flattenTransforms = config.flattenTransforms;
+            simplifier = config.simplifier;
+            occlusionCuller = config.occlusionCuller;
+            optimizer = config.optimizer;
+            indexSourceElements = config.indexSourceElements;
+            parserPool = config.parserPool;
+            sceneCache = config.sceneCache;
+            internPool = config.internPool;
+            attachBudgetNanos = config.attachBudgetNanos;
+        }
+
+
+        /**
+         * Defines whether the returned JavaFX group shall contain a rectangle
+         * in the size of the svg document's viewbox.
+         * 
+         * @param flag Flag to determine whether or not to add a rectangle in the
+         *             size of the drawing's viewbox.
+         * @return This builder.
+         */
+        public Builder addViewboxRect(boolean flag) {
+            this.addRootRect = flag;
+            return this;
+        }
+
+
+        /**
+         * Defines whether an SVG path element is converted into separate
+         * JavaFX shapes for each of its segments, instead of a single
+         * SVGPath node.
+         *
+         * @param flag Flag to determine whether or not to create separate shapes.
+         * @return This builder.
+         */
+        public Builder useSeparatePathElements(boolean flag) {
+            this.useSeparatePathElements = flag;
+            return this;
+        }
+
+
+        /**
+         * Defines whether an SVG path element is converted into a single
+         * {@link SvgSegmentPath} node, whose segments can be found and
+         * highlighted individually like separate shapes, but without
+         * creating a node per segment. Takes precedence over
+         * {@link #useSeparatePathElements(boolean)}.
+         *
+         * @param flag Flag to determine whether or not to create segment paths.
+         * @return This builder.
+         */
+        public Builder useSegmentPaths(boolean flag) {
+            this.useSegmentPaths = flag;
+            return this;
+        }
+
+
+        /**
+         * Defines the number of points above which a polygon or polyline is
+         * converted into an SVGPath node instead of a Polygon or Polyline.
+         * Polygon and Polyline nodes keep their points as a list of boxed
+         * Double values, which needs several times the memory of the path
+         * data for shapes with many points, like GIS exports.
+         * By default, all polygons and polylines are kept.
+         *
+         * @param maximumPoints The maximum number of points of a Polygon or
+         *                      Polyline node.
+         * @return This builder.
+         */
+        public Builder largeShapeThreshold(int maximumPoints) {
+            if (maximumPoints < 0) {
+                throw new IllegalArgumentException("The threshold must not be negative");
+            }
+            this.largeShapeThreshold = maximumPoints;
+            return this;
+        }
+
+
+        /**
+         * Defines the gradient transformation policy to use when an SVG
+         * gradient element contains a gradientTransform attribute.
+         *
+         * @param policy The {@link GradientPolicy} to use.
+         * @return This builder.
+         */
+        public Builder gradientTransformPolicy(GradientPolicy policy) {
+            this.gradientPolicy = policy;
+            return this;
+        }
+
+
+        /**
+         * Defines whether the loadSvg() methods convert the SVG document directly
+         * from the XML event stream, in one pass and without creating the Batik
+         * DOM and GVT trees. This is considerably faster and uses memory 
+         * proportional to the nesting depth of the document only, but it does
+         * not support CSS style sheets - only presentation attributes and inline
+         * style attributes are evaluated.
+         *
+         * @param flag Flag to determine whether or not to use the streaming parser.
+         * @return This builder.
+         */
+        public Builder useStreamingParser(boolean flag) {
+            this.useStreamingParser = flag;
+            return this;
+        }
+
+
+        /**
+         * Defines whether loading an SVG document only initializes the Batik CSS
+         * engine and style cascade, instead of building the complete GVT
+         * (graphics vector tree) for the document. The GVT tree is not used
+         * by the conversion into JavaFX nodes, so this considerably reduces
+         * the load time and memory usage, while the computed styles are the same.
+         *
+         * @param flag Flag to determine whether or not to skip building the GVT tree.
+         * @return This builder.
+         */
+        public Builder useCssOnlyBridge(boolean flag) {
+            this.useCssOnlyBridge = flag;
+            return this;
+        }
+
+
+        /**
+         * Defines whether the transformations of the SVG elements are baked
+         * into the coordinates of the resulting shapes. The transformations
+         * of nested groups are composed during the conversion and applied
+         * to the geometry of each shape, so that JavaFX does not need to
+         * concatenate transformations when computing bounds or picking.
+         * Shapes which can not represent their transformed geometry, like
+         * text or circles under a skew, get a single combined Affine
+         * transformation instead. Group nodes are kept, but do not have
+         * any transformations anymore.
+         *
+         * @param flag Flag to determine whether or not to flatten the transformations.
+         * @return This builder.
+         */
+        public Builder flattenTransforms(boolean flag) {
+            this.flattenTransforms = flag;
+            return this;
+        }
+
+
+        /**
+         * Defines a simplifier which removes geometric detail from each
+         * converted document which is not visible at the simplifier's target
+         * scale. The simplifier is applied after the transformations have
+         * been flattened and before the document is optimized.
+         *
+         * @param documentSimplifier The {@link SvgSimplifier} to use, or
+         *                           <code>null</code> to not simplify documents.
+         * @return This builder.
+         */
+        public Builder simplifier(SvgSimplifier documentSimplifier) {
+            this.simplifier = documentSimplifier;
+            return this;
+        }
+
+
+        /**
+         * Defines a culler which removes the nodes of each converted
+         * document which are completely covered by opaque shapes that are
+         * drawn later. The culler is applied after the document has been
+         * simplified and before it is optimized.
+         *
+         * @param culler The {@link SvgOcclusionCuller} to use, or
+         *               <code>null</code> to keep hidden nodes.
+         * @return This builder.
+         */
+        public Builder occlusionCuller(SvgOcclusionCuller culler) {
+            this.occlusionCuller = culler;
+            return this;
+        }
+
+
+        /**
+         * Defines an optimizer which reduces the number of nodes of each
+         * converted document, by removing redundant groups and merging paths.
+         * When combined with {@link #flattenTransforms(boolean)}, the
+         * transformations are flattened first, so that most groups can be
+         * removed.
+         *
+         * @param documentOptimizer The {@link SvgOptimizer} to use, or
+         *                          <code>null</code> to not optimize documents.
+         * @return This builder.
+         */
+        public Builder optimizer(SvgOptimizer documentOptimizer) {
+            this.optimizer = documentOptimizer;
+            return this;
+        }
+
+
+        /**
+         * Defines whether {@link SvgLoader#loadSvgIndexed(InputStream)} also
+         * returns the source elements of the SVG document by their id.
+         * The source elements are only available when the document is
+         * converted from the Batik DOM, not with the streaming parser or
+         * when the document is created from a scene cache. Note that the
+         * source elements keep the complete SVG document in memory.
+         *
+         * @param flag Flag to determine whether or not to index the source elements.
+         * @return This builder.
+         */
+        public Builder indexSourceElements(boolean flag) {
+            this.indexSourceElements = flag;
+            return this;
+        }
+
+
+        /**
+         * Defines a pool which provides the parser infrastructure (the document
+         * factory, the XML reader and the user agent) for loading SVG documents
+         * through Batik. With a pool, the infrastructure is only created for
+         * documents which are loaded at the same time, and is then reused for
+         * all subsequent documents, which considerably speeds up loading many
+         * small documents.
+         * The same pool can be shared by several loaders.
+         *
+         * @param pool The {@link SvgParserPool} to use, or <code>null</code> to
+         *             create a new parser for each document.
+         * @return This builder.
+         */
+        public Builder parserPool(SvgParserPool pool) {
+            this.parserPool = pool;
+            return this;
+        }
+
+
+        /**
+         * Defines a cache for the converted documents. With a cache,
+         * loading a document which has already been loaded with the same
+         * options creates the node tree from the cached {@link SvgScene},
+         * without parsing the document again. The same cache can be shared
+         * by several loaders.
+         *
+         * @param cache The {@link SvgCache} to use, or <code>null</code> to
+         *              convert each document.
+         * @return This builder.
+         */
+        public Builder sceneCache(SvgCache cache) {
+            this.sceneCache = cache;
+            return this;
+        }
+
+
+        /**
+         * Defines the pool through which equal paints, fonts and path data
+         * are shared between all documents loaded with this loader. The
+         * same pool can be shared by several loaders. By default, all
+         * loaders use {@link SvgInternPool#getShared()}.
+         *
+         * @param pool The {@link SvgInternPool} to use, or <code>null</code>
+         *             to not share objects between documents.
+         * @return This builder.
+         */
+        public Builder internPool(SvgInternPool pool) {
+            this.internPool = pool;
+            return this;
+        }
+
+
+        /**
+         * Defines the time which is spent per pulse for attaching the nodes
+         * of an asynchronously loaded document to the scene graph. 
+         * The default is 4 milliseconds, which leaves most of a 60 Hz frame
+         * for rendering.
+         *
+         * @param budget The time budget per pulse.
+         * @return This builder.
+         */
+        public Builder attachBudget(Duration budget) {
+            if (budget.isNegative()) {
+                throw new IllegalArgumentException("The budget must not be negative");
+            }
+            this.attachBudgetNanos = budget.toNanos();
+            return this;
+        }
+
+
+        /**
+         * @return A new, immutable loader with the configuration of this builder.
+         */
+        public SvgLoader build() {
+            return new SvgLoader(this, false);
+        }
+    }
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.transform.Transform;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * A group which contains several levels of detail of an SVG document, and
+ * shows the level which matches the scale at which the group is displayed.
+ * <p>
+ * Level 0 contains all nodes of the document. Each coarser level is created
+ * for a lower scale: elements whose width and height at that scale are both
+ * below the minimum size are removed, and the geometry of the remaining
+ * shapes is simplified with an {@link SvgSimplifier} whose tolerance is half
+ * of the minimum size. A coarser level is shown as long as the scale of the
+ * group does not exceed the scale for which the level has been created, so
+ * that the removed detail is never visible.
+ * <p>
+ * The scale of the group is the largest factor by which its local to scene
+ * transformation stretches a distance, and the level is switched whenever
+ * this transformation changes - for example when a parent node is zoomed.
+ * Applications which display the group in a different way can select the
+ * level with {@link #updateLevel(double)}, which is overridden again when
+ * the local to scene transformation changes.
+ */
+public final class SvgLodGroup extends Group {
+
+    // the default scales of the coarser levels of detail
+    static final double[] DEFAULT_LEVEL_SCALES = {0.5, 0.125};
+
+    /** The default size in pixels below which elements are removed from a level. */
+    public static final double DEFAULT_MINIMUM_SIZE = 1.0;
+
+    private final Group[] levels;
+    private final double[] levelScales;
+    private final int[] levelNodeCounts;
+
+    private int level = -1;
+
+    /**
+     * Creates the levels of detail for a scene.
+     *
+     * @param scene The scene which provides the nodes of the document.
+     * @param minimumSize The size in pixels below which elements are removed.
+     * @param scales The scales of the coarser levels, in decreasing order.
+     */
+    SvgLodGroup(SvgScene scene, double minimumSize, double... scales) {
+        if (!(minimumSize >= 0)) {
+            throw new IllegalArgumentException("The minimum size must not be negative");
+        }
+        for (int i = 0;  i < scales.length;  i++) {
+            if (!(scales[i] > 0) || (i > 0 && !(scales[i] < scales[i - 1]))) {
+                throw new IllegalArgumentException("The scales must be positive and decreasing: "
+                                                   + Arrays.toString(scales));
+            }
+        }
+
+        levels = new Group[scales.length + 1];
+        levelScales = new double[scales.length + 1];
+        levelNodeCounts = new int[scales.length + 1];
+
+        levels[0] = scene.createGroup();
+        levelScales[0] = Double.POSITIVE_INFINITY;
+        levelNodeCounts[0] = scene.getNodeCount();
+        for (int i = 1;  i < levels.length;  i++) {
+            double scale = scales[i - 1];
+            Group group = scene.createGroup();
+            removeSmallNodes(group, group.getLocalToParentTransform(), minimumSize / scale);
+            if (minimumSize > 0) {
+                new SvgSimplifier(minimumSize / 2, scale).simplify(group);
+            }
+            levels[i] = group;
+            levelScales[i] = scale;
+            levelNodeCounts[i] = countNodes(group);
+        }
+
+        localToSceneTransformProperty().addListener(
+            observable -> updateLevel(SvgSimplifier.getMaximumScale(getLocalToSceneTransform())));
+        updateLevel(SvgSimplifier.getMaximumScale(getLocalToSceneTransform()));
+    }
+
+
+    /**
+     * Removes the children which are smaller than a minimum size.
+     *
+     * @param group The group whose children to check.
+     * @param transform The transformation from the group into the root group.
+     * @param minimumSize The minimum size in the coordinate system of the root group.
+     */
+    private static void removeSmallNodes(Group group, Transform transform,
+                                         double minimumSize) {
+        Iterator<Node> children = group.getChildren().iterator();
+        while (children.hasNext()) {
+            Node child = children.next();
+            Bounds bounds = transform.transform(child.getBoundsInParent());
+
+            // nodes without bounds, like text in a headless environment, are kept
+            if (!bounds.isEmpty() && bounds.getWidth() < minimumSize
+                                  && bounds.getHeight() < minimumSize) {
+                children.remove();
+            } else if (child instanceof Group) {
+                removeSmallNodes((Group) child,
+                                 transform.createConcatenation(child.getLocalToParentTransform()),
+                                 minimumSize);
+            }
+        }
+    }
+
+
+    private static int countNodes(Node node) {
+        int result = 1;
+        if (node instanceof Group) {
+            for (Node child : ((Group) node).getChildren()) {
+                result += countNodes(child);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Shows the level of detail which matches a scale.
+     *
+     * @param scale The factor by which the document is scaled on the screen.
+     */
+    public void updateLevel(double scale) {
+        int newLevel = 0;
+        while (newLevel + 1 < levels.length && scale <= levelScales[newLevel + 1]) {
+            newLevel++;
+        }
+
+        if (newLevel != level) {
+            level = newLevel;
+            getChildren().setAll(levels[level]);
+        }
+    }
+
+
+    /**
+     * @return The index of the level of detail which is currently shown,
+     *         where 0 is the level with all details.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+
+    /**
+     * @return The number of levels of detail, including the level with all details.
+     */
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+
+    /**
+     * @param index The index of a level of detail.
+     * @return The highest scale at which the level is shown, or
+     *         <code>Double.POSITIVE_INFINITY</code> for the level with all details.
+     */
+    public double getLevelScale(int index) {
+        return levelScales[index];
+    }
+
+
+    /**
+     * @param index The index of a level of detail.
+     * @return The root node of the level.
+     */
+    public Group getLevelNode(int index) {
+        return levels[index];
+    }
+
+
+    /**
+     * @param index The index of a level of detail.
+     * @return The number of JavaFX nodes of the level, including its root node.
+     */
+    public int getLevelNodeCount(int index) {
+        return levelNodeCounts[index];
+    }
+}
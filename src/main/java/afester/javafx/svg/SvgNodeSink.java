@@ -0,0 +1,239 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.Shape;
+import javafx.scene.transform.Affine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Receives the converted elements of an SVG document from an element handler.
+ * The handlers resolve the geometry, the transformation and the style of each
+ * element, and the sink creates the result - either a JavaFX node tree
+ * ({@link GroupSink}) or an {@link SvgScene} ({@link SceneSink}), without
+ * creating any JavaFX nodes.
+ */
+interface SvgNodeSink {
+
+    /**
+     * Starts a group. All following nodes are added to the group, until
+     * the group is ended.
+     *
+     * @param id The id of the group, or <code>null</code>.
+     * @param transformation The transformation of the group, or <code>null</code>.
+     */
+    void startGroup(String id, Affine transformation);
+
+
+    /**
+     * Ends the most recently started group.
+     */
+    void endGroup();
+
+
+    /**
+     * Adds a shape to the current group.
+     *
+     * @param kind The kind of the shape.
+     * @param id The id of the shape, or <code>null</code>.
+     * @param transformation The transformation of the shape, or <code>null</code>.
+     * @param geometry The geometry values of the shape, as described by
+     *                 {@link SvgSceneNode}. The array is not copied.
+     * @param content The path data or the text of the shape, or <code>null</code>.
+     * @param style The resolved style of the shape.
+     */
+    void addShape(SvgSceneNode.Kind kind, String id, Affine transformation,
+                  double[] geometry, String content, SvgStyle style);
+
+
+    /**
+     * A sink which creates a JavaFX node tree.
+     */
+    final class GroupSink implements SvgNodeSink {
+        private final Group root = new Group();
+        private final Deque<Group> parents = new ArrayDeque<>();
+
+        // the created nodes by their id, or null if the ids are not indexed
+        private final Map<String, Node> nodeIndex;
+
+        /**
+         * @param nodeIndex The map to which the created nodes are added by
+         *                  their id, or <code>null</code>.
+         */
+        GroupSink(Map<String, Node> nodeIndex) {
+            this.nodeIndex = nodeIndex;
+            parents.push(root);
+        }
+
+
+        private void addNode(Node node, String id, Affine transformation) {
+            node.setId(id);
+            if (nodeIndex != null && id != null && !id.isEmpty()) {
+                nodeIndex.putIfAbsent(id, node);
+            }
+            if (transformation != null) {
+                node.getTransforms().add(transformation);
+            }
+            parents.peek().getChildren().add(node);
+        }
+
+
+        @Override
+        public void startGroup(String id, Affine transformation) {
+            Group group = new Group();
+            addNode(group, id, transformation);
+            parents.push(group);
+        }
+
+
+        @Override
+        public void endGroup() {
+            parents.pop();
+        }
+
+
+        @Override
+        public void addShape(SvgSceneNode.Kind kind, String id, Affine transformation,
+                             double[] geometry, String content, SvgStyle style) {
+            Shape shape = SvgSceneNode.createShape(kind, geometry, content);
+            style.applyTo(shape);
+            addNode(shape, id, transformation);
+        }
+
+
+        /**
+         * @return The root of the created node tree.
+         */
+        Group getRoot() {
+            return root;
+        }
+    }
+
+
+    /**
+     * A sink which creates an {@link SvgScene}.
+     */
+    final class SceneSink implements SvgNodeSink {
+        private static final double[] NO_VALUES = new double[0];
+
+        private final SvgInternPool internPool;
+        private final Deque<GroupState> groups = new ArrayDeque<>();
+
+        // the scene paints of the paints which are shared between the resolved styles
+        private final Map<Paint, SvgScenePaint> paints = new IdentityHashMap<>();
+
+        /**
+         * @param internPool The pool through which the paints are shared
+         *                   with other documents, or <code>null</code>.
+         */
+        SceneSink(SvgInternPool internPool) {
+            this.internPool = internPool;
+            groups.push(new GroupState(null, NO_VALUES));
+        }
+
+
+        private static double[] getValues(Affine transformation) {
+            if (transformation == null) {
+                return NO_VALUES;
+            }
+            return new double[] {transformation.getMxx(), transformation.getMxy(),
+                                 transformation.getTx(), transformation.getMyx(),
+                                 transformation.getMyy(), transformation.getTy()};
+        }
+
+
+        private SvgScenePaint getPaint(Paint paint) {
+            if (paint == null) {
+                return null;
+            }
+            return paints.computeIfAbsent(paint, p -> {
+                SvgScenePaint result = SvgScenePaint.fromPaint(p);
+                return internPool != null ? internPool.internPaint(result) : result;
+            });
+        }
+
+
+        @Override
+        public void startGroup(String id, Affine transformation) {
+            groups.push(new GroupState(id, getValues(transformation)));
+        }
+
+
+        @Override
+        public void endGroup() {
+            GroupState group = groups.pop();
+            groups.peek().children.add(group.createNode());
+        }
+
+
+        @Override
+        public void addShape(SvgSceneNode.Kind kind, String id, Affine transformation,
+                             double[] geometry, String content, SvgStyle style) {
+            double strokeWidth = style.getStrokeWidth();
+            double dashOffset = style.getDashOffset();
+
+            // undefined values are the defaults of a JavaFX shape
+            SvgSceneNode node = new SvgSceneNode(kind, id, getValues(transformation),
+                                        geometry, content,
+                                        getPaint(style.getFill()), getPaint(style.getStroke()),
+                                        Double.isNaN(strokeWidth) ? 1.0 : strokeWidth,
+                                        style.getDashArray(),
+                                        Double.isNaN(dashOffset) ? 0.0 : dashOffset,
+                                        kind == SvgSceneNode.Kind.TEXT ? style.getFont() : null,
+                                        Collections.emptyList());
+            groups.peek().children.add(node);
+        }
+
+
+        /**
+         * @return The created scene.
+         */
+        SvgScene getScene() {
+            return new SvgScene(groups.getLast().createNode());
+        }
+
+
+        /**
+         * A started group and its children.
+         */
+        private static final class GroupState {
+            final String id;
+            final double[] transforms;
+            final List<SvgSceneNode> children = new ArrayList<>();
+
+            GroupState(String id, double[] transforms) {
+                this.id = id;
+                this.transforms = transforms;
+            }
+
+            SvgSceneNode createNode() {
+                return new SvgSceneNode(SvgSceneNode.Kind.GROUP, id, transforms, NO_VALUES,
+                                        null, null, null, 0, NO_VALUES, 0, null, children);
+            }
+        }
+    }
+}
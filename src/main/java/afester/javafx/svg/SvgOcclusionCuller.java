@@ -0,0 +1,437 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Ellipse;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.Shape;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.NonInvertibleTransformException;
+import javafx.scene.transform.Transform;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Removes the nodes of a converted SVG document which are completely
+ * covered by nodes which are drawn later, so that they are not visible:
+ * <ul>
+ * <li>Rectangles, circles, ellipses and convex polygons with an opaque
+ *     fill color cover other nodes. Rounded rectangles only cover nodes
+ *     within the rectangle without the corner radii.</li>
+ * <li>A node is removed if its bounds, including its stroke and effects,
+ *     are completely inside a single covering shape which is drawn later.
+ *     Groups are not removed, but they can become empty.</li>
+ * <li>Shapes which are translucent, clipped, blended or which have an
+ *     effect - directly or through one of their groups - do not cover
+ *     other nodes. Nodes within groups which have an effect or a blend
+ *     mode are never removed, since they contribute to the group's
+ *     rendering.</li>
+ * </ul>
+ * The covering shapes are checked exactly, and all transformations are
+ * taken into account. Nodes whose edge is on the edge of a covering shape
+ * are also removed, although they could contribute to the anti-aliased
+ * pixels along the edge. Nodes whose id is one of the ids to keep are
+ * never removed, so that they can still be looked up.
+ * <p>
+ * A culler can be set on a loader with
+ * {@link SvgLoader.Builder#occlusionCuller(SvgOcclusionCuller)}, or it can
+ * be applied to any converted document. It can be used concurrently for
+ * several documents.
+ */
+public final class SvgOcclusionCuller {
+
+    private final Set<String> keepIds;
+    private final LongAdder removedCount = new LongAdder();
+
+    /**
+     * A node which is drawn, with its position in the drawing order.
+     */
+    private static final class Item {
+        final Node node;
+        final Group parent;
+        final Transform toRoot;
+        final boolean canCover;
+        final boolean removable;
+
+        Item(Node node, Group parent, Transform toRoot, boolean canCover, boolean removable) {
+            this.node = node;
+            this.parent = parent;
+            this.toRoot = toRoot;
+            this.canCover = canCover;
+            this.removable = removable;
+        }
+    }
+
+
+    /**
+     * A convex area which is completely covered by an opaque shape.
+     */
+    private static final class Cover {
+        final int order;
+        final Shape shape;
+        final Transform fromRoot;
+
+        // the corners of a covering polygon, with the inside on the left of each edge
+        final double[] polygon;
+
+        Cover(int order, Shape shape, Transform fromRoot, double[] polygon) {
+            this.order = order;
+            this.shape = shape;
+            this.fromRoot = fromRoot;
+            this.polygon = polygon;
+        }
+
+
+        /**
+         * @return Whether the area contains a point, in root coordinates.
+         */
+        boolean contains(double rootX, double rootY) {
+            double[] p = {rootX, rootY};
+            fromRoot.transform2DPoints(p, 0, p, 0, 1);
+            double x = p[0];
+            double y = p[1];
+
+            if (shape instanceof Rectangle) {
+                Rectangle rect = (Rectangle) shape;
+                double insetX = Math.min(rect.getArcWidth(), rect.getWidth()) / 2;
+                double insetY = Math.min(rect.getArcHeight(), rect.getHeight()) / 2;
+                if (insetX <= 0 || insetY <= 0) {
+                    insetX = 0;
+                    insetY = 0;
+                }
+                return x >= rect.getX() + insetX && x <= rect.getX() + rect.getWidth() - insetX
+                    && y >= rect.getY() + insetY && y <= rect.getY() + rect.getHeight() - insetY;
+            }
+            if (shape instanceof Circle) {
+                Circle circle = (Circle) shape;
+                double dx = x - circle.getCenterX();
+                double dy = y - circle.getCenterY();
+                return dx * dx + dy * dy <= circle.getRadius() * circle.getRadius();
+            }
+            if (shape instanceof Ellipse) {
+                Ellipse ellipse = (Ellipse) shape;
+                double dx = (x - ellipse.getCenterX()) / ellipse.getRadiusX();
+                double dy = (y - ellipse.getCenterY()) / ellipse.getRadiusY();
+                return dx * dx + dy * dy <= 1;
+            }
+
+            for (int i = 0;  i < polygon.length;  i += 2) {
+                int j = (i + 2) % polygon.length;
+                double cross = (polygon[j] - polygon[i]) * (y - polygon[i + 1])
+                             - (polygon[j + 1] - polygon[i + 1]) * (x - polygon[i]);
+                if (cross < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+
+    /**
+     * Creates a culler which does not need to keep any node ids.
+     */
+    public SvgOcclusionCuller() {
+        this(Collections.<String>emptySet());
+    }
+
+
+    /**
+     * Creates a culler.
+     *
+     * @param keepIds The ids of the nodes which must be kept.
+     */
+    public SvgOcclusionCuller(Collection<String> keepIds) {
+        this.keepIds = Collections.unmodifiableSet(new TreeSet<>(keepIds));
+    }
+
+
+    /**
+     * @return The ids of the nodes which are kept by this culler.
+     */
+    public Set<String> getKeepIds() {
+        return keepIds;
+    }
+
+
+    /**
+     * @return A description of this culler's configuration, which is
+     *         used to distinguish cached documents.
+     */
+    String getOptionsKey() {
+        return "keep" + keepIds;
+    }
+
+
+    /**
+     * @return The number of nodes which have been removed by this culler
+     *         from all documents so far.
+     */
+    public long getRemovedCount() {
+        return removedCount.sum();
+    }
+
+
+    /**
+     * Removes the nodes below a root node which are covered by other nodes.
+     *
+     * @param root The root node of a converted SVG document.
+     * @return The number of nodes which have been removed.
+     */
+    public int cull(Group root) {
+        List<Item> items = new ArrayList<>();
+        collect(root, new Affine(), true, true, items);
+
+        // the bounds of the covering shapes, in root coordinates
+        List<Cover> covers = new ArrayList<>();
+        List<double[]> coverBounds = new ArrayList<>();
+        for (int order = 0;  order < items.size();  order++) {
+            Item item = items.get(order);
+            Cover cover = createCover(order, item);
+            if (cover != null) {
+                covers.add(cover);
+                coverBounds.add(getRootBounds(item));
+            }
+        }
+        if (covers.isEmpty()) {
+            return 0;
+        }
+
+        double[] allBounds = new double[covers.size() * 4];
+        for (int i = 0;  i < covers.size();  i++) {
+            System.arraycopy(coverBounds.get(i), 0, allBounds, i * 4, 4);
+        }
+        SvgGridIndex index = new SvgGridIndex(allBounds);
+
+        // the covered nodes of each group
+        Map<Group, Set<Node>> hidden = new IdentityHashMap<>();
+        int removed = 0;
+        for (int order = 0;  order < items.size();  order++) {
+            Item item = items.get(order);
+            double[] b = item.removable ? getRootBounds(item) : null;
+            if (b == null || isKept(item.node)) {
+                continue;
+            }
+
+            final int itemOrder = order;
+            boolean[] covered = {false};
+            double centerX = (b[0] + b[2]) / 2;
+            double centerY = (b[1] + b[3]) / 2;
+            index.query(centerX, centerY, centerX, centerY, cover -> {
+                Cover c = covers.get(cover);
+                if (!covered[0] && c.order > itemOrder
+                    && c.contains(b[0], b[1]) && c.contains(b[2], b[1])
+                    && c.contains(b[0], b[3]) && c.contains(b[2], b[3])) {
+                    covered[0] = true;
+                }
+            });
+
+            if (covered[0]) {
+                hidden.computeIfAbsent(item.parent, parent -> new HashSet<>()).add(item.node);
+                removed++;
+            }
+        }
+
+        // removing single children from a large group is slow, so the groups
+        // get a new list of children instead
+        for (Map.Entry<Group, Set<Node>> entry : hidden.entrySet()) {
+            List<Node> children = new ArrayList<>(entry.getKey().getChildren());
+            children.removeIf(entry.getValue()::contains);
+            entry.getKey().getChildren().setAll(children);
+        }
+        removedCount.add(removed);
+        return removed;
+    }
+
+
+    /**
+     * Collects the nodes below a group in drawing order.
+     *
+     * @param group The group whose children to collect.
+     * @param toRoot The transformation from the group into the root coordinates.
+     * @param canCover Whether the children of the group can cover other nodes.
+     * @param removable Whether the children of the group can be removed.
+     * @param items The list to which the nodes are added.
+     */
+    private static void collect(Group group, Transform toRoot, boolean canCover,
+                                boolean removable, List<Item> items) {
+        for (Node child : group.getChildren()) {
+            if (!child.isVisible()) {
+                continue;
+            }
+
+            if (child instanceof Group) {
+                boolean plain = child.getOpacity() == 1.0 && child.getEffect() == null
+                             && child.getClip() == null && child.getBlendMode() == null;
+                boolean composed = child.getEffect() != null || child.getBlendMode() != null;
+                collect((Group) child,
+                        toRoot.createConcatenation(child.getLocalToParentTransform()),
+                        canCover && plain, removable && !composed, items);
+            } else {
+                items.add(new Item(child, group, toRoot, canCover, removable));
+            }
+        }
+    }
+
+
+    /**
+     * @return The bounds of the node in root coordinates, as min x, min y,
+     *         max x and max y, or <code>null</code> if the node has no bounds.
+     */
+    private static double[] getRootBounds(Item item) {
+        Bounds bounds = item.toRoot.transform(item.node.getBoundsInParent());
+        if (bounds.isEmpty()) {
+            return null;
+        }
+        return new double[] {bounds.getMinX(), bounds.getMinY(),
+                             bounds.getMaxX(), bounds.getMaxY()};
+    }
+
+
+    /**
+     * @return The area which is covered by a node, or <code>null</code> if
+     *         the node does not cover other nodes.
+     */
+    private static Cover createCover(int order, Item item) {
+        if (!item.canCover) {
+            return null;
+        }
+        if (!(item.node instanceof Rectangle || item.node instanceof Circle
+              || item.node instanceof Ellipse || item.node instanceof Polygon)) {
+            return null;
+        }
+
+        Shape shape = (Shape) item.node;
+        Paint fill = shape.getFill();
+        if (!(fill instanceof Color) || !((Color) fill).isOpaque()
+            || shape.getOpacity() != 1.0 || shape.getEffect() != null
+            || shape.getClip() != null || shape.getBlendMode() != null) {
+            return null;
+        }
+
+        Transform fromRoot;
+        try {
+            fromRoot = item.toRoot.createConcatenation(shape.getLocalToParentTransform())
+                                  .createInverse();
+        } catch (NonInvertibleTransformException e) {
+            return null;
+        }
+
+        double[] polygon = null;
+        if (shape instanceof Polygon) {
+            polygon = getConvexPolygon(((Polygon) shape).getPoints());
+            if (polygon == null) {
+                return null;
+            }
+        }
+        return new Cover(order, shape, fromRoot, polygon);
+    }
+
+
+    /**
+     * @return The corners of a convex polygon, ordered so that the inside is
+     *         on the left of each edge, or <code>null</code> if the polygon
+     *         is not convex.
+     */
+    private static double[] getConvexPolygon(List<Double> points) {
+        int count = points.size() / 2;
+        if (count < 3) {
+            return null;
+        }
+
+        double[] result = new double[count * 2];
+        for (int i = 0;  i < result.length;  i++) {
+            result[i] = points.get(i);
+        }
+
+        // all turns must have the same direction
+        int direction = 0;
+        for (int i = 0;  i < count;  i++) {
+            int j = (i + 1) % count;
+            int k = (i + 2) % count;
+            double cross = (result[2 * j] - result[2 * i])
+                             * (result[2 * k + 1] - result[2 * j + 1])
+                         - (result[2 * j + 1] - result[2 * i + 1])
+                             * (result[2 * k] - result[2 * j]);
+            int sign = cross > 0 ? 1 : cross < 0 ? -1 : 0;
+            if (sign != 0) {
+                if (direction != 0 && sign != direction) {
+                    return null;
+                }
+                direction = sign;
+            }
+        }
+        if (direction == 0) {
+            return null;
+        }
+
+        // polygons which wind around more than once are not convex
+        double angle = 0;
+        for (int i = 0;  i < count;  i++) {
+            int j = (i + 1) % count;
+            int k = (i + 2) % count;
+            double a1 = Math.atan2(result[2 * j + 1] - result[2 * i + 1],
+                                   result[2 * j] - result[2 * i]);
+            double a2 = Math.atan2(result[2 * k + 1] - result[2 * j + 1],
+                                   result[2 * k] - result[2 * j]);
+            double turn = a2 - a1;
+            if (turn > Math.PI) {
+                turn -= 2 * Math.PI;
+            } else if (turn < -Math.PI) {
+                turn += 2 * Math.PI;
+            }
+            angle += turn;
+        }
+        if (Math.abs(angle) > 2 * Math.PI + 1e-6) {
+            return null;
+        }
+
+        if (direction < 0) {
+            // reverse the corners, so that the inside is on the left of each edge
+            for (int i = 0, j = count - 1;  i < j;  i++, j--) {
+                double x = result[2 * i];
+                double y = result[2 * i + 1];
+                result[2 * i] = result[2 * j];
+                result[2 * i + 1] = result[2 * j + 1];
+                result[2 * j] = x;
+                result[2 * j + 1] = y;
+            }
+        }
+        return result;
+    }
+
+
+    private boolean isKept(Node node) {
+        return node.getId() != null && keepIds.contains(node.getId());
+    }
+}
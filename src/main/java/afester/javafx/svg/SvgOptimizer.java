@@ -0,0 +1,379 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.SVGPath;
+import javafx.scene.shape.Shape;
+import javafx.scene.shape.StrokeLineJoin;
+import javafx.scene.transform.Transform;
+
+import org.apache.batik.parser.AWTPathProducer;
+import org.apache.batik.parser.ParseException;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces the number of nodes of a converted SVG document, without
+ * changing its rendering:
+ * <ul>
+ * <li>Empty groups are removed.</li>
+ * <li>Groups without a transformation are replaced by their children.</li>
+ * <li>Groups with only one child are replaced by their child, which
+ *     inherits the transformations of the group.</li>
+ * <li>Adjacent SVGPath siblings with the same style and transformations
+ *     are merged into one SVGPath, if their draw order does not matter -
+ *     either because they do not overlap, or because they are only stroked
+ *     with an opaque color.</li>
+ * </ul>
+ * Nodes whose id is one of the ids to keep are neither removed nor merged,
+ * so that they can still be looked up after the optimization.
+ * <p>
+ * An optimizer can be set on a loader with
+ * {@link SvgLoader.Builder#optimizer(SvgOptimizer)}, or it can be applied
+ * to any converted document.
+ */
+public final class SvgOptimizer {
+
+    // the initial moveto of path data which starts with a relative moveto
+    private static final Pattern RELATIVE_MOVETO = Pattern.compile(
+            "^\\s*m\\s*([-+]?(?:\\d+\\.?\\d*|\\.\\d+)(?:[eE][-+]?\\d+)?)\\s*,?\\s*"
+                  + "([-+]?(?:\\d+\\.?\\d*|\\.\\d+)(?:[eE][-+]?\\d+)?)\\s*,?\\s*");
+
+    private final Set<String> keepIds;
+
+    /**
+     * Creates an optimizer which does not need to keep any node ids.
+     */
+    public SvgOptimizer() {
+        this(Collections.<String>emptySet());
+    }
+
+
+    /**
+     * Creates an optimizer.
+     *
+     * @param keepIds The ids of the nodes which must be kept.
+     */
+    public SvgOptimizer(Collection<String> keepIds) {
+        this.keepIds = Collections.unmodifiableSet(new TreeSet<>(keepIds));
+    }
+
+
+    /**
+     * @return The ids of the nodes which are kept by this optimizer.
+     */
+    public Set<String> getKeepIds() {
+        return keepIds;
+    }
+
+
+    /**
+     * @return A description of this optimizer's configuration, which is
+     *         used to distinguish cached documents.
+     */
+    String getOptionsKey() {
+        return "keep" + keepIds;
+    }
+
+
+    /**
+     * Optimizes the nodes below a root node. The root node itself is
+     * not removed.
+     *
+     * @param root The root node of a converted SVG document.
+     * @return The number of nodes which have been removed.
+     */
+    public int optimize(Group root) {
+        return optimizeChildren(root);
+    }
+
+
+    private int optimizeChildren(Group group) {
+        int removed = 0;
+
+        List<Node> children = new ArrayList<>(group.getChildren());
+        group.getChildren().clear();
+
+        List<Node> result = new ArrayList<>(children.size());
+        for (Node child : children) {
+            if (child instanceof Group) {
+                Group childGroup = (Group) child;
+                removed += optimizeChildren(childGroup);
+
+                if (!isKept(childGroup) && isPlain(childGroup)) {
+                    List<Node> grandChildren = new ArrayList<>(childGroup.getChildren());
+                    List<Transform> transforms = new ArrayList<>(childGroup.getTransforms());
+
+                    if (grandChildren.isEmpty() || transforms.isEmpty()) {
+                        childGroup.getChildren().clear();
+                        result.addAll(grandChildren);
+                        removed++;
+                        continue;
+                    }
+
+                    if (grandChildren.size() == 1) {
+                        childGroup.getChildren().clear();
+                        childGroup.getTransforms().clear();
+                        Node grandChild = grandChildren.get(0);
+                        grandChild.getTransforms().addAll(0, transforms);
+                        result.add(grandChild);
+                        removed++;
+                        continue;
+                    }
+                }
+            }
+
+            result.add(child);
+        }
+
+        removed += mergePaths(result);
+        group.getChildren().setAll(result);
+        return removed;
+    }
+
+
+    /**
+     * Merges runs of adjacent SVGPath nodes which can be drawn as one path.
+     *
+     * @param nodes The list of sibling nodes, which is modified in place.
+     * @return The number of nodes which have been removed.
+     */
+    private int mergePaths(List<Node> nodes) {
+        int removed = 0;
+
+        List<Node> result = new ArrayList<>(nodes.size());
+        SVGPath runHead = null;
+        StringBuilder runContent = null;
+        List<Bounds> runBounds = null;
+        int runLength = 0;
+
+        for (Node node : nodes) {
+            if (runHead != null && isMergeable(node)) {
+                SVGPath path = (SVGPath) node;
+                if (!isKept(path) && isSameStyle(runHead, path)) {
+                    Bounds bounds = null;
+                    boolean merge = isStrokeOnly(path);
+                    if (!merge) {
+                        bounds = getBounds(path);
+                        merge = bounds != null && !intersectsAny(runBounds, bounds);
+                    }
+
+                    if (merge) {
+                        runContent.append(' ').append(toAbsoluteStart(path.getContent()));
+                        if (bounds != null) {
+                            runBounds.add(bounds);
+                        }
+                        runLength++;
+                        removed++;
+                        continue;
+                    }
+                }
+            }
+
+            // the node can not be merged with the current run - start a new one
+            if (runLength > 1) {
+                runHead.setContent(runContent.toString());
+            }
+            runHead = null;
+            runLength = 0;
+
+            result.add(node);
+            if (isMergeable(node) && !isKept(node)) {
+                SVGPath path = (SVGPath) node;
+                Bounds bounds = isStrokeOnly(path) ? null : getBounds(path);
+                if (bounds != null || isStrokeOnly(path)) {
+                    runHead = path;
+                    runContent = new StringBuilder(path.getContent());
+                    runBounds = new ArrayList<>();
+                    runLength = 1;
+                    if (bounds != null) {
+                        runBounds.add(bounds);
+                    }
+                }
+            }
+        }
+
+        if (runLength > 1) {
+            runHead.setContent(runContent.toString());
+        }
+
+        nodes.clear();
+        nodes.addAll(result);
+        return removed;
+    }
+
+
+    private boolean isKept(Node node) {
+        return node.getId() != null && keepIds.contains(node.getId());
+    }
+
+
+    // segment paths keep their own segments and are never merged
+    private static boolean isMergeable(Node node) {
+        return node instanceof SVGPath && !(node instanceof SvgSegmentPath);
+    }
+
+
+    /**
+     * @return <code>true</code> if the group has no other properties than its
+     *         children and its transformations.
+     */
+    private static boolean isPlain(Group group) {
+        return group.getOpacity() == 1.0
+            && group.getEffect() == null
+            && group.getClip() == null
+            && group.getBlendMode() == null
+            && group.isVisible()
+            && group.getStyleClass().isEmpty()
+            && (group.getStyle() == null || group.getStyle().isEmpty());
+    }
+
+
+    private static boolean isSameStyle(SVGPath path1, SVGPath path2) {
+        return path1.getFillRule() == path2.getFillRule()
+            && isSameShapeStyle(path1, path2)
+            && isSameTransforms(path1.getTransforms(), path2.getTransforms());
+    }
+
+
+    private static boolean isSameShapeStyle(Shape shape1, Shape shape2) {
+        return Objects.equals(shape1.getFill(), shape2.getFill())
+            && Objects.equals(shape1.getStroke(), shape2.getStroke())
+            && shape1.getStrokeWidth() == shape2.getStrokeWidth()
+            && shape1.getStrokeType() == shape2.getStrokeType()
+            && shape1.getStrokeLineCap() == shape2.getStrokeLineCap()
+            && shape1.getStrokeLineJoin() == shape2.getStrokeLineJoin()
+            && shape1.getStrokeMiterLimit() == shape2.getStrokeMiterLimit()
+            && shape1.getStrokeDashOffset() == shape2.getStrokeDashOffset()
+            && shape1.getStrokeDashArray().equals(shape2.getStrokeDashArray())
+            && shape1.isSmooth() == shape2.isSmooth()
+            && shape1.getOpacity() == 1.0 && shape2.getOpacity() == 1.0
+            && shape1.getEffect() == null && shape2.getEffect() == null
+            && shape1.getClip() == null && shape2.getClip() == null
+            && shape1.getBlendMode() == null && shape2.getBlendMode() == null
+            && shape1.isVisible() && shape2.isVisible()
+            && shape1.getStyleClass().equals(shape2.getStyleClass())
+            && Objects.equals(shape1.getStyle(), shape2.getStyle());
+    }
+
+
+    private static boolean isSameTransforms(List<Transform> transforms1,
+                                            List<Transform> transforms2) {
+        if (transforms1.size() != transforms2.size()) {
+            return false;
+        }
+        for (int i = 0;  i < transforms1.size();  i++) {
+            Transform t1 = transforms1.get(i);
+            Transform t2 = transforms2.get(i);
+            if (t1.getMxx() != t2.getMxx() || t1.getMxy() != t2.getMxy()
+                || t1.getMyx() != t2.getMyx() || t1.getMyy() != t2.getMyy()
+                || t1.getTx() != t2.getTx() || t1.getTy() != t2.getTy()
+                || !t1.isType2D() || !t2.isType2D()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Opaque strokes of separate paths look the same when they are drawn as
+     * one path, regardless of whether the paths overlap.
+     */
+    private static boolean isStrokeOnly(SVGPath path) {
+        Paint stroke = path.getStroke();
+        return path.getFill() == null
+            && stroke instanceof Color && ((Color) stroke).isOpaque();
+    }
+
+
+    /**
+     * @return The bounds of the path including its stroke, in local coordinates,
+     *         or <code>null</code> if the path data can not be parsed.
+     */
+    private static Bounds getBounds(SVGPath path) {
+        Rectangle2D geometry;
+        try {
+            geometry = AWTPathProducer.createShape(new StringReader(path.getContent()),
+                                                   Path2D.WIND_NON_ZERO).getBounds2D();
+        } catch (ParseException | IOException e) {
+            return null;
+        }
+
+        double margin = 0;
+        if (path.getStroke() != null) {
+            margin = path.getStrokeWidth() / 2;
+            if (path.getStrokeLineJoin() == StrokeLineJoin.MITER) {
+                margin *= Math.max(path.getStrokeMiterLimit(), 1);
+            }
+        }
+        return new BoundingBox(geometry.getMinX() - margin, geometry.getMinY() - margin,
+                               geometry.getWidth() + 2 * margin,
+                               geometry.getHeight() + 2 * margin);
+    }
+
+
+    private static boolean intersectsAny(List<Bounds> boundsList, Bounds bounds) {
+        for (Bounds other : boundsList) {
+            if (other.intersects(bounds)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Path data which starts with a relative moveto refers to the origin,
+     * but it would refer to the end of the previous path after appending
+     * it to other path data. Converts the initial moveto to an absolute one.
+     */
+    private static String toAbsoluteStart(String content) {
+        Matcher matcher = RELATIVE_MOVETO.matcher(content);
+        if (!matcher.lookingAt()) {
+            return content;
+        }
+
+        String rest = content.substring(matcher.end());
+        StringBuilder result = new StringBuilder(content.length() + 4);
+        result.append('M').append(matcher.group(1)).append(',').append(matcher.group(2));
+
+        // subsequent coordinate pairs of a relative moveto are relative linetos
+        if (!rest.isEmpty() && !Character.isLetter(rest.charAt(0))) {
+            result.append(" l");
+        }
+        return result.append(' ').append(rest).toString();
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.bridge.UserAgent;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.dom.util.SAXIOException;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.XMLReader;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * A pool of the parser infrastructure which is required to load SVG
+ * documents through Batik - the SVG document factory, the underlying XML
+ * reader and the user agent.
+ * Creating these objects is expensive compared to parsing a small document,
+ * so an SvgParserPool keeps the sets which are not in use and lends them to
+ * the next document which is loaded, on any thread. Each set is used by
+ * one document at a time. A pool can be shared by several {@link SvgLoader}s.
+ */
+public class SvgParserPool {
+
+    // the parser setups which are currently not in use
+    private final BlockingQueue<Setup> setups;
+
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong reusedCount = new AtomicLong();
+
+    /**
+     * Creates a new, empty SvgParserPool which keeps up to one parser setup
+     * per available processor.
+     */
+    public SvgParserPool() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+
+    /**
+     * Creates a new, empty SvgParserPool.
+     *
+     * @param capacity The maximum number of unused parser setups which are
+     *                 kept. Setups which are returned to a full pool are
+     *                 discarded.
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    public SvgParserPool(int capacity) {
+        setups = new ArrayBlockingQueue<>(capacity);
+    }
+
+
+    private static SAXParserFactory createSaxFactory() {
+        SAXParserFactory result = SAXParserFactory.newInstance();
+        result.setNamespaceAware(true);
+        result.setValidating(false);
+        return result;
+    }
+
+
+    /**
+     * Borrows a parser setup from the pool. The setup must be returned with
+     * {@link #release(Setup)} when the document has been loaded.
+     *
+     * @return An unused parser setup, or a new one if the pool is empty.
+     */
+    Setup acquire() {
+        Setup result = setups.poll();
+        if (result == null) {
+            createdCount.incrementAndGet();
+            return new Setup();
+        }
+        reusedCount.incrementAndGet();
+        return result;
+    }
+
+
+    /**
+     * Returns a parser setup to the pool.
+     *
+     * @param setup The setup which has been borrowed with {@link #acquire()}.
+     */
+    void release(Setup setup) {
+        setups.offer(setup);
+    }
+
+
+    /**
+     * @return The number of parser setups which have been created, which is
+     *         at least the largest number of documents which were loaded
+     *         through this pool at the same time.
+     */
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+
+    /**
+     * @return The number of documents which have been loaded with an
+     *         already existing parser setup, which is the number of parser
+     *         setups which did not need to be created.
+     */
+    public long getReusedCount() {
+        return reusedCount.get();
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format("SvgParserPool[created=%d, reused=%d]",
+                             getCreatedCount(), getReusedCount());
+    }
+
+
+    /**
+     * The parser infrastructure for loading one document at a time.
+     */
+    static final class Setup {
+        final SAXSVGDocumentFactory factory;
+        final UserAgent userAgent = new UserAgentAdapter();
+
+        Setup() {
+            String parser = XMLResourceDescriptor.getXMLParserClassName();
+            ReusingDocumentFactory documentFactory = new ReusingDocumentFactory(parser);
+            documentFactory.getReader();
+            factory = documentFactory;
+        }
+    }
+
+
+    /**
+     * An SVG document factory which creates its XML reader only once and
+     * reuses it for all subsequent documents, instead of creating a new
+     * reader for each document.
+     */
+    private static final class ReusingDocumentFactory extends SAXSVGDocumentFactory {
+        private XMLReader reader = null;
+
+        ReusingDocumentFactory(String parser) {
+            super(parser);
+        }
+
+        XMLReader getReader() {
+            if (reader == null) {
+                try {
+                    reader = createSaxFactory().newSAXParser().getXMLReader();
+
+                    reader.setFeature("http://xml.org/sax/features/namespaces", true);
+                    reader.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+                    reader.setFeature("http://xml.org/sax/features/validation", isValidating);
+                    reader.setFeature("http://xml.org/sax/features/external-general-entities",
+                                      false);
+                    reader.setFeature("http://xml.org/sax/features/external-parameter-entities",
+                                      false);
+                    try {
+                        reader.setFeature(
+                            "http://apache.org/xml/features/nonvalidating/load-external-dtd",
+                            false);
+                    } catch (SAXNotRecognizedException | SAXNotSupportedException e) {
+                        // not a Xerces based parser - external DTDs are not suppressed
+                    }
+                } catch (SAXException | ParserConfigurationException e) {
+                    throw new IllegalStateException("Could not create XML reader", e);
+                }
+            }
+            return reader;
+        }
+
+        @Override
+        protected Document createDocument(InputSource is) throws IOException {
+            boolean success = false;
+            try {
+                parser = getReader();
+                parser.setContentHandler(this);
+                parser.setDTDHandler(this);
+                parser.setEntityResolver(this);
+                parser.setErrorHandler((errorHandler == null) ? this : errorHandler);
+                parser.setProperty("http://xml.org/sax/properties/lexical-handler", this);
+                parser.parse(is);
+                success = true;
+            } catch (SAXException e) {
+                Exception ex = e.getException();
+                if (ex instanceof InterruptedIOException) {
+                    throw (InterruptedIOException) ex;
+                }
+                throw new SAXIOException(e);
+            } finally {
+                parser = null;
+
+                // the reader might be in an undefined state after an error
+                if (!success) {
+                    reader = null;
+                }
+            }
+
+            currentNode = null;
+            Document result = document;
+            document = null;
+            doctype = null;
+            locator = null;
+            return result;
+        }
+    }
+}
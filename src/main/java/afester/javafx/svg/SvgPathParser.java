@@ -0,0 +1,664 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.scene.transform.Transform;
+
+/**
+ * Parses SVG path data (the "d" attribute of a path element) directly from
+ * the attribute value, without creating an object per segment.
+ * <p>
+ * All segments are reported to a {@link Sink} with absolute coordinates:
+ * horizontal and vertical lines are reported as lines, smooth curves with
+ * their reflected control point, and elliptical arcs as one to four cubic
+ * curves. As required by the SVG specification, the segments up to the
+ * first error in the path data are reported.
+ */
+final class SvgPathParser {
+
+    /**
+     * Receives the segments of a path, in absolute coordinates.
+     */
+    interface Sink {
+        void moveTo(double x, double y);
+
+        void lineTo(double x, double y);
+
+        void quadTo(double x1, double y1, double x, double y);
+
+        void cubicTo(double x1, double y1, double x2, double y2, double x, double y);
+
+        void closePath();
+    }
+
+
+    // the powers of ten which can be represented exactly as a double
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // the number of significant digits which fit into the mantissa
+    private static final int MAXIMUM_DIGITS = 18;
+
+    private final String text;
+    private final int length;
+    private int pos;
+    private boolean failed;
+
+    // the current point, the start of the current subpath and the last control point
+    private double currentX;
+    private double currentY;
+    private double startX;
+    private double startY;
+    private double controlX;
+    private double controlY;
+
+    private SvgPathParser(String text) {
+        this.text = text;
+        this.length = text.length();
+    }
+
+
+    /**
+     * Parses path data and reports its segments to a sink.
+     *
+     * @param data The path data, like "M 10,10 h 20 a 5,5 0 0 1 5,5 z".
+     * @param sink The sink which receives the segments.
+     * @return <code>true</code> if the complete path data has been parsed,
+     *         <code>false</code> if it contains an error. In the latter case,
+     *         the segments before the error have been reported.
+     */
+    static boolean parse(String data, Sink sink) {
+        if (data == null) {
+            return true;
+        }
+        return new SvgPathParser(data).parse(sink);
+    }
+
+
+    private boolean parse(Sink sink) {
+        char command = 0;
+        char previous = 0;
+
+        skipWhitespace();
+        while (pos < length) {
+            char c = text.charAt(pos);
+            if (isCommand(c)) {
+                if (command == 0 && c != 'M' && c != 'm') {
+                    return false;
+                }
+                command = c;
+                pos++;
+            } else if (command == 0 || command == 'Z' || command == 'z') {
+                return false;
+            } else if (command == 'M') {
+                // additional coordinate pairs of a moveto are implicit linetos
+                command = 'L';
+            } else if (command == 'm') {
+                command = 'l';
+            }
+
+            if (!parseSegment(command, previous, sink)) {
+                return false;
+            }
+            previous = Character.toUpperCase(command);
+            skipSeparators();
+        }
+        return true;
+    }
+
+
+    private boolean parseSegment(char command, char previous, Sink sink) {
+        boolean relative = Character.isLowerCase(command);
+        double offsetX = relative ? currentX : 0;
+        double offsetY = relative ? currentY : 0;
+
+        switch (Character.toUpperCase(command)) {
+            case 'Z' :
+                sink.closePath();
+                setCurrent(startX, startY);
+                return true;
+
+            case 'M' : {
+                double x = offsetX + readNumber();
+                double y = offsetY + readNumber();
+                if (failed) {
+                    return false;
+                }
+                sink.moveTo(x, y);
+                setCurrent(x, y);
+                startX = x;
+                startY = y;
+                return true;
+            }
+
+            case 'L' : {
+                double x = offsetX + readNumber();
+                double y = offsetY + readNumber();
+                if (failed) {
+                    return false;
+                }
+                sink.lineTo(x, y);
+                setCurrent(x, y);
+                return true;
+            }
+
+            case 'H' : {
+                double x = offsetX + readNumber();
+                if (failed) {
+                    return false;
+                }
+                sink.lineTo(x, currentY);
+                setCurrent(x, currentY);
+                return true;
+            }
+
+            case 'V' : {
+                double y = offsetY + readNumber();
+                if (failed) {
+                    return false;
+                }
+                sink.lineTo(currentX, y);
+                setCurrent(currentX, y);
+                return true;
+            }
+
+            case 'C' : {
+                double x1 = offsetX + readNumber();
+                double y1 = offsetY + readNumber();
+                double x2 = offsetX + readNumber();
+                double y2 = offsetY + readNumber();
+                double x = offsetX + readNumber();
+                double y = offsetY + readNumber();
+                if (failed) {
+                    return false;
+                }
+                sink.cubicTo(x1, y1, x2, y2, x, y);
+                setCurrent(x, y);
+                setControl(x2, y2);
+                return true;
+            }
+
+            case 'S' : {
+                boolean smooth = previous == 'C' || previous == 'S';
+                double x1 = smooth ? 2 * currentX - controlX : currentX;
+                double y1 = smooth ? 2 * currentY - controlY : currentY;
+                double x2 = offsetX + readNumber();
+                double y2 = offsetY + readNumber();
+                double x = offsetX + readNumber();
+                double y = offsetY + readNumber();
+                if (failed) {
+                    return false;
+                }
+                sink.cubicTo(x1, y1, x2, y2, x, y);
+                setCurrent(x, y);
+                setControl(x2, y2);
+                return true;
+            }
+
+            case 'Q' : {
+                double x1 = offsetX + readNumber();
+                double y1 = offsetY + readNumber();
+                double x = offsetX + readNumber();
+                double y = offsetY + readNumber();
+                if (failed) {
+                    return false;
+                }
+                sink.quadTo(x1, y1, x, y);
+                setCurrent(x, y);
+                setControl(x1, y1);
+                return true;
+            }
+
+            case 'T' : {
+                boolean smooth = previous == 'Q' || previous == 'T';
+                double x1 = smooth ? 2 * currentX - controlX : currentX;
+                double y1 = smooth ? 2 * currentY - controlY : currentY;
+                double x = offsetX + readNumber();
+                double y = offsetY + readNumber();
+                if (failed) {
+                    return false;
+                }
+                sink.quadTo(x1, y1, x, y);
+                setCurrent(x, y);
+                setControl(x1, y1);
+                return true;
+            }
+
+            case 'A' : {
+                double rx = readNumber();
+                double ry = readNumber();
+                double rotation = readNumber();
+                boolean largeArc = readFlag();
+                boolean sweep = readFlag();
+                double x = offsetX + readNumber();
+                double y = offsetY + readNumber();
+                if (failed) {
+                    return false;
+                }
+                arcTo(rx, ry, rotation, largeArc, sweep, x, y, sink);
+                setCurrent(x, y);
+                return true;
+            }
+
+            default :
+                return false;
+        }
+    }
+
+
+    private void setCurrent(double x, double y) {
+        currentX = x;
+        currentY = y;
+        controlX = x;
+        controlY = y;
+    }
+
+
+    private void setControl(double x, double y) {
+        controlX = x;
+        controlY = y;
+    }
+
+
+    /**
+     * Converts an elliptical arc from the current point into cubic curves,
+     * as described in the implementation notes of the SVG specification.
+     */
+    private void arcTo(double rx, double ry, double rotation, boolean largeArc, boolean sweep,
+                       double x, double y, Sink sink) {
+        double x0 = currentX;
+        double y0 = currentY;
+        if (x0 == x && y0 == y) {
+            return;
+        }
+        rx = Math.abs(rx);
+        ry = Math.abs(ry);
+        if (rx == 0 || ry == 0) {
+            sink.lineTo(x, y);
+            return;
+        }
+
+        double phi = Math.toRadians(rotation % 360);
+        double cos = Math.cos(phi);
+        double sin = Math.sin(phi);
+
+        // the start point in the coordinate system of the ellipse, relative to the midpoint
+        double dx = (x0 - x) / 2;
+        double dy = (y0 - y) / 2;
+        double x1 = cos * dx + sin * dy;
+        double y1 = -sin * dx + cos * dy;
+
+        // scale up radii which are too small to reach the end point
+        double lambda = (x1 * x1) / (rx * rx) + (y1 * y1) / (ry * ry);
+        if (lambda > 1) {
+            rx *= Math.sqrt(lambda);
+            ry *= Math.sqrt(lambda);
+        }
+
+        double rx2 = rx * rx;
+        double ry2 = ry * ry;
+        double numerator = rx2 * ry2 - rx2 * y1 * y1 - ry2 * x1 * x1;
+        double denominator = rx2 * y1 * y1 + ry2 * x1 * x1;
+        double factor = Math.sqrt(Math.max(0, numerator / denominator));
+        if (largeArc == sweep) {
+            factor = -factor;
+        }
+        double centerX1 = factor * rx * y1 / ry;
+        double centerY1 = -factor * ry * x1 / rx;
+        double centerX = cos * centerX1 - sin * centerY1 + (x0 + x) / 2;
+        double centerY = sin * centerX1 + cos * centerY1 + (y0 + y) / 2;
+
+        double ux = (x1 - centerX1) / rx;
+        double uy = (y1 - centerY1) / ry;
+        double vx = (-x1 - centerX1) / rx;
+        double vy = (-y1 - centerY1) / ry;
+        double startAngle = Math.atan2(uy, ux);
+        double sweepAngle = Math.atan2(ux * vy - uy * vx, ux * vx + uy * vy);
+        if (!sweep && sweepAngle > 0) {
+            sweepAngle -= 2 * Math.PI;
+        } else if (sweep && sweepAngle < 0) {
+            sweepAngle += 2 * Math.PI;
+        }
+
+        // each cubic curve approximates at most a quarter of the ellipse
+        int segments = Math.max(1, (int) Math.ceil(Math.abs(sweepAngle) / (Math.PI / 2) - 1e-7));
+        double step = sweepAngle / segments;
+        double k = 4.0 / 3.0 * Math.tan(step / 4);
+
+        double angle = startAngle;
+        double cos1 = Math.cos(angle);
+        double sin1 = Math.sin(angle);
+        for (int i = 1;  i <= segments;  i++) {
+            angle += step;
+            double cos2 = Math.cos(angle);
+            double sin2 = Math.sin(angle);
+
+            double ex1 = rx * (cos1 - k * sin1);
+            double ey1 = ry * (sin1 + k * cos1);
+            double ex2 = rx * (cos2 + k * sin2);
+            double ey2 = ry * (sin2 - k * cos2);
+            double endX = i == segments ? x : centerX + cos * rx * cos2 - sin * ry * sin2;
+            double endY = i == segments ? y : centerY + sin * rx * cos2 + cos * ry * sin2;
+            sink.cubicTo(centerX + cos * ex1 - sin * ey1, centerY + sin * ex1 + cos * ey1,
+                         centerX + cos * ex2 - sin * ey2, centerY + sin * ex2 + cos * ey2,
+                         endX, endY);
+
+            cos1 = cos2;
+            sin1 = sin2;
+        }
+    }
+
+
+    private static boolean isCommand(char c) {
+        switch (c) {
+            case 'M' : case 'm' : case 'Z' : case 'z' : case 'L' : case 'l' :
+            case 'H' : case 'h' : case 'V' : case 'v' : case 'C' : case 'c' :
+            case 'S' : case 's' : case 'Q' : case 'q' : case 'T' : case 't' :
+            case 'A' : case 'a' :
+                return true;
+
+            default :
+                return false;
+        }
+    }
+
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+
+    private void skipWhitespace() {
+        while (pos < length && isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+
+    private void skipSeparators() {
+        skipWhitespace();
+        if (pos < length && text.charAt(pos) == ',') {
+            pos++;
+            skipWhitespace();
+        }
+    }
+
+
+    private boolean readFlag() {
+        skipSeparators();
+        if (pos < length && (text.charAt(pos) == '0' || text.charAt(pos) == '1')) {
+            return text.charAt(pos++) == '1';
+        }
+        failed = true;
+        return false;
+    }
+
+
+    /**
+     * Reads a number, which may be preceded by separators. Numbers with up
+     * to 18 significant digits and a small exponent are converted exactly
+     * without creating a string; all other numbers fall back to
+     * <code>Double.parseDouble()</code>.
+     */
+    private double readNumber() {
+        skipSeparators();
+        int start = pos;
+
+        boolean negative = false;
+        if (pos < length && (text.charAt(pos) == '+' || text.charAt(pos) == '-')) {
+            negative = text.charAt(pos) == '-';
+            pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean exact = true;
+        boolean hasDigits = false;
+        while (pos < length && isDigit(text.charAt(pos))) {
+            if (digits < MAXIMUM_DIGITS) {
+                mantissa = mantissa * 10 + (text.charAt(pos) - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                exponent++;
+                exact &= text.charAt(pos) == '0';
+            }
+            hasDigits = true;
+            pos++;
+        }
+        if (pos < length && text.charAt(pos) == '.') {
+            pos++;
+            while (pos < length && isDigit(text.charAt(pos))) {
+                if (digits < MAXIMUM_DIGITS) {
+                    mantissa = mantissa * 10 + (text.charAt(pos) - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    exponent--;
+                } else {
+                    exact &= text.charAt(pos) == '0';
+                }
+                hasDigits = true;
+                pos++;
+            }
+        }
+        if (!hasDigits) {
+            pos = start;
+            failed = true;
+            return 0;
+        }
+
+        if (pos < length && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')) {
+            int exponentStart = pos;
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < length && (text.charAt(pos) == '+' || text.charAt(pos) == '-')) {
+                negativeExponent = text.charAt(pos) == '-';
+                pos++;
+            }
+            if (pos < length && isDigit(text.charAt(pos))) {
+                int value = 0;
+                while (pos < length && isDigit(text.charAt(pos))) {
+                    value = Math.min(value * 10 + (text.charAt(pos) - '0'), 100000);
+                    pos++;
+                }
+                exponent += negativeExponent ? -value : value;
+            } else {
+                // not an exponent, but the start of the next command
+                pos = exponentStart;
+            }
+        }
+
+        double result;
+        if (exact && mantissa < (1L << 53) && Math.abs(exponent) < POWERS_OF_TEN.length) {
+            result = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent]
+                                  : mantissa * POWERS_OF_TEN[exponent];
+        } else {
+            result = Double.parseDouble(text.substring(start, pos));
+        }
+        return negative ? -result : result;
+    }
+
+
+    /**
+     * A sink which emits a separate LINE or CUBIC_CURVE node for each
+     * segment of a path.
+     */
+    static final class SegmentShapes implements Sink {
+        private final SvgNodeSink result;
+        private final SvgStyle style;
+
+        private double currentX;
+        private double currentY;
+        private double startX;
+        private double startY;
+
+        /**
+         * @param result The node sink to which the shapes are added.
+         * @param style The style of the path, which is applied to each shape.
+         */
+        SegmentShapes(SvgNodeSink result, SvgStyle style) {
+            this.result = result;
+            this.style = style;
+        }
+
+
+        private void add(SvgSceneNode.Kind kind, double[] geometry, double x, double y) {
+            result.addShape(kind, null, null, geometry, null, style);
+            currentX = x;
+            currentY = y;
+        }
+
+
+        @Override
+        public void moveTo(double x, double y) {
+            currentX = x;
+            currentY = y;
+            startX = x;
+            startY = y;
+        }
+
+
+        @Override
+        public void lineTo(double x, double y) {
+            add(SvgSceneNode.Kind.LINE, new double[] {currentX, currentY, x, y}, x, y);
+        }
+
+
+        @Override
+        public void quadTo(double x1, double y1, double x, double y) {
+            // a quadratic curve is an exact cubic curve, which SvgScene can represent
+            add(SvgSceneNode.Kind.CUBIC_CURVE,
+                new double[] {currentX, currentY,
+                              currentX + 2.0 / 3.0 * (x1 - currentX),
+                              currentY + 2.0 / 3.0 * (y1 - currentY),
+                              x + 2.0 / 3.0 * (x1 - x), y + 2.0 / 3.0 * (y1 - y),
+                              x, y}, x, y);
+        }
+
+
+        @Override
+        public void cubicTo(double x1, double y1, double x2, double y2, double x, double y) {
+            add(SvgSceneNode.Kind.CUBIC_CURVE,
+                new double[] {currentX, currentY, x1, y1, x2, y2, x, y}, x, y);
+        }
+
+
+        @Override
+        public void closePath() {
+            if (currentX != startX || currentY != startY) {
+                lineTo(startX, startY);
+            }
+        }
+    }
+
+
+    /**
+     * Writes parsed path data with absolute coordinates, after applying a
+     * transformation.
+     */
+    static final class TransformingWriter implements Sink {
+        private final StringBuilder result = new StringBuilder();
+        private final Transform transform;
+        private final double[] points = new double[6];
+
+        /**
+         * @param transform The transformation to apply to all points.
+         */
+        TransformingWriter(Transform transform) {
+            this.transform = transform;
+        }
+
+
+        /**
+         * @return The written path data.
+         */
+        String getPathData() {
+            return result.toString().trim();
+        }
+
+
+        private void append(char command, int count) {
+            transform.transform2DPoints(points, 0, points, 0, count / 2);
+            result.append(command);
+            for (int i = 0;  i < count;  i++) {
+                if (i > 0) {
+                    result.append(i % 2 == 0 ? ' ' : ',');
+                }
+                String value = Double.toString(points[i]);
+                if (value.endsWith(".0")) {
+                    value = value.substring(0, value.length() - 2);
+                }
+                result.append(value);
+            }
+            result.append(' ');
+        }
+
+
+        @Override
+        public void moveTo(double x, double y) {
+            points[0] = x;
+            points[1] = y;
+            append('M', 2);
+        }
+
+
+        @Override
+        public void lineTo(double x, double y) {
+            points[0] = x;
+            points[1] = y;
+            append('L', 2);
+        }
+
+
+        @Override
+        public void quadTo(double x1, double y1, double x, double y) {
+            points[0] = x1;
+            points[1] = y1;
+            points[2] = x;
+            points[3] = y;
+            append('Q', 4);
+        }
+
+
+        @Override
+        public void cubicTo(double x1, double y1, double x2, double y2, double x, double y) {
+            points[0] = x1;
+            points[1] = y1;
+            points[2] = x2;
+            points[3] = y2;
+            points[4] = x;
+            points[5] = y;
+            append('C', 6);
+        }
+
+
+        @Override
+        public void closePath() {
+            append('Z', 0);
+        }
+    }
+}
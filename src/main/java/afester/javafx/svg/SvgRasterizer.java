@@ -0,0 +1,226 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.anim.dom.SVGOMSVGElement;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.DocumentLoader;
+import org.apache.batik.bridge.GVTBuilder;
+import org.apache.batik.bridge.UserAgent;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.gvt.CanvasGraphicsNode;
+import org.apache.batik.gvt.CompositeGraphicsNode;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.w3c.dom.svg.SVGRect;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Renders an SVG document into raster images, using the Batik GVT
+ * (graphics vector tree) and Java2D. This does not require the JavaFX
+ * toolkit, so that images can be rendered on any thread.
+ * <p>
+ * The images are rendered in the user coordinate system of the document,
+ * which is the same coordinate system as the one of the JavaFX nodes
+ * created by the {@link SvgLoader}. A rasterizer is not thread safe -
+ * each thread which renders a document concurrently needs its own
+ * rasterizer.
+ */
+final class SvgRasterizer {
+
+    private final GraphicsNode root;
+    private final Bounds documentBounds;
+
+    private SvgRasterizer(GraphicsNode root, Bounds documentBounds) {
+        this.root = root;
+        this.documentBounds = documentBounds;
+    }
+
+
+    /**
+     * Parses an SVG document and builds its graphics vector tree.
+     *
+     * @param parserPool The pool which provides the parser infrastructure,
+     *                   or <code>null</code> to create a new parser.
+     * @param svgFile The stream which provides the SVG document.
+     * @return The rasterizer for the document.
+     * @throws IOException if the document can not be read or parsed.
+     */
+    static SvgRasterizer create(SvgParserPool parserPool, InputStream svgFile) throws IOException {
+        SvgParserPool.Setup setup = null;
+        SAXSVGDocumentFactory factory;
+        UserAgent userAgent;
+        if (parserPool != null) {
+            setup = parserPool.acquire();
+            factory = setup.factory;
+            userAgent = setup.userAgent;
+        } else {
+            factory = new SAXSVGDocumentFactory(XMLResourceDescriptor.getXMLParserClassName());
+            userAgent = new UserAgentAdapter();
+        }
+
+        SVGOMDocument document;
+        GraphicsNode root;
+        try {
+            document = (SVGOMDocument) factory.createDocument("", svgFile);
+
+            BridgeContext bridgeContext = new BridgeContext(userAgent,
+                                                            new DocumentLoader(userAgent));
+            root = new GVTBuilder().build(bridgeContext, document);
+        } finally {
+            if (setup != null) {
+                parserPool.release(setup);
+            }
+        }
+
+        // Render in user space of the document - the view box is mapped to
+        // the requested image area by the rasterizer itself
+        if (root instanceof CompositeGraphicsNode) {
+            for (Object child : ((CompositeGraphicsNode) root).getChildren()) {
+                if (child instanceof CanvasGraphicsNode) {
+                    ((CanvasGraphicsNode) child).setViewingTransform(new AffineTransform());
+                }
+            }
+        }
+
+        return new SvgRasterizer(root, getDocumentBounds(document, root));
+    }
+
+
+    private static Bounds getDocumentBounds(SVGOMDocument document, GraphicsNode root) {
+        SVGOMSVGElement svgElement = (SVGOMSVGElement) document.getRootElement();
+
+        SVGRect viewBox = svgElement.getViewBox().getBaseVal();
+        if (viewBox != null && viewBox.getWidth() > 0 && viewBox.getHeight() > 0) {
+            return new BoundingBox(viewBox.getX(), viewBox.getY(),
+                                   viewBox.getWidth(), viewBox.getHeight());
+        }
+
+        if (svgElement.hasAttribute("width") && svgElement.hasAttribute("height")) {
+            float width = svgElement.getWidth().getBaseVal().getValue();
+            float height = svgElement.getHeight().getBaseVal().getValue();
+            if (width > 0 && height > 0) {
+                return new BoundingBox(0, 0, width, height);
+            }
+        }
+
+        Rectangle2D bounds = root.getBounds();
+        if (bounds == null) {
+            return new BoundingBox(0, 0, 0, 0);
+        }
+        return new BoundingBox(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+    }
+
+
+    /**
+     * @return The area of the document in user coordinates - its view box,
+     *         its size or the bounds of its content.
+     */
+    Bounds getDocumentBounds() {
+        return documentBounds;
+    }
+
+
+    /**
+     * Renders an area of the document.
+     *
+     * @param area The area of the document to render, in user coordinates.
+     * @param width The width of the resulting image in pixels.
+     * @param height The height of the resulting image in pixels.
+     * @return The rendered image, with premultiplied alpha.
+     */
+    BufferedImage render(Bounds area, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                               RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+            if (area.getWidth() > 0 && area.getHeight() > 0) {
+                g.scale(width / area.getWidth(), height / area.getHeight());
+                g.translate(-area.getMinX(), -area.getMinY());
+                root.paint(g);
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+
+    /**
+     * Renders the whole document into an image of the given size. The
+     * aspect ratio of the document is kept, and the document is centered
+     * in the image.
+     *
+     * @param width The width of the resulting image in pixels.
+     * @param height The height of the resulting image in pixels.
+     * @return The rendered image, with premultiplied alpha.
+     */
+    BufferedImage renderDocument(int width, int height) {
+        double docWidth = documentBounds.getWidth();
+        double docHeight = documentBounds.getHeight();
+        if (docWidth <= 0 || docHeight <= 0) {
+            return render(documentBounds, width, height);
+        }
+
+        // the area of the document which maps to the image, centered around the document
+        double scale = Math.min(width / docWidth, height / docHeight);
+        double areaWidth = width / scale;
+        double areaHeight = height / scale;
+        Bounds area = new BoundingBox(documentBounds.getMinX() - (areaWidth - docWidth) / 2,
+                                      documentBounds.getMinY() - (areaHeight - docHeight) / 2,
+                                      areaWidth, areaHeight);
+        return render(area, width, height);
+    }
+
+
+    /**
+     * Converts a rendered image into a JavaFX image.
+     *
+     * @param image An image as returned by {@link #render(Bounds, int, int)}.
+     * @return The JavaFX image with the same pixels.
+     */
+    static WritableImage toImage(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        WritableImage result = new WritableImage(width, height);
+        result.getPixelWriter().setPixels(0, 0, width, height,
+                                          PixelFormat.getIntArgbPreInstance(), pixels, 0, width);
+        return result;
+    }
+}
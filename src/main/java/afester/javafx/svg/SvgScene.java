@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.scene.Group;
+
+/**
+ * An immutable, converted SVG document.
+ * An SvgScene describes the JavaFX node tree which represents an SVG
+ * document - the resolved geometry, paints, transformations, texts and ids -
+ * without holding any scene graph nodes. It can therefore be shared between
+ * threads, cached and serialized, and any number of independent JavaFX
+ * node trees can be created from it without parsing the document again.
+ */
+public final class SvgScene {
+    private final SvgSceneNode root;
+    private final int nodeCount;
+
+    /**
+     * Creates a new SvgScene.
+     *
+     * @param root The root node of the scene, which must be a GROUP node.
+     */
+    public SvgScene(SvgSceneNode root) {
+        if (root.getKind() != SvgSceneNode.Kind.GROUP) {
+            throw new IllegalArgumentException("The root node must be a group");
+        }
+        this.root = root;
+        this.nodeCount = root.countNodes();
+    }
+
+
+    /**
+     * Creates a scene which describes a JavaFX node tree, as returned from
+     * {@link SvgLoader#loadSvg(String)}.
+     *
+     * @param group The root of the JavaFX node tree.
+     * @return The scene which describes the given node tree.
+     */
+    public static SvgScene fromGroup(Group group) {
+        return new SvgScene(SvgSceneNode.fromNode(group));
+    }
+
+
+    /**
+     * Creates a new JavaFX node tree from this scene. The returned tree is
+     * independent of all other trees which have been created from the
+     * same scene.
+     *
+     * @return A JavaFX node representing the SVG document.
+     */
+    public Group createGroup() {
+        return (Group) root.createNode();
+    }
+
+
+    /**
+     * @return The root node of the scene.
+     */
+    public SvgSceneNode getRoot() {
+        return root;
+    }
+
+
+    /**
+     * @return The number of JavaFX nodes which are created by {@link #createGroup()}.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.scene.text.Font;
+import javafx.scene.text.FontPosture;
+import javafx.scene.text.FontWeight;
+
+import org.apache.batik.parser.AWTPathProducer;
+import org.apache.batik.parser.ParseException;
+
+import java.awt.GraphicsEnvironment;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Computes the bounds of {@link SvgSceneNode}s from their geometry, without
+ * creating any JavaFX nodes.
+ * <p>
+ * Transformations are passed as arrays of six values in the same order as
+ * in {@link SvgSceneNode#getTransforms()}: mxx, mxy, tx, myx, myy, ty.
+ * Bounds are returned as arrays of four values: min x, min y, max x, max y.
+ * The bounds are conservative - strokes are included with the extent of
+ * their miter joins on each side, and curves with their control points.
+ * Texts are measured with the corresponding AWT font, since JavaFX font
+ * metrics are not available off the JavaFX thread.
+ */
+final class SvgSceneBounds {
+
+    /** The identity transformation. */
+    static final double[] IDENTITY = {1, 0, 0, 0, 1, 0};
+
+    // the miter limit of the shapes which are created from scene nodes -
+    // a miter join extends up to half the stroke width times the limit
+    private static final double MITER_LIMIT = 10;
+
+    private static final FontRenderContext RENDER_CONTEXT =
+            new FontRenderContext(new AffineTransform(), true, true);
+
+    // the generic CSS font families and the corresponding AWT logical fonts
+    private static final Map<String, String> GENERIC_FAMILIES = new HashMap<>();
+    static {
+        GENERIC_FAMILIES.put("serif", java.awt.Font.SERIF);
+        GENERIC_FAMILIES.put("sans-serif", java.awt.Font.SANS_SERIF);
+        GENERIC_FAMILIES.put("monospace", java.awt.Font.MONOSPACED);
+    }
+
+    // the AWT fonts which are used to measure texts
+    private static final Map<SvgSceneFont, java.awt.Font> AWT_FONTS =
+            new ConcurrentHashMap<>();
+
+    private SvgSceneBounds() {
+    }
+
+
+    /**
+     * @param parent The transformation of the parent coordinate system.
+     * @param node A scene node.
+     * @return The transformation from the local coordinate system of the
+     *         node into the root coordinate system of the parent transformation.
+     */
+    static double[] concatenate(double[] parent, SvgSceneNode node) {
+        double[] transforms = node.getTransforms();
+        double[] result = parent;
+        for (int i = 0;  i < transforms.length;  i += 6) {
+            result = concatenate(result, transforms, i);
+        }
+        return result;
+    }
+
+
+    private static double[] concatenate(double[] t, double[] u, int offset) {
+        double mxx = u[offset];
+        double mxy = u[offset + 1];
+        double tx = u[offset + 2];
+        double myx = u[offset + 3];
+        double myy = u[offset + 4];
+        double ty = u[offset + 5];
+        return new double[] {t[0] * mxx + t[1] * myx,
+                             t[0] * mxy + t[1] * myy,
+                             t[0] * tx + t[1] * ty + t[2],
+                             t[3] * mxx + t[4] * myx,
+                             t[3] * mxy + t[4] * myy,
+                             t[3] * tx + t[4] * ty + t[5]};
+    }
+
+
+    /**
+     * @param parent The transformation of the parent coordinate system.
+     * @param node A scene node.
+     * @return The bounds of the node and all its children, in the root
+     *         coordinate system of the parent transformation, or
+     *         <code>null</code> if the node is an empty group.
+     */
+    static double[] compute(double[] parent, SvgSceneNode node) {
+        double[] transform = concatenate(parent, node);
+
+        if (node.getKind() == SvgSceneNode.Kind.GROUP) {
+            double[] result = null;
+            for (SvgSceneNode child : node.getChildren()) {
+                result = union(result, compute(transform, child));
+            }
+            return result;
+        }
+
+        double[] local = getLocalBounds(node);
+        if (node.getStroke() != null) {
+            double margin = node.getStrokeWidth() / 2 * MITER_LIMIT;
+            local[0] -= margin;
+            local[1] -= margin;
+            local[2] += margin;
+            local[3] += margin;
+        }
+        return transform(transform, local);
+    }
+
+
+    private static double[] getLocalBounds(SvgSceneNode node) {
+        double[] g = node.getGeometry();
+
+        switch (node.getKind()) {
+            case RECTANGLE :
+                return new double[] {g[0], g[1], g[0] + g[2], g[1] + g[3]};
+
+            case CIRCLE :
+                return new double[] {g[0] - g[2], g[1] - g[2], g[0] + g[2], g[1] + g[2]};
+
+            case ELLIPSE :
+                return new double[] {g[0] - g[2], g[1] - g[3], g[0] + g[2], g[1] + g[3]};
+
+            case LINE :
+            case CUBIC_CURVE :
+            case POLYGON :
+            case POLYLINE :
+                return getPointBounds(g);
+
+            case PATH :
+            case SEGMENT_PATH :
+                return getPathBounds(node.getContent());
+
+            case TEXT :
+                return getTextBounds(node.getFont(), node.getContent(), g[0], g[1]);
+
+            default :
+                throw new IllegalStateException("Not a shape: " + node.getKind());
+        }
+    }
+
+
+    private static double[] getPointBounds(double[] points) {
+        double[] result = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                           Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int i = 0;  i + 1 < points.length;  i += 2) {
+            result[0] = Math.min(result[0], points[i]);
+            result[1] = Math.min(result[1], points[i + 1]);
+            result[2] = Math.max(result[2], points[i]);
+            result[3] = Math.max(result[3], points[i + 1]);
+        }
+        if (result[0] > result[2]) {
+            return new double[4];
+        }
+        return result;
+    }
+
+
+    /**
+     * @return The union of the logical and the visual bounds of a text, whose
+     *         baseline starts at the given position.
+     */
+    private static double[] getTextBounds(SvgSceneFont font, String text, double x, double y) {
+        if (text == null || text.isEmpty()) {
+            return new double[] {x, y, x, y};
+        }
+
+        if (font == null) {
+            Font defaultFont = Font.getDefault();
+            font = new SvgSceneFont(defaultFont.getFamily(), FontWeight.NORMAL,
+                                    FontPosture.REGULAR, defaultFont.getSize());
+        }
+        TextLayout layout = new TextLayout(text, AWT_FONTS.computeIfAbsent(font,
+                                                   SvgSceneBounds::createAwtFont),
+                                           RENDER_CONTEXT);
+        Rectangle2D bounds = layout.getBounds();
+        return new double[] {x + Math.min(bounds.getMinX(), 0),
+                             y + Math.min(bounds.getMinY(), -layout.getAscent()),
+                             x + Math.max(bounds.getMaxX(), layout.getAdvance()),
+                             y + Math.max(bounds.getMaxY(), layout.getDescent())};
+    }
+
+
+    /**
+     * @return The AWT font for the first family of the font family list which
+     *         is available, or the default AWT font if none is available.
+     */
+    private static java.awt.Font createAwtFont(SvgSceneFont font) {
+        String family = java.awt.Font.DIALOG;
+        if (font.getFamily() != null) {
+            Set<String> available = AvailableFamilies.NAMES;
+            for (String name : font.getFamily().split(",")) {
+                name = name.trim().replace("\"", "").replace("'", "");
+                String lowerName = name.toLowerCase(Locale.ROOT);
+                if (GENERIC_FAMILIES.containsKey(lowerName)) {
+                    family = GENERIC_FAMILIES.get(lowerName);
+                    break;
+                }
+                if (available.contains(lowerName)) {
+                    family = name;
+                    break;
+                }
+            }
+        }
+
+        int style = java.awt.Font.PLAIN;
+        if (font.getWeight().getWeight() >= FontWeight.BOLD.getWeight()) {
+            style |= java.awt.Font.BOLD;
+        }
+        if (font.getPosture() == FontPosture.ITALIC) {
+            style |= java.awt.Font.ITALIC;
+        }
+        return new java.awt.Font(family, style, 1).deriveFont((float) font.getSize());
+    }
+
+
+    /**
+     * The lower case names of the AWT font families, which are only
+     * determined when the first text is measured.
+     */
+    private static final class AvailableFamilies {
+        static final Set<String> NAMES = new HashSet<>();
+        static {
+            for (String name : GraphicsEnvironment.getLocalGraphicsEnvironment()
+                                                  .getAvailableFontFamilyNames()) {
+                NAMES.add(name.toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+
+    private static double[] getPathBounds(String content) {
+        Rectangle2D bounds;
+        try {
+            bounds = AWTPathProducer.createShape(new StringReader(content), Path2D.WIND_NON_ZERO)
+                                    .getBounds2D();
+        } catch (ParseException | IOException e) {
+            // treat the path as visible everywhere
+            return new double[] {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                                 Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        }
+        return new double[] {bounds.getMinX(), bounds.getMinY(),
+                             bounds.getMaxX(), bounds.getMaxY()};
+    }
+
+
+    /**
+     * @param t A transformation.
+     * @param bounds Bounds in the local coordinate system of the transformation.
+     * @return The bounds of the transformed corners of the given bounds.
+     */
+    static double[] transform(double[] t, double[] bounds) {
+        if (Double.isInfinite(bounds[0]) || Double.isInfinite(bounds[2])) {
+            return bounds;
+        }
+
+        double[] result = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                           Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int corner = 0;  corner < 4;  corner++) {
+            double x = (corner & 1) == 0 ? bounds[0] : bounds[2];
+            double y = (corner & 2) == 0 ? bounds[1] : bounds[3];
+            double tx = t[0] * x + t[1] * y + t[2];
+            double ty = t[3] * x + t[4] * y + t[5];
+            result[0] = Math.min(result[0], tx);
+            result[1] = Math.min(result[1], ty);
+            result[2] = Math.max(result[2], tx);
+            result[3] = Math.max(result[3], ty);
+        }
+        return result;
+    }
+
+
+    /**
+     * @return The union of two bounds, each of which can be <code>null</code>.
+     */
+    static double[] union(double[] a, double[] b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return new double[] {Math.min(a[0], b[0]), Math.min(a[1], b[1]),
+                             Math.max(a[2], b[2]), Math.max(a[3], b[3])};
+    }
+}
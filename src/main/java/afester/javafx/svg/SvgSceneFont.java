@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.scene.text.Font;
+import javafx.scene.text.FontPosture;
+import javafx.scene.text.FontWeight;
+
+import java.util.Objects;
+
+/**
+ * The immutable font of a TEXT {@link SvgSceneNode}, as the requested font
+ * family, weight, posture and size. The JavaFX font is only created when it
+ * is needed to create a node or to render the scene, and is then shared by
+ * all users of the scene font. Since the font is resolved at that time, the
+ * scene font does not depend on the fonts which are available when the
+ * scene is created.
+ */
+public final class SvgSceneFont {
+    private final String family;
+    private final FontWeight weight;
+    private final FontPosture posture;
+    private final double size;
+
+    // the JavaFX font, created on first use
+    private volatile Font font;
+
+    SvgSceneFont(String family, FontWeight weight, FontPosture posture, double size) {
+        this.family = family;
+        this.weight = weight;
+        this.posture = posture;
+        this.size = size;
+    }
+
+
+    /**
+     * Creates a scene font which describes a JavaFX font.
+     *
+     * @param font The JavaFX font, or <code>null</code>.
+     * @return The scene font which describes the given font, or
+     *         <code>null</code> if the font is <code>null</code>.
+     */
+    static SvgSceneFont fromFont(Font font) {
+        if (font == null) {
+            return null;
+        }
+
+        // the style of a font is a list of names like "Bold Italic"
+        FontWeight weight = FontWeight.NORMAL;
+        FontPosture posture = FontPosture.REGULAR;
+        for (String name : font.getStyle().split(" ")) {
+            if (FontWeight.findByName(name) != null) {
+                weight = FontWeight.findByName(name);
+            } else if (FontPosture.findByName(name) != null) {
+                posture = FontPosture.findByName(name);
+            }
+        }
+
+        SvgSceneFont result = new SvgSceneFont(font.getFamily(), weight, posture,
+                                               font.getSize());
+        result.font = font;
+        return result;
+    }
+
+
+    /**
+     * @return The JavaFX font which is described by this scene font. The
+     *         same instance is returned on each call.
+     */
+    public Font toFont() {
+        Font result = font;
+        if (result == null) {
+            result = Font.font(family, weight, posture, size);
+            font = result;
+        }
+        return result;
+    }
+
+
+    /**
+     * @return The requested font family, like "Arial, Helvetica, sans-serif".
+     */
+    public String getFamily() {
+        return family;
+    }
+
+
+    /**
+     * @return The requested font weight.
+     */
+    public FontWeight getWeight() {
+        return weight;
+    }
+
+
+    /**
+     * @return The requested font posture.
+     */
+    public FontPosture getPosture() {
+        return posture;
+    }
+
+
+    /**
+     * @return The size of the font in points.
+     */
+    public double getSize() {
+        return size;
+    }
+
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SvgSceneFont)) {
+            return false;
+        }
+
+        SvgSceneFont other = (SvgSceneFont) obj;
+        return Double.compare(size, other.size) == 0
+            && weight == other.weight
+            && posture == other.posture
+            && Objects.equals(family, other.family);
+    }
+
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(family, weight, posture, size);
+    }
+
+
+    @Override
+    public String toString() {
+        return "SvgSceneFont[family=" + family + ", weight=" + weight + ", posture=" + posture
+               + ", size=" + size + "]";
+    }
+}
@@ -0,0 +1,455 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.scene.paint.CycleMethod;
+import javafx.scene.text.FontPosture;
+import javafx.scene.text.FontWeight;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes {@link SvgScene}s in a compact binary format.
+ * <p>
+ * The format consists of a header, a string table, a paint table, a font
+ * table and the node tree in pre-order. Strings, paints and fonts are stored
+ * only once and referenced by their index in the table. All coordinates are
+ * quantized to 32 bit floats, and counts and indexes are stored as
+ * variable length integers.
+ */
+final class SvgSceneFormat {
+
+    private static final int MAGIC = 0x46585347;    // "FXSG"
+    private static final int VERSION = 2;
+
+    private static final SvgScenePaint.Kind[] PAINT_KINDS = SvgScenePaint.Kind.values();
+    private static final SvgSceneNode.Kind[] KINDS = SvgSceneNode.Kind.values();
+    private static final CycleMethod[] CYCLE_METHODS = CycleMethod.values();
+    private static final FontWeight[] WEIGHTS = FontWeight.values();
+    private static final FontPosture[] POSTURES = FontPosture.values();
+
+    // the largest count which is accepted for a table, a string or a value array
+    private static final int MAX_COUNT = 1 << 24;
+
+    private SvgSceneFormat() {
+    }
+
+
+    /**
+     * Writes a scene to an output stream.
+     *
+     * @param scene The scene to write.
+     * @param out The stream to write the scene to. The stream is not closed.
+     * @throws IOException if writing to the stream fails.
+     */
+    static void write(SvgScene scene, OutputStream out) throws IOException {
+        Writer writer = new Writer();
+        writer.collect(scene.getRoot());
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        writeVarInt(data, VERSION);
+
+        writeVarInt(data, writer.strings.size());
+        for (String value : writer.strings.keySet()) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(data, bytes.length);
+            data.write(bytes);
+        }
+
+        writeVarInt(data, writer.paints.size());
+        for (SvgScenePaint paint : writer.paints.keySet()) {
+            writePaint(data, paint);
+        }
+
+        writeVarInt(data, writer.fonts.size());
+        for (SvgSceneFont font : writer.fonts.keySet()) {
+            Writer.writeRef(data, writer.strings, font.getFamily());
+            data.writeByte(font.getWeight().ordinal());
+            data.writeByte(font.getPosture().ordinal());
+            data.writeFloat((float) font.getSize());
+        }
+
+        writer.writeNode(data, scene.getRoot());
+        data.flush();
+    }
+
+
+    /**
+     * Reads a scene from an input stream.
+     *
+     * @param in The stream to read the scene from. The stream is not closed.
+     * @param internPool The pool through which the strings, paints and fonts
+     *                   are shared with other documents, or <code>null</code>.
+     * @return The scene which has been read from the stream.
+     * @throws IOException if reading from the stream fails or if the
+     *         stream does not contain a scene in the expected format, including
+     *         truncated or corrupt scene data.
+     */
+    static SvgScene read(InputStream in, SvgInternPool internPool) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a precompiled SVG scene");
+        }
+        int version = readVarInt(data);
+        if (version != VERSION) {
+            throw new IOException("Unsupported precompiled SVG version " + version);
+        }
+
+        String[] strings = new String[readCount(data)];
+        byte[] buffer = new byte[256];
+        for (int i = 0;  i < strings.length;  i++) {
+            int length = readCount(data);
+            if (buffer.length < length) {
+                buffer = new byte[length];
+            }
+            data.readFully(buffer, 0, length);
+            strings[i] = new String(buffer, 0, length, StandardCharsets.UTF_8);
+            if (internPool != null) {
+                strings[i] = internPool.internPathData(strings[i]);
+            }
+        }
+
+        SvgScenePaint[] paints = new SvgScenePaint[readCount(data)];
+        for (int i = 0;  i < paints.length;  i++) {
+            paints[i] = readPaint(data);
+            if (internPool != null) {
+                paints[i] = internPool.internPaint(paints[i]);
+            }
+        }
+
+        SvgSceneFont[] fonts = new SvgSceneFont[readCount(data)];
+        for (int i = 0;  i < fonts.length;  i++) {
+            int family = readIndex(data, strings.length + 1);
+            FontWeight weight = WEIGHTS[readIndex(data.readUnsignedByte(), WEIGHTS.length)];
+            FontPosture posture = POSTURES[readIndex(data.readUnsignedByte(), POSTURES.length)];
+            fonts[i] = new SvgSceneFont(family == 0 ? null : strings[family - 1],
+                                        weight, posture, data.readFloat());
+            if (internPool != null) {
+                fonts[i] = internPool.internFont(fonts[i]);
+            }
+        }
+
+        Reader reader = new Reader(data, strings, paints, fonts);
+        SvgSceneNode root = reader.readNode();
+        if (root.getKind() != SvgSceneNode.Kind.GROUP) {
+            throw new IOException("Corrupt scene data");
+        }
+        return new SvgScene(root);
+    }
+
+
+    // the kind and the values of a paint, followed by the proportional flag,
+    // the cycle method and the stops for a gradient
+    private static void writePaint(DataOutputStream data, SvgScenePaint paint)
+                                                                throws IOException {
+        data.writeByte(paint.getKind().ordinal());
+        for (double value : paint.getValues()) {
+            data.writeFloat((float) value);
+        }
+        if (paint.getKind() != SvgScenePaint.Kind.COLOR) {
+            data.writeBoolean(paint.isProportional());
+            data.writeByte(paint.getCycleMethod().ordinal());
+            double[] stops = paint.getStops();
+            writeVarInt(data, stops.length / 5);
+            for (double value : stops) {
+                data.writeFloat((float) value);
+            }
+        }
+    }
+
+
+    private static SvgScenePaint readPaint(DataInputStream data) throws IOException {
+        SvgScenePaint.Kind kind = PAINT_KINDS[readIndex(data.readUnsignedByte(),
+                                                        PAINT_KINDS.length)];
+        if (kind == SvgScenePaint.Kind.COLOR) {
+            return new SvgScenePaint(kind, readColor(data), new double[0],
+                                     false, CycleMethod.NO_CYCLE);
+        }
+
+        double[] values = new double[kind == SvgScenePaint.Kind.LINEAR_GRADIENT ? 4 : 5];
+        for (int i = 0;  i < values.length;  i++) {
+            values[i] = data.readFloat();
+        }
+        boolean proportional = data.readBoolean();
+        CycleMethod cycleMethod = readCycleMethod(data);
+
+        int count = readCount(data);
+        double[] stops = new double[count * 5];
+        for (int i = 0;  i < count;  i++) {
+            stops[i * 5] = data.readFloat();
+            System.arraycopy(readColor(data), 0, stops, i * 5 + 1, 4);
+        }
+        return new SvgScenePaint(kind, values, stops, proportional, cycleMethod);
+    }
+
+
+    private static double[] readColor(DataInputStream data) throws IOException {
+        double[] result = new double[4];
+        for (int i = 0;  i < result.length;  i++) {
+            float value = data.readFloat();
+            if (!isUnit(value)) {
+                throw new IOException("Corrupt scene data");
+            }
+            result[i] = value;
+        }
+        return result;
+    }
+
+
+    private static boolean isUnit(float value) {
+        return value >= 0 && value <= 1;
+    }
+
+
+    private static CycleMethod readCycleMethod(DataInputStream data) throws IOException {
+        return CYCLE_METHODS[readIndex(data.readUnsignedByte(), CYCLE_METHODS.length)];
+    }
+
+
+    private static void writeVarInt(DataOutputStream data, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            data.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data.writeByte(value);
+    }
+
+
+    private static int readVarInt(DataInputStream data) throws IOException {
+        int result = 0;
+        for (int shift = 0;  shift < 32;  shift += 7) {
+            int b = data.readUnsignedByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Corrupt scene data");
+    }
+
+
+    /**
+     * Reads the number of entries of a table or an array.
+     *
+     * @throws IOException if the count is negative or too large.
+     */
+    private static int readCount(DataInputStream data) throws IOException {
+        int result = readVarInt(data);
+        if (result < 0 || result > MAX_COUNT) {
+            throw new IOException("Corrupt scene data");
+        }
+        return result;
+    }
+
+
+    /**
+     * Reads an index into a table.
+     *
+     * @throws IOException if the index is outside of the table.
+     */
+    private static int readIndex(DataInputStream data, int length) throws IOException {
+        return readIndex(readVarInt(data), length);
+    }
+
+
+    private static int readIndex(int index, int length) throws IOException {
+        if (index < 0 || index >= length) {
+            throw new IOException("Corrupt scene data");
+        }
+        return index;
+    }
+
+
+    /**
+     * @return Whether the given number of geometry values matches the kind
+     *         of node, as described by {@link SvgSceneNode}.
+     */
+    private static boolean isValidGeometry(SvgSceneNode.Kind kind, int length) {
+        switch (kind) {
+            case RECTANGLE :
+                return length == 6;
+
+            case CIRCLE :
+                return length == 3;
+
+            case ELLIPSE :
+            case LINE :
+                return length == 4;
+
+            case CUBIC_CURVE :
+                return length == 8;
+
+            case POLYGON :
+            case POLYLINE :
+                return length % 2 == 0;
+
+            case TEXT :
+                return length == 2;
+
+            default :
+                return length == 0;
+        }
+    }
+
+
+    private static void writeFloats(DataOutputStream data, double[] values) throws IOException {
+        writeVarInt(data, values.length);
+        for (double value : values) {
+            data.writeFloat((float) value);
+        }
+    }
+
+
+    private static double[] readFloats(DataInputStream data) throws IOException {
+        double[] result = new double[readCount(data)];
+        for (int i = 0;  i < result.length;  i++) {
+            result[i] = data.readFloat();
+        }
+        return result;
+    }
+
+
+    /**
+     * Collects the tables of a scene and writes its nodes.
+     */
+    private static final class Writer {
+        final Map<String, Integer> strings = new LinkedHashMap<>();
+        final Map<SvgScenePaint, Integer> paints = new LinkedHashMap<>();
+        final Map<SvgSceneFont, Integer> fonts = new LinkedHashMap<>();
+
+        private static <T> void add(Map<T, Integer> table, T value) {
+            if (value != null && !table.containsKey(value)) {
+                table.put(value, table.size());
+            }
+        }
+
+        void collect(SvgSceneNode node) {
+            add(strings, node.getId());
+            add(strings, node.getContent());
+            add(paints, node.getFill());
+            add(paints, node.getStroke());
+            if (node.getFont() != null) {
+                add(fonts, node.getFont());
+                add(strings, node.getFont().getFamily());
+            }
+            for (SvgSceneNode child : node.getChildren()) {
+                collect(child);
+            }
+        }
+
+        // writes the index of a table entry, shifted by one so that 0 means null
+        private static <T> void writeRef(DataOutputStream data, Map<T, Integer> table,
+                                         T value) throws IOException {
+            writeVarInt(data, value == null ? 0 : table.get(value) + 1);
+        }
+
+        void writeNode(DataOutputStream data, SvgSceneNode node) throws IOException {
+            data.writeByte(node.getKind().ordinal());
+            writeRef(data, strings, node.getId());
+            writeFloats(data, node.getTransforms());
+
+            if (node.getKind() == SvgSceneNode.Kind.GROUP) {
+                writeVarInt(data, node.getChildren().size());
+                for (SvgSceneNode child : node.getChildren()) {
+                    writeNode(data, child);
+                }
+            } else {
+                writeFloats(data, node.getGeometry());
+                writeRef(data, strings, node.getContent());
+                writeRef(data, paints, node.getFill());
+                writeRef(data, paints, node.getStroke());
+                data.writeFloat((float) node.getStrokeWidth());
+                writeFloats(data, node.getStrokeDashArray());
+                data.writeFloat((float) node.getStrokeDashOffset());
+                writeRef(data, fonts, node.getFont());
+            }
+        }
+    }
+
+
+    /**
+     * Reads the nodes of a scene, using the previously read tables.
+     */
+    private static final class Reader {
+        private static final double[] NO_VALUES = new double[0];
+
+        private final DataInputStream data;
+        private final String[] strings;
+        private final SvgScenePaint[] paints;
+        private final SvgSceneFont[] fonts;
+
+        Reader(DataInputStream data, String[] strings, SvgScenePaint[] paints,
+               SvgSceneFont[] fonts) {
+            this.data = data;
+            this.strings = strings;
+            this.paints = paints;
+            this.fonts = fonts;
+        }
+
+        private <T> T readRef(T[] table) throws IOException {
+            int idx = readIndex(data, table.length + 1);
+            return idx == 0 ? null : table[idx - 1];
+        }
+
+        SvgSceneNode readNode() throws IOException {
+            SvgSceneNode.Kind kind = KINDS[readIndex(data.readUnsignedByte(), KINDS.length)];
+            String id = readRef(strings);
+            double[] transforms = readFloats(data);
+            if (transforms.length % 6 != 0) {
+                throw new IOException("Corrupt scene data");
+            }
+
+            if (kind == SvgSceneNode.Kind.GROUP) {
+                int count = readCount(data);
+                List<SvgSceneNode> children = new ArrayList<>(count);
+                for (int i = 0;  i < count;  i++) {
+                    children.add(readNode());
+                }
+                return new SvgSceneNode(kind, id, transforms, NO_VALUES, null,
+                                        null, null, 0, NO_VALUES, 0, null, children);
+            }
+
+            double[] geometry = readFloats(data);
+            if (!isValidGeometry(kind, geometry.length)) {
+                throw new IOException("Corrupt scene data");
+            }
+            String content = readRef(strings);
+            SvgScenePaint fill = readRef(paints);
+            SvgScenePaint stroke = readRef(paints);
+            double strokeWidth = data.readFloat();
+            double[] dashArray = readFloats(data);
+            double dashOffset = data.readFloat();
+            SvgSceneFont font = readRef(fonts);
+            return new SvgSceneNode(kind, id, transforms, geometry, content,
+                                    fill, stroke, strokeWidth, dashArray, dashOffset, font,
+                                    Collections.<SvgSceneNode>emptyList());
+        }
+    }
+}
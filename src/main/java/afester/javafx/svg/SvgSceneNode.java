@@ -0,0 +1,437 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.CubicCurve;
+import javafx.scene.shape.Ellipse;
+import javafx.scene.shape.Line;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.Polyline;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.SVGPath;
+import javafx.scene.shape.Shape;
+import javafx.scene.text.Text;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.Transform;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable element of an {@link SvgScene}.
+ * A scene node holds the resolved geometry, style, transformations and id
+ * of one JavaFX node, but no JavaFX objects. Paints and fonts are plain
+ * {@link SvgScenePaint} and {@link SvgSceneFont} values, whose JavaFX
+ * paints and fonts are shared by all nodes created from the scene node.
+ * <p>
+ * The meaning of the geometry values depends on the kind of the node:
+ * <ul><li>RECTANGLE - x, y, width, height, arc width, arc height</li>
+ *     <li>CIRCLE - center x, center y, radius</li>
+ *     <li>ELLIPSE - center x, center y, radius x, radius y</li>
+ *     <li>LINE - start x, start y, end x, end y</li>
+ *     <li>CUBIC_CURVE - start, first control point, second control point
+ *         and end as x/y pairs</li>
+ *     <li>POLYGON, POLYLINE - the points as x/y pairs</li>
+ *     <li>TEXT - x, y</li>
+ *     <li>GROUP, PATH, SEGMENT_PATH - no values</li></ul>
+ * The content of PATH and SEGMENT_PATH nodes is their path data, where a
+ * SEGMENT_PATH node creates an {@link SvgSegmentPath}.
+ */
+public final class SvgSceneNode {
+
+    /**
+     * The kind of JavaFX node which is described by a scene node.
+     */
+    public enum Kind {
+        GROUP, RECTANGLE, CIRCLE, ELLIPSE, LINE, CUBIC_CURVE, POLYGON, POLYLINE, PATH, TEXT,
+        SEGMENT_PATH
+    }
+
+    private static final double[] NO_VALUES = new double[0];
+
+    private final Kind kind;
+    private final String id;
+    private final double[] transforms;
+    private final double[] geometry;
+    private final String content;
+    private final SvgScenePaint fill;
+    private final SvgScenePaint stroke;
+    private final double strokeWidth;
+    private final double[] dashArray;
+    private final double dashOffset;
+    private final SvgSceneFont font;
+    private final List<SvgSceneNode> children;
+
+    SvgSceneNode(Kind kind, String id, double[] transforms, double[] geometry, String content,
+                 SvgScenePaint fill, SvgScenePaint stroke, double strokeWidth,
+                 double[] dashArray, double dashOffset, SvgSceneFont font,
+                 List<SvgSceneNode> children) {
+        if (transforms.length % 6 != 0) {
+            throw new IllegalArgumentException("Each transformation requires six values");
+        }
+
+        this.kind = kind;
+        this.id = id;
+        this.transforms = transforms;
+        this.geometry = geometry;
+        this.content = content;
+        this.fill = fill;
+        this.stroke = stroke;
+        this.strokeWidth = strokeWidth;
+        this.dashArray = dashArray;
+        this.dashOffset = dashOffset;
+        this.font = font;
+        this.children = Collections.unmodifiableList(new ArrayList<>(children));
+    }
+
+
+    /**
+     * Creates a scene node which describes a JavaFX node tree.
+     *
+     * @param node The root of the JavaFX node tree.
+     * @return The scene node which describes the given node tree.
+     * @throws IllegalArgumentException if the tree contains a node or a paint
+     *         which can not be created by the {@link SvgLoader}.
+     */
+    static SvgSceneNode fromNode(Node node) {
+        double[] transforms = new double[node.getTransforms().size() * 6];
+        int idx = 0;
+        for (Transform t : node.getTransforms()) {
+            transforms[idx++] = t.getMxx();
+            transforms[idx++] = t.getMxy();
+            transforms[idx++] = t.getTx();
+            transforms[idx++] = t.getMyx();
+            transforms[idx++] = t.getMyy();
+            transforms[idx++] = t.getTy();
+        }
+
+        if (node instanceof Group) {
+            List<SvgSceneNode> children = new ArrayList<>();
+            for (Node child : ((Group) node).getChildren()) {
+                children.add(fromNode(child));
+            }
+            return new SvgSceneNode(Kind.GROUP, node.getId(), transforms, NO_VALUES, null,
+                                    null, null, 0, NO_VALUES, 0, null, children);
+        }
+
+        if (!(node instanceof Shape)) {
+            throw new IllegalArgumentException("Unsupported node type " + node.getClass());
+        }
+
+        Shape shape = (Shape) node;
+        Kind kind;
+        double[] geometry = NO_VALUES;
+        String content = null;
+        SvgSceneFont font = null;
+        if (shape instanceof Rectangle) {
+            Rectangle r = (Rectangle) shape;
+            kind = Kind.RECTANGLE;
+            geometry = new double[] {r.getX(), r.getY(), r.getWidth(), r.getHeight(),
+                                     r.getArcWidth(), r.getArcHeight()};
+        } else if (shape instanceof Circle) {
+            Circle c = (Circle) shape;
+            kind = Kind.CIRCLE;
+            geometry = new double[] {c.getCenterX(), c.getCenterY(), c.getRadius()};
+        } else if (shape instanceof Ellipse) {
+            Ellipse e = (Ellipse) shape;
+            kind = Kind.ELLIPSE;
+            geometry = new double[] {e.getCenterX(), e.getCenterY(),
+                                     e.getRadiusX(), e.getRadiusY()};
+        } else if (shape instanceof Line) {
+            Line l = (Line) shape;
+            kind = Kind.LINE;
+            geometry = new double[] {l.getStartX(), l.getStartY(), l.getEndX(), l.getEndY()};
+        } else if (shape instanceof CubicCurve) {
+            CubicCurve c = (CubicCurve) shape;
+            kind = Kind.CUBIC_CURVE;
+            geometry = new double[] {c.getStartX(), c.getStartY(),
+                                     c.getControlX1(), c.getControlY1(),
+                                     c.getControlX2(), c.getControlY2(),
+                                     c.getEndX(), c.getEndY()};
+        } else if (shape instanceof Polygon) {
+            kind = Kind.POLYGON;
+            geometry = toArray(((Polygon) shape).getPoints());
+        } else if (shape instanceof Polyline) {
+            kind = Kind.POLYLINE;
+            geometry = toArray(((Polyline) shape).getPoints());
+        } else if (shape instanceof SvgSegmentPath) {
+            kind = Kind.SEGMENT_PATH;
+            content = ((SvgSegmentPath) shape).getContent();
+        } else if (shape instanceof SVGPath) {
+            kind = Kind.PATH;
+            content = ((SVGPath) shape).getContent();
+        } else if (shape instanceof Text) {
+            Text t = (Text) shape;
+            kind = Kind.TEXT;
+            geometry = new double[] {t.getX(), t.getY()};
+            content = t.getText();
+            font = SvgSceneFont.fromFont(t.getFont());
+        } else {
+            throw new IllegalArgumentException("Unsupported shape type " + shape.getClass());
+        }
+
+        return new SvgSceneNode(kind, node.getId(), transforms, geometry, content,
+                                SvgScenePaint.fromPaint(shape.getFill()),
+                                SvgScenePaint.fromPaint(shape.getStroke()),
+                                shape.getStrokeWidth(),
+                                toArray(shape.getStrokeDashArray()), shape.getStrokeDashOffset(),
+                                font, Collections.emptyList());
+    }
+
+
+    private static double[] toArray(List<Double> values) {
+        double[] result = new double[values.size()];
+        for (int i = 0;  i < result.length;  i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+
+    private static Double[] toObjects(double[] values) {
+        Double[] result = new Double[values.length];
+        for (int i = 0;  i < result.length;  i++) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+
+
+    /**
+     * @return A new JavaFX node tree which is described by this scene node.
+     */
+    Node createNode() {
+        Node result;
+        if (kind == Kind.GROUP) {
+            Node[] nodes = new Node[children.size()];
+            for (int i = 0;  i < nodes.length;  i++) {
+                nodes[i] = children.get(i).createNode();
+            }
+            result = new Group(nodes);
+        } else {
+            Shape shape = createShape(kind, geometry, content);
+            if (font != null && shape instanceof Text) {
+                ((Text) shape).setFont(font.toFont());
+            }
+            shape.setFill(fill == null ? null : fill.toPaint());
+            shape.setStroke(stroke == null ? null : stroke.toPaint());
+            shape.setStrokeWidth(strokeWidth);
+            if (dashArray.length > 0) {
+                shape.getStrokeDashArray().setAll(toObjects(dashArray));
+            }
+            shape.setStrokeDashOffset(dashOffset);
+            result = shape;
+        }
+
+        initNode(result);
+        return result;
+    }
+
+
+    /**
+     * @return A new JavaFX group with the id and the transformations of this
+     *         scene node, but without any children.
+     */
+    Group createEmptyGroup() {
+        Group result = new Group();
+        initNode(result);
+        return result;
+    }
+
+
+    /**
+     * Sets the id and the transformations of this scene node on a JavaFX node.
+     *
+     * @param node The node to initialize.
+     */
+    void initNode(Node node) {
+        node.setId(id);
+        for (int i = 0;  i < transforms.length;  i += 6) {
+            node.getTransforms().add(new Affine(transforms[i], transforms[i + 1],
+                                                transforms[i + 2], transforms[i + 3],
+                                                transforms[i + 4], transforms[i + 5]));
+        }
+    }
+
+
+    /**
+     * Creates a JavaFX shape with the geometry of a scene node, but without
+     * any styling.
+     *
+     * @param kind The kind of the shape.
+     * @param g The geometry values of the shape.
+     * @param content The path data of a PATH or SEGMENT_PATH shape, or the
+     *                text of a TEXT shape.
+     * @return The new shape.
+     */
+    static Shape createShape(Kind kind, double[] g, String content) {
+        switch (kind) {
+            case RECTANGLE :
+                Rectangle rectangle = new Rectangle(g[0], g[1], g[2], g[3]);
+                rectangle.setArcWidth(g[4]);
+                rectangle.setArcHeight(g[5]);
+                return rectangle;
+
+            case CIRCLE :
+                return new Circle(g[0], g[1], g[2]);
+
+            case ELLIPSE :
+                return new Ellipse(g[0], g[1], g[2], g[3]);
+
+            case LINE :
+                return new Line(g[0], g[1], g[2], g[3]);
+
+            case CUBIC_CURVE :
+                return new CubicCurve(g[0], g[1], g[2], g[3], g[4], g[5], g[6], g[7]);
+
+            case POLYGON :
+                return new Polygon(g);
+
+            case POLYLINE :
+                return new Polyline(g);
+
+            case PATH :
+                SVGPath path = new SVGPath();
+                path.setContent(content);
+                return path;
+
+            case SEGMENT_PATH :
+                return new SvgSegmentPath(content);
+
+            case TEXT :
+                return new Text(g[0], g[1], content);
+
+            default :
+                throw new IllegalStateException("Not a shape: " + kind);
+        }
+    }
+
+
+    /**
+     * @return The number of JavaFX nodes which are created from this scene node.
+     */
+    int countNodes() {
+        int result = 1;
+        for (SvgSceneNode child : children) {
+            result += child.countNodes();
+        }
+        return result;
+    }
+
+
+    /**
+     * @return The kind of JavaFX node which is described by this scene node.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+
+    /**
+     * @return The id of the node, or <code>null</code> if the node has no id.
+     */
+    public String getId() {
+        return id;
+    }
+
+
+    /**
+     * @return The transformations of the node, as six values mxx, mxy, tx,
+     *         myx, myy, ty for each transformation.
+     */
+    public double[] getTransforms() {
+        return transforms.clone();
+    }
+
+
+    /**
+     * @return The geometry values of the node. See the class description
+     *         for the meaning of the values.
+     */
+    public double[] getGeometry() {
+        return geometry.clone();
+    }
+
+
+    /**
+     * @return The path data of a PATH node, the text of a TEXT node, or
+     *         <code>null</code> for all other nodes.
+     */
+    public String getContent() {
+        return content;
+    }
+
+
+    /**
+     * @return The fill paint of the shape, or <code>null</code>.
+     */
+    public SvgScenePaint getFill() {
+        return fill;
+    }
+
+
+    /**
+     * @return The stroke paint of the shape, or <code>null</code>.
+     */
+    public SvgScenePaint getStroke() {
+        return stroke;
+    }
+
+
+    /**
+     * @return The stroke width of the shape.
+     */
+    public double getStrokeWidth() {
+        return strokeWidth;
+    }
+
+
+    /**
+     * @return The stroke dash array of the shape.
+     */
+    public double[] getStrokeDashArray() {
+        return dashArray.clone();
+    }
+
+
+    /**
+     * @return The stroke dash offset of the shape.
+     */
+    public double getStrokeDashOffset() {
+        return dashOffset;
+    }
+
+
+    /**
+     * @return The font of a TEXT node, or <code>null</code> for all other nodes.
+     */
+    public SvgSceneFont getFont() {
+        return font;
+    }
+
+
+    /**
+     * @return The child nodes of a GROUP node, as an unmodifiable list.
+     */
+    public List<SvgSceneNode> getChildren() {
+        return children;
+    }
+}
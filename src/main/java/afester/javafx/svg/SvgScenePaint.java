@@ -0,0 +1,256 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.scene.paint.Color;
+import javafx.scene.paint.CycleMethod;
+import javafx.scene.paint.LinearGradient;
+import javafx.scene.paint.Paint;
+import javafx.scene.paint.RadialGradient;
+import javafx.scene.paint.Stop;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An immutable fill or stroke paint of an {@link SvgSceneNode}.
+ * A scene paint holds the values of a color or a gradient, but no JavaFX
+ * paint. The JavaFX paint is only created when it is needed to create a
+ * node or to render the scene, and is then shared by all users of the
+ * scene paint.
+ * <p>
+ * The meaning of the values depends on the kind of the paint:
+ * <ul><li>COLOR - red, green, blue, opacity</li>
+ *     <li>LINEAR_GRADIENT - start x, start y, end x, end y</li>
+ *     <li>RADIAL_GRADIENT - focus angle, focus distance, center x, center y,
+ *         radius</li></ul>
+ * The stops of a gradient are stored as offset, red, green, blue and
+ * opacity for each stop.
+ */
+public final class SvgScenePaint {
+
+    /**
+     * The kind of JavaFX paint which is described by a scene paint.
+     */
+    public enum Kind {
+        COLOR, LINEAR_GRADIENT, RADIAL_GRADIENT
+    }
+
+    private static final double[] NO_VALUES = new double[0];
+
+    private final Kind kind;
+    private final double[] values;
+    private final double[] stops;
+    private final boolean proportional;
+    private final CycleMethod cycleMethod;
+
+    // the JavaFX paint, created on first use - a concurrent creation at worst
+    // creates an equal second instance
+    private volatile Paint paint;
+
+    SvgScenePaint(Kind kind, double[] values, double[] stops,
+                  boolean proportional, CycleMethod cycleMethod) {
+        this.kind = kind;
+        this.values = values;
+        this.stops = stops;
+        this.proportional = proportional;
+        this.cycleMethod = cycleMethod;
+    }
+
+
+    /**
+     * Creates a scene paint which describes a JavaFX paint.
+     *
+     * @param paint The JavaFX paint, or <code>null</code>.
+     * @return The scene paint which describes the given paint, or
+     *         <code>null</code> if the paint is <code>null</code>.
+     * @throws IllegalArgumentException if the paint is neither a color nor
+     *         a linear or radial gradient.
+     */
+    static SvgScenePaint fromPaint(Paint paint) {
+        SvgScenePaint result;
+        if (paint == null) {
+            return null;
+        } else if (paint instanceof Color) {
+            result = new SvgScenePaint(Kind.COLOR, getValues((Color) paint), NO_VALUES,
+                                       false, CycleMethod.NO_CYCLE);
+        } else if (paint instanceof LinearGradient) {
+            LinearGradient g = (LinearGradient) paint;
+            result = new SvgScenePaint(Kind.LINEAR_GRADIENT,
+                                       new double[] {g.getStartX(), g.getStartY(),
+                                                     g.getEndX(), g.getEndY()},
+                                       getValues(g.getStops()),
+                                       g.isProportional(), g.getCycleMethod());
+        } else if (paint instanceof RadialGradient) {
+            RadialGradient g = (RadialGradient) paint;
+            result = new SvgScenePaint(Kind.RADIAL_GRADIENT,
+                                       new double[] {g.getFocusAngle(), g.getFocusDistance(),
+                                                     g.getCenterX(), g.getCenterY(),
+                                                     g.getRadius()},
+                                       getValues(g.getStops()),
+                                       g.isProportional(), g.getCycleMethod());
+        } else {
+            throw new IllegalArgumentException("Unsupported paint " + paint.getClass());
+        }
+
+        result.paint = paint;
+        return result;
+    }
+
+
+    private static double[] getValues(Color color) {
+        return new double[] {color.getRed(), color.getGreen(), color.getBlue(),
+                             color.getOpacity()};
+    }
+
+
+    private static double[] getValues(List<Stop> stopList) {
+        double[] result = new double[stopList.size() * 5];
+        int idx = 0;
+        for (Stop stop : stopList) {
+            Color color = stop.getColor();
+            result[idx++] = stop.getOffset();
+            result[idx++] = color.getRed();
+            result[idx++] = color.getGreen();
+            result[idx++] = color.getBlue();
+            result[idx++] = color.getOpacity();
+        }
+        return result;
+    }
+
+
+    /**
+     * @return The JavaFX paint which is described by this scene paint. The
+     *         same instance is returned on each call.
+     */
+    public Paint toPaint() {
+        Paint result = paint;
+        if (result == null) {
+            result = createPaint();
+            paint = result;
+        }
+        return result;
+    }
+
+
+    private Paint createPaint() {
+        final double[] v = values;
+
+        switch (kind) {
+            case COLOR :
+                return new Color(v[0], v[1], v[2], v[3]);
+
+            case LINEAR_GRADIENT :
+                return new LinearGradient(v[0], v[1], v[2], v[3],
+                                          proportional, cycleMethod, createStops());
+
+            case RADIAL_GRADIENT :
+                return new RadialGradient(v[0], v[1], v[2], v[3], v[4],
+                                          proportional, cycleMethod, createStops());
+
+            default :
+                throw new IllegalStateException("Not a paint: " + kind);
+        }
+    }
+
+
+    private Stop[] createStops() {
+        Stop[] result = new Stop[stops.length / 5];
+        for (int i = 0;  i < result.length;  i++) {
+            int idx = i * 5;
+            result[i] = new Stop(stops[idx], new Color(stops[idx + 1], stops[idx + 2],
+                                                       stops[idx + 3], stops[idx + 4]));
+        }
+        return result;
+    }
+
+
+    /**
+     * @return The kind of JavaFX paint which is described by this scene paint.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+
+    /**
+     * @return The color or gradient values of the paint. See the class
+     *         description for the meaning of the values.
+     */
+    public double[] getValues() {
+        return values.clone();
+    }
+
+
+    /**
+     * @return The stops of a gradient, as offset, red, green, blue and opacity
+     *         for each stop, or no values for a color.
+     */
+    public double[] getStops() {
+        return stops.clone();
+    }
+
+
+    /**
+     * @return Whether the gradient values are relative to the size of the shape.
+     */
+    public boolean isProportional() {
+        return proportional;
+    }
+
+
+    /**
+     * @return The cycle method of a gradient.
+     */
+    public CycleMethod getCycleMethod() {
+        return cycleMethod;
+    }
+
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SvgScenePaint)) {
+            return false;
+        }
+
+        SvgScenePaint other = (SvgScenePaint) obj;
+        return kind == other.kind
+            && proportional == other.proportional
+            && cycleMethod == other.cycleMethod
+            && Arrays.equals(values, other.values)
+            && Arrays.equals(stops, other.stops);
+    }
+
+
+    @Override
+    public int hashCode() {
+        int result = Objects.hash(kind, proportional, cycleMethod);
+        result = 31 * result + Arrays.hashCode(values);
+        return 31 * result + Arrays.hashCode(stops);
+    }
+
+
+    @Override
+    public String toString() {
+        return "SvgScenePaint[" + kind + ", values=" + Arrays.toString(values)
+               + ", stops=" + Arrays.toString(stops) + "]";
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.shape.CubicCurve;
+import javafx.scene.shape.Line;
+import javafx.scene.shape.SVGPath;
+import javafx.scene.shape.Shape;
+import javafx.scene.transform.Transform;
+
+import java.util.Arrays;
+
+/**
+ * A single path node for an SVG path element, whose segments can still be
+ * addressed individually - for example to find the wire segment below the
+ * mouse, or to highlight it.
+ * <p>
+ * The node renders the path data like an SVGPath node, and additionally
+ * keeps the geometry of each segment in a compact array. The segments are
+ * numbered in the order in which they are drawn, which is the same order
+ * in which separate path elements are created (see
+ * {@link SvgLoader.Builder#useSeparatePathElements(boolean)}). Each segment
+ * is either a line or a cubic curve: horizontal and vertical lines,
+ * quadratic curves and arcs are converted, and a closepath which does not
+ * end at the start of the subpath adds a line.
+ * <p>
+ * The segments reflect the content at the time the node has been created,
+ * so the content should not be modified. All coordinates are in the local
+ * coordinate system of the node.
+ */
+public final class SvgSegmentPath extends SVGPath {
+
+    private static final int VALUES_PER_SEGMENT = 8;
+
+    // the number of lines which approximate a cubic curve for hit testing
+    private static final int CURVE_STEPS = 32;
+
+    // start point, two control points and end point of each segment;
+    // the control points of a line are its start and end point
+    private double[] segments;
+    private int segmentCount;
+
+    // the spatial index of the segment bounds, created on the first query
+    private SvgGridIndex index = null;
+
+    /**
+     * Creates a new path node from SVG path data.
+     *
+     * @param pathData The SVG path data.
+     */
+    SvgSegmentPath(String pathData) {
+        setContent(pathData);
+
+        SegmentCollector collector = new SegmentCollector();
+        SvgPathParser.parse(pathData, collector);
+        segments = Arrays.copyOf(collector.segments, collector.count * VALUES_PER_SEGMENT);
+        segmentCount = collector.count;
+    }
+
+
+    /**
+     * Collects the geometry of the segments of parsed path data.
+     */
+    private static final class SegmentCollector implements SvgPathParser.Sink {
+        private double[] segments = new double[16 * VALUES_PER_SEGMENT];
+        private int count = 0;
+
+        private double currentX;
+        private double currentY;
+        private double startX;
+        private double startY;
+
+        private void addSegment(double x1, double y1, double x2, double y2,
+                                double x, double y) {
+            if ((count + 1) * VALUES_PER_SEGMENT > segments.length) {
+                segments = Arrays.copyOf(segments, 2 * segments.length);
+            }
+            int i = count * VALUES_PER_SEGMENT;
+            segments[i] = currentX;
+            segments[i + 1] = currentY;
+            segments[i + 2] = x1;
+            segments[i + 3] = y1;
+            segments[i + 4] = x2;
+            segments[i + 5] = y2;
+            segments[i + 6] = x;
+            segments[i + 7] = y;
+            count++;
+            currentX = x;
+            currentY = y;
+        }
+
+        @Override
+        public void moveTo(double x, double y) {
+            currentX = x;
+            currentY = y;
+            startX = x;
+            startY = y;
+        }
+
+        @Override
+        public void lineTo(double x, double y) {
+            addSegment(currentX, currentY, x, y, x, y);
+        }
+
+        @Override
+        public void quadTo(double x1, double y1, double x, double y) {
+            cubicTo(currentX + 2.0 / 3.0 * (x1 - currentX), currentY + 2.0 / 3.0 * (y1 - currentY),
+                    x + 2.0 / 3.0 * (x1 - x), y + 2.0 / 3.0 * (y1 - y), x, y);
+        }
+
+        @Override
+        public void cubicTo(double x1, double y1, double x2, double y2, double x, double y) {
+            addSegment(x1, y1, x2, y2, x, y);
+        }
+
+        @Override
+        public void closePath() {
+            if (currentX != startX || currentY != startY) {
+                addSegment(currentX, currentY, startX, startY, startX, startY);
+            }
+        }
+    }
+
+
+    /**
+     * @return The number of segments of the path.
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+
+    /**
+     * @param segment The index of a segment.
+     * @return Whether the segment is a line; otherwise, it is a cubic curve.
+     */
+    public boolean isLine(int segment) {
+        int i = checkIndex(segment) * VALUES_PER_SEGMENT;
+        return segments[i + 2] == segments[i] && segments[i + 3] == segments[i + 1]
+            && segments[i + 4] == segments[i + 6] && segments[i + 5] == segments[i + 7];
+    }
+
+
+    /**
+     * @param segment The index of a segment.
+     * @return The bounds of the segment including its control points, without the stroke.
+     */
+    public Bounds getSegmentBounds(int segment) {
+        double[] b = getBounds(checkIndex(segment));
+        return new BoundingBox(b[0], b[1], b[2] - b[0], b[3] - b[1]);
+    }
+
+
+    /**
+     * Finds the segment which is nearest to a position.
+     *
+     * @param x The x coordinate of the position.
+     * @param y The y coordinate of the position.
+     * @param tolerance The maximum distance between the position and the
+     *                  center line of the segment. Pass half of the stroke
+     *                  width to only find segments whose stroke contains
+     *                  the position.
+     * @return The index of the nearest segment, or <code>-1</code> if there
+     *         is no segment within the tolerance. If several segments have
+     *         the same distance, the one which is drawn last is returned.
+     */
+    public int getSegmentAt(double x, double y, double tolerance) {
+        if (index == null) {
+            double[] bounds = new double[segmentCount * 4];
+            for (int segment = 0;  segment < segmentCount;  segment++) {
+                System.arraycopy(getBounds(segment), 0, bounds, segment * 4, 4);
+            }
+            index = new SvgGridIndex(bounds);
+        }
+
+        double[] best = {Double.POSITIVE_INFINITY, -1};
+        index.query(x - tolerance, y - tolerance, x + tolerance, y + tolerance, segment -> {
+            double distance = getDistance(segment, x, y);
+            if (distance <= tolerance
+                && (distance < best[0] || (distance == best[0] && segment > best[1]))) {
+                best[0] = distance;
+                best[1] = segment;
+            }
+        });
+        return (int) best[1];
+    }
+
+
+    /**
+     * Creates a separate shape for a segment, for example to highlight it.
+     * The shape has the stroke and the transformations of this path, so that
+     * it covers the segment when it is added to the same parent.
+     *
+     * @param segment The index of a segment.
+     * @return A Line or a CubicCurve for the segment.
+     */
+    public Shape createSegmentShape(int segment) {
+        int i = checkIndex(segment) * VALUES_PER_SEGMENT;
+        double[] s = segments;
+
+        Shape result;
+        if (isLine(segment)) {
+            result = new Line(s[i], s[i + 1], s[i + 6], s[i + 7]);
+        } else {
+            result = new CubicCurve(s[i], s[i + 1], s[i + 2], s[i + 3],
+                                    s[i + 4], s[i + 5], s[i + 6], s[i + 7]);
+        }
+        result.setFill(null);
+        result.setStroke(getStroke());
+        result.setStrokeWidth(getStrokeWidth());
+        result.setStrokeLineCap(getStrokeLineCap());
+        result.setStrokeLineJoin(getStrokeLineJoin());
+        result.getTransforms().setAll(getTransforms());
+        return result;
+    }
+
+
+    /**
+     * Applies a transformation to the content and the segments.
+     *
+     * @param transform The transformation to apply.
+     */
+    void transform(Transform transform) {
+        SvgPathParser.TransformingWriter writer = new SvgPathParser.TransformingWriter(transform);
+        SvgPathParser.parse(getContent(), writer);
+        setContent(writer.getPathData());
+
+        transform.transform2DPoints(segments, 0, segments, 0, segmentCount * 4);
+        index = null;
+    }
+
+
+    private int checkIndex(int segment) {
+        if (segment < 0 || segment >= segmentCount) {
+            throw new IndexOutOfBoundsException("Segment " + segment + " of " + segmentCount);
+        }
+        return segment;
+    }
+
+
+    private double[] getBounds(int segment) {
+        int i = segment * VALUES_PER_SEGMENT;
+        double[] result = {segments[i], segments[i + 1], segments[i], segments[i + 1]};
+        for (int j = i + 2;  j < i + VALUES_PER_SEGMENT;  j += 2) {
+            result[0] = Math.min(result[0], segments[j]);
+            result[1] = Math.min(result[1], segments[j + 1]);
+            result[2] = Math.max(result[2], segments[j]);
+            result[3] = Math.max(result[3], segments[j + 1]);
+        }
+        return result;
+    }
+
+
+    private double getDistance(int segment, double x, double y) {
+        int i = segment * VALUES_PER_SEGMENT;
+        double[] s = segments;
+        if (isLine(segment)) {
+            return getLineDistance(s[i], s[i + 1], s[i + 6], s[i + 7], x, y);
+        }
+
+        // approximate the curve by lines
+        double result = Double.POSITIVE_INFINITY;
+        double previousX = s[i];
+        double previousY = s[i + 1];
+        for (int step = 1;  step <= CURVE_STEPS;  step++) {
+            double t = (double) step / CURVE_STEPS;
+            double u = 1 - t;
+            double a = u * u * u;
+            double b = 3 * u * u * t;
+            double c = 3 * u * t * t;
+            double d = t * t * t;
+            double curveX = a * s[i] + b * s[i + 2] + c * s[i + 4] + d * s[i + 6];
+            double curveY = a * s[i + 1] + b * s[i + 3] + c * s[i + 5] + d * s[i + 7];
+            result = Math.min(result, getLineDistance(previousX, previousY, curveX, curveY, x, y));
+            previousX = curveX;
+            previousY = curveY;
+        }
+        return result;
+    }
+
+
+    private static double getLineDistance(double x1, double y1, double x2, double y2,
+                                          double x, double y) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0
+                 : Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+        return Math.hypot(x - (x1 + t * dx), y - (y1 + t * dy));
+    }
+}
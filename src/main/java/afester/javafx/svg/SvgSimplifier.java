@@ -0,0 +1,495 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.collections.ObservableList;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.Polyline;
+import javafx.scene.shape.SVGPath;
+import javafx.scene.transform.Transform;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Removes detail from the geometry of a converted SVG document which is
+ * not visible at a given scale:
+ * <ul>
+ * <li>The points of polygons and polylines are reduced with the
+ *     Douglas-Peucker algorithm.</li>
+ * <li>The curves and arcs of SVGPath nodes are approximated by lines,
+ *     and the resulting lines are reduced like polylines. A path is only
+ *     replaced if this reduces its number of points.</li>
+ * </ul>
+ * The simplified geometry deviates from the original geometry by at most
+ * the tolerance, which is given in device pixels at a target scale. The
+ * transformations of each shape and its parent groups are taken into
+ * account. The result only depends on the document and the configuration,
+ * so that simplified documents can be cached.
+ * <p>
+ * {@link SvgSegmentPath} nodes are not simplified, since this would change
+ * the numbering of their segments.
+ * <p>
+ * A simplifier can be set on a loader with
+ * {@link SvgLoader.Builder#simplifier(SvgSimplifier)}, or it can be applied
+ * to any converted document. It can be used concurrently for several
+ * documents.
+ */
+public final class SvgSimplifier {
+
+    // the maximum number of lines which approximate a single curve
+    private static final int MAXIMUM_CURVE_STEPS = 1024;
+
+    private final double tolerance;
+    private final double targetScale;
+
+    private final LongAdder shapeCount = new LongAdder();
+    private final LongAdder pointsBefore = new LongAdder();
+    private final LongAdder pointsAfter = new LongAdder();
+
+    /**
+     * The number of points of the shapes which have been simplified.
+     */
+    public static final class Statistics {
+        private final long shapes;
+        private final long before;
+        private final long after;
+
+        Statistics(long shapes, long before, long after) {
+            this.shapes = shapes;
+            this.before = before;
+            this.after = after;
+        }
+
+
+        /**
+         * @return The number of shapes which have been simplified.
+         */
+        public long getShapeCount() {
+            return shapes;
+        }
+
+
+        /**
+         * @return The number of points of the simplified shapes before the simplification.
+         *         The points of a path include the control points of its curves.
+         */
+        public long getPointCountBefore() {
+            return before;
+        }
+
+
+        /**
+         * @return The number of points of the simplified shapes after the simplification.
+         */
+        public long getPointCountAfter() {
+            return after;
+        }
+
+
+        /**
+         * @return The fraction of the points which have been removed, between 0 and 1.
+         */
+        public double getReduction() {
+            return before == 0 ? 0 : 1.0 - (double) after / before;
+        }
+
+
+        @Override
+        public String toString() {
+            return String.format("Statistics[shapes=%d, points=%d -> %d (-%.1f%%)]",
+                                 shapes, before, after, 100 * getReduction());
+        }
+    }
+
+
+    /**
+     * Creates a simplifier.
+     *
+     * @param tolerance The maximum deviation of the simplified geometry, in
+     *                  device pixels at the target scale.
+     * @param targetScale The scale at which the document is displayed, for
+     *                    example 1 for the document's size.
+     */
+    public SvgSimplifier(double tolerance, double targetScale) {
+        if (!(tolerance >= 0) || !(targetScale > 0)) {
+            throw new IllegalArgumentException("The tolerance must not be negative and "
+                                               + "the target scale must be positive");
+        }
+        this.tolerance = tolerance;
+        this.targetScale = targetScale;
+    }
+
+
+    /**
+     * @return The maximum deviation of the simplified geometry, in device pixels.
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+
+    /**
+     * @return The scale at which the document is displayed.
+     */
+    public double getTargetScale() {
+        return targetScale;
+    }
+
+
+    /**
+     * @return A description of this simplifier's configuration, which is
+     *         used to distinguish cached documents.
+     */
+    String getOptionsKey() {
+        return "tolerance=" + tolerance + "@" + targetScale;
+    }
+
+
+    /**
+     * @return The number of points of all shapes which have been simplified
+     *         by this simplifier so far.
+     */
+    public Statistics getStatistics() {
+        return new Statistics(shapeCount.sum(), pointsBefore.sum(), pointsAfter.sum());
+    }
+
+
+    /**
+     * Simplifies the shapes below a root node.
+     *
+     * @param root The root node of a converted SVG document.
+     * @return The number of points of the shapes which have been simplified.
+     */
+    public Statistics simplify(Group root) {
+        long[] counts = new long[3];
+        simplify(root, targetScale, counts);
+
+        shapeCount.add(counts[0]);
+        pointsBefore.add(counts[1]);
+        pointsAfter.add(counts[2]);
+        return new Statistics(counts[0], counts[1], counts[2]);
+    }
+
+
+    private void simplify(Node node, double parentScale, long[] counts) {
+        double scale = parentScale;
+        for (Transform transform : node.getTransforms()) {
+            scale *= getMaximumScale(transform);
+        }
+
+        if (node instanceof Group) {
+            for (Node child : ((Group) node).getChildren()) {
+                simplify(child, scale, counts);
+            }
+            return;
+        }
+
+        // the tolerance in the local coordinate system of the shape
+        double localTolerance = tolerance / scale;
+        if (!(localTolerance > 0) || Double.isInfinite(localTolerance)) {
+            return;
+        }
+
+        int before = 0;
+        int after = 0;
+        if (node instanceof Polygon || node instanceof Polyline) {
+            ObservableList<Double> points = node instanceof Polygon
+                                          ? ((Polygon) node).getPoints()
+                                          : ((Polyline) node).getPoints();
+            double[] coordinates = new double[points.size() & ~1];
+            for (int i = 0;  i < coordinates.length;  i++) {
+                coordinates[i] = points.get(i);
+            }
+            double[] result = simplifyPoints(coordinates, coordinates.length,
+                                             node instanceof Polygon, localTolerance);
+            before = coordinates.length / 2;
+            after = result.length / 2;
+            if (after < before) {
+                List<Double> values = new ArrayList<>(result.length);
+                for (double value : result) {
+                    values.add(value);
+                }
+                points.setAll(values);
+            }
+        } else if (node instanceof SVGPath && !(node instanceof SvgSegmentPath)) {
+            SVGPath path = (SVGPath) node;
+            PathSimplifier simplifier = new PathSimplifier(localTolerance);
+            if (!SvgPathParser.parse(path.getContent(), simplifier)) {
+                return;
+            }
+            simplifier.finishSubpath();
+            before = simplifier.pointsBefore;
+            after = simplifier.pointsAfter;
+            if (after < before) {
+                path.setContent(simplifier.result.toString());
+            }
+        }
+
+        if (after < before) {
+            counts[0]++;
+            counts[1] += before;
+            counts[2] += after;
+        }
+    }
+
+
+    /**
+     * @return The largest factor by which the transformation stretches a distance.
+     */
+    static double getMaximumScale(Transform transform) {
+        double mxx = transform.getMxx();
+        double mxy = transform.getMxy();
+        double myx = transform.getMyx();
+        double myy = transform.getMyy();
+        double a = mxx * mxx + mxy * mxy + myx * myx + myy * myy;
+        double det = mxx * myy - mxy * myx;
+        return Math.sqrt((a + Math.sqrt(Math.max(0, a * a - 4 * det * det))) / 2);
+    }
+
+
+    /**
+     * Reduces the points of a polyline or polygon with the Douglas-Peucker algorithm.
+     *
+     * @param coordinates The coordinates of the points as x/y pairs.
+     * @param length The number of coordinates to use.
+     * @param closed Whether the points form a polygon.
+     * @param tolerance The maximum distance of a removed point from the result.
+     * @return The coordinates of the remaining points.
+     */
+    static double[] simplifyPoints(double[] coordinates, int length, boolean closed,
+                                   double tolerance) {
+        int count = length / 2;
+        if (count <= 2) {
+            return Arrays.copyOf(coordinates, length);
+        }
+
+        // a polygon is simplified as a polyline which ends at its first point
+        int last = count - 1;
+        double[] points = coordinates;
+        if (closed) {
+            points = Arrays.copyOf(coordinates, length + 2);
+            points[length] = coordinates[0];
+            points[length + 1] = coordinates[1];
+            last = count;
+        }
+
+        boolean[] keep = new boolean[last + 1];
+        keep[0] = true;
+        keep[last] = true;
+
+        // the ranges which still need to be checked, as pairs of first and last index
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = last;
+        while (top > 0) {
+            int end = stack[--top];
+            int start = stack[--top];
+
+            double maximum = -1;
+            int farthest = -1;
+            for (int i = start + 1;  i < end;  i++) {
+                double distance = getDistance(points, i, start, end);
+                if (distance > maximum) {
+                    maximum = distance;
+                    farthest = i;
+                }
+            }
+
+            if (farthest >= 0 && maximum > tolerance) {
+                keep[farthest] = true;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * stack.length);
+                }
+                stack[top++] = start;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = end;
+            }
+        }
+
+        int kept = 0;
+        int resultCount = closed ? last : last + 1;
+        for (int i = 0;  i < resultCount;  i++) {
+            if (keep[i]) {
+                kept++;
+            }
+        }
+        if (closed && kept < 3) {
+            // a polygon which is smaller than the tolerance keeps its shape
+            return Arrays.copyOf(coordinates, length);
+        }
+
+        double[] result = new double[2 * kept];
+        int pos = 0;
+        for (int i = 0;  i < resultCount;  i++) {
+            if (keep[i]) {
+                result[pos++] = points[2 * i];
+                result[pos++] = points[2 * i + 1];
+            }
+        }
+        return result;
+    }
+
+
+    // the distance between a point and the line segment between two other points
+    private static double getDistance(double[] points, int point, int start, int end) {
+        double x = points[2 * point];
+        double y = points[2 * point + 1];
+        double x1 = points[2 * start];
+        double y1 = points[2 * start + 1];
+        double dx = points[2 * end] - x1;
+        double dy = points[2 * end + 1] - y1;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0
+                 : Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+        return Math.hypot(x - (x1 + t * dx), y - (y1 + t * dy));
+    }
+
+
+    /**
+     * Approximates the curves of a path by lines, simplifies each subpath
+     * and writes the simplified path data.
+     */
+    private static final class PathSimplifier implements SvgPathParser.Sink {
+        private final double tolerance;
+        private final StringBuilder result = new StringBuilder();
+        private int pointsBefore = 0;
+        private int pointsAfter = 0;
+
+        // the points of the current subpath
+        private double[] points = new double[64];
+        private int length = 0;
+        private boolean hasCurves = false;
+
+        // the start point of the current subpath, where a segment after a closepath starts
+        private double startX;
+        private double startY;
+
+        PathSimplifier(double tolerance) {
+            this.tolerance = tolerance;
+        }
+
+
+        private void addPoint(double x, double y) {
+            if (length + 2 > points.length) {
+                points = Arrays.copyOf(points, 2 * points.length);
+            }
+            points[length++] = x;
+            points[length++] = y;
+        }
+
+
+        private void finishSubpath(boolean closed) {
+            if (length == 0) {
+                return;
+            }
+
+            // half of the tolerance is used for approximating the curves
+            double lineTolerance = hasCurves ? tolerance / 2 : tolerance;
+            double[] simplified = simplifyPoints(points, length, closed, lineTolerance);
+            pointsAfter += simplified.length / 2;
+            if (result.length() > 0) {
+                result.append(' ');
+            }
+            result.append(SvgAttributeParser.formatPoints(simplified, closed));
+
+            length = 0;
+            hasCurves = false;
+        }
+
+
+        void finishSubpath() {
+            finishSubpath(false);
+        }
+
+
+        @Override
+        public void moveTo(double x, double y) {
+            finishSubpath(false);
+            addPoint(x, y);
+            startX = x;
+            startY = y;
+            pointsBefore++;
+        }
+
+
+        private void continueSubpath() {
+            if (length == 0) {
+                addPoint(startX, startY);
+            }
+        }
+
+
+        @Override
+        public void lineTo(double x, double y) {
+            continueSubpath();
+            addPoint(x, y);
+            pointsBefore++;
+        }
+
+
+        @Override
+        public void quadTo(double x1, double y1, double x, double y) {
+            continueSubpath();
+            double x0 = points[length - 2];
+            double y0 = points[length - 1];
+            cubicTo(x0 + 2.0 / 3.0 * (x1 - x0), y0 + 2.0 / 3.0 * (y1 - y0),
+                    x + 2.0 / 3.0 * (x1 - x), y + 2.0 / 3.0 * (y1 - y), x, y);
+            pointsBefore--;
+        }
+
+
+        @Override
+        public void cubicTo(double x1, double y1, double x2, double y2, double x, double y) {
+            continueSubpath();
+            double x0 = points[length - 2];
+            double y0 = points[length - 1];
+
+            // the number of lines for which the deviation from the curve stays
+            // within half of the tolerance, from the bound of its second derivative
+            double ddx = Math.max(Math.abs(x0 - 2 * x1 + x2), Math.abs(x1 - 2 * x2 + x));
+            double ddy = Math.max(Math.abs(y0 - 2 * y1 + y2), Math.abs(y1 - 2 * y2 + y));
+            double steps = Math.ceil(Math.sqrt(0.75 * Math.hypot(ddx, ddy) / (tolerance / 2)));
+            int count = (int) Math.max(1, Math.min(MAXIMUM_CURVE_STEPS, steps));
+
+            for (int step = 1;  step < count;  step++) {
+                double t = (double) step / count;
+                double u = 1 - t;
+                double a = u * u * u;
+                double b = 3 * u * u * t;
+                double c = 3 * u * t * t;
+                double d = t * t * t;
+                addPoint(a * x0 + b * x1 + c * x2 + d * x, a * y0 + b * y1 + c * y2 + d * y);
+            }
+            addPoint(x, y);
+            hasCurves = true;
+            pointsBefore += 3;
+        }
+
+
+        @Override
+        public void closePath() {
+            finishSubpath(true);
+        }
+    }
+}
@@ -0,0 +1,895 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.scene.paint.Color;
+import javafx.scene.paint.LinearGradient;
+import javafx.scene.paint.Paint;
+import javafx.scene.paint.RadialGradient;
+import javafx.scene.paint.Stop;
+import javafx.scene.text.FontPosture;
+import javafx.scene.text.FontWeight;
+import javafx.scene.transform.Affine;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Converts an SVG document into a JavaFX node tree or an {@link SvgScene}
+ * directly from the XML event stream, without building the Batik DOM and
+ * GVT trees. The converted elements are emitted to an {@link SvgNodeSink}.
+ * Only the style state of the currently open elements is kept,
+ * so the memory used during conversion depends on the nesting depth of
+ * the document, not on its size.
+ * Styles are resolved from presentation attributes and inline style
+ * attributes; CSS style sheets (&lt;style&gt; elements) are not supported.
+ * Attributes with an invalid value are reported on System.err and ignored,
+ * like unknown elements, so that they do not abort the conversion.
+ */
+class SvgStreamingHandler {
+    private static final String SVG_NAMESPACE = "http://www.w3.org/2000/svg";
+    private static final String XLINK_NAMESPACE = "http://www.w3.org/1999/xlink";
+
+    private static final double[] NO_VALUES = new double[0];
+
+    private static final XMLInputFactory inputFactory = createInputFactory();
+
+    private static final Set<String> styleProperties = new HashSet<>();
+
+    static {
+        styleProperties.add("fill");
+        styleProperties.add("fill-opacity");
+        styleProperties.add("stroke");
+        styleProperties.add("stroke-opacity");
+        styleProperties.add("stroke-width");
+        styleProperties.add("stroke-dasharray");
+        styleProperties.add("stroke-dashoffset");
+        styleProperties.add("font-family");
+        styleProperties.add("font-size");
+        styleProperties.add("color");
+        styleProperties.add("stop-color");
+        styleProperties.add("stop-opacity");
+    }
+
+    private final boolean addRootRect;
+    private final boolean useSeparatePathElements;
+    private final boolean useSegmentPaths;
+    private final int largeShapeThreshold;
+    private final GradientFactory gradientFactory;
+    private final SvgInternPool internPool;
+    private final SvgNodeSink sink;
+
+    private final Map<String, Paint> paints = new HashMap<>();
+    private final Deque<Style> styles = new ArrayDeque<>();
+    private final Map<Style, SvgStyle> shapeStyles = new HashMap<>();
+    private final Map<Style, SvgStyle> textStyles = new HashMap<>();
+
+    private double viewportWidth = 0;
+    private double viewportHeight = 0;
+
+    // the viewports of the enclosing <svg> elements, as width/height pairs
+    private final Deque<double[]> viewports = new ArrayDeque<>();
+
+    // the <text> element whose content is currently collected
+    private TextState currentText = null;
+
+    // the gradient element whose stops are currently collected
+    private GradientState currentGradient = null;
+
+
+    SvgStreamingHandler(SvgNodeSink sink, boolean addRootRect, boolean useSeparatePathElements,
+                        boolean useSegmentPaths, int largeShapeThreshold,
+                        GradientFactory gradientFactory, SvgInternPool internPool) {
+        this.addRootRect = addRootRect;
+        this.useSeparatePathElements = useSeparatePathElements;
+        this.useSegmentPaths = useSegmentPaths;
+        this.largeShapeThreshold = largeShapeThreshold;
+        this.gradientFactory = gradientFactory;
+        this.internPool = internPool;
+        this.sink = sink;
+    }
+
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+
+    /**
+     * Converts an SVG document and emits its elements to the sink.
+     *
+     * @param svgFile The input stream which provides the SVG document.
+     * @throws XMLStreamException if the document could not be parsed.
+     */
+    void load(InputStream svgFile) throws XMLStreamException {
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(svgFile);
+
+        styles.push(Style.INITIAL);
+
+        // depth of the currently skipped foreign subtree
+        int skipDepth = 0;
+
+        try {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                  case XMLStreamConstants.START_ELEMENT :
+                      if (skipDepth > 0 || !isSvgElement(reader)) {
+                          skipDepth++;
+                      } else {
+                          startElement(reader);
+                      }
+                      break;
+
+                  case XMLStreamConstants.END_ELEMENT :
+                      if (skipDepth > 0) {
+                          skipDepth--;
+                      } else {
+                          endElement(reader.getLocalName());
+                      }
+                      break;
+
+                  case XMLStreamConstants.CHARACTERS :
+                  case XMLStreamConstants.CDATA :
+                  case XMLStreamConstants.SPACE :
+                      if (currentText != null && skipDepth == 0) {
+                          currentText.content.append(reader.getText());
+                      }
+                      break;
+
+                  default:
+                      break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+
+    private static boolean isSvgElement(XMLStreamReader reader) {
+        String namespace = reader.getNamespaceURI();
+        return namespace == null || namespace.isEmpty() || SVG_NAMESPACE.equals(namespace);
+    }
+
+
+    private void startElement(XMLStreamReader reader) {
+        Map<String, String> declared = getDeclaredProperties(reader);
+        Style style = styles.peek().derive(declared, getViewportDiagonal());
+        styles.push(style);
+
+        String localName = reader.getLocalName();
+        switch (localName) {
+          case "svg" :
+              handleSvg(reader);
+              break;
+
+          case "g" :
+              sink.startGroup(getId(reader), getTransform(reader));
+              break;
+
+          case "path" :
+              handlePath(reader, style);
+              break;
+
+          case "line" : {
+              float x1 = (float) getLength(reader, "x1", style, viewportWidth);
+              float y1 = (float) getLength(reader, "y1", style, viewportHeight);
+              float x2 = (float) getLength(reader, "x2", style, viewportWidth);
+              float y2 = (float) getLength(reader, "y2", style, viewportHeight);
+
+              addShape(SvgSceneNode.Kind.LINE, reader, style,
+                       new double[] {x1, y1, x2, y2}, null);
+          }
+              break;
+
+          case "rect" :
+              handleRect(reader, style);
+              break;
+
+          case "circle" : {
+              float centerX = (float) getLength(reader, "cx", style, viewportWidth);
+              float centerY = (float) getLength(reader, "cy", style, viewportHeight);
+              float radius = (float) getLength(reader, "r", style, getViewportDiagonal());
+
+              addShape(SvgSceneNode.Kind.CIRCLE, reader, style,
+                       new double[] {centerX, centerY, radius}, null);
+          }
+              break;
+
+          case "ellipse" : {
+              float centerX = (float) getLength(reader, "cx", style, viewportWidth);
+              float centerY = (float) getLength(reader, "cy", style, viewportHeight);
+              float rx = (float) getLength(reader, "rx", style, viewportWidth);
+              float ry = (float) getLength(reader, "ry", style, viewportHeight);
+
+              addShape(SvgSceneNode.Kind.ELLIPSE, reader, style,
+                       new double[] {centerX, centerY, rx, ry}, null);
+          }
+              break;
+
+          case "polygon" :
+              addPolyShape(reader, style, true);
+              break;
+
+          case "polyline" :
+              addPolyShape(reader, style, false);
+              break;
+
+          case "text" :
+              currentText = new TextState(reader, style);
+              break;
+
+          case "linearGradient" :
+          case "radialGradient" :
+              currentGradient = new GradientState(reader);
+              break;
+
+          case "stop" :
+              if (currentGradient != null) {
+                  currentGradient.stops.add(createStop(reader, declared));
+              }
+              break;
+
+          case "defs" :
+          case "metadata" :
+          case "tspan" :
+          case "pattern" :
+              break;
+
+          default:
+              System.err.print("Unknown element" + localName + ":");
+              break;
+        }
+    }
+
+
+    private void endElement(String localName) {
+        switch (localName) {
+          case "svg" : {
+              double[] viewport = viewports.pop();
+              viewportWidth = viewport[0];
+              viewportHeight = viewport[1];
+          }
+              break;
+
+          case "g" :
+              sink.endGroup();
+              break;
+
+          case "text" :
+              if (currentText != null) {
+                  currentText.finish();
+                  currentText = null;
+              }
+              break;
+
+          case "linearGradient" :
+          case "radialGradient" :
+              if (currentGradient != null) {
+                  currentGradient.finish();
+                  currentGradient = null;
+              }
+              break;
+
+          default:
+              break;
+        }
+
+        styles.pop();
+    }
+
+
+    // <svg>
+    private void handleSvg(XMLStreamReader reader) {
+        viewports.push(new double[] {viewportWidth, viewportHeight});
+
+        double[] viewBox = parseNumbers("viewBox", reader.getAttributeValue(null, "viewBox"));
+        if (viewBox.length == 4) {
+            viewportWidth = viewBox[2];
+            viewportHeight = viewBox[3];
+        } else {
+            viewBox = new double[4];
+            viewportWidth = parseLength("width", reader.getAttributeValue(null, "width"),
+                                        0, 0, 0);
+            viewportHeight = parseLength("height", reader.getAttributeValue(null, "height"),
+                                         0, 0, 0);
+        }
+
+        // optionally add a rectangle using the size of the whole drawing
+        if (addRootRect) {
+            float width = (float) viewBox[2];
+            float height = (float) viewBox[3];
+            sink.addShape(SvgSceneNode.Kind.RECTANGLE, getId(reader), null,
+                          new double[] {0, 0, width, height, 0, 0}, null, SvgStyle.ROOT_RECT);
+        }
+    }
+
+
+    private void handleRect(XMLStreamReader reader, Style style) {
+        float xpos = (float) getLength(reader, "x", style, viewportWidth);
+        float ypos = (float) getLength(reader, "y", style, viewportHeight);
+        float width = (float) getLength(reader, "width", style, viewportWidth);
+        float height = (float) getLength(reader, "height", style, viewportHeight);
+
+        // rx and ry default to each other if only one of them is specified
+        String rxValue = reader.getAttributeValue(null, "rx");
+        String ryValue = reader.getAttributeValue(null, "ry");
+        if (rxValue == null) {
+            rxValue = ryValue;
+        }
+        if (ryValue == null) {
+            ryValue = rxValue;
+        }
+        float cornerWidth = (float) parseLength("rx", rxValue,
+                                        style.fontSize, viewportWidth, 0);
+        float cornerHeight = (float) parseLength("ry", ryValue,
+                                        style.fontSize, viewportHeight, 0);
+
+        addShape(SvgSceneNode.Kind.RECTANGLE, reader, style,
+                 new double[] {xpos, ypos, width, height, 2 * cornerWidth, 2 * cornerHeight},
+                 null);
+    }
+
+
+    private void handlePath(XMLStreamReader reader, Style style) {
+        String path = reader.getAttributeValue(null, "d");
+        if (path == null) {
+            path = "";
+        }
+
+        if (useSeparatePathElements && !useSegmentPaths) {
+            sink.startGroup(getId(reader), null);
+            SvgPathParser.parse(path, new SvgPathParser.SegmentShapes(
+                                    sink, getStyle(style, false)));
+            sink.endGroup();
+        } else {
+            String content = internPool != null ? internPool.internPathData(path) : path;
+            addShape(useSegmentPaths ? SvgSceneNode.Kind.SEGMENT_PATH : SvgSceneNode.Kind.PATH,
+                     reader, style, NO_VALUES, content);
+        }
+    }
+
+
+    private void addShape(SvgSceneNode.Kind kind, XMLStreamReader reader, Style style,
+                          double[] geometry, String content) {
+        sink.addShape(kind, getId(reader), getTransform(reader), geometry, content,
+                      getStyle(style, false));
+    }
+
+
+    private static Affine getTransform(XMLStreamReader reader) {
+        return parseTransform("transform", reader.getAttributeValue(null, "transform"));
+    }
+
+
+    private static String getId(XMLStreamReader reader) {
+        String id = reader.getAttributeValue(null, "id");
+        return id == null ? "" : id;
+    }
+
+
+    private double getLength(XMLStreamReader reader, String attribute,
+                             Style style, double percentBase) {
+        return parseLength(attribute, reader.getAttributeValue(null, attribute),
+                           style.fontSize, percentBase, 0);
+    }
+
+
+    /**
+     * Parses a length like {@link SvgAttributeParser#parseLength}, but
+     * reports an invalid value and returns the default value instead.
+     */
+    private static double parseLength(String name, String value, double fontSize,
+                                      double percentBase, double defaultValue) {
+        try {
+            return SvgAttributeParser.parseLength(value, fontSize, percentBase, defaultValue);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid " + name + ": " + value);
+            return defaultValue;
+        }
+    }
+
+
+    /**
+     * Parses a list of numbers, or returns an empty list if the value is invalid.
+     */
+    private static double[] parseNumbers(String name, String value) {
+        try {
+            return SvgAttributeParser.parseNumbers(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid " + name + ": " + value);
+            return new double[0];
+        }
+    }
+
+
+    /**
+     * Parses a transformation, or returns <code>null</code> if the value is invalid.
+     * The matrix is rounded to float precision, like the matrices which Batik provides.
+     */
+    private static Affine parseTransform(String name, String value) {
+        Affine result;
+        try {
+            result = SvgAttributeParser.parseTransform(value);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid " + name + ": " + value);
+            return null;
+        }
+        if (result != null) {
+            result.setToTransform((float) result.getMxx(), (float) result.getMxy(),
+                                  (float) result.getTx(), (float) result.getMyx(),
+                                  (float) result.getMyy(), (float) result.getTy());
+        }
+        return result;
+    }
+
+
+    private double getViewportDiagonal() {
+        return Math.sqrt(viewportWidth * viewportWidth + viewportHeight * viewportHeight)
+               / Math.sqrt(2);
+    }
+
+
+    /**
+     * Adds a polygon or polyline, or an SVGPath if it has more points than
+     * the large shape threshold, to avoid boxing each coordinate.
+     */
+    private void addPolyShape(XMLStreamReader reader, Style style, boolean closed) {
+        String points = reader.getAttributeValue(null, "points");
+        double[] coordinates;
+        try {
+            coordinates = SvgAttributeParser.parsePoints(points);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid points: " + points);
+            coordinates = new double[0];
+        }
+        if (coordinates.length / 2 > largeShapeThreshold) {
+            addShape(SvgSceneNode.Kind.PATH, reader, style, NO_VALUES,
+                     SvgAttributeParser.formatPoints(coordinates, closed));
+        } else {
+            addShape(closed ? SvgSceneNode.Kind.POLYGON : SvgSceneNode.Kind.POLYLINE,
+                     reader, style, coordinates, null);
+        }
+    }
+
+
+    /**
+     * Collects the style properties which are explicitly declared on the
+     * current element, either as presentation attribute or inside the
+     * style attribute (which takes precedence).
+     */
+    private static Map<String, String> getDeclaredProperties(XMLStreamReader reader) {
+        Map<String, String> result = null;
+
+        for (int i = 0;  i < reader.getAttributeCount();  i++) {
+            String name = reader.getAttributeLocalName(i);
+            if (styleProperties.contains(name)) {
+                if (result == null) {
+                    result = new HashMap<>();
+                }
+                result.put(name, reader.getAttributeValue(i).trim());
+            }
+        }
+
+        String styleAttribute = reader.getAttributeValue(null, "style");
+        if (styleAttribute != null) {
+            if (result == null) {
+                result = new HashMap<>();
+            }
+            result.putAll(SvgAttributeParser.parseStyle(styleAttribute));
+        }
+
+        return result;
+    }
+
+
+    private Stop createStop(XMLStreamReader reader, Map<String, String> declared) {
+        String offsetValue = reader.getAttributeValue(null, "offset");
+        float offset = 0;
+        if (offsetValue != null) {
+            offsetValue = offsetValue.trim();
+            if (offsetValue.endsWith("%")) {
+                offset = (float) (parseLength("offset", offsetValue, 0, 1, 0));
+            } else {
+                offset = (float) parseLength("offset", offsetValue, 0, 0, 0);
+            }
+        }
+
+        String color = "black";
+        float stopOpacity = 1;
+        if (declared != null) {
+            color = declared.getOrDefault("stop-color", color);
+            if (declared.containsKey("stop-opacity")) {
+                stopOpacity = Style.parseOpacity("stop-opacity", declared.get("stop-opacity"),
+                                                 stopOpacity);
+            }
+        }
+
+        Color stopColor = createColor(color, stopOpacity, styles.peek());
+        if (stopColor == null) {
+            stopColor = Color.BLACK;
+        }
+        return new Stop(offset, stopColor);
+    }
+
+
+    /**
+     * Resolves the paints and the font of a style. All elements with the same
+     * style properties share the same SvgStyle and Paint instances.
+     */
+    private SvgStyle getStyle(Style style, boolean withFont) {
+        Map<Style, SvgStyle> resolved = withFont ? textStyles : shapeStyles;
+        SvgStyle result = resolved.get(style);
+        if (result == null) {
+            Paint fill = getPaint(style.fill, style.fillOpacity, style);
+            Paint stroke = getPaint(style.stroke, style.strokeOpacity, style);
+            SvgSceneFont font = null;
+            if (withFont) {
+                font = new SvgSceneFont(style.fontFamily, FontWeight.NORMAL, FontPosture.REGULAR,
+                                        style.fontSize);
+            }
+            if (internPool != null) {
+                fill = internPool.internPaint(fill);
+                stroke = internPool.internPaint(stroke);
+                font = internPool.internFont(font);
+            }
+            result = new SvgStyle(fill, stroke, style.strokeWidth, style.dashArray,
+                                  style.dashOffset, font);
+
+            // Do not remember styles which refer to a gradient which is not
+            // (yet) known - it might be defined later in the document
+            if ((fill != null || !style.fill.startsWith("url("))
+                && (stroke != null || !style.stroke.startsWith("url("))) {
+                resolved.put(style, result);
+            }
+        }
+        return result;
+    }
+
+
+    private Paint getPaint(String value, float opacity, Style style) {
+        if ("none".equals(value)) {
+            return null;
+        }
+
+        if (value.startsWith("url(")) {
+            int end = value.indexOf(')');
+            String uri = value.substring("url(".length(), end < 0 ? value.length() : end).trim();
+            if (uri.startsWith("#")) {
+                uri = uri.substring(1);
+            }
+            return paints.get(uri);
+        }
+
+        return createColor(value, opacity, style);
+    }
+
+
+    private static Color createColor(String value, float opacity, Style style) {
+        if ("currentColor".equals(value)) {
+            value = style.color;
+        }
+
+        Color color;
+        try {
+            color = Color.web(value);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid color: " + value);
+            return null;
+        }
+
+        float red = (float) Math.round(color.getRed() * 255) / 255;
+        float green = (float) Math.round(color.getGreen() * 255) / 255;
+        float blue = (float) Math.round(color.getBlue() * 255) / 255;
+        return new Color(red, green, blue, opacity);
+    }
+
+
+    /**
+     * The inherited style properties of an element.
+     */
+    private static final class Style {
+        static final Style INITIAL = new Style();
+
+        String fill = "black";
+        float fillOpacity = 1;
+        String stroke = "none";
+        float strokeOpacity = 1;
+        float strokeWidth = 1;
+        double[] dashArray = null;
+        double dashOffset = 0;
+        String fontFamily = "Arial, Helvetica, sans-serif";
+        float fontSize = (float) SvgAttributeParser.MEDIUM_FONT_SIZE;
+        String color = "black";
+
+        Style derive(Map<String, String> declared, double percentBase) {
+            if (declared == null) {
+                return this;
+            }
+
+            Style result = new Style();
+            result.fill = fill;
+            result.fillOpacity = fillOpacity;
+            result.stroke = stroke;
+            result.strokeOpacity = strokeOpacity;
+            result.strokeWidth = strokeWidth;
+            result.dashArray = dashArray;
+            result.dashOffset = dashOffset;
+            result.fontFamily = fontFamily;
+            result.fontSize = fontSize;
+            result.color = color;
+
+            // font-size first, since other lengths might be relative to it
+            String value = getDeclared(declared, "font-size");
+            if (value != null) {
+                result.fontSize = (float) parseFontSize(value, fontSize);
+            }
+
+            value = getDeclared(declared, "fill");
+            if (value != null) {
+                result.fill = value;
+            }
+            value = getDeclared(declared, "fill-opacity");
+            if (value != null) {
+                result.fillOpacity = parseOpacity("fill-opacity", value, fillOpacity);
+            }
+            value = getDeclared(declared, "stroke");
+            if (value != null) {
+                result.stroke = value;
+            }
+            value = getDeclared(declared, "stroke-opacity");
+            if (value != null) {
+                result.strokeOpacity = parseOpacity("stroke-opacity", value, strokeOpacity);
+            }
+            value = getDeclared(declared, "stroke-width");
+            if (value != null) {
+                result.strokeWidth = (float) parseLength("stroke-width", value,
+                                                    result.fontSize, percentBase, strokeWidth);
+            }
+            value = getDeclared(declared, "stroke-dasharray");
+            if (value != null) {
+                result.dashArray = parseDashArray(value, result.fontSize, percentBase);
+            }
+            value = getDeclared(declared, "stroke-dashoffset");
+            if (value != null) {
+                result.dashOffset = (float) parseLength("stroke-dashoffset", value,
+                                                    result.fontSize, percentBase, dashOffset);
+            }
+            value = getDeclared(declared, "font-family");
+            if (value != null) {
+                result.fontFamily = value;
+            }
+            value = getDeclared(declared, "color");
+            if (value != null) {
+                result.color = value;
+            }
+
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Style)) {
+                return false;
+            }
+
+            Style other = (Style) obj;
+            return Float.compare(fillOpacity, other.fillOpacity) == 0
+                && Float.compare(strokeOpacity, other.strokeOpacity) == 0
+                && Float.compare(strokeWidth, other.strokeWidth) == 0
+                && Double.compare(dashOffset, other.dashOffset) == 0
+                && Float.compare(fontSize, other.fontSize) == 0
+                && fill.equals(other.fill)
+                && stroke.equals(other.stroke)
+                && fontFamily.equals(other.fontFamily)
+                && color.equals(other.color)
+                && Arrays.equals(dashArray, other.dashArray);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Objects.hash(fill, fillOpacity, stroke, strokeOpacity, strokeWidth,
+                                      dashOffset, fontFamily, fontSize, color);
+            return 31 * result + Arrays.hashCode(dashArray);
+        }
+
+        private static String getDeclared(Map<String, String> declared, String property) {
+            String value = declared.get(property);
+            if (value == null || value.isEmpty() || "inherit".equals(value)) {
+                return null;
+            }
+            return value;
+        }
+
+        private static float parseOpacity(String name, String value, float defaultValue) {
+            float result;
+            try {
+                result = Float.parseFloat(value);
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid " + name + ": " + value);
+                return defaultValue;
+            }
+            return Math.max(0, Math.min(1, result));
+        }
+
+        private static double parseFontSize(String value, double parentSize) {
+            switch (value) {
+              case "xx-small" : return SvgAttributeParser.MEDIUM_FONT_SIZE / 1.2 / 1.2 / 1.2;
+              case "x-small" : return SvgAttributeParser.MEDIUM_FONT_SIZE / 1.2 / 1.2;
+              case "small" : return SvgAttributeParser.MEDIUM_FONT_SIZE / 1.2;
+              case "medium" : return SvgAttributeParser.MEDIUM_FONT_SIZE;
+              case "large" : return SvgAttributeParser.MEDIUM_FONT_SIZE * 1.2;
+              case "x-large" : return SvgAttributeParser.MEDIUM_FONT_SIZE * 1.2 * 1.2;
+              case "xx-large" : return SvgAttributeParser.MEDIUM_FONT_SIZE * 1.2 * 1.2 * 1.2;
+              case "smaller" : return parentSize / 1.2;
+              case "larger" : return parentSize * 1.2;
+              default:
+                  return parseLength("font-size", value, parentSize, parentSize, parentSize);
+            }
+        }
+
+        private static double[] parseDashArray(String value, double fontSize,
+                                               double percentBase) {
+            if ("none".equals(value)) {
+                return null;
+            }
+
+            String[] items = value.split("[\\s,]+");
+            double[] result = new double[items.length];
+            try {
+                for (int i = 0;  i < items.length;  i++) {
+                    result[i] = (float) SvgAttributeParser.parseLength(items[i], fontSize,
+                                                                       percentBase, 0);
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid stroke-dasharray: " + value);
+                return null;
+            }
+            return result;
+        }
+    }
+
+
+    /**
+     * Collects the content of a &lt;text&gt; element and its &lt;tspan&gt;
+     * children.
+     */
+    private final class TextState {
+        final StringBuilder content = new StringBuilder();
+        final String id;
+        final Affine transformation;
+        final Style style;
+        final float xpos;
+        final float ypos;
+
+        TextState(XMLStreamReader reader, Style style) {
+            this.id = getId(reader);
+            this.transformation = getTransform(reader);
+            this.style = style;
+            this.xpos = (float) getFirstLength(reader.getAttributeValue(null, "x"),
+                                               viewportWidth);
+            this.ypos = (float) getFirstLength(reader.getAttributeValue(null, "y"),
+                                               viewportHeight);
+        }
+
+        private double getFirstLength(String value, double percentBase) {
+            if (value == null || value.trim().isEmpty()) {
+                return 0;
+            }
+            String first = value.trim().split("[\\s,]+")[0];
+            return parseLength("coordinate", first, style.fontSize, percentBase, 0);
+        }
+
+        void finish() {
+            sink.addShape(SvgSceneNode.Kind.TEXT, id, transformation,
+                          new double[] {xpos, ypos}, content.toString(),
+                          getStyle(style, true));
+        }
+    }
+
+
+    /**
+     * Collects the attributes and stops of a gradient element.
+     */
+    private final class GradientState {
+        final List<Stop> stops = new ArrayList<>();
+        final boolean linear;
+        final String id;
+        final String href;
+        final Affine transformation;
+        final float[] values;
+
+        GradientState(XMLStreamReader reader) {
+            this.linear = "linearGradient".equals(reader.getLocalName());
+            this.id = getId(reader);
+            this.href = reader.getAttributeValue(XLINK_NAMESPACE, "href");
+            this.transformation = parseTransform("gradientTransform",
+                                    reader.getAttributeValue(null, "gradientTransform"));
+
+            if (linear) {
+                values = new float[] { getValue(reader, "x1"),
+                                       getValue(reader, "y1"),
+                                       getValue(reader, "x2"),
+                                       getValue(reader, "y2") };
+            } else {
+                float centerX = getValue(reader, "cx");
+                float centerY = getValue(reader, "cy");
+                values = new float[] { centerX,
+                                       centerY,
+                                       getValue(reader, "r"),
+                                       reader.getAttributeValue(null, "fx") == null
+                                           ? centerX : getValue(reader, "fx"),
+                                       reader.getAttributeValue(null, "fy") == null
+                                           ? centerY : getValue(reader, "fy") };
+            }
+        }
+
+        private float getValue(XMLStreamReader reader, String attribute) {
+            // Like the base values which Batik provides for the DOM based
+            // conversion, lengths are resolved without a viewport and font:
+            // percentages (which includes the default values 0%, 50% and 100%)
+            // and em/ex units are 0
+            return (float) parseLength(attribute, reader.getAttributeValue(null, attribute),
+                                       0, 0, 0);
+        }
+
+        void finish() {
+            // get all stops from a possibly linked gradient
+            if (href != null && href.startsWith("#")) {
+                Paint linked = paints.get(href.substring(1));
+                if (linked instanceof LinearGradient) {
+                    stops.addAll(((LinearGradient) linked).getStops());
+                } else if (linked instanceof RadialGradient) {
+                    stops.addAll(((RadialGradient) linked).getStops());
+                }
+            }
+
+            Paint gradientObject;
+            if (linear) {
+                gradientObject = gradientFactory.createLinearGradient(values[0], values[1],
+                                            values[2], values[3], transformation, stops);
+            } else {
+                gradientObject = gradientFactory.createRadialGradient(values[0], values[1],
+                                            values[2], values[3], values[4],
+                                            transformation, stops);
+            }
+            paints.put(id, gradientObject);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.Shape;
+import javafx.scene.text.Text;
+
+/**
+ * The resolved style of an SVG element, as applied to a JavaFX shape.
+ * A style is resolved once for all elements with the same computed style
+ * properties, and then applied to each of the corresponding shapes.
+ */
+final class SvgStyle {
+    private static final Double[] NO_DASHES = new Double[0];
+
+    /**
+     * The style of the optional rectangle in the size of the whole drawing.
+     */
+    static final SvgStyle ROOT_RECT = new SvgStyle(null, Color.BLACK, Double.NaN,
+                                                   new double[] {3.0, 7.0, 3.0, 7.0},
+                                                   Double.NaN, null);
+
+    private final Paint fill;
+    private final Paint stroke;
+    private final double strokeWidth;       // NaN if not defined
+    private final Double[] dashArray;
+    private final double[] dashValues;
+    private final double dashOffset;        // NaN if not defined
+    private final SvgSceneFont font;        // null for non-text shapes
+
+    SvgStyle(Paint fill, Paint stroke, double strokeWidth,
+             double[] dashArray, double dashOffset, SvgSceneFont font) {
+        this.fill = fill;
+        this.stroke = stroke;
+        this.strokeWidth = strokeWidth;
+        this.dashOffset = dashOffset;
+        this.font = font;
+
+        if (dashArray == null || dashArray.length == 0) {
+            this.dashArray = NO_DASHES;
+            this.dashValues = new double[0];
+        } else {
+            this.dashValues = dashArray.clone();
+            this.dashArray = new Double[dashArray.length];
+            for (int i = 0;  i < dashArray.length;  i++) {
+                this.dashArray[i] = dashArray[i];
+            }
+        }
+    }
+
+
+    /**
+     * Applies this style to a JavaFX shape. For Text shapes, the font is
+     * applied as well.
+     *
+     * @param shape The shape to style.
+     */
+    void applyTo(Shape shape) {
+        if (font != null && shape instanceof Text) {
+            ((Text) shape).setFont(font.toFont());
+        }
+
+        shape.setFill(fill);
+        shape.setStroke(stroke);
+        if (!Double.isNaN(strokeWidth)) {
+            shape.setStrokeWidth(strokeWidth);
+        }
+        if (dashArray.length > 0) {
+            shape.getStrokeDashArray().addAll(dashArray);
+        }
+        if (!Double.isNaN(dashOffset)) {
+            shape.setStrokeDashOffset(dashOffset);
+        }
+    }
+
+
+    Paint getFill() {
+        return fill;
+    }
+
+
+    Paint getStroke() {
+        return stroke;
+    }
+
+
+    SvgSceneFont getFont() {
+        return font;
+    }
+
+
+    double getStrokeWidth() {
+        return strokeWidth;
+    }
+
+
+    // the returned array is shared and must not be modified
+    double[] getDashArray() {
+        return dashValues;
+    }
+
+
+    double getDashOffset() {
+        return dashOffset;
+    }
+}
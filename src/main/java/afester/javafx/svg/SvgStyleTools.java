@@ -18,16 +18,13 @@ package afester.javafx.svg;
 
 import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
-import javafx.scene.shape.Shape;
-import javafx.scene.text.Font;
-import javafx.scene.text.Text;
+import javafx.scene.text.FontPosture;
+import javafx.scene.text.FontWeight;
 import javafx.scene.transform.Affine;
 
 import org.apache.batik.anim.dom.SVGOMSVGElement;
 import org.apache.batik.anim.dom.SVGStylableElement;
-import org.apache.batik.css.dom.CSSOMComputedStyle;
 import org.apache.batik.css.dom.CSSOMComputedStyle.ComputedCSSValue;
-import org.apache.batik.css.dom.CSSOMSVGComputedStyle;
 import org.apache.batik.css.dom.CSSOMSVGComputedStyle.ComputedCSSPaintValue;
 import org.w3c.dom.css.CSSPrimitiveValue;
 import org.w3c.dom.css.CSSStyleDeclaration;
@@ -38,15 +35,20 @@ import org.w3c.dom.svg.SVGTransform;
 import org.w3c.dom.svg.SVGTransformList;
 import org.w3c.dom.svg.SVGTransformable;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 public class SvgStyleTools {
     protected SVGOMSVGElement svgElement = null;
     private Map<String, Paint> paints = new HashMap<>();
+    private Map<StyleSignature, SvgStyle> styles = new HashMap<>();
+    private final SvgInternPool internPool;
 
-    SvgStyleTools(SVGOMSVGElement svgElement) {
+    SvgStyleTools(SVGOMSVGElement svgElement, SvgInternPool internPool) {
         this.svgElement = svgElement;
+        this.internPool = internPool;
     }
 
     Affine getTransform(SVGTransformable element) {
@@ -76,169 +78,224 @@ public class SvgStyleTools {
         return fxTrans;
     }
 
-    private Paint getFillColor(SVGStylableElement obj) {
-        Paint result = null;
-
+    /**
+     * Resolves the style of an element. The computed style is only queried
+     * once per element, and all elements with the same computed style
+     * properties share the same SvgStyle and Paint instances.
+     *
+     * @param element The SVG DOM element which defines the styling.
+     * @param withFont Whether the font properties need to be resolved.
+     * @return The resolved style.
+     */
+    SvgStyle getStyle(SVGStylableElement element, boolean withFont) {
         // svgElement.getComputedStyle() takes care of all styling aspects,
         // like inheritance of style attributes or presentation versus CSS styles
-        CSSStyleDeclaration style = svgElement.getComputedStyle(obj, null);
-        CSSOMSVGComputedStyle.ComputedCSSPaintValue val = 
-                (ComputedCSSPaintValue) style.getPropertyCSSValue("fill");
+        CSSStyleDeclaration style = svgElement.getComputedStyle(element, null);
+        StyleSignature signature = new StyleSignature(style, withFont);
 
-        if (val.getPaintType() == SVGPaint.SVG_PAINTTYPE_NONE) {    // fill=none
-            return null;
-        }
+        SvgStyle result = styles.get(signature);
+        if (result == null) {
+            result = signature.createStyle();
 
-        if (val.getPaintType() == SVGPaint.SVG_PAINTTYPE_URI) {
-            String uri = val.getUri();
-            if (uri.startsWith("file:#")) {
-                uri = uri.substring("file:#".length());
+            // Do not remember styles which refer to a paint server which is not
+            // (yet) known - it might be defined later in the document
+            if ((signature.fillUri == null || result.getFill() != null)
+                && (signature.strokeUri == null || result.getStroke() != null)) {
+                styles.put(signature, result);
             }
-            result = paints.get(uri);
         }
+        return result;
+    }
 
-        if (val.getPaintType() == SVGPaint.SVG_PAINTTYPE_RGBCOLOR) {
-            float red = val.getRed().getFloatValue(CSSPrimitiveValue.CSS_NUMBER) / 255;
-            float green = val.getGreen().getFloatValue(CSSPrimitiveValue.CSS_NUMBER) / 255;
-            float blue = val.getBlue().getFloatValue(CSSPrimitiveValue.CSS_NUMBER) / 255;
-    
-            CSSOMComputedStyle.ComputedCSSValue  opacity = 
-                    (ComputedCSSValue) style.getPropertyCSSValue("fill-opacity");
-            float alpha = opacity.getFloatValue(CSSPrimitiveValue.CSS_NUMBER);
-            result = new Color(red, green, blue, alpha);
-        }
 
-        return result;
+    public void addPaint(String id, Paint paintObject) {
+        paints.put(id,  paintObject);
+    }
+
+    public Paint getPaint(String href) {
+        return paints.get(href);
     }
 
 
-    private Paint getStrokeColor(SVGStylableElement obj) {
+    /**
+     * The raw computed style properties of an element, as read from the
+     * computed style declaration. Used as the key to share resolved styles.
+     */
+    private final class StyleSignature {
+        private final short fillType;
+        private final String fillUri;
+        private final float[] fillColor;
+        private final short strokeType;
+        private final String strokeUri;
+        private final float[] strokeColor;
+        private final float strokeWidth;      // NaN if not defined
+        private final float[] dashArray;      // null if not defined
+        private final float dashOffset;       // NaN if not defined
+        private final String fontFamily;
+        private final float fontSize;
+        private final boolean withFont;
+
+        StyleSignature(CSSStyleDeclaration style, boolean withFont) {
+            ComputedCSSPaintValue fill = (ComputedCSSPaintValue) style.getPropertyCSSValue("fill");
+            fillType = fill.getPaintType();
+            fillUri = getUri(fill);
+            fillColor = getColor(fill, style, "fill-opacity");
+
+            ComputedCSSPaintValue stroke = (ComputedCSSPaintValue) style.getPropertyCSSValue("stroke");
+            strokeType = stroke.getPaintType();
+            strokeUri = getUri(stroke);
+            strokeColor = getColor(stroke, style, "stroke-opacity");
+
+            // stroke-width
+            ComputedCSSValue swidth = (ComputedCSSValue) style.getPropertyCSSValue("stroke-width");
+            if (swidth != null) {
+                if (swidth.getPrimitiveType() == CSSPrimitiveValue.CSS_NUMBER) {
+                    strokeWidth = swidth.getFloatValue(CSSPrimitiveValue.CSS_NUMBER);
+                } else {
+                    strokeWidth = swidth.getFloatValue(CSSPrimitiveValue.CSS_PX);
+                }
+            } else {
+                strokeWidth = Float.NaN;
+            }
 
-        Paint result = null;
+            // stroke-dasharray
+            ComputedCSSValue strokeDashArray = 
+                    (ComputedCSSValue) style.getPropertyCSSValue("stroke-dasharray");
+            if (strokeDashArray != null
+                && strokeDashArray.getCssValueType() == CSSValue.CSS_VALUE_LIST) {
+                dashArray = new float[strokeDashArray.getLength()];
+                for (int i = 0;  i < dashArray.length;  i++) {
+                    dashArray[i] = strokeDashArray.getValue().item(i).getFloatValue();
+                }
+            } else {
+                dashArray = null;
+            }
 
-        CSSStyleDeclaration style = svgElement.getComputedStyle(obj, null);
-        CSSOMSVGComputedStyle.ComputedCSSPaintValue val = 
-                    (ComputedCSSPaintValue) style.getPropertyCSSValue("stroke");
+            // stroke-dashoffset
+            ComputedCSSValue strokeDashOffset = 
+                    (ComputedCSSValue) style.getPropertyCSSValue("stroke-dashoffset");
+            if (strokeDashOffset != null) {
+                dashOffset = strokeDashOffset.getValue().getFloatValue();
+            } else {
+                dashOffset = Float.NaN;
+            }
 
-        if (val.getPaintType() == SVGPaint.SVG_PAINTTYPE_NONE) {
-            return null;    // stroke=none
+            this.withFont = withFont;
+            if (withFont) {
+                ComputedCSSValue family = (ComputedCSSValue) style.getPropertyCSSValue("font-family");
+                fontFamily = family != null ? family.getCssText() : null;
+
+                ComputedCSSValue size = (ComputedCSSValue) style.getPropertyCSSValue("font-size");
+                if (size == null) {
+                    fontSize = 0;
+                } else if (size.getPrimitiveType() == CSSPrimitiveValue.CSS_NUMBER) {
+                    fontSize = size.getFloatValue(CSSPrimitiveValue.CSS_NUMBER); // https://bugs.launchpad.net/inkscape/+bug/168164
+                } else {
+                    fontSize = size.getFloatValue(CSSPrimitiveValue.CSS_PX);     // https://bugs.launchpad.net/inkscape/+bug/168164
+                }
+            } else {
+                fontFamily = null;
+                fontSize = 0;
+            }
         }
 
-        if (val.getPaintType() == SVGPaint.SVG_PAINTTYPE_URI) {
+
+        private String getUri(ComputedCSSPaintValue val) {
+            if (val.getPaintType() != SVGPaint.SVG_PAINTTYPE_URI) {
+                return null;
+            }
+
             String uri = val.getUri();
             if (uri.startsWith("file:#")) {
                 uri = uri.substring("file:#".length());
             }
-            result = paints.get(uri);
-        }
-
-        if (val.getPaintType() == SVGPaint.SVG_PAINTTYPE_RGBCOLOR) {
-            float red = val.getRed().getFloatValue(CSSPrimitiveValue.CSS_NUMBER) / 255;
-            float green = val.getGreen().getFloatValue(CSSPrimitiveValue.CSS_NUMBER) / 255;
-            float blue = val.getBlue().getFloatValue(CSSPrimitiveValue.CSS_NUMBER) / 255;
-    
-            CSSOMComputedStyle.ComputedCSSValue opacity = 
-                    (ComputedCSSValue) style.getPropertyCSSValue("stroke-opacity");
-            float alpha = opacity.getFloatValue(CSSPrimitiveValue.CSS_NUMBER);
-    
-            result = new Color(red, green, blue, alpha);
+            return uri;
         }
-        
-        return result;
-    }
-
-
-    /**
-     * Applies the styling of an svg element to a JavaFX Shape object.
-     *
-     * @param fxObj   The JavaFX Shape object to style.
-     * @param element The SVG DOM element which defines the styling.
-     */
-    void applyStyle(Shape fxObj, SVGStylableElement element) {
 
-        // fill
-        Paint fillColor = getFillColor(element);
-        fxObj.setFill(fillColor);
 
-        // stroke
-        Paint strokeColor = getStrokeColor(element);
-        fxObj.setStroke(strokeColor);
-
-        // stroke-width
-        CSSStyleDeclaration style = svgElement.getComputedStyle(element, null);
-        CSSOMSVGComputedStyle.ComputedCSSValue swidth = 
-                    (ComputedCSSValue) style.getPropertyCSSValue("stroke-width");
-        if (swidth != null) {
-            float strokeWidth = 0;
-            if (swidth.getPrimitiveType() == CSSPrimitiveValue.CSS_NUMBER) {
-                strokeWidth = swidth.getFloatValue(CSSPrimitiveValue.CSS_NUMBER);
-            } else {
-                strokeWidth = swidth.getFloatValue(CSSPrimitiveValue.CSS_PX);
+        private float[] getColor(ComputedCSSPaintValue val, CSSStyleDeclaration style,
+                                 String opacityProperty) {
+            if (val.getPaintType() != SVGPaint.SVG_PAINTTYPE_RGBCOLOR) {
+                return null;
             }
 
-            fxObj.setStrokeWidth(strokeWidth);
+            ComputedCSSValue opacity = (ComputedCSSValue) style.getPropertyCSSValue(opacityProperty);
+            return new float[] {
+                    val.getRed().getFloatValue(CSSPrimitiveValue.CSS_NUMBER) / 255,
+                    val.getGreen().getFloatValue(CSSPrimitiveValue.CSS_NUMBER) / 255,
+                    val.getBlue().getFloatValue(CSSPrimitiveValue.CSS_NUMBER) / 255,
+                    opacity.getFloatValue(CSSPrimitiveValue.CSS_NUMBER)};
         }
 
-        // stroke-dasharray
-        CSSOMSVGComputedStyle.ComputedCSSValue strokeDashArray = 
-                (ComputedCSSValue) style.getPropertyCSSValue("stroke-dasharray");
-        if (strokeDashArray != null
-            && strokeDashArray.getCssValueType() == CSSValue.CSS_VALUE_LIST) {
-            for (int i = 0;  i < strokeDashArray.getLength();  i++) {
-                double dashLength = strokeDashArray.getValue().item(i).getFloatValue();
-                fxObj.getStrokeDashArray().add(dashLength);            
-            }
-        }
 
-        // stroke-dashoffset
-        CSSOMSVGComputedStyle.ComputedCSSValue strokeDashOffset = 
-                (ComputedCSSValue) style.getPropertyCSSValue("stroke-dashoffset");
-        if (strokeDashOffset != null) {
-            double dashOffset = strokeDashOffset.getValue().getFloatValue();
-            fxObj.setStrokeDashOffset(dashOffset);
+        private Paint createPaint(short type, String uri, float[] color) {
+            if (type == SVGPaint.SVG_PAINTTYPE_URI) {
+                return paints.get(uri);
+            }
+            if (type == SVGPaint.SVG_PAINTTYPE_RGBCOLOR) {
+                return new Color(color[0], color[1], color[2], color[3]);
+            }
+            return null;    // none, or not supported
         }
-    }
 
 
-    void applyTextStyle(Text fxObj, SVGStylableElement obj) {
-        CSSStyleDeclaration style = svgElement.getComputedStyle(obj, null); // obj.getStyle();
-
-        String fontFamily = null;
-        CSSOMComputedStyle.ComputedCSSValue val = 
-                    (ComputedCSSValue) style.getPropertyCSSValue("font-family");
-        if (val != null) {
-            fontFamily = val.getCssText();
-        }
+        SvgStyle createStyle() {
+            double[] dashes = null;
+            if (dashArray != null) {
+                dashes = new double[dashArray.length];
+                for (int i = 0;  i < dashes.length;  i++) {
+                    dashes[i] = dashArray[i];
+                }
+            }
 
-        float fontSize = 0;
-        CSSOMComputedStyle.ComputedCSSValue val2 = 
-                    (ComputedCSSValue) style.getPropertyCSSValue("font-size");
-        if (val2 != null) {
-            if (val2.getPrimitiveType() == CSSPrimitiveValue.CSS_NUMBER) {
-                fontSize = val2.getFloatValue(CSSPrimitiveValue.CSS_NUMBER); // https://bugs.launchpad.net/inkscape/+bug/168164
-            } else {
-                fontSize = val2.getFloatValue(CSSPrimitiveValue.CSS_PX);     // https://bugs.launchpad.net/inkscape/+bug/168164
+            Paint fill = createPaint(fillType, fillUri, fillColor);
+            Paint stroke = createPaint(strokeType, strokeUri, strokeColor);
+            SvgSceneFont font = null;
+            if (withFont) {
+                font = new SvgSceneFont(fontFamily, FontWeight.NORMAL, FontPosture.REGULAR,
+                                        fontSize);
+            }
+            if (internPool != null) {
+                fill = internPool.internPaint(fill);
+                stroke = internPool.internPaint(stroke);
+                font = internPool.internFont(font);
             }
+            return new SvgStyle(fill, stroke, strokeWidth, dashes, dashOffset, font);
         }
 
-        Font font = Font.font(fontFamily, fontSize);
-        fxObj.setFont(font);
 
-        applyStyle(fxObj, obj);
-        
-/*        font-style:normal;
-        font-variant:normal;
-        font-weight:normal;
-        font-stretch:normal;
-*/
-    }
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof StyleSignature)) {
+                return false;
+            }
 
-    public void addPaint(String id, Paint paintObject) {
-        paints.put(id,  paintObject);
-    }
+            StyleSignature other = (StyleSignature) obj;
+            return fillType == other.fillType
+                && strokeType == other.strokeType
+                && withFont == other.withFont
+                && Float.compare(strokeWidth, other.strokeWidth) == 0
+                && Float.compare(dashOffset, other.dashOffset) == 0
+                && Float.compare(fontSize, other.fontSize) == 0
+                && Objects.equals(fillUri, other.fillUri)
+                && Objects.equals(strokeUri, other.strokeUri)
+                && Arrays.equals(fillColor, other.fillColor)
+                && Arrays.equals(strokeColor, other.strokeColor)
+                && Arrays.equals(dashArray, other.dashArray)
+                && Objects.equals(fontFamily, other.fontFamily);
+        }
 
-    public Paint getPaint(String href) {
-        return paints.get(href);
-    }
 
+        @Override
+        public int hashCode() {
+            int result = Objects.hash(fillType, fillUri, strokeType, strokeUri,
+                                      strokeWidth, dashOffset, fontFamily, fontSize, withFont);
+            result = 31 * result + Arrays.hashCode(fillColor);
+            result = 31 * result + Arrays.hashCode(strokeColor);
+            return 31 * result + Arrays.hashCode(dashArray);
+        }
+    }
 }
@@ -0,0 +1,484 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.image.Image;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Renders an SVG document into fixed size raster tiles at a number of zoom
+ * levels. The tiles are rendered on an executor, without the JavaFX
+ * application thread, and are kept in a bounded cache, so that very large
+ * drawings can be panned and zoomed without creating any scene graph nodes
+ * for their elements.
+ * <p>
+ * Zoom level <code>0</code> renders one user unit of the document into one
+ * pixel, each level above doubles and each level below halves the
+ * resolution. The tile at column <code>0</code> and row <code>0</code>
+ * starts at the top left corner of the document bounds.
+ * <p>
+ * The current viewport is set with {@link #setViewport(Bounds, double)},
+ * which renders the visible tiles and prefetches their neighbors. Tiles
+ * which were requested for a previous viewport and are not yet rendered
+ * are dropped when the viewport changes. Each thread which renders tiles
+ * keeps its own copy of the document, so the executor should have a small,
+ * bounded number of threads.
+ *
+ * @see SvgTileView
+ */
+public class SvgTileRenderer {
+
+    /** The default width and height of a tile in pixels. */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    /** The default maximum number of tiles which are kept in the cache. */
+    public static final int DEFAULT_MAXIMUM_TILES = 256;
+
+    /** The lowest zoom level, which renders 256 user units into one pixel. */
+    public static final int MIN_LEVEL = -8;
+
+    /** The highest zoom level, which renders one user unit into 256 pixels. */
+    public static final int MAX_LEVEL = 8;
+
+    // the number of tiles around the viewport which are prefetched
+    private static final int PREFETCH_DISTANCE = 1;
+
+    private final byte[] content;
+    private final SvgParserPool parserPool;
+    private final Bounds documentBounds;
+    private final int tileSize;
+    private final int maximumTiles;
+    private final Executor executor;
+
+    // the parsed documents which are currently not used by a rendering thread
+    private final ConcurrentLinkedQueue<SvgRasterizer> rasterizers = new ConcurrentLinkedQueue<>();
+
+    // access ordered, the eldest entry is the least recently used one
+    private final LinkedHashMap<Tile, Image> tiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    // the tiles which are currently rendered or waiting to be rendered
+    private final Map<Tile, Task> pending = new HashMap<>();
+
+    // the tiles of the current viewport, including the prefetched ones
+    private Set<Tile> wanted = Collections.emptySet();
+
+    private long renderedCount = 0;
+    private long droppedCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     * Creates a new tile renderer.
+     *
+     * @param content The SVG document.
+     * @param parserPool The pool which provides the parser infrastructure,
+     *                   or <code>null</code> to create new parsers.
+     * @param tileSize The width and height of a tile in pixels.
+     * @param maximumTiles The maximum number of tiles which are kept in the cache.
+     * @param executor The executor which renders the tiles.
+     * @throws IOException if the document can not be parsed.
+     */
+    SvgTileRenderer(byte[] content, SvgParserPool parserPool,
+                    int tileSize, int maximumTiles, Executor executor) throws IOException {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize must be positive");
+        }
+        if (maximumTiles < 0) {
+            throw new IllegalArgumentException("maximumTiles must not be negative");
+        }
+        this.content = content;
+        this.parserPool = parserPool;
+        this.tileSize = tileSize;
+        this.maximumTiles = maximumTiles;
+        this.executor = executor;
+
+        // parse the document once up front to report errors to the caller
+        SvgRasterizer rasterizer = SvgRasterizer.create(parserPool,
+                                                        new ByteArrayInputStream(content));
+        this.documentBounds = rasterizer.getDocumentBounds();
+        rasterizers.add(rasterizer);
+    }
+
+
+    /**
+     * @return The area of the document in user coordinates.
+     */
+    public Bounds getDocumentBounds() {
+        return documentBounds;
+    }
+
+
+    /**
+     * @return The width and height of a tile in pixels.
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+
+    /**
+     * @param zoom The factor by which the document is scaled on the screen.
+     * @return The lowest zoom level whose resolution is at least the
+     *         resolution required for the zoom factor.
+     */
+    public int getLevel(double zoom) {
+        if (!(zoom > 0)) {
+            return MIN_LEVEL;
+        }
+        int level = (int) Math.ceil(Math.log(zoom) / Math.log(2) - 1e-9);
+        return Math.max(MIN_LEVEL, Math.min(MAX_LEVEL, level));
+    }
+
+
+    /**
+     * @param level The zoom level.
+     * @return The width and height of the document area which is covered by
+     *         one tile, in user units.
+     */
+    public double getTileExtent(int level) {
+        return tileSize / Math.scalb(1.0, level);
+    }
+
+
+    /**
+     * @param level The zoom level.
+     * @param column The column of the tile.
+     * @param row The row of the tile.
+     * @return The document area which is covered by the tile, in user units.
+     */
+    public Bounds getTileBounds(int level, int column, int row) {
+        double extent = getTileExtent(level);
+        return new BoundingBox(documentBounds.getMinX() + column * extent,
+                               documentBounds.getMinY() + row * extent, extent, extent);
+    }
+
+
+    /**
+     * @param level The zoom level.
+     * @param area An area of the document, in user units.
+     * @return The first column, last column, first row and last row of the
+     *         tiles which intersect the area, or <code>null</code> if the
+     *         area does not intersect the document.
+     */
+    int[] getTileRange(int level, Bounds area) {
+        double extent = getTileExtent(level);
+        int columns = (int) Math.ceil(documentBounds.getWidth() / extent);
+        int rows = (int) Math.ceil(documentBounds.getHeight() / extent);
+
+        double originX = documentBounds.getMinX();
+        double originY = documentBounds.getMinY();
+        int firstColumn = Math.max(0, (int) Math.floor((area.getMinX() - originX) / extent));
+        int lastColumn = Math.min(columns - 1,
+                                  (int) Math.ceil((area.getMaxX() - originX) / extent) - 1);
+        int firstRow = Math.max(0, (int) Math.floor((area.getMinY() - originY) / extent));
+        int lastRow = Math.min(rows - 1, (int) Math.ceil((area.getMaxY() - originY) / extent) - 1);
+
+        if (firstColumn > lastColumn || firstRow > lastRow) {
+            return null;
+        }
+        return new int[] {firstColumn, lastColumn, firstRow, lastRow};
+    }
+
+
+    /**
+     * Sets the area of the document which is currently shown. The visible
+     * tiles which are not cached are rendered, starting with the ones in the
+     * center of the viewport, followed by the tiles around the viewport.
+     * Tiles of a previous viewport which have not yet been rendered are dropped.
+     *
+     * @param area The visible area of the document, in user units.
+     * @param zoom The factor by which the document is scaled on the screen.
+     */
+    public void setViewport(Bounds area, double zoom) {
+        int level = getLevel(zoom);
+        int[] range = getTileRange(level, area);
+        if (range == null) {
+            synchronized (this) {
+                wanted = Collections.emptySet();
+            }
+            return;
+        }
+
+        List<Tile> visible = new ArrayList<>();
+        for (int row = range[2]; row <= range[3]; row++) {
+            for (int column = range[0]; column <= range[1]; column++) {
+                visible.add(new Tile(level, column, row));
+            }
+        }
+        double centerColumn = (range[0] + range[1]) / 2.0;
+        double centerRow = (range[2] + range[3]) / 2.0;
+        visible.sort(Comparator.comparingDouble(t -> Math.hypot(t.column - centerColumn,
+                                                                t.row - centerRow)));
+
+        List<Tile> prefetch = new ArrayList<>();
+        double extent = getTileExtent(level);
+        double margin = PREFETCH_DISTANCE * extent;
+        Bounds prefetchArea = new BoundingBox(area.getMinX() - margin, area.getMinY() - margin,
+                                              area.getWidth() + 2 * margin,
+                                              area.getHeight() + 2 * margin);
+        int[] prefetchRange = getTileRange(level, prefetchArea);
+        for (int row = prefetchRange[2]; row <= prefetchRange[3]; row++) {
+            for (int column = prefetchRange[0]; column <= prefetchRange[1]; column++) {
+                if (column < range[0] || column > range[1] || row < range[2] || row > range[3]) {
+                    prefetch.add(new Tile(level, column, row));
+                }
+            }
+        }
+
+        Set<Tile> newWanted = new HashSet<>(visible);
+        newWanted.addAll(prefetch);
+        synchronized (this) {
+            wanted = newWanted;
+        }
+
+        for (Tile tile : visible) {
+            request(tile, true);
+        }
+        for (Tile tile : prefetch) {
+            request(tile, true);
+        }
+    }
+
+
+    /**
+     * @param level The zoom level.
+     * @param column The column of the tile.
+     * @param row The row of the tile.
+     * @return The tile, or <code>null</code> if it is not cached.
+     */
+    public synchronized Image getTile(int level, int column, int row) {
+        return tiles.get(new Tile(level, column, row));
+    }
+
+
+    /**
+     * Requests a tile. Unlike the tiles requested through
+     * {@link #setViewport(Bounds, double)}, the tile is rendered even if the
+     * viewport changes.
+     *
+     * @param level The zoom level.
+     * @param column The column of the tile.
+     * @param row The row of the tile.
+     * @return The future which completes with the tile.
+     */
+    public CompletableFuture<Image> requestTile(int level, int column, int row) {
+        return request(new Tile(level, column, row), false);
+    }
+
+
+    /**
+     * Requests a tile of the current viewport. The tile is dropped if the
+     * viewport changes before it is rendered.
+     *
+     * @param level The zoom level.
+     * @param column The column of the tile.
+     * @param row The row of the tile.
+     * @return The future which completes with the tile, or which is
+     *         cancelled if the tile is dropped.
+     */
+    CompletableFuture<Image> fetchTile(int level, int column, int row) {
+        return request(new Tile(level, column, row), true);
+    }
+
+
+    private CompletableFuture<Image> request(Tile tile, boolean droppable) {
+        Task task;
+        synchronized (this) {
+            Image image = tiles.get(tile);
+            if (image != null) {
+                return CompletableFuture.completedFuture(image);
+            }
+
+            task = pending.get(tile);
+            if (task != null) {
+                task.droppable &= droppable;
+                return task.future;
+            }
+
+            task = new Task(droppable);
+            pending.put(tile, task);
+        }
+
+        Task newTask = task;
+        executor.execute(() -> render(tile, newTask));
+        return task.future;
+    }
+
+
+    private void render(Tile tile, Task task) {
+        synchronized (this) {
+            if (task.droppable && !wanted.contains(tile)) {
+                pending.remove(tile);
+                droppedCount++;
+                task.future.cancel(false);
+                return;
+            }
+        }
+
+        SvgRasterizer rasterizer = rasterizers.poll();
+        try {
+            if (rasterizer == null) {
+                rasterizer = SvgRasterizer.create(parserPool, new ByteArrayInputStream(content));
+            }
+            Bounds area = getTileBounds(tile.level, tile.column, tile.row);
+            Image image = SvgRasterizer.toImage(rasterizer.render(area, tileSize, tileSize));
+            put(tile, image);
+            task.future.complete(image);
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                pending.remove(tile);
+            }
+            task.future.completeExceptionally(e);
+        } finally {
+            if (rasterizer != null) {
+                rasterizers.add(rasterizer);
+            }
+        }
+    }
+
+
+    private synchronized void put(Tile tile, Image image) {
+        pending.remove(tile);
+        renderedCount++;
+
+        if (maximumTiles > 0) {
+            tiles.put(tile, image);
+        }
+        Iterator<Tile> iterator = tiles.keySet().iterator();
+        while (tiles.size() > maximumTiles && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+
+    /**
+     * Removes all tiles from the cache. The statistics are not reset.
+     */
+    public synchronized void clear() {
+        tiles.clear();
+    }
+
+
+    /**
+     * @return The number of tiles in the cache.
+     */
+    public synchronized int getTileCount() {
+        return tiles.size();
+    }
+
+
+    /**
+     * @return The maximum number of tiles kept in the cache.
+     */
+    public int getMaximumTiles() {
+        return maximumTiles;
+    }
+
+
+    /**
+     * @return The number of tiles which have been rendered.
+     */
+    public synchronized long getRenderedCount() {
+        return renderedCount;
+    }
+
+
+    /**
+     * @return The number of tiles which have not been rendered because the
+     *         viewport changed before their rendering started.
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+
+    /**
+     * @return The number of tiles which have been removed from the cache to
+     *         keep its size within the bound.
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+
+    @Override
+    public synchronized String toString() {
+        return String.format("SvgTileRenderer[tiles=%d/%d, rendered=%d, dropped=%d, "
+                             + "evictions=%d]", tiles.size(), maximumTiles,
+                             renderedCount, droppedCount, evictionCount);
+    }
+
+
+    private static final class Task {
+        final CompletableFuture<Image> future = new CompletableFuture<>();
+
+        // whether the tile is only rendered while it belongs to the viewport
+        boolean droppable;
+
+        Task(boolean droppable) {
+            this.droppable = droppable;
+        }
+    }
+
+
+    /**
+     * Identifies a tile by its zoom level, column and row.
+     */
+    private static final class Tile {
+        private final int level;
+        private final int column;
+        private final int row;
+
+        Tile(int level, int column, int row) {
+            this.level = level;
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Tile)) {
+                return false;
+            }
+            Tile other = (Tile) obj;
+            return level == other.level && column == other.column && row == other.row;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * level + column) + row;
+        }
+    }
+}
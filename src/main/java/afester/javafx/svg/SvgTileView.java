@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.application.Platform;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Region;
+import javafx.scene.shape.Rectangle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A region which shows an SVG document through the tiles of an
+ * {@link SvgTileRenderer}. The region only composites tiles which have
+ * already been rendered - missing tiles are requested from the renderer,
+ * and the region is laid out again when they are available.
+ * <p>
+ * The shown area of the document is defined by the document coordinates
+ * of the top left corner of the region and the zoom factor. A renderer
+ * should only be used by one view, since the view defines its viewport.
+ */
+public class SvgTileView extends Region {
+
+    private final SvgTileRenderer renderer;
+
+    private final DoubleProperty viewportX = new SimpleDoubleProperty(this, "viewportX");
+    private final DoubleProperty viewportY = new SimpleDoubleProperty(this, "viewportY");
+    private final DoubleProperty zoom = new SimpleDoubleProperty(this, "zoom", 1.0);
+
+    // the image views which show the tiles, reused between layout passes
+    private final List<ImageView> tileViews = new ArrayList<>();
+
+    // whether a layout pass has been scheduled because a tile was rendered
+    private final AtomicBoolean layoutScheduled = new AtomicBoolean();
+
+    /**
+     * Creates a view which shows the tiles of a renderer.
+     *
+     * @param renderer The renderer which provides the tiles.
+     */
+    public SvgTileView(SvgTileRenderer renderer) {
+        this.renderer = renderer;
+
+        Rectangle clip = new Rectangle();
+        clip.widthProperty().bind(widthProperty());
+        clip.heightProperty().bind(heightProperty());
+        setClip(clip);
+
+        viewportX.addListener((observable, oldValue, newValue) -> requestLayout());
+        viewportY.addListener((observable, oldValue, newValue) -> requestLayout());
+        zoom.addListener((observable, oldValue, newValue) -> requestLayout());
+    }
+
+
+    @Override
+    protected void layoutChildren() {
+        double scale = zoom.get();
+        double originX = viewportX.get();
+        double originY = viewportY.get();
+        Bounds area = new BoundingBox(originX, originY, getWidth() / scale, getHeight() / scale);
+        renderer.setViewport(area, scale);
+
+        int level = renderer.getLevel(scale);
+        int[] range = renderer.getTileRange(level, area);
+        int count = 0;
+        if (range != null) {
+            for (int row = range[2]; row <= range[3]; row++) {
+                for (int column = range[0]; column <= range[1]; column++) {
+                    CompletableFuture<Image> future = renderer.fetchTile(level, column, row);
+                    Image tile = future.getNow(null);
+                    if (tile == null) {
+                        future.thenRun(this::tileRendered);
+                        continue;
+                    }
+
+                    // round the edges of each tile, so that adjacent tiles have no gaps
+                    Bounds bounds = renderer.getTileBounds(level, column, row);
+                    double minX = Math.round((bounds.getMinX() - originX) * scale);
+                    double minY = Math.round((bounds.getMinY() - originY) * scale);
+                    double maxX = Math.round((bounds.getMaxX() - originX) * scale);
+                    double maxY = Math.round((bounds.getMaxY() - originY) * scale);
+
+                    ImageView view = getTileView(count++);
+                    view.setImage(tile);
+                    view.setX(minX);
+                    view.setY(minY);
+                    view.setFitWidth(maxX - minX);
+                    view.setFitHeight(maxY - minY);
+                }
+            }
+        }
+
+        if (count < tileViews.size()) {
+            List<ImageView> unused = tileViews.subList(count, tileViews.size());
+            getChildren().removeAll(unused);
+            unused.clear();
+        }
+    }
+
+
+    private ImageView getTileView(int index) {
+        if (index < tileViews.size()) {
+            return tileViews.get(index);
+        }
+
+        ImageView result = new ImageView();
+        result.setSmooth(true);
+        tileViews.add(result);
+        getChildren().add(result);
+        return result;
+    }
+
+
+    // called on the rendering thread
+    private void tileRendered() {
+        if (Platform.isFxApplicationThread()) {
+            requestLayout();
+        } else if (layoutScheduled.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                layoutScheduled.set(false);
+                requestLayout();
+            });
+        }
+    }
+
+
+    /**
+     * @return The renderer which provides the tiles.
+     */
+    public SvgTileRenderer getRenderer() {
+        return renderer;
+    }
+
+
+    /**
+     * @return The property which holds the horizontal document coordinate
+     *         of the top left corner of the view.
+     */
+    public DoubleProperty viewportXProperty() {
+        return viewportX;
+    }
+
+    public double getViewportX() {
+        return viewportX.get();
+    }
+
+    public void setViewportX(double value) {
+        viewportX.set(value);
+    }
+
+
+    /**
+     * @return The property which holds the vertical document coordinate
+     *         of the top left corner of the view.
+     */
+    public DoubleProperty viewportYProperty() {
+        return viewportY;
+    }
+
+    public double getViewportY() {
+        return viewportY.get();
+    }
+
+    public void setViewportY(double value) {
+        viewportY.set(value);
+    }
+
+
+    /**
+     * @return The property which holds the zoom factor of the drawing.
+     */
+    public DoubleProperty zoomProperty() {
+        return zoom;
+    }
+
+    public double getZoom() {
+        return zoom.get();
+    }
+
+    public void setZoom(double factor) {
+        zoom.set(factor);
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg;
+
+import javafx.collections.ObservableList;
+import javafx.geometry.Point2D;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.CubicCurve;
+import javafx.scene.shape.Ellipse;
+import javafx.scene.shape.Line;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.Polyline;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.SVGPath;
+import javafx.scene.shape.Shape;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.Transform;
+
+import java.util.List;
+
+/**
+ * Bakes the transformations of a converted SVG document into the geometry
+ * of its shapes. The transformations of all groups are composed with the
+ * transformations of their children, and the resulting transformation is
+ * applied to the coordinates of each shape, so that the shapes and groups
+ * do not need any transformation anymore.
+ * <p>
+ * Shapes which can not represent the transformed geometry - like circles
+ * under a non uniform scale or a skew, text, or shapes painted with a
+ * gradient - get a single Affine transformation instead, which is the
+ * composition of all transformations from the root node.
+ */
+final class SvgTransformFlattener {
+
+    private static final double EPSILON = 1e-9;
+
+    private SvgTransformFlattener() {
+    }
+
+
+    /**
+     * Flattens the transformations of all nodes below a root node.
+     * The transformations of the root node itself are kept.
+     *
+     * @param root The root node of a converted SVG document.
+     * @param internPool The pool through which the transformed path data is
+     *                   shared with other documents, or <code>null</code>.
+     */
+    static void flatten(Group root, SvgInternPool internPool) {
+        for (Node child : root.getChildren()) {
+            flatten(child, new Affine(), internPool);
+        }
+    }
+
+
+    private static void flatten(Node node, Transform parentTransform, SvgInternPool internPool) {
+        Transform transform = parentTransform;
+        for (Transform nodeTransform : node.getTransforms()) {
+            transform = transform.createConcatenation(nodeTransform);
+        }
+        node.getTransforms().clear();
+
+        if (node instanceof Group) {
+            for (Node child : ((Group) node).getChildren()) {
+                flatten(child, transform, internPool);
+            }
+        } else if (!isIdentity(transform)
+                   && !(node instanceof Shape && flattenShape((Shape) node, transform))) {
+            node.getTransforms().add(new Affine(transform));
+        } else if (node instanceof SVGPath && internPool != null) {
+            SVGPath path = (SVGPath) node;
+            path.setContent(internPool.internPathData(path.getContent()));
+        }
+    }
+
+
+    /**
+     * Applies a transformation to the geometry of a shape.
+     *
+     * @return <code>true</code> if the transformation has been applied,
+     *         <code>false</code> if the shape can not represent the
+     *         transformed geometry and has not been modified.
+     */
+    private static boolean flattenShape(Shape shape, Transform transform) {
+        // gradients are defined in the coordinate system of the shape
+        if (!isFlat(shape.getFill()) || !isFlat(shape.getStroke())) {
+            return false;
+        }
+
+        // the stroke can only be scaled uniformly
+        double scale = Math.sqrt(Math.abs(transform.determinant()));
+        if (shape.getStroke() != null && !isSimilarity(transform)) {
+            return false;
+        }
+
+        if (shape instanceof Rectangle) {
+            if (!isAxisAligned(transform)) {
+                return false;
+            }
+            Rectangle rect = (Rectangle) shape;
+            Point2D origin = transform.transform(rect.getX(), rect.getY());
+            double x1 = origin.getX();
+            double y1 = origin.getY();
+            double x2 = x1 + transform.getMxx() * rect.getWidth();
+            double y2 = y1 + transform.getMyy() * rect.getHeight();
+            rect.setX(Math.min(x1, x2));
+            rect.setY(Math.min(y1, y2));
+            rect.setWidth(Math.abs(x2 - x1));
+            rect.setHeight(Math.abs(y2 - y1));
+            rect.setArcWidth(rect.getArcWidth() * Math.abs(transform.getMxx()));
+            rect.setArcHeight(rect.getArcHeight() * Math.abs(transform.getMyy()));
+        } else if (shape instanceof Circle) {
+            if (!isSimilarity(transform)) {
+                return false;
+            }
+            Circle circle = (Circle) shape;
+            Point2D center = transform.transform(circle.getCenterX(), circle.getCenterY());
+            circle.setCenterX(center.getX());
+            circle.setCenterY(center.getY());
+            circle.setRadius(circle.getRadius() * scale);
+        } else if (shape instanceof Ellipse) {
+            if (!isAxisAligned(transform)) {
+                return false;
+            }
+            Ellipse ellipse = (Ellipse) shape;
+            Point2D center = transform.transform(ellipse.getCenterX(), ellipse.getCenterY());
+            ellipse.setCenterX(center.getX());
+            ellipse.setCenterY(center.getY());
+            ellipse.setRadiusX(ellipse.getRadiusX() * Math.abs(transform.getMxx()));
+            ellipse.setRadiusY(ellipse.getRadiusY() * Math.abs(transform.getMyy()));
+        } else if (shape instanceof Line) {
+            Line line = (Line) shape;
+            Point2D start = transform.transform(line.getStartX(), line.getStartY());
+            Point2D end = transform.transform(line.getEndX(), line.getEndY());
+            line.setStartX(start.getX());
+            line.setStartY(start.getY());
+            line.setEndX(end.getX());
+            line.setEndY(end.getY());
+        } else if (shape instanceof CubicCurve) {
+            CubicCurve curve = (CubicCurve) shape;
+            double[] points = {curve.getStartX(), curve.getStartY(),
+                               curve.getControlX1(), curve.getControlY1(),
+                               curve.getControlX2(), curve.getControlY2(),
+                               curve.getEndX(), curve.getEndY()};
+            transform.transform2DPoints(points, 0, points, 0, 4);
+            curve.setStartX(points[0]);
+            curve.setStartY(points[1]);
+            curve.setControlX1(points[2]);
+            curve.setControlY1(points[3]);
+            curve.setControlX2(points[4]);
+            curve.setControlY2(points[5]);
+            curve.setEndX(points[6]);
+            curve.setEndY(points[7]);
+        } else if (shape instanceof Polygon) {
+            transformPoints(((Polygon) shape).getPoints(), transform);
+        } else if (shape instanceof Polyline) {
+            transformPoints(((Polyline) shape).getPoints(), transform);
+        } else if (shape instanceof SvgSegmentPath) {
+            ((SvgSegmentPath) shape).transform(transform);
+        } else if (shape instanceof SVGPath) {
+            SVGPath path = (SVGPath) shape;
+            String content = transformPath(path.getContent(), transform);
+            if (content == null) {
+                return false;
+            }
+            path.setContent(content);
+        } else {
+            return false;   // Text and unknown shapes
+        }
+
+        if (shape.getStroke() != null) {
+            shape.setStrokeWidth(shape.getStrokeWidth() * scale);
+            shape.setStrokeDashOffset(shape.getStrokeDashOffset() * scale);
+            ObservableList<Double> dashArray = shape.getStrokeDashArray();
+            for (int i = 0;  i < dashArray.size();  i++) {
+                dashArray.set(i, dashArray.get(i) * scale);
+            }
+        }
+        return true;
+    }
+
+
+    private static void transformPoints(List<Double> points, Transform transform) {
+        double[] coordinates = new double[points.size()];
+        for (int i = 0;  i < coordinates.length;  i++) {
+            coordinates[i] = points.get(i);
+        }
+        transform.transform2DPoints(coordinates, 0, coordinates, 0, coordinates.length / 2);
+        for (int i = 0;  i < coordinates.length;  i++) {
+            points.set(i, coordinates[i]);
+        }
+    }
+
+
+    /**
+     * Applies a transformation to SVG path data. Arcs are converted into
+     * cubic curves, since they can not be represented under all transformations.
+     * The coordinates are written with double precision, so that drawings
+     * with large coordinates keep their accuracy.
+     *
+     * @return The transformed path data, or <code>null</code> if the path
+     *         data could not be parsed.
+     */
+    private static String transformPath(String content, Transform transform) {
+        SvgPathParser.TransformingWriter writer = new SvgPathParser.TransformingWriter(transform);
+        if (!SvgPathParser.parse(content, writer)) {
+            return null;
+        }
+        return writer.getPathData();
+    }
+
+
+    private static boolean isFlat(Paint paint) {
+        return paint == null || paint instanceof Color;
+    }
+
+
+    private static boolean isIdentity(Transform transform) {
+        return Math.abs(transform.getMxx() - 1) < EPSILON
+            && Math.abs(transform.getMyy() - 1) < EPSILON
+            && Math.abs(transform.getMxy()) < EPSILON
+            && Math.abs(transform.getMyx()) < EPSILON
+            && Math.abs(transform.getTx()) < EPSILON
+            && Math.abs(transform.getTy()) < EPSILON;
+    }
+
+
+    /**
+     * @return <code>true</code> if the transformation maps axis aligned
+     *         rectangles to axis aligned rectangles.
+     */
+    private static boolean isAxisAligned(Transform transform) {
+        return Math.abs(transform.getMxy()) < EPSILON && Math.abs(transform.getMyx()) < EPSILON;
+    }
+
+
+    /**
+     * @return <code>true</code> if the transformation only consists of
+     *         a uniform scale, rotation, reflection and translation.
+     */
+    private static boolean isSimilarity(Transform transform) {
+        double a = transform.getMxx();
+        double b = transform.getMyx();
+        double c = transform.getMxy();
+        double d = transform.getMyy();
+        double tolerance = 1e-6 * Math.max(Math.abs(a * d - b * c), EPSILON);
+
+        // the columns of the matrix are orthogonal and of the same length
+        return Math.abs(a * c + b * d) < tolerance
+            && Math.abs((a * a + b * b) - (c * c + d * d)) < tolerance;
+    }
+}
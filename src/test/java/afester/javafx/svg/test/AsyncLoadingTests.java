@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getInput;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import afester.javafx.svg.SvgAsyncLoad;
+import afester.javafx.svg.SvgAttacher;
+import afester.javafx.svg.SvgLoader;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutionException;
+
+
+public class AsyncLoadingTests {
+
+    private static InputStream getDrawing() {
+        StringBuilder svg = new StringBuilder();
+        svg.append("<svg xmlns='http://www.w3.org/2000/svg' viewBox='0 0 100 100'>");
+        for (int i = 0;  i < 10;  i++) {
+            svg.append("<g id='layer").append(i).append("'>");
+            for (int j = 0;  j < 20;  j++) {
+                svg.append("<rect x='").append(j).append("' y='").append(i)
+                   .append("' width='1' height='1'/>");
+            }
+            svg.append("</g>");
+        }
+        svg.append("</svg>");
+        return getInput(svg.toString());
+    }
+
+
+    private static int countNodes(Node node) {
+        int result = 1;
+        if (node instanceof Group) {
+            for (Node child : ((Group) node).getChildren()) {
+                result += countNodes(child);
+            }
+        }
+        return result;
+    }
+
+
+    @Test
+    public void testAttachInChunks() {
+        SvgLoader loader = new SvgLoader();
+        Group svgImage = loader.loadSvg(getDrawing());
+        assertEquals(211, countNodes(svgImage));
+
+        Group target = new Group();
+        SvgAttacher attacher = new SvgAttacher(target, svgImage);
+        assertEquals(211, attacher.getNodeCount());
+        assertEquals(0, svgImage.getChildren().size());
+
+        // without a time budget, each call attaches one run of siblings
+        int calls = 0;
+        double progress = 0;
+        while (!attacher.attachChunk(0)) {
+            calls++;
+            assertTrue(attacher.getProgress() > progress);
+            progress = attacher.getProgress();
+        }
+        assertEquals(1.0, attacher.getProgress(), 0.0);
+        assertTrue(calls > 10);
+
+        assertSame(svgImage, target.getChildren().get(0));
+        assertEquals(211, countNodes(svgImage));
+        Group layer9 = (Group) svgImage.getChildren().get(9);
+        assertEquals("layer9", layer9.getId());
+        assertEquals(20, layer9.getChildren().size());
+    }
+
+
+    @Test
+    public void testAttachWithBudget() {
+        SvgLoader loader = new SvgLoader();
+        Group target = new Group();
+        SvgAttacher attacher = new SvgAttacher(target, loader.loadSvg(getDrawing()));
+
+        assertTrue(attacher.attachChunk(Long.MAX_VALUE));
+        assertTrue(attacher.isDone());
+        assertEquals(212, countNodes(target));
+    }
+
+
+    @Test
+    public void testFailedLoad() throws InterruptedException {
+        SvgLoader loader = new SvgLoader();
+        InputStream invalid = getInput("<svg");
+        Group target = new Group();
+
+        SvgAsyncLoad load = loader.loadSvgAsync(invalid, target);
+        try {
+            load.getCompletion().get();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertTrue(load.getCompletion().isCompletedExceptionally());
+        assertEquals(-1.0, load.getProgress(), 0.0);
+        assertFalse(load.cancel());
+        assertEquals(0, target.getChildren().size());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getInput;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import afester.javafx.svg.SvgBatchResult;
+import afester.javafx.svg.SvgLoader;
+import afester.javafx.svg.SvgParserPool;
+
+import javafx.scene.Group;
+import javafx.scene.shape.Rectangle;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+public class BatchLoadingTests {
+
+    private static final String ICON =
+          "<svg xmlns='http://www.w3.org/2000/svg' viewBox='0 0 16 16'>"
+        + "  <rect x='1' y='2' width='%d' height='10' style='fill:#0000ff'/>"
+        + "</svg>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    private static byte[] getIcon(int width) {
+        return String.format(ICON, width).getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    private static double getWidth(Group svgImage) {
+        return ((Rectangle) svgImage.getChildren().get(0)).getWidth();
+    }
+
+
+    @Test
+    public void testFiles() throws IOException {
+        List<String> fileNames = new ArrayList<>();
+        for (int i = 1;  i <= 20;  i++) {
+            File svgFile = folder.newFile("icon" + i + ".svg");
+            Files.write(svgFile.toPath(), getIcon(i));
+            fileNames.add(svgFile.getPath());
+        }
+        String missing = new File(folder.getRoot(), "missing.svg").getPath();
+        fileNames.add(missing);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            SvgLoader loader = SvgLoader.builder().parserPool(new SvgParserPool()).build();
+            SvgBatchResult<String> result = loader.loadSvgBatch(fileNames, executor);
+
+            Map<String, Group> groups = result.getGroups();
+            assertEquals(21, result.size());
+            assertEquals(20, groups.size());
+            for (int i = 1;  i <= 20;  i++) {
+                assertEquals(i, getWidth(groups.get(fileNames.get(i - 1))), 0.0);
+            }
+
+            Map<String, Throwable> errors = result.getErrors();
+            assertEquals(1, errors.size());
+            assertTrue(errors.get(missing) instanceof FileNotFoundException);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+    @Test
+    public void testStreams() {
+        Map<Integer, InputStream> streams = new LinkedHashMap<>();
+        for (int i = 1;  i <= 10;  i++) {
+            streams.put(i, new ByteArrayInputStream(getIcon(i)));
+        }
+        streams.put(0, getInput("<svg"));
+
+        SvgLoader loader = SvgLoader.builder().build();
+        SvgBatchResult<Integer> result = loader.loadSvgStreams(streams).await();
+
+        assertTrue(result.getFutures().get(0).isCompletedExceptionally());
+        assertEquals(1, result.getErrors().size());
+        Map<Integer, Group> groups = result.getGroups();
+        assertEquals(10, groups.size());
+        for (int i = 1;  i <= 10;  i++) {
+            assertEquals(i, getWidth(groups.get(i)), 0.0);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getDrawing;
+import static org.junit.Assert.assertEquals;
+
+import afester.javafx.svg.SvgLoader;
+
+import javafx.scene.Group;
+import javafx.scene.paint.LinearGradient;
+import javafx.scene.paint.RadialGradient;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Text;
+
+import org.junit.Test;
+
+
+public class CssOnlyBridgeTests {
+
+    private static Group load(boolean cssOnly) {
+        return load(cssOnly, 0);
+    }
+
+
+    private static Group load(boolean cssOnly, int layer) {
+        SvgLoader loader = SvgLoader.builder().useCssOnlyBridge(cssOnly).build();
+        Group svgImage = loader.loadSvg(getDrawing("cssonly.svg"));
+        return (Group) svgImage.getChildrenUnmodifiable().get(layer);
+    }
+
+
+    @Test
+    public void testSameShapeStyles() {
+        Group expected = load(false);
+        Group actual = load(true);
+
+        Rectangle expectedRect = (Rectangle) expected.getChildrenUnmodifiable().get(0);
+        Rectangle rect = (Rectangle) actual.getChildrenUnmodifiable().get(0);
+        assertEquals("0x0000ffff", rect.getFill().toString());
+        assertEquals(expectedRect.getFill(), rect.getFill());
+        assertEquals(expectedRect.getStroke(), rect.getStroke());
+        assertEquals(expectedRect.getStrokeWidth(), rect.getStrokeWidth(), 0.0001);
+        assertEquals(expectedRect.getX(), rect.getX(), 0.0001);
+        assertEquals(expectedRect.getY(), rect.getY(), 0.0001);
+        assertEquals(expectedRect.getWidth(), rect.getWidth(), 0.0001);
+        assertEquals(expectedRect.getHeight(), rect.getHeight(), 0.0001);
+
+        Circle expectedCircle = (Circle) expected.getChildrenUnmodifiable().get(1);
+        Circle circle = (Circle) actual.getChildrenUnmodifiable().get(1);
+        assertEquals(200.0, circle.getCenterX(), 0.0001);
+        assertEquals(expectedCircle.getCenterY(), circle.getCenterY(), 0.0001);
+        assertEquals(expectedCircle.getStrokeWidth(), circle.getStrokeWidth(), 0.0001);
+    }
+
+
+    @Test
+    public void testSameTextStyles() {
+        Text expected = (Text) load(false).getChildrenUnmodifiable().get(2);
+        Text text = (Text) load(true).getChildrenUnmodifiable().get(2);
+
+        assertEquals(expected.getX(), text.getX(), 0.0001);
+        assertEquals(expected.getFont(), text.getFont());
+        assertEquals(20.0, text.getFont().getSize(), 0.0001);
+        assertEquals(expected.getFill(), text.getFill());
+    }
+
+
+    @Test
+    public void testSameGradients() {
+        Group expected = load(false, 1);
+        Group actual = load(true, 1);
+
+        Rectangle expectedRect = (Rectangle) expected.getChildrenUnmodifiable().get(0);
+        Rectangle rect = (Rectangle) actual.getChildrenUnmodifiable().get(0);
+        assertEquals(0.0, ((LinearGradient) rect.getFill()).getStartX(), 0.0001);
+        assertEquals(expectedRect.getFill(), rect.getFill());
+
+        expectedRect = (Rectangle) expected.getChildrenUnmodifiable().get(1);
+        rect = (Rectangle) actual.getChildrenUnmodifiable().get(1);
+        assertEquals(0.0, ((RadialGradient) rect.getFill()).getRadius(), 0.0001);
+        assertEquals(expectedRect.getFill(), rect.getFill());
+    }
+}
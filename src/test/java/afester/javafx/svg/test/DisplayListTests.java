@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getDrawing;
+import static org.junit.Assert.assertEquals;
+
+import afester.javafx.svg.SvgCanvas;
+import afester.javafx.svg.SvgDisplayList;
+import afester.javafx.svg.SvgLoader;
+
+import javafx.scene.canvas.Canvas;
+
+import org.junit.Test;
+
+
+public class DisplayListTests {
+
+    @Test
+    public void testStateChanges() {
+        SvgLoader loader = SvgLoader.builder().build();
+        SvgDisplayList list = loader.loadSvgDisplayList(getDrawing("rects.svg"));
+
+        // one transformation and one fill for all rectangles
+        assertEquals(5, list.getOperationCount());
+    }
+
+
+    @Test
+    public void testRender() {
+        SvgLoader loader = SvgLoader.builder().build();
+        SvgDisplayList list = loader.loadSvgDisplayList(getDrawing("displaylist.svg"));
+
+        // transform, rect (fill, op), circle (fill, op, stroke, dashes, op),
+        // ellipse (op), line (stroke, dashes, op), polygon (op, op),
+        // polyline (op), path (op, width, op), text (font, op)
+        assertEquals(20, list.getOperationCount());
+
+        Canvas canvas = new Canvas(100, 100);
+        list.render(canvas.getGraphicsContext2D());
+    }
+
+
+    @Test
+    public void testRenderOnResize() {
+        SvgLoader loader = SvgLoader.builder().build();
+        SvgDisplayList list = loader.loadSvgDisplayList(getDrawing("displaylist.svg"));
+        SvgCanvas svgCanvas = new SvgCanvas(list);
+
+        svgCanvas.resize(100, 100);
+        svgCanvas.layout();
+        assertEquals(1, svgCanvas.getRenderCount());
+
+        // nothing changed - the display list is not replayed
+        svgCanvas.requestLayout();
+        svgCanvas.layout();
+        assertEquals(1, svgCanvas.getRenderCount());
+
+        svgCanvas.setZoom(2.0);
+        svgCanvas.layout();
+        assertEquals(2, svgCanvas.getRenderCount());
+
+        svgCanvas.resize(200, 100);
+        svgCanvas.layout();
+        assertEquals(3, svgCanvas.getRenderCount());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getDrawing;
+import static afester.javafx.svg.test.SvgTestUtils.getInput;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import afester.javafx.svg.SvgLoader;
+
+import javafx.geometry.BoundingBox;
+import javafx.scene.Group;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.SVGPath;
+import javafx.scene.text.Text;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.Transform;
+
+import org.junit.Test;
+
+
+public class FlattenTransformsTests {
+
+    private static final BoundingBox AREA = new BoundingBox(0, 0, 100, 100);
+
+
+    private static void checkFlattened(Group svgImage) {
+        Group outer = (Group) svgImage.getChildren().get(0);
+        Group inner = (Group) outer.getChildren().get(0);
+        assertTrue(outer.getTransforms().isEmpty());
+        assertTrue(inner.getTransforms().isEmpty());
+
+        // geometry and stroke are transformed
+        Rectangle rect = (Rectangle) inner.getChildren().get(0);
+        assertTrue(rect.getTransforms().isEmpty());
+        assertEquals(12.0, rect.getX(), 0.0001);
+        assertEquals(24.0, rect.getY(), 0.0001);
+        assertEquals(6.0, rect.getWidth(), 0.0001);
+        assertEquals(8.0, rect.getHeight(), 0.0001);
+        assertEquals(2.0, rect.getStrokeWidth(), 0.0001);
+        assertEquals(4.0, rect.getStrokeDashArray().get(0), 0.0001);
+
+        Circle circle = (Circle) inner.getChildren().get(1);
+        assertTrue(circle.getTransforms().isEmpty());
+        assertEquals(12.0, circle.getCenterX(), 0.0001);
+        assertEquals(22.0, circle.getCenterY(), 0.0001);
+        assertEquals(4.0, circle.getRadius(), 0.0001);
+
+        // the arc is converted into cubic curves
+        SVGPath path = (SVGPath) inner.getChildren().get(2);
+        assertTrue(path.getTransforms().isEmpty());
+        assertTrue(path.getContent(), path.getContent().startsWith("M10,20 L30,20 C"));
+        assertTrue(path.getContent(), path.getContent().endsWith("30,40"));
+
+        // text and skewed circles keep a single combined transformation
+        Text text = (Text) inner.getChildren().get(3);
+        assertEquals(1.0, text.getX(), 0.0);
+        assertEquals(1, text.getTransforms().size());
+        assertTrue(text.getTransforms().get(0).similarTo(new Affine(2, 0, 10, 0, 2, 20),
+                                                         AREA, 0.0001));
+
+        Circle skewed = (Circle) outer.getChildren().get(1);
+        assertEquals(1.0, skewed.getCenterX(), 0.0);
+        assertEquals(1, skewed.getTransforms().size());
+        Transform skew = skewed.getTransforms().get(0);
+        assertEquals(Math.tan(Math.toRadians(30)), skew.getMxy(), 0.0001);
+        assertEquals(10.0, skew.getTx(), 0.0001);
+
+        Rectangle rotated = (Rectangle) outer.getChildren().get(2);
+        assertEquals(1, rotated.getTransforms().size());
+    }
+
+
+    @Test
+    public void testFlatten() {
+        SvgLoader loader = SvgLoader.builder().flattenTransforms(true).build();
+        checkFlattened(loader.loadSvg(getDrawing("transforms.svg")));
+    }
+
+
+    @Test
+    public void testFlattenStreaming() {
+        SvgLoader loader = SvgLoader.builder().flattenTransforms(true)
+                                              .useStreamingParser(true).build();
+        checkFlattened(loader.loadSvg(getDrawing("transforms.svg")));
+    }
+
+
+    @Test
+    public void testLargeCoordinates() {
+        // a site plan in millimeters, far away from the origin
+        String svg = "<svg xmlns='http://www.w3.org/2000/svg' viewBox='0 0 100 100'>"
+                   + "<g transform='translate(1000000,2000000)'>"
+                   + "<path d='M 0.015625,0.5 L 10.5,0.03125' style='fill:none;stroke:#000000'/>"
+                   + "</g></svg>";
+        SvgLoader loader = SvgLoader.builder().flattenTransforms(true).build();
+        Group svgImage = loader.loadSvg(getInput(svg));
+        SVGPath path = (SVGPath) ((Group) svgImage.getChildren().get(0)).getChildren().get(0);
+        assertEquals("M1000000.015625,2000000.5 L1000010.5,2000000.03125", path.getContent());
+    }
+}
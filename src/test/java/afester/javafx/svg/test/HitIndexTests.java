@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getDrawing;
+import static afester.javafx.svg.test.SvgTestUtils.getInput;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import afester.javafx.svg.SvgHitIndex;
+import afester.javafx.svg.SvgLoader;
+import afester.javafx.svg.SvgScene;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Point2D;
+import javafx.scene.Group;
+import javafx.scene.Node;
+
+import org.junit.Test;
+
+import java.util.List;
+
+
+public class HitIndexTests {
+
+    @Test
+    public void testPointQueries() {
+        SvgScene scene = SvgLoader.builder().build().loadSvgScene(getDrawing("hitindex.svg"));
+        SvgHitIndex index = SvgHitIndex.fromScene(scene);
+
+        assertEquals(5, index.size());
+        assertEquals("back", index.getIdAt(5, 5));
+        assertEquals("pump1", index.getIdAt(50, 50));
+        assertEquals(List.of("pump1", "back"), index.getIdsAt(50, 50));
+
+        // the bounds of the pipe include the extent of the miter joins of its stroke
+        assertEquals("pipe", index.getIdAt(150, 5));
+        assertNull(index.getIdAt(150, -15));
+
+        // the bounds of the circle reach into the corners of its bounding box
+        assertEquals("pump1", index.getIdAt(58, 58));
+    }
+
+
+    @Test
+    public void testExactQueries() {
+        SvgScene scene = SvgLoader.builder().build().loadSvgScene(getDrawing("hitindex.svg"));
+        SvgHitIndex index = SvgHitIndex.fromScene(scene, true);
+
+        assertEquals("pump1", index.getIdAt(50, 50));
+        assertEquals("back", index.getIdAt(58, 58));
+
+        // the rectangle above the circle, rotated by 45 degrees to the upper right
+        assertEquals("pump1", index.getIdAt(50 + 17.7, 50 - 17.7));
+        assertEquals("back", index.getIdAt(50, 50 - 25));
+
+        // the stroke of the path, but not the area of its bounds
+        assertEquals("pipe", index.getIdAt(155, 50));
+        assertNull(index.getIdAt(180, 20));
+    }
+
+
+    @Test
+    public void testAreaAndNearestQueries() {
+        SvgScene scene = SvgLoader.builder().build().loadSvgScene(getDrawing("hitindex.svg"));
+        SvgHitIndex index = SvgHitIndex.fromScene(scene, true);
+
+        assertEquals(List.of("back", "pump1"), index.getIdsIn(new BoundingBox(45, 45, 10, 10)));
+        assertEquals(List.of("pipe", "label"),
+                     index.getIdsIn(new BoundingBox(110, 80, 80, 20)));
+
+        assertEquals("pipe", index.getNearestId(195, 95, 10));
+        assertNull(index.getNearestId(195, -50, 10));
+        assertEquals("pipe", index.getNearestId(195, -50, Double.POSITIVE_INFINITY));
+    }
+
+
+    @Test
+    public void testSceneCoordinates() {
+        Group svgImage = SvgLoader.builder().build().loadSvg(getDrawing("hitindex.svg"));
+        SvgHitIndex index = SvgHitIndex.fromGroup(svgImage, true);
+
+        // the index uses the local coordinates of the root group
+        svgImage.setTranslateX(1000);
+        Node pump = svgImage.getChildren().get(1);
+        Point2D center = svgImage.sceneToLocal(pump.localToScene(0, 0));
+        assertEquals("pump1", index.getIdAt(center.getX(), center.getY()));
+    }
+
+
+    @Test
+    public void testTextBounds() {
+        SvgScene scene = SvgLoader.builder().build().loadSvgScene(getInput(
+              "<svg xmlns='http://www.w3.org/2000/svg' viewBox='0 0 200 100'>"
+            + "  <text id='wide' x='10' y='50' style='font-family:sans-serif;font-size:10px'>"
+            + "WWWWWWWWWW</text>"
+            + "</svg>"));
+        SvgHitIndex index = SvgHitIndex.fromScene(scene);
+
+        // the text is measured, instead of estimated by an average character width
+        assertEquals("wide", index.getIdAt(10 + 85, 47));
+        assertNull(index.getIdAt(10 + 120, 47));
+        assertNull(index.getIdAt(20, 60));
+    }
+}
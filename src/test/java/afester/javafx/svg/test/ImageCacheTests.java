@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getDrawing;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import afester.javafx.svg.SvgImageCache;
+
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class ImageCacheTests {
+
+    private final AtomicInteger openCount = new AtomicInteger();
+
+    private InputStream open(String asset) throws FileNotFoundException {
+        if (!asset.equals("icon")) {
+            throw new FileNotFoundException(asset);
+        }
+        openCount.incrementAndGet();
+        return getDrawing("redicon.svg");
+    }
+
+
+    @Test
+    public void testImageSize() {
+        SvgImageCache cache = new SvgImageCache(1024 * 1024, this::open);
+
+        Image image = cache.getImage("icon", 16, 2.0);
+        assertEquals(32, image.getWidth(), 0.0);
+        assertEquals(32, image.getHeight(), 0.0);
+        assertEquals(Color.RED, image.getPixelReader().getColor(16, 16));
+
+        // the asset is centered in the image
+        Image wide = cache.getImage("icon", 20, 10, 1.0);
+        assertEquals(20, wide.getWidth(), 0.0);
+        assertEquals(10, wide.getHeight(), 0.0);
+        assertEquals(Color.TRANSPARENT, wide.getPixelReader().getColor(2, 5));
+        assertEquals(Color.RED, wide.getPixelReader().getColor(10, 5));
+    }
+
+
+    @Test
+    public void testCacheHit() {
+        SvgImageCache cache = new SvgImageCache(1024 * 1024, this::open);
+
+        Image image = cache.getImage("icon", 16, 2.0);
+        assertSame(image, cache.getImage("icon", 16, 2.0));
+
+        // same size in pixels
+        assertSame(image, cache.getImage("icon", 32, 1.0));
+
+        assertEquals(1, openCount.get());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(32 * 32 * 4, cache.getBytes());
+    }
+
+
+    @Test
+    public void testEviction() {
+        SvgImageCache cache = new SvgImageCache(48 * 48 * 4, this::open);
+
+        Image icon48 = cache.getImage("icon", 48, 1.0);
+        cache.getImage("icon", 16, 1.0);
+
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(16 * 16 * 4, cache.getBytes());
+
+        // rendered again
+        Image icon48b = cache.getImage("icon", 48, 1.0);
+        assertEquals(icon48.getWidth(), icon48b.getWidth(), 0.0);
+        assertEquals(3, openCount.get());
+    }
+
+
+    @Test
+    public void testCollapsedRequests() {
+        SvgImageCache cache = new SvgImageCache(1024 * 1024, this::open);
+
+        // the renderings are only started when the requests have been made
+        List<Runnable> tasks = new ArrayList<>();
+        CompletableFuture<Image> first = cache.getImageAsync("icon", 24, 24, 1.0, tasks::add);
+        CompletableFuture<Image> second = cache.getImageAsync("icon", 24, 24, 1.0, tasks::add);
+        assertSame(first, second);
+        assertEquals(1, tasks.size());
+        assertEquals(1, cache.getCollapsedCount());
+
+        tasks.get(0).run();
+        assertEquals(24, first.join().getWidth(), 0.0);
+        assertEquals(1, openCount.get());
+    }
+
+
+    @Test
+    public void testMissingAsset() {
+        SvgImageCache cache = new SvgImageCache(1024 * 1024, this::open);
+
+        assertNull(cache.getImage("missing", 16, 1.0));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getDrawing;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import afester.javafx.svg.SvgLoadResult;
+import afester.javafx.svg.SvgLoader;
+import afester.javafx.svg.SvgOptimizer;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Rectangle;
+
+import org.apache.batik.anim.dom.SVGOMRectElement;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+
+
+public class IndexedLoadTests {
+
+    private static void checkIndex(SvgLoadResult result) {
+        assertEquals(Set.of("layer1", "valve", "pump", "rotor"), result.getNodes().keySet());
+
+        // the first node with a duplicate id is indexed
+        Rectangle valve = result.getNode("valve", Rectangle.class);
+        assertEquals(10, valve.getX(), 0);
+        assertNull(result.getNode("valve", Circle.class));
+        assertNull(result.getNode("unknown"));
+
+        // the indexed nodes are the ones in the returned tree
+        Group layer1 = (Group) result.getGroup().getChildren().get(0);
+        assertSame(layer1, result.getNode("layer1"));
+        assertSame(valve, layer1.getChildren().get(0));
+        Group pump = (Group) layer1.getChildren().get(1);
+        assertSame(pump, result.getNode("pump"));
+        assertSame(pump.getChildren().get(0), result.getNode("rotor"));
+    }
+
+
+    @Test
+    public void testIndex() {
+        SvgLoader loader = SvgLoader.builder().build();
+        SvgLoadResult result = loader.loadSvgIndexed(getDrawing("indexed.svg"));
+        checkIndex(result);
+        assertTrue(result.getElements().isEmpty());
+    }
+
+
+    @Test
+    public void testStreamingIndex() {
+        SvgLoadResult result = SvgLoader.builder()
+                                        .useStreamingParser(true)
+                                        .build().loadSvgIndexed(getDrawing("indexed.svg"));
+        checkIndex(result);
+    }
+
+
+    @Test
+    public void testSourceElements() {
+        SvgLoadResult result = SvgLoader.builder()
+                                        .indexSourceElements(true)
+                                        .build().loadSvgIndexed(getDrawing("indexed.svg"));
+        checkIndex(result);
+
+        assertEquals(result.getNodes().keySet(), result.getElements().keySet());
+        SVGOMRectElement valve = (SVGOMRectElement) result.getElement("valve");
+        assertEquals("10", valve.getAttribute("x"));
+    }
+
+
+    @Test
+    public void testOptimizedIndex() {
+        SvgLoadResult result = SvgLoader.builder()
+                                        .optimizer(new SvgOptimizer(List.of("rotor")))
+                                        .build().loadSvgIndexed(getDrawing("indexed.svg"));
+
+        // only nodes which are still part of the tree are indexed
+        for (Node node : result.getNodes().values()) {
+            Node root = node;
+            while (root.getParent() != null) {
+                root = root.getParent();
+            }
+            assertSame(result.getGroup(), root);
+        }
+        assertNotNull(result.getNode("rotor"));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getDrawing;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import afester.javafx.svg.SvgInternPool;
+import afester.javafx.svg.SvgLoader;
+
+import javafx.scene.Group;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.SVGPath;
+import javafx.scene.shape.Shape;
+import javafx.scene.text.Text;
+
+import org.junit.Test;
+
+
+public class InternPoolTests {
+
+    private static void checkShared(SvgLoader loader) {
+        Group first = loader.loadSvg(getDrawing("intern.svg"));
+        Group second = loader.loadSvg(getDrawing("intern.svg"));
+
+        for (int i = 0;  i < first.getChildren().size();  i++) {
+            Shape shape1 = (Shape) first.getChildren().get(i);
+            Shape shape2 = (Shape) second.getChildren().get(i);
+            assertNotSame(shape1, shape2);
+            assertSame(shape1.getFill(), shape2.getFill());
+            assertSame(shape1.getStroke(), shape2.getStroke());
+        }
+
+        SVGPath path1 = (SVGPath) first.getChildren().get(1);
+        SVGPath path2 = (SVGPath) second.getChildren().get(1);
+        assertSame(path1.getContent(), path2.getContent());
+
+        // equal paints of different styles are shared, too
+        assertSame(((Shape) first.getChildren().get(0)).getFill(), path1.getFill());
+
+        Text text1 = (Text) first.getChildren().get(2);
+        Text text2 = (Text) second.getChildren().get(2);
+        assertSame(text1.getFont(), text2.getFont());
+    }
+
+
+    @Test
+    public void testSharedAcrossDocuments() {
+        SvgInternPool pool = new SvgInternPool();
+        checkShared(SvgLoader.builder().internPool(pool).build());
+        checkShared(SvgLoader.builder().internPool(pool).useStreamingParser(true).build());
+    }
+
+
+    @Test
+    public void testStatistics() {
+        SvgInternPool pool = new SvgInternPool(4);
+
+        Color color = new Color(0, 1, 0, 1);
+        assertSame(color, pool.internPaint(color));
+        assertSame(color, pool.internPaint(new Color(0, 1, 0, 1)));
+        assertSame(null, pool.internPaint(null));
+
+        String pathData = new String("M 0,0 L 10,10 Z");
+        assertSame(pathData, pool.internPathData(pathData));
+        assertSame(pathData, pool.internPathData(new String("M 0,0 L 10,10 Z")));
+
+        assertEquals(4, pool.getLookupCount());
+        assertEquals(2, pool.getHitCount());
+        assertEquals(2, pool.size());
+
+        pool.clear();
+        assertEquals(0, pool.size());
+        assertEquals(0, pool.getLookupCount());
+    }
+
+
+    @Test
+    public void testDisabled() {
+        SvgLoader loader = SvgLoader.builder().internPool(null).build();
+        Group first = loader.loadSvg(getDrawing("intern.svg"));
+        Group second = loader.loadSvg(getDrawing("intern.svg"));
+
+        Shape shape1 = (Shape) first.getChildren().get(0);
+        Shape shape2 = (Shape) second.getChildren().get(0);
+        assertEquals(shape1.getFill(), shape2.getFill());
+        assertNotSame(shape1.getFill(), shape2.getFill());
+    }
+}
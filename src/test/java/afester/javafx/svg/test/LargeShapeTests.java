@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getInput;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import afester.javafx.svg.SvgLoader;
+
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.Polyline;
+import javafx.scene.shape.SVGPath;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.List;
+
+
+public class LargeShapeTests {
+
+    private static InputStream getDrawing() {
+        StringBuilder points = new StringBuilder();
+        for (int i = 0;  i < 1000;  i++) {
+            points.append(i * 0.1).append(',').append(i % 2 == 0 ? 10.5 : 20.25).append(' ');
+        }
+
+        String svg = "<svg xmlns='http://www.w3.org/2000/svg' viewBox='0 0 100 100'>"
+                   + "<polyline id='track' points='" + points + "'"
+                   + "          style='fill:none;stroke:#ff0000'/>"
+                   + "<polygon id='area' points='" + points + "' style='fill:#00ff00'/>"
+                   + "<polygon id='small' points='0,0 10,0 10,10' style='fill:#0000ff'/>"
+                   + "</svg>";
+        return getInput(svg);
+    }
+
+
+    private static void assertSameBounds(Node expected, Node actual) {
+        Bounds expectedBounds = expected.getBoundsInLocal();
+        Bounds actualBounds = actual.getBoundsInLocal();
+        assertEquals(expectedBounds.getMinX(), actualBounds.getMinX(), 1e-3);
+        assertEquals(expectedBounds.getMinY(), actualBounds.getMinY(), 1e-3);
+        assertEquals(expectedBounds.getMaxX(), actualBounds.getMaxX(), 1e-3);
+        assertEquals(expectedBounds.getMaxY(), actualBounds.getMaxY(), 1e-3);
+    }
+
+
+    @Test
+    public void testDefault() {
+        Group svgImage = SvgLoader.builder().build().loadSvg(getDrawing());
+        assertTrue(svgImage.getChildren().get(0) instanceof Polyline);
+        assertTrue(svgImage.getChildren().get(1) instanceof Polygon);
+        assertEquals(2000, ((Polyline) svgImage.getChildren().get(0)).getPoints().size());
+    }
+
+
+    @Test
+    public void testLargeShapes() {
+        for (boolean streaming : List.of(false, true)) {
+            Group expected = SvgLoader.builder()
+                                      .useStreamingParser(streaming)
+                                      .build().loadSvg(getDrawing());
+            Group svgImage = SvgLoader.builder()
+                                      .useStreamingParser(streaming)
+                                      .largeShapeThreshold(100)
+                                      .build().loadSvg(getDrawing());
+
+            SVGPath track = (SVGPath) svgImage.getChildren().get(0);
+            assertEquals("track", track.getId());
+            assertEquals(Color.RED, track.getStroke());
+            assertTrue(track.getContent().startsWith("M0,10.5 L0.1,20.25 0.2,10.5 "));
+            assertSameBounds(expected.getChildren().get(0), track);
+
+            SVGPath area = (SVGPath) svgImage.getChildren().get(1);
+            assertEquals(Color.LIME, area.getFill());
+            assertTrue(area.getContent().endsWith(" Z"));
+            assertSameBounds(expected.getChildren().get(1), area);
+
+            // shapes up to the threshold are kept
+            assertTrue(svgImage.getChildren().get(2) instanceof Polygon);
+            assertEquals(6, ((Polygon) svgImage.getChildren().get(2)).getPoints().size());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getInput;
+import static org.junit.Assert.assertEquals;
+
+import afester.javafx.svg.SvgLazyGroup;
+import afester.javafx.svg.SvgLoader;
+
+import javafx.geometry.BoundingBox;
+import javafx.scene.Group;
+import javafx.scene.Node;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class LazyGroupTests {
+
+    private static InputStream getDrawing() {
+        // a layer with 10x10 rectangles of 10x10 units, spaced by 20 units
+        StringBuilder svg = new StringBuilder();
+        svg.append("<svg xmlns='http://www.w3.org/2000/svg' viewBox='0 0 200 200'>");
+        svg.append("<g id='layer1'>");
+        for (int row = 0;  row < 10;  row++) {
+            for (int column = 0;  column < 10;  column++) {
+                svg.append(String.format("<rect id='r%d_%d' x='%d' y='%d' width='10' height='10'/>",
+                                         column, row, column * 20, row * 20));
+            }
+        }
+        svg.append("</g>");
+        svg.append("<g id='moved' transform='translate(300,0)'>");
+        svg.append("<circle id='c1' cx='5' cy='5' r='5'/>");
+        svg.append("</g>");
+        svg.append("</svg>");
+        return getInput(svg.toString());
+    }
+
+
+    private static List<String> getIds(Group group) {
+        List<String> result = new ArrayList<>();
+        for (Node node : group.getChildren()) {
+            result.add(node.getId());
+        }
+        return result;
+    }
+
+
+    @Test
+    public void testViewport() {
+        SvgLazyGroup svgImage = SvgLoader.builder().build().loadSvgLazy(getDrawing());
+
+        // the layer is always created, the moved group is one unit
+        assertEquals(101, svgImage.getUnitCount());
+        assertEquals(0, svgImage.getMaterializedUnitCount());
+        assertEquals(2, svgImage.getNodeCount());
+        Group layer1 = (Group) svgImage.getChildren().get(0);
+        assertEquals("layer1", layer1.getId());
+        assertEquals(0, layer1.getChildren().size());
+
+        svgImage.setViewport(new BoundingBox(0, 0, 25, 25));
+        assertEquals(4, svgImage.getMaterializedUnitCount());
+        assertEquals(6, svgImage.getNodeCount());
+        assertEquals(List.of("r0_0", "r1_0", "r0_1", "r1_1"), getIds(layer1));
+
+        // the units in the margin around the viewport are kept
+        svgImage.setViewport(new BoundingBox(20, 0, 25, 25));
+        assertEquals(List.of("r0_0", "r1_0", "r2_0", "r0_1", "r1_1", "r2_1"), getIds(layer1));
+
+        // the units far away are released
+        svgImage.setViewport(new BoundingBox(100, 100, 25, 25));
+        assertEquals(List.of("r5_5", "r6_5", "r5_6", "r6_6"), getIds(layer1));
+
+        svgImage.releaseAll();
+        assertEquals(0, layer1.getChildren().size());
+        assertEquals(2, svgImage.getNodeCount());
+    }
+
+
+    @Test
+    public void testTransformedUnit() {
+        SvgLazyGroup svgImage = SvgLoader.builder().build().loadSvgLazy(getDrawing());
+        svgImage.setReleaseMargin(0);
+
+        svgImage.setViewport(new BoundingBox(305, 0, 10, 10));
+        assertEquals(List.of("layer1", "moved"), getIds(svgImage));
+        assertEquals(0, ((Group) svgImage.getChildren().get(0)).getChildren().size());
+
+        svgImage.setViewport(new BoundingBox(250, 0, 10, 10));
+        assertEquals(List.of("layer1"), getIds(svgImage));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getInput;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import afester.javafx.svg.SvgLoader;
+
+import javafx.scene.Group;
+import javafx.scene.shape.Line;
+import javafx.scene.shape.Rectangle;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+public class LoaderConfigurationTests {
+
+    private static final String DRAWING =
+          "<svg xmlns='http://www.w3.org/2000/svg' viewBox='0 0 %d 100'>"
+        + "  <g id='layer1'>"
+        + "    <g id='layer2'>"
+        + "      <rect x='1' y='2' width='%d' height='10' style='fill:#0000ff'/>"
+        + "    </g>"
+        + "    <path d='M 0,0 L 10,10 L 20,0'/>"
+        + "  </g>"
+        + "</svg>";
+
+
+    private static InputStream getDrawing(int width) {
+        String svg = String.format(DRAWING, width, width);
+        return getInput(svg);
+    }
+
+
+    @Test
+    public void testBuilder() {
+        SvgLoader loader = SvgLoader.builder()
+                                    .addViewboxRect(true)
+                                    .useSeparatePathElements(true)
+                                    .build();
+        Group svgImage = loader.loadSvg(getDrawing(50));
+
+        assertEquals(2, svgImage.getChildren().size());
+        assertEquals(50.0, ((Rectangle) svgImage.getChildren().get(0)).getWidth(), 0.0);
+
+        Group layer1 = (Group) svgImage.getChildren().get(1);
+        Group path = (Group) layer1.getChildren().get(1);
+        assertEquals(2, path.getChildren().size());
+        assertTrue(path.getChildren().get(0) instanceof Line);
+    }
+
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        SvgLoader loader = SvgLoader.builder().build();
+        loader.setAddViewboxRect(true);
+    }
+
+
+    @Test
+    public void testConcurrentLoads() throws Exception {
+        SvgLoader loader = SvgLoader.builder().build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<Group>> results = new ArrayList<>();
+            for (int i = 0;  i < 40;  i++) {
+                final int width = i + 1;
+                results.add(executor.submit(() -> loader.loadSvg(getDrawing(width))));
+            }
+
+            for (int i = 0;  i < 40;  i++) {
+                Group svgImage = results.get(i).get();
+
+                // each document must have been converted into its own, complete tree
+                assertEquals(1, svgImage.getChildren().size());
+                Group layer1 = (Group) svgImage.getChildren().get(0);
+                assertEquals("layer1", layer1.getId());
+                assertEquals(2, layer1.getChildren().size());
+
+                Group layer2 = (Group) layer1.getChildren().get(0);
+                Rectangle rect = (Rectangle) layer2.getChildren().get(0);
+                assertEquals(i + 1, rect.getWidth(), 0.0);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
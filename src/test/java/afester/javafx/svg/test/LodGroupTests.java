@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getInput;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import afester.javafx.svg.SvgLoader;
+import afester.javafx.svg.SvgLodGroup;
+
+import javafx.scene.Group;
+import javafx.scene.shape.Polyline;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+
+
+public class LodGroupTests {
+
+    private static InputStream getDrawing() {
+        StringBuilder svg = new StringBuilder(
+                "<svg xmlns='http://www.w3.org/2000/svg' viewBox='0 0 100 100'>"
+              + "<rect x='0' y='0' width='100' height='100' style='fill:#cccccc'/>");
+
+        // ten bolts of one unit and five valves of four units
+        for (int i = 0;  i < 10;  i++) {
+            svg.append("<rect x='" + (i * 10) + "' y='10' width='1' height='1'"
+                     + " style='fill:#000000'/>");
+        }
+        svg.append("<g>");
+        for (int i = 0;  i < 5;  i++) {
+            svg.append("<rect x='" + (i * 20) + "' y='50' width='4' height='4'"
+                     + " style='fill:#ff0000'/>");
+        }
+        svg.append("</g>");
+
+        // a pipe with a small deviation of three units
+        svg.append("<polyline points='0,80 25,83 50,80 75,83 100,80'"
+                 + " style='fill:none;stroke:#0000ff'/>");
+        svg.append("</svg>");
+        return getInput(svg.toString());
+    }
+
+
+    @Test
+    public void testLevels() {
+        SvgLodGroup drawing = new SvgLoader().loadSvgLevels(getDrawing(), 1.0, 0.5, 0.125);
+        assertEquals(3, drawing.getLevelCount());
+        assertEquals(Double.POSITIVE_INFINITY, drawing.getLevelScale(0), 0);
+        assertEquals(0.125, drawing.getLevelScale(2), 0);
+
+        // root, background, 10 bolts, valve group with 5 valves, pipe
+        assertEquals(19, drawing.getLevelNodeCount(0));
+
+        // at scale 0.5, the bolts are smaller than a pixel
+        assertEquals(9, drawing.getLevelNodeCount(1));
+
+        // at scale 0.125, the valves are also removed, and the pipe is straight
+        assertEquals(4, drawing.getLevelNodeCount(2));
+        Polyline pipe = (Polyline) drawing.getLevelNode(2).getChildren().get(2);
+        assertEquals(4, pipe.getPoints().size());
+        pipe = (Polyline) drawing.getLevelNode(1).getChildren().get(2);
+        assertEquals(10, pipe.getPoints().size());
+    }
+
+
+    @Test
+    public void testSwitching() {
+        SvgLodGroup drawing = new SvgLoader().loadSvgLevels(getDrawing());
+        Group zoom = new Group(drawing);
+        assertEquals(0, drawing.getLevel());
+        assertSame(drawing.getLevelNode(0), drawing.getChildren().get(0));
+
+        zoom.setScaleX(0.25);
+        zoom.setScaleY(0.25);
+        assertEquals(1, drawing.getLevel());
+        assertSame(drawing.getLevelNode(1), drawing.getChildren().get(0));
+
+        zoom.setScaleX(0.1);
+        zoom.setScaleY(0.1);
+        assertEquals(2, drawing.getLevel());
+
+        // the level is chosen for the direction which is scaled most
+        zoom.setScaleX(1);
+        assertEquals(0, drawing.getLevel());
+
+        // the level can also be selected explicitly
+        SvgLodGroup standalone = new SvgLoader().loadSvgLevels(getDrawing());
+        standalone.updateLevel(0.5);
+        assertEquals(1, standalone.getLevel());
+        assertEquals(1, standalone.getChildren().size());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getInput;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import afester.javafx.svg.SvgLoadResult;
+import afester.javafx.svg.SvgLoader;
+import afester.javafx.svg.SvgOcclusionCuller;
+
+import javafx.scene.Group;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.List;
+
+
+public class OcclusionCullingTests {
+
+    private static InputStream getDrawing() {
+        String svg = "<svg xmlns='http://www.w3.org/2000/svg' viewBox='0 0 100 100'>"
+                   + "<rect id='page1' x='0' y='0' width='100' height='100' style='fill:#ffffff'/>"
+                   + "<rect id='page2' x='0' y='0' width='100' height='100' style='fill:#eeeeee'/>"
+                   + "<circle id='dot' cx='50' cy='50' r='5' style='fill:#ff0000;stroke:#000000'/>"
+                   + "<rect id='outside' x='120' y='0' width='10' height='10'"
+                   + "      style='fill:#ff0000'/>"
+                   + "<g id='faded' style='opacity:0.5'>"
+                   + "<rect id='hidden' x='40' y='40' width='5' height='5' style='fill:#00ff00'/>"
+                   + "<rect id='glass' x='30' y='30' width='40' height='40' style='fill:#0000ff'/>"
+                   + "</g>"
+                   + "<rect id='corner' x='1' y='1' width='3' height='3' style='fill:#00ff00'/>"
+                   + "<rect id='tile' x='0' y='0' width='80' height='80' rx='10'"
+                   + "      style='fill:#ffff00;fill-opacity:0.5'/>"
+                   + "<polygon id='roof' points='50,10 90,90 10,90' style='fill:#000000'/>"
+                   + "</svg>";
+        return getInput(svg);
+    }
+
+
+    @Test
+    public void testCull() {
+        for (boolean streaming : List.of(false, true)) {
+            SvgOcclusionCuller culler = new SvgOcclusionCuller();
+            SvgLoadResult result = SvgLoader.builder()
+                                            .useStreamingParser(streaming)
+                                            .occlusionCuller(culler)
+                                            .build().loadSvgIndexed(getDrawing());
+
+            // the first page is covered by the second one, and the dot by the roof
+            assertNull(result.getNode("page1"));
+            assertNull(result.getNode("dot"));
+            assertNotNull(result.getNode("page2"));
+            assertNotNull(result.getNode("outside"));
+
+            // a translucent group does not cover, but its covered children are removed
+            assertNull(result.getNode("hidden"));
+            assertNotNull(result.getNode("glass"));
+
+            // translucent fills do not cover, and the roof does not reach the corner
+            assertNotNull(result.getNode("corner"));
+            assertEquals(3, culler.getRemovedCount());
+        }
+    }
+
+
+    @Test
+    public void testKeepIds() {
+        Group svgImage = SvgLoader.builder().build().loadSvg(getDrawing());
+        int count = svgImage.getChildren().size();
+        int removed = new SvgOcclusionCuller(List.of("page1")).cull(svgImage);
+        assertEquals(2, removed);
+        assertEquals(count - 1, svgImage.getChildren().size());
+        assertEquals("page1", svgImage.getChildren().get(0).getId());
+    }
+
+
+    @Test
+    public void testTransformedCover() {
+        // the rotated square covers the dot, but not the square at its corner
+        String svg = "<svg xmlns='http://www.w3.org/2000/svg' viewBox='0 0 100 100'>"
+                   + "<circle id='dot' cx='50' cy='50' r='10' style='fill:#ff0000'/>"
+                   + "<rect id='corner' x='48' y='18' width='4' height='4' style='fill:#ff0000'/>"
+                   + "<rect x='-20' y='-20' width='40' height='40' style='fill:#000000'"
+                   + "      transform='matrix(0.7071,0.7071,-0.7071,0.7071,50,50)'/>"
+                   + "</svg>";
+        Group svgImage = SvgLoader.builder().build().loadSvg(getInput(svg));
+        assertEquals(1, new SvgOcclusionCuller().cull(svgImage));
+        assertEquals("corner", svgImage.getChildren().get(0).getId());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getDrawing;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import afester.javafx.svg.SvgLoader;
+import afester.javafx.svg.SvgOptimizer;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.SVGPath;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+public class OptimizerTests {
+
+    @Test
+    public void testOptimize() {
+        SvgLoader loader = SvgLoader.builder().build();
+        Group svgImage = loader.loadSvg(getDrawing("optimize.svg"));
+
+        SvgOptimizer optimizer = new SvgOptimizer(Arrays.asList("kept"));
+        assertEquals(5, optimizer.optimize(svgImage));
+
+        List<Node> children = svgImage.getChildren();
+        assertEquals(5, children.size());
+
+        // the single child inherits the transformation of its group
+        Rectangle r1 = (Rectangle) children.get(0);
+        assertEquals("r1", r1.getId());
+        assertEquals(1, r1.getTransforms().size());
+        assertEquals(5.0, r1.getTransforms().get(0).getTx(), 0.0);
+
+        // disjoint paths are merged, overlapping ones are not
+        SVGPath p1 = (SVGPath) children.get(1);
+        assertEquals("p1", p1.getId());
+        assertEquals("M0,0 L10,0 L10,10 Z M20,0 l 10,0 0,10 z", p1.getContent());
+        assertEquals("p3", children.get(2).getId());
+
+        // opaque strokes are merged even if they overlap
+        SVGPath p4 = (SVGPath) children.get(3);
+        assertEquals("M0,0 L50,50 M0,50 L50,0", p4.getContent());
+
+        assertEquals("kept", children.get(4).getId());
+        assertTrue(children.get(4) instanceof Group);
+    }
+
+
+    @Test
+    public void testKeepIds() {
+        SvgOptimizer optimizer = new SvgOptimizer(Arrays.asList("layer1", "p2"));
+        SvgLoader loader = SvgLoader.builder().useStreamingParser(true)
+                                              .optimizer(optimizer).build();
+        Group svgImage = loader.loadSvg(getDrawing("optimize.svg"));
+
+        Group layer1 = (Group) svgImage.getChildren().get(0);
+        assertEquals("layer1", layer1.getId());
+
+        List<Node> children = layer1.getChildren();
+        assertEquals(5, children.size());
+        assertEquals("r1", children.get(0).getId());
+        assertEquals("p1", children.get(1).getId());
+        assertEquals("p2", children.get(2).getId());
+        assertEquals("p3", children.get(3).getId());
+        assertEquals("p4", children.get(4).getId());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getDrawing;
+import static afester.javafx.svg.test.SvgTestUtils.getInput;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import afester.javafx.svg.SvgLoader;
+import afester.javafx.svg.SvgParserPool;
+
+import javafx.scene.Group;
+import javafx.scene.shape.Rectangle;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class ParserPoolTests {
+
+    @Test
+    public void testReuse() {
+        SvgParserPool pool = new SvgParserPool();
+        SvgLoader loader = SvgLoader.builder().parserPool(pool).build();
+
+        for (int i = 0;  i < 10;  i++) {
+            Group svgImage = loader.loadSvg(getDrawing("blueicon.svg"));
+            assertEquals(1, svgImage.getChildrenUnmodifiable().size());
+
+            Rectangle rectangle = (Rectangle) svgImage.getChildrenUnmodifiable().get(0);
+            assertEquals(12.0, rectangle.getWidth(), 0.01);
+            assertEquals("0x0000ffff", rectangle.getFill().toString());
+        }
+
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(9, pool.getReusedCount());
+    }
+
+
+    @Test
+    public void testInvalidDocument() {
+        SvgParserPool pool = new SvgParserPool();
+        SvgLoader loader = SvgLoader.builder().parserPool(pool).build();
+
+        InputStream invalid = getInput("<svg");
+        assertEquals(null, loader.loadSvgDocument(invalid));
+
+        // the pool must still be usable after a parse error
+        Group svgImage = loader.loadSvg(getDrawing("blueicon.svg"));
+        assertEquals(1, svgImage.getChildrenUnmodifiable().size());
+    }
+
+
+    @Test
+    public void testReuseAcrossThreads() throws InterruptedException {
+        SvgParserPool pool = new SvgParserPool();
+
+        // the threads load their documents one after the other, so that all
+        // of them use the same setup
+        for (int i = 0;  i < 3;  i++) {
+            Thread thread = new Thread(() -> {
+                SvgLoader loader = SvgLoader.builder().parserPool(pool).build();
+                loader.loadSvgDocument(getDrawing("blueicon.svg"));
+                loader.loadSvgDocument(getDrawing("blueicon.svg"));
+            });
+            thread.start();
+            thread.join();
+        }
+
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(5, pool.getReusedCount());
+        assertTrue(pool.toString().contains("reused=5"));
+    }
+
+
+    @Test
+    public void testConcurrentLoads() throws InterruptedException {
+        SvgParserPool pool = new SvgParserPool(2);
+        AtomicInteger loaded = new AtomicInteger();
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0;  i < threads.length;  i++) {
+            threads[i] = new Thread(() -> {
+                SvgLoader loader = SvgLoader.builder().parserPool(pool).build();
+                for (int j = 0;  j < 5;  j++) {
+                    Group svgImage = loader.loadSvg(getDrawing("blueicon.svg"));
+                    if (svgImage.getChildrenUnmodifiable().size() == 1) {
+                        loaded.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // each document is loaded with its own setup
+        assertEquals(20, loaded.get());
+        assertEquals(20, pool.getCreatedCount() + pool.getReusedCount());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getInput;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import afester.javafx.svg.SvgLoader;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.shape.CubicCurve;
+import javafx.scene.shape.Line;
+
+import org.apache.batik.parser.AWTPathProducer;
+import org.junit.Test;
+
+import java.awt.BasicStroke;
+import java.awt.Shape;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.List;
+
+
+public class PathParserTests {
+
+    private static final String ALL_COMMANDS =
+          "M10,10 L20,10 l0,10 H30 h5 V30 v-5 C40,20 45,20 50,25 c5,5 10,5 15,0"
+        + " S75,20 80,25 s5,5 10,0 Q95,20 100,25 q5,5 10,0 T120,25 t10,0"
+        + " A10,5 30 0 1 150,30 a10 10 0 1 0 10,10 Z"
+        + " m5-5 .5.5-1e1,1E+1 z";
+
+
+    private static Group loadPath(String data, boolean streaming) {
+        String svg = "<svg xmlns='http://www.w3.org/2000/svg' viewBox='0 0 200 100'>"
+                   + "<path d='" + data + "' style='fill:none;stroke:#000000'/></svg>";
+        InputStream in = getInput(svg);
+        Group svgImage = SvgLoader.builder()
+                                  .useSeparatePathElements(true)
+                                  .useStreamingParser(streaming)
+                                  .build().loadSvg(in);
+        return (Group) svgImage.getChildren().get(0);
+    }
+
+
+    // converts the separate segment shapes into one AWT path, for comparing it with Batik
+    private static Path2D toPath(Group segments) {
+        Path2D.Double result = new Path2D.Double();
+        for (Node node : segments.getChildren()) {
+            if (node instanceof Line) {
+                Line line = (Line) node;
+                result.moveTo(line.getStartX(), line.getStartY());
+                result.lineTo(line.getEndX(), line.getEndY());
+            } else if (node instanceof CubicCurve) {
+                CubicCurve cubic = (CubicCurve) node;
+                result.moveTo(cubic.getStartX(), cubic.getStartY());
+                result.curveTo(cubic.getControlX1(), cubic.getControlY1(),
+                               cubic.getControlX2(), cubic.getControlY2(),
+                               cubic.getEndX(), cubic.getEndY());
+            }
+        }
+        return result;
+    }
+
+
+    private static void assertSameGeometry(String data, Group segments) throws Exception {
+        Shape expected = AWTPathProducer.createShape(new StringReader(data),
+                                                     Path2D.WIND_NON_ZERO);
+        Shape actual = toPath(segments);
+
+        // Batik uses float coordinates
+        Rectangle2D expectedBounds = expected.getBounds2D();
+        Rectangle2D actualBounds = actual.getBounds2D();
+        assertEquals(expectedBounds.getMinX(), actualBounds.getMinX(), 1e-3);
+        assertEquals(expectedBounds.getMinY(), actualBounds.getMinY(), 1e-3);
+        assertEquals(expectedBounds.getMaxX(), actualBounds.getMaxX(), 1e-3);
+        assertEquals(expectedBounds.getMaxY(), actualBounds.getMaxY(), 1e-3);
+
+        // each point on the Batik outline is on one of the segments
+        Shape outline = new BasicStroke(0.01f).createStrokedShape(actual);
+        double[] coords = new double[6];
+        for (PathIterator it = expected.getPathIterator(null, 0.01);  !it.isDone();  it.next()) {
+            it.currentSegment(coords);
+            Rectangle2D probe = new Rectangle2D.Double(coords[0] - 0.05, coords[1] - 0.05,
+                                                       0.1, 0.1);
+            assertTrue("Point " + coords[0] + "," + coords[1] + " not on the path",
+                       outline.intersects(probe));
+        }
+    }
+
+
+    @Test
+    public void testAllCommands() throws Exception {
+        for (boolean streaming : List.of(false, true)) {
+            Group segments = loadPath(ALL_COMMANDS, streaming);
+            assertSameGeometry(ALL_COMMANDS, segments);
+
+            // 7 lines, 4 cubic and 4 quadratic curves (as cubic curves), 2 arcs with at least one
+            // curve each, the closing line and the two lines of the last subpath
+            assertTrue(segments.getChildren().size() >= 7 + 8 + 2 + 1 + 2);
+            for (Node node : segments.getChildren()) {
+                assertTrue(node instanceof Line || node instanceof CubicCurve);
+            }
+            Line first = (Line) segments.getChildren().get(0);
+            assertEquals(10, first.getStartX(), 0);
+            assertEquals(20, first.getEndX(), 0);
+
+            // the last subpath starts relative to the start of the previous one
+            Line last = (Line) segments.getChildren().get(segments.getChildren().size() - 1);
+            assertEquals(5.5, last.getStartX(), 1e-9);
+            assertEquals(15.5, last.getStartY(), 1e-9);
+            assertEquals(15, last.getEndX(), 1e-9);
+            assertEquals(5, last.getEndY(), 1e-9);
+        }
+    }
+
+
+    @Test
+    public void testCompactArcFlags() throws Exception {
+        String data = "M10 50a40 40 0 1010 10a5 5 0 00-5-5";
+        Group segments = loadPath(data, false);
+        assertSameGeometry(data, segments);
+    }
+
+
+    @Test
+    public void testInvalidData() {
+        // the segments before the error are kept (Batik rejects the complete
+        // document, so this is only checked with the streaming parser)
+        Group segments = loadPath("M10,10 L20,20 L30 X 40,40", true);
+        assertEquals(1, segments.getChildren().size());
+
+        segments = loadPath("L10,10 L20,20", true);
+        assertEquals(0, segments.getChildren().size());
+    }
+}
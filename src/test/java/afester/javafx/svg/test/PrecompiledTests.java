@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getDrawing;
+import static afester.javafx.svg.test.SvgTestUtils.readDrawing;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import afester.javafx.svg.SvgCompiler;
+import afester.javafx.svg.SvgLoader;
+import afester.javafx.svg.SvgScene;
+import afester.javafx.svg.SvgSceneNode;
+
+import javafx.scene.Group;
+import javafx.scene.paint.LinearGradient;
+import javafx.scene.shape.Rectangle;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+
+public class PrecompiledTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    private static void assertSameScene(SvgSceneNode expected, SvgSceneNode actual) {
+        assertEquals(expected.getKind(), actual.getKind());
+        assertEquals(expected.getId(), actual.getId());
+        assertArrayEquals(expected.getTransforms(), actual.getTransforms(), 0.0001);
+        assertArrayEquals(expected.getGeometry(), actual.getGeometry(), 0.0001);
+        assertEquals(expected.getContent(), actual.getContent());
+        assertEquals(expected.getFill(), actual.getFill());
+        assertEquals(expected.getStroke(), actual.getStroke());
+        assertEquals(expected.getStrokeWidth(), actual.getStrokeWidth(), 0.0001);
+        assertArrayEquals(expected.getStrokeDashArray(), actual.getStrokeDashArray(), 0.0001);
+        assertEquals(expected.getFont(), actual.getFont());
+
+        List<SvgSceneNode> expectedChildren = expected.getChildren();
+        List<SvgSceneNode> actualChildren = actual.getChildren();
+        assertEquals(expectedChildren.size(), actualChildren.size());
+        for (int i = 0;  i < expectedChildren.size();  i++) {
+            assertSameScene(expectedChildren.get(i), actualChildren.get(i));
+        }
+    }
+
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        SvgLoader loader = new SvgLoader();
+        SvgScene expected = loader.loadSvgScene(getDrawing("precompiled.svg"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SvgCompiler.compile(expected, out);
+        SvgScene actual = loader.loadPrecompiledScene(new ByteArrayInputStream(out.toByteArray()));
+
+        assertSameScene(expected.getRoot(), actual.getRoot());
+        assertTrue(out.size() < readDrawing("precompiled.svg").length / 2);
+
+        // paints are stored only once and shared by all nodes
+        Group svgImage = loader.loadPrecompiled(new ByteArrayInputStream(out.toByteArray()));
+        Group layer1 = (Group) svgImage.getChildren().get(0);
+        Rectangle r1 = (Rectangle) layer1.getChildren().get(0);
+        Rectangle r2 = (Rectangle) layer1.getChildren().get(1);
+        assertTrue(r1.getFill() instanceof LinearGradient);
+        assertTrue(r1.getFill() == r2.getFill());
+        assertEquals(1.25, r1.getX(), 0.0);
+    }
+
+
+    @Test
+    public void testCompileFile() throws IOException {
+        File svgFile = folder.newFile("drawing.svg");
+        Files.write(svgFile.toPath(), readDrawing("precompiled.svg"));
+
+        SvgCompiler.main(new String[] {"-rootRect", svgFile.getPath()});
+        File compiledFile = new File(folder.getRoot(), "drawing" + SvgCompiler.EXTENSION);
+        assertTrue(compiledFile.exists());
+
+        SvgLoader loader = new SvgLoader();
+        Group svgImage = loader.loadPrecompiled(compiledFile.getPath());
+        assertEquals(2, svgImage.getChildren().size());
+        assertEquals(100.0, ((Rectangle) svgImage.getChildren().get(0)).getWidth(), 0.0);
+    }
+
+
+    @Test
+    public void testCorruptData() throws IOException {
+        SvgLoader loader = new SvgLoader();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SvgCompiler.compile(loader.loadSvgScene(getDrawing("precompiled.svg")), out);
+        byte[] compiled = out.toByteArray();
+
+        // truncated data
+        for (int length = 0;  length < compiled.length;  length++) {
+            byte[] data = Arrays.copyOf(compiled, length);
+            assertNull(loader.loadPrecompiledScene(new ByteArrayInputStream(data)));
+        }
+
+        // corrupt counts, indexes and values
+        for (int i = 4;  i < compiled.length;  i++) {
+            byte[] data = compiled.clone();
+            data[i] = (byte) 0xFF;
+            loader.loadPrecompiledScene(new ByteArrayInputStream(data));
+        }
+    }
+
+
+    /**
+     * Creates the data of a scene without strings, paints and fonts, whose root
+     * contains a single node. The nodes have the given kind and number of values.
+     */
+    private static byte[] createScene(SvgSceneNode.Kind rootKind, int transformCount,
+                                      SvgSceneNode.Kind kind, int geometryCount)
+                                                                    throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(0x46585347);
+        data.writeByte(2);      // version
+        data.writeByte(0);      // strings
+        data.writeByte(0);      // paints
+        data.writeByte(0);      // fonts
+
+        data.writeByte(rootKind.ordinal());
+        data.writeByte(0);      // id
+        writeFloats(data, transformCount);
+        if (rootKind == SvgSceneNode.Kind.GROUP) {
+            data.writeByte(1);  // children
+            data.writeByte(kind.ordinal());
+            data.writeByte(0);  // id
+            writeFloats(data, 0);
+        }
+        writeFloats(data, geometryCount);
+        data.writeByte(0);      // content
+        data.writeByte(0);      // fill
+        data.writeByte(0);      // stroke
+        data.writeFloat(1);     // stroke width
+        writeFloats(data, 0);   // dash array
+        data.writeFloat(0);     // dash offset
+        data.writeByte(0);      // font
+        return out.toByteArray();
+    }
+
+
+    private static void writeFloats(DataOutputStream data, int count) throws IOException {
+        data.writeByte(count);
+        for (int i = 0;  i < count;  i++) {
+            data.writeFloat(i);
+        }
+    }
+
+
+    @Test
+    public void testCorruptNodes() throws IOException {
+        SvgLoader loader = new SvgLoader();
+        byte[] valid = createScene(SvgSceneNode.Kind.GROUP, 6, SvgSceneNode.Kind.LINE, 4);
+        SvgScene scene = loader.loadPrecompiledScene(new ByteArrayInputStream(valid));
+        assertEquals(SvgSceneNode.Kind.LINE, scene.getRoot().getChildren().get(0).getKind());
+
+        // root which is not a group
+        byte[] data = createScene(SvgSceneNode.Kind.LINE, 0, null, 4);
+        assertNull(loader.loadPrecompiledScene(new ByteArrayInputStream(data)));
+
+        // incomplete transformation
+        data = createScene(SvgSceneNode.Kind.GROUP, 5, SvgSceneNode.Kind.LINE, 4);
+        assertNull(loader.loadPrecompiledScene(new ByteArrayInputStream(data)));
+
+        // too few geometry values
+        data = createScene(SvgSceneNode.Kind.GROUP, 6, SvgSceneNode.Kind.LINE, 3);
+        assertNull(loader.loadPrecompiledScene(new ByteArrayInputStream(data)));
+        data = createScene(SvgSceneNode.Kind.GROUP, 6, SvgSceneNode.Kind.RECTANGLE, 4);
+        assertNull(loader.loadPrecompiledScene(new ByteArrayInputStream(data)));
+        data = createScene(SvgSceneNode.Kind.GROUP, 6, SvgSceneNode.Kind.POLYGON, 5);
+        assertNull(loader.loadPrecompiledScene(new ByteArrayInputStream(data)));
+    }
+
+
+    @Test
+    public void testInvalidFile() {
+        SvgLoader loader = new SvgLoader();
+        assertNull(loader.loadPrecompiled(getDrawing("precompiled.svg")));
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getInput;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import afester.javafx.svg.SvgCache;
+import afester.javafx.svg.SvgLoader;
+
+import javafx.scene.Group;
+import javafx.scene.shape.Rectangle;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+
+
+public class SceneCacheTests {
+
+    private static final String ICON =
+          "<svg xmlns='http://www.w3.org/2000/svg' viewBox='0 0 16 16'>"
+        + "  <g id='layer1' transform='translate(1,2)'>"
+        + "    <rect id='r1' x='1' y='2' width='%d' height='10' style='fill:#0000ff'/>"
+        + "  </g>"
+        + "</svg>";
+
+
+    private static InputStream getIcon(int width) {
+        String svg = String.format(ICON, width);
+        return getInput(svg);
+    }
+
+
+    @Test
+    public void testHit() {
+        SvgCache cache = new SvgCache(100);
+        SvgLoader loader = SvgLoader.builder().sceneCache(cache).build();
+
+        Group first = loader.loadSvg(getIcon(12));
+        Group second = loader.loadSvg(getIcon(12));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.size());
+        assertEquals(3, cache.getWeight());
+
+        Group layer1 = (Group) first.getChildren().get(0);
+        Group layer2 = (Group) second.getChildren().get(0);
+        assertNotSame(layer1, layer2);
+        assertEquals("layer1", layer2.getId());
+        assertEquals(2.0, layer2.getLocalToParentTransform().getTy(), 0.0001);
+
+        Rectangle rect1 = (Rectangle) layer1.getChildren().get(0);
+        Rectangle rect2 = (Rectangle) layer2.getChildren().get(0);
+        assertEquals("r1", rect2.getId());
+        assertEquals(12.0, rect2.getWidth(), 0.0001);
+        assertEquals("0x0000ffff", rect2.getFill().toString());
+
+        // the copies are independent of each other
+        rect1.setWidth(99);
+        Group third = loader.loadSvg(getIcon(12));
+        Rectangle rect3 = (Rectangle) ((Group) third.getChildren().get(0)).getChildren().get(0);
+        assertEquals(12.0, rect3.getWidth(), 0.0001);
+    }
+
+
+    @Test
+    public void testOptionsKey() {
+        SvgCache cache = new SvgCache(100);
+        SvgLoader loader = SvgLoader.builder().sceneCache(cache).build();
+
+        loader.loadSvg(getIcon(12));
+        loader = loader.toBuilder().addViewboxRect(true).build();
+        Group svgImage = loader.loadSvg(getIcon(12));
+
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.size());
+        assertEquals(2, svgImage.getChildren().size());
+
+        loader = loader.toBuilder().useCssOnlyBridge(true).build();
+        loader.loadSvg(getIcon(12));
+        assertEquals(3, cache.getMissCount());
+        assertEquals(3, cache.size());
+    }
+
+
+    @Test
+    public void testEviction() {
+        SvgCache cache = new SvgCache(6);
+        SvgLoader loader = SvgLoader.builder().sceneCache(cache).build();
+
+        loader.loadSvg(getIcon(1));
+        loader.loadSvg(getIcon(2));
+        loader.loadSvg(getIcon(1));     // hit, icon 2 is now the least recently used one
+        loader.loadSvg(getIcon(3));     // evicts icon 2
+
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.size());
+        assertEquals(6, cache.getWeight());
+
+        loader.loadSvg(getIcon(1));
+        loader.loadSvg(getIcon(2));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+        assertEquals(2, cache.getEvictionCount());
+    }
+}
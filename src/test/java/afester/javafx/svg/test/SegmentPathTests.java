@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getInput;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import afester.javafx.svg.SvgLoader;
+import afester.javafx.svg.SvgScene;
+import afester.javafx.svg.SvgSegmentPath;
+
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.CubicCurve;
+import javafx.scene.shape.Line;
+import javafx.scene.shape.Shape;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.List;
+
+
+public class SegmentPathTests {
+
+    private static final String WIRE = "M10,10 H50 V30 Q60,30 60,40 L60,60 Z";
+
+    private static InputStream getDrawing(String transform) {
+        String svg = "<svg xmlns='http://www.w3.org/2000/svg' viewBox='0 0 100 100'>"
+                   + "<g transform='" + transform + "'>"
+                   + "<path id='wire1' d='" + WIRE + "'"
+                   + "      style='fill:none;stroke:#0000ff;stroke-width:2'/>"
+                   + "</g></svg>";
+        return getInput(svg);
+    }
+
+
+    private static SvgSegmentPath getWire(Group svgImage) {
+        return (SvgSegmentPath) ((Group) svgImage.getChildren().get(0)).getChildren().get(0);
+    }
+
+
+    @Test
+    public void testSegments() {
+        for (boolean streaming : List.of(false, true)) {
+            Group svgImage = SvgLoader.builder()
+                                      .useSegmentPaths(true)
+                                      .useStreamingParser(streaming)
+                                      .build().loadSvg(getDrawing("matrix(1,0,0,1,0,0)"));
+            SvgSegmentPath wire = getWire(svgImage);
+            assertEquals("wire1", wire.getId());
+            assertEquals(Color.BLUE, wire.getStroke());
+            assertEquals(2, wire.getStrokeWidth(), 0);
+
+            // the same segments as with separate path elements
+            Group separate = (Group) ((Group) SvgLoader.builder()
+                                     .useSeparatePathElements(true)
+                                     .build().loadSvg(getDrawing("matrix(1,0,0,1,0,0)"))
+                                     .getChildren().get(0)).getChildren().get(0);
+            assertEquals(5, wire.getSegmentCount());
+            assertEquals(separate.getChildren().size(), wire.getSegmentCount());
+            for (int i = 0;  i < wire.getSegmentCount();  i++) {
+                Shape segment = wire.createSegmentShape(i);
+                assertSame(separate.getChildren().get(i).getClass(), segment.getClass());
+                assertEquals(separate.getChildren().get(i).getBoundsInLocal(),
+                             segment.getBoundsInLocal());
+            }
+
+            assertTrue(wire.isLine(0));
+            assertFalse(wire.isLine(2));
+            Bounds bounds = wire.getSegmentBounds(1);
+            assertEquals(50, bounds.getMinX(), 0);
+            assertEquals(10, bounds.getMinY(), 0);
+            assertEquals(0, bounds.getWidth(), 0);
+            assertEquals(20, bounds.getHeight(), 0);
+        }
+    }
+
+
+    @Test
+    public void testSegmentAt() {
+        Group svgImage = SvgLoader.builder()
+                                  .useSegmentPaths(true)
+                                  .build().loadSvg(getDrawing("matrix(1,0,0,1,0,0)"));
+        SvgSegmentPath wire = getWire(svgImage);
+
+        assertEquals(0, wire.getSegmentAt(30, 11, 1));
+        assertEquals(-1, wire.getSegmentAt(30, 15, 1));
+        assertEquals(1, wire.getSegmentAt(50, 20, 1));
+        assertEquals(2, wire.getSegmentAt(57.5, 32.5, 1));
+
+        // the closing line from 60,60 to 10,10
+        assertEquals(4, wire.getSegmentAt(35, 35, 1));
+
+        // on the shared end point, the segment which is drawn last wins
+        assertEquals(1, wire.getSegmentAt(50, 10, 1));
+    }
+
+
+    @Test
+    public void testFlattenedAndScene() {
+        SvgLoader loader = SvgLoader.builder()
+                                    .useSegmentPaths(true)
+                                    .flattenTransforms(true)
+                                    .build();
+        SvgSegmentPath wire = getWire(loader.loadSvg(getDrawing("translate(100,0)")));
+        assertTrue(wire.getTransforms().isEmpty());
+        assertEquals(0, wire.getSegmentAt(130, 10, 1));
+        Line first = (Line) wire.createSegmentShape(0);
+        assertEquals(110, first.getStartX(), 0);
+
+        // scenes and their node trees keep the segment paths
+        SvgScene scene = SvgLoader.builder().useSegmentPaths(true).build()
+                                  .loadSvgScene(getDrawing("matrix(1,0,0,1,0,0)"));
+        SvgSegmentPath copy = getWire(scene.createGroup());
+        assertEquals("wire1", copy.getId());
+        assertEquals(5, copy.getSegmentCount());
+        assertTrue(copy.createSegmentShape(2) instanceof CubicCurve);
+        assertEquals(4, copy.getSegmentAt(35, 35, 1));
+    }
+}
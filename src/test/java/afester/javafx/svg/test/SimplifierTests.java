@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getInput;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import afester.javafx.svg.SvgLoader;
+import afester.javafx.svg.SvgSimplifier;
+
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.Polyline;
+import javafx.scene.shape.SVGPath;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+
+
+public class SimplifierTests {
+
+    private static InputStream getDrawing(String transform) {
+        // a zigzag line whose deviation of 0.05 is not visible at scale 1
+        StringBuilder points = new StringBuilder();
+        for (int i = 0;  i <= 100;  i++) {
+            points.append(i).append(',').append(i % 2 == 0 ? 10 : 10.05).append(' ');
+        }
+
+        // a closed path whose small curves are not visible at scale 1
+        StringBuilder curves = new StringBuilder("M0,50");
+        for (int i = 0;  i < 30;  i++) {
+            curves.append(" c1,0.02 2,0.02 3,0");
+        }
+        curves.append(" l0,10 Z");
+
+        String svg = "<svg xmlns='http://www.w3.org/2000/svg' viewBox='0 0 100 100'>"
+                   + "<g transform='" + transform + "'>"
+                   + "<polyline id='track' points='" + points + "'"
+                   + "          style='fill:none;stroke:#ff0000'/>"
+                   + "<polygon id='area' points='0,0 50,0.01 100,0 100,100 0,100'"
+                   + "         style='fill:#00ff00'/>"
+                   + "<path id='wave' d='" + curves + "' style='fill:#0000ff'/>"
+                   + "<path id='circle' d='M60,50 A10,10 0 0 0 40,50 A10,10 0 0 0 60,50 Z'"
+                   + "      style='fill:#0000ff'/>"
+                   + "</g></svg>";
+        return getInput(svg);
+    }
+
+
+    private static Group getLayer(Group svgImage) {
+        return (Group) svgImage.getChildren().get(0);
+    }
+
+
+    @Test
+    public void testSimplify() {
+        SvgSimplifier simplifier = new SvgSimplifier(0.5, 1);
+        Group svgImage = SvgLoader.builder().build().loadSvg(getDrawing("matrix(1,0,0,1,0,0)"));
+        SvgSimplifier.Statistics statistics = simplifier.simplify(svgImage);
+
+        Polyline track = (Polyline) getLayer(svgImage).getChildren().get(0);
+        assertEquals(4, track.getPoints().size());
+        assertEquals(0, track.getPoints().get(0), 0);
+        assertEquals(100, track.getPoints().get(2), 0);
+
+        Polygon area = (Polygon) getLayer(svgImage).getChildren().get(1);
+        assertEquals(8, area.getPoints().size());
+
+        SVGPath wave = (SVGPath) getLayer(svgImage).getChildren().get(2);
+        assertEquals("M0,50 L90,50 90,60 Z", wave.getContent());
+
+        // approximating the arcs by lines would need more points, so the circle is kept
+        SVGPath circle = (SVGPath) getLayer(svgImage).getChildren().get(3);
+        assertEquals("M60,50 A10,10 0 0 0 40,50 A10,10 0 0 0 60,50 Z", circle.getContent());
+
+        assertEquals(3, statistics.getShapeCount());
+        assertEquals(101 + 5 + 92, statistics.getPointCountBefore());
+        assertEquals(2 + 4 + 3, statistics.getPointCountAfter());
+        assertTrue(statistics.getReduction() > 0.9);
+        assertEquals(statistics.getPointCountAfter(),
+                     simplifier.getStatistics().getPointCountAfter());
+    }
+
+
+    @Test
+    public void testTargetScale() {
+        // at scale 100, the zigzag deviation is 5 pixels and is kept
+        Group svgImage = SvgLoader.builder()
+                                  .simplifier(new SvgSimplifier(0.5, 100))
+                                  .build().loadSvg(getDrawing("matrix(1,0,0,1,0,0)"));
+        Polyline track = (Polyline) getLayer(svgImage).getChildren().get(0);
+        assertEquals(202, track.getPoints().size());
+
+        // the same applies when the drawing itself is scaled
+        svgImage = SvgLoader.builder()
+                            .simplifier(new SvgSimplifier(0.5, 1))
+                            .build().loadSvg(getDrawing("matrix(100,0,0,100,0,0)"));
+        track = (Polyline) getLayer(svgImage).getChildren().get(0);
+        assertEquals(202, track.getPoints().size());
+    }
+
+
+    @Test
+    public void testDeterministic() {
+        SvgLoader loader = SvgLoader.builder()
+                                    .simplifier(new SvgSimplifier(0.25, 2))
+                                    .useStreamingParser(true)
+                                    .build();
+        SvgSimplifier circles = new SvgSimplifier(2, 1);
+        Group first = loader.loadSvg(getDrawing("matrix(1,0,0,1,0,0)"));
+        Group second = loader.loadSvg(getDrawing("matrix(1,0,0,1,0,0)"));
+        circles.simplify(first);
+        circles.simplify(second);
+        for (int i = 2;  i < 4;  i++) {
+            assertEquals(((SVGPath) getLayer(first).getChildren().get(i)).getContent(),
+                         ((SVGPath) getLayer(second).getChildren().get(i)).getContent());
+        }
+
+        // the arcs are approximated by lines which keep the shape of the circle
+        SVGPath circle = (SVGPath) getLayer(first).getChildren().get(3);
+        assertTrue(circle.getContent().startsWith("M60,50 L"));
+        assertTrue(circle.getContent().endsWith(" Z"));
+        Bounds bounds = circle.getBoundsInLocal();
+        assertEquals(40, bounds.getMinX(), 2);
+        assertEquals(60, bounds.getMaxX(), 2);
+        assertEquals(40, bounds.getMinY(), 2);
+        assertEquals(60, bounds.getMaxY(), 2);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.assertSameTree;
+import static afester.javafx.svg.test.SvgTestUtils.getDrawing;
+import static afester.javafx.svg.test.SvgTestUtils.getInput;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import afester.javafx.svg.SvgLoader;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.paint.LinearGradient;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.SVGPath;
+import javafx.scene.shape.Shape;
+import javafx.scene.transform.Affine;
+
+import org.junit.Test;
+
+
+public class StreamingParserTests {
+
+    @Test
+    public void testStructure() {
+        SvgLoader loader = SvgLoader.builder().useStreamingParser(true).build();
+        Group svgImage = loader.loadSvg(getDrawing("streaming.svg"));
+        assertEquals(1, svgImage.getChildrenUnmodifiable().size());
+
+        Node node = svgImage.getChildrenUnmodifiable().get(0);
+        assertTrue(node instanceof Group);
+        assertEquals("layer1", node.getId());
+        assertEquals(1, node.getTransforms().size());
+        Affine transformation = (Affine) node.getTransforms().get(0);
+        assertEquals(10.0, transformation.getTx(), 0.01);
+        assertEquals(20.0, transformation.getTy(), 0.01);
+
+        Group group = (Group) node;
+        assertEquals(3, group.getChildrenUnmodifiable().size());
+    }
+
+
+    @Test
+    public void testInheritedStyle() {
+        SvgLoader loader = SvgLoader.builder().useStreamingParser(true).build();
+        Group svgImage = loader.loadSvg(getDrawing("streaming.svg"));
+        Group group = (Group) svgImage.getChildrenUnmodifiable().get(0);
+
+        Rectangle rectangle = (Rectangle) group.getChildrenUnmodifiable().get(0);
+        assertEquals("r1", rectangle.getId());
+        assertEquals(5.0, rectangle.getX(), 0.01);
+        assertEquals(6.0, rectangle.getY(), 0.01);
+        assertEquals(8.0, rectangle.getArcWidth(), 0.01);
+        assertEquals(8.0, rectangle.getArcHeight(), 0.01);
+        assertEquals("0x123456ff", rectangle.getFill().toString());
+        assertEquals("0x000000ff", rectangle.getStroke().toString());
+        assertEquals(1.5, rectangle.getStrokeWidth(), 0.01);
+        assertEquals(2, rectangle.getStrokeDashArray().size());
+
+        SVGPath path = (SVGPath) group.getChildrenUnmodifiable().get(2);
+        assertEquals("M 10,10 L 50,50 z", path.getContent());
+        assertNull(path.getFill());
+        assertEquals("0xff0000ff", path.getStroke().toString());
+    }
+
+
+    @Test
+    public void testGradient() {
+        SvgLoader loader = SvgLoader.builder().useStreamingParser(true).build();
+        Group svgImage = loader.loadSvg(getDrawing("streaming.svg"));
+        Group group = (Group) svgImage.getChildrenUnmodifiable().get(0);
+
+        Circle circle = (Circle) group.getChildrenUnmodifiable().get(1);
+        assertTrue(circle.getFill() instanceof LinearGradient);
+
+        LinearGradient gradient = (LinearGradient) circle.getFill();
+        assertEquals(100.0, gradient.getEndX(), 0.01);
+        assertEquals(2, gradient.getStops().size());
+        assertEquals("0x0000ff80", gradient.getStops().get(1).getColor().toString());
+    }
+
+
+    @Test
+    public void testInvalidAttributes() {
+        String drawing =
+              "<svg xmlns='http://www.w3.org/2000/svg' width='auto' height='100'>"
+            + "  <linearGradient id='lg' x1='left' gradientTransform='rotate(a)'>"
+            + "    <stop offset='0' style='stop-color:#ff0000;stop-opacity:50%'/>"
+            + "  </linearGradient>"
+            + "  <rect id='r1' x='5' y='6' width='auto' height='40' transform='move(1,2)'"
+            + "        style='fill-opacity:50%;stroke:#000000;stroke-width:thick'/>"
+            + "  <polygon id='p1' points='0,0 10,x' fill='url(#lg)'/>"
+            + "</svg>";
+
+        SvgLoader loader = SvgLoader.builder().useStreamingParser(true).build();
+        Group svgImage = loader.loadSvg(getInput(drawing));
+        assertEquals(2, svgImage.getChildrenUnmodifiable().size());
+
+        // invalid values are ignored, the other attributes are still applied
+        Rectangle rectangle = (Rectangle) svgImage.getChildrenUnmodifiable().get(0);
+        assertEquals(5.0, rectangle.getX(), 0.01);
+        assertEquals(0.0, rectangle.getWidth(), 0.01);
+        assertEquals(40.0, rectangle.getHeight(), 0.01);
+        assertTrue(rectangle.getTransforms().isEmpty());
+        assertEquals("0x000000ff", rectangle.getFill().toString());
+        assertEquals(1.0, rectangle.getStrokeWidth(), 0.01);
+
+        Shape polygon = (Shape) svgImage.getChildrenUnmodifiable().get(1);
+        LinearGradient gradient = (LinearGradient) polygon.getFill();
+        assertEquals("0xff0000ff", gradient.getStops().get(0).getColor().toString());
+    }
+
+
+    @Test
+    public void testNestedViewport() {
+        String drawing =
+              "<svg xmlns='http://www.w3.org/2000/svg' viewBox='0 0 200 100'>"
+            + "  <svg width='40' height='20'>"
+            + "    <rect id='inner' width='50%' height='50%'/>"
+            + "  </svg>"
+            + "  <rect id='outer' width='50%' height='50%'/>"
+            + "</svg>";
+
+        SvgLoader loader = SvgLoader.builder().useStreamingParser(true).build();
+        Group svgImage = loader.loadSvg(getInput(drawing));
+
+        // percentages refer to the nearest viewport, which ends with its <svg> element
+        Rectangle inner = (Rectangle) svgImage.getChildrenUnmodifiable().get(0);
+        assertEquals(20.0, inner.getWidth(), 0.01);
+        assertEquals(10.0, inner.getHeight(), 0.01);
+        Rectangle outer = (Rectangle) svgImage.getChildrenUnmodifiable().get(1);
+        assertEquals(100.0, outer.getWidth(), 0.01);
+        assertEquals(50.0, outer.getHeight(), 0.01);
+    }
+
+
+    @Test
+    public void testSameAsDom() {
+                Group expected = new SvgLoader().loadSvg(getDrawing("shapes.svg"));
+        Group actual = SvgLoader.builder().useStreamingParser(true).build()
+                                .loadSvg(getDrawing("shapes.svg"));
+        assertSameTree(expected, actual);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getDrawing;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import afester.javafx.svg.SvgLoader;
+
+import javafx.scene.Group;
+import javafx.scene.paint.LinearGradient;
+import javafx.scene.shape.Shape;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+
+public class StyleResolutionTests {
+
+    private static void checkStyles(Group svgImage) {
+        Group group = (Group) svgImage.getChildren().get(0);
+        Shape rect1 = (Shape) group.getChildren().get(0);
+        Shape rect2 = (Shape) group.getChildren().get(1);
+        Shape circle = (Shape) group.getChildren().get(2);
+
+        // elements with the same style share the same paint instances
+        assertEquals("0x00ff00ff", rect1.getFill().toString());
+        assertSame(rect1.getFill(), circle.getFill());
+        assertSame(rect1.getStroke(), circle.getStroke());
+        assertEquals(2.0, circle.getStrokeWidth(), 0.0);
+
+        // a different style has its own dashes
+        assertEquals(rect1.getFill(), rect2.getFill());
+        assertEquals(Arrays.asList(2.0, 1.0), rect2.getStrokeDashArray());
+        assertTrue(rect1.getStrokeDashArray().isEmpty());
+
+        // the dash arrays are not shared between shapes
+        Shape rect3 = (Shape) svgImage.getChildren().get(1);
+        Shape rect4 = (Shape) svgImage.getChildren().get(2);
+        assertNotSame(rect3.getStrokeDashArray(), rect4.getStrokeDashArray());
+        assertTrue(rect3.getFill() instanceof LinearGradient);
+        assertSame(rect3.getFill(), rect4.getFill());
+        assertNull(rect4.getStroke());
+    }
+
+
+    @Test
+    public void testSharedStyles() {
+        SvgLoader loader = SvgLoader.builder().build();
+        checkStyles(loader.loadSvg(getDrawing("styles.svg")));
+    }
+
+
+    @Test
+    public void testSharedStylesStreaming() {
+        SvgLoader loader = SvgLoader.builder().useStreamingParser(true).build();
+        checkStyles(loader.loadSvg(getDrawing("styles.svg")));
+    }
+}
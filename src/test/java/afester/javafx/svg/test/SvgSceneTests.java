@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.assertSameTree;
+import static afester.javafx.svg.test.SvgTestUtils.getDrawing;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import afester.javafx.svg.SvgLoader;
+import afester.javafx.svg.SvgScene;
+import afester.javafx.svg.SvgSceneNode;
+import afester.javafx.svg.SvgScenePaint;
+
+import javafx.scene.Group;
+import javafx.scene.shape.Polygon;
+import javafx.scene.text.FontPosture;
+import javafx.scene.text.FontWeight;
+
+import org.junit.Test;
+
+
+public class SvgSceneTests {
+
+    @Test
+    public void testCreateGroup() {
+        SvgLoader loader = new SvgLoader();
+        Group expected = loader.loadSvg(getDrawing("scene.svg"));
+        SvgScene scene = loader.loadSvgScene(getDrawing("scene.svg"));
+
+        Group first = scene.createGroup();
+        Group second = scene.createGroup();
+        assertSameTree(expected, first);
+        assertSameTree(expected, second);
+        assertNotSame(first.getChildren().get(0), second.getChildren().get(0));
+        assertEquals(10, scene.getNodeCount());
+
+        // modifying one tree does not affect the others
+        Group layer1 = (Group) first.getChildren().get(0);
+        ((Polygon) layer1.getChildren().get(4)).getPoints().clear();
+        assertSameTree(expected, scene.createGroup());
+    }
+
+
+    @Test
+    public void testSameAsGroup() {
+        SvgLoader.Builder[] builders = {
+            SvgLoader.builder().useStreamingParser(true),
+            SvgLoader.builder().useSeparatePathElements(true),
+            SvgLoader.builder().useStreamingParser(true).useSeparatePathElements(true),
+            SvgLoader.builder().useSegmentPaths(true).addViewboxRect(true),
+            SvgLoader.builder().useStreamingParser(true).largeShapeThreshold(2),
+            SvgLoader.builder().internPool(null)
+        };
+
+        // the scene is created directly from the element handlers
+        for (SvgLoader.Builder builder : builders) {
+            SvgLoader loader = builder.build();
+            Group expected = loader.loadSvg(getDrawing("scene.svg"));
+            SvgScene scene = loader.loadSvgScene(getDrawing("scene.svg"));
+            assertSameTree(expected, scene.createGroup());
+        }
+    }
+
+
+    @Test
+    public void testModel() {
+        SvgLoader loader = new SvgLoader();
+        SvgScene scene = loader.loadSvgScene(getDrawing("scene.svg"));
+
+        SvgSceneNode layer1 = scene.getRoot().getChildren().get(0);
+        assertEquals(SvgSceneNode.Kind.GROUP, layer1.getKind());
+        assertEquals("layer1", layer1.getId());
+        assertArrayEquals(new double[] {1, 0, 10, 0, 1, 20}, layer1.getTransforms(), 0.0);
+
+        SvgSceneNode rect = layer1.getChildren().get(0);
+        assertEquals(SvgSceneNode.Kind.RECTANGLE, rect.getKind());
+        assertArrayEquals(new double[] {1, 2, 3, 4, 2, 2}, rect.getGeometry(), 0.0);
+        assertEquals(SvgScenePaint.Kind.COLOR, rect.getFill().getKind());
+        assertArrayEquals(new double[] {0, 0, 1, 1}, rect.getFill().getValues(), 0.0);
+        assertEquals("0x0000ffff", rect.getFill().toPaint().toString());
+
+        SvgSceneNode polygon = layer1.getChildren().get(4);
+        assertEquals(SvgSceneNode.Kind.POLYGON, polygon.getKind());
+        assertArrayEquals(new double[] {0, 0, 10, 0, 10, 10}, polygon.getGeometry(), 0.0);
+
+        SvgSceneNode text = layer1.getChildren().get(7);
+        assertEquals(SvgSceneNode.Kind.TEXT, text.getKind());
+        assertEquals("Hello", text.getContent());
+        assertEquals(12.0, text.getFont().getSize(), 0.0);
+
+        // the font is described by the requested family, not by the resolved font
+        assertEquals("\"Arial\",\"Helvetica\",sans-serif", text.getFont().getFamily());
+        assertEquals(FontWeight.NORMAL, text.getFont().getWeight());
+        assertEquals(FontPosture.REGULAR, text.getFont().getPosture());
+        assertEquals(12.0, text.getFont().toFont().getSize(), 0.0);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import javafx.geometry.BoundingBox;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.shape.SVGPath;
+import javafx.scene.shape.Shape;
+import javafx.scene.text.Text;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+
+/**
+ * Provides the SVG documents which are used by the tests, and compares
+ * the node trees which are created from them.
+ */
+final class SvgTestUtils {
+
+    private SvgTestUtils() {
+    }
+
+
+    /**
+     * @param fileName The name of an SVG file in the data directory.
+     * @return The contents of the file.
+     */
+    static byte[] readDrawing(String fileName) {
+        try {
+            return Files.readAllBytes(Paths.get("data", fileName));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /**
+     * @param fileName The name of an SVG file in the data directory.
+     * @return A stream which provides the contents of the file.
+     */
+    static InputStream getDrawing(String fileName) {
+        return new ByteArrayInputStream(readDrawing(fileName));
+    }
+
+
+    /**
+     * @param svg An SVG document which has been created by a test.
+     * @return A stream which provides the document.
+     */
+    static InputStream getInput(String svg) {
+        return new ByteArrayInputStream(svg.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * Checks that two node trees have the same structure, ids, transformations,
+     * geometry and styles.
+     */
+    static void assertSameTree(Node expected, Node actual) {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getId(), actual.getId());
+        assertTrue(expected.getLocalToParentTransform().similarTo(
+                       actual.getLocalToParentTransform(), new BoundingBox(0, 0, 100, 100), 0.0));
+
+        if (expected instanceof Shape && !(expected instanceof Text)) {
+            assertEquals(expected.getBoundsInLocal(), actual.getBoundsInLocal());
+        }
+        if (expected instanceof Shape) {
+            Shape expectedShape = (Shape) expected;
+            Shape actualShape = (Shape) actual;
+            assertEquals(expectedShape.getFill(), actualShape.getFill());
+            assertEquals(expectedShape.getStroke(), actualShape.getStroke());
+            assertEquals(expectedShape.getStrokeWidth(), actualShape.getStrokeWidth(), 0.0);
+            assertEquals(expectedShape.getStrokeDashArray(), actualShape.getStrokeDashArray());
+            assertEquals(expectedShape.getStrokeDashOffset(),
+                         actualShape.getStrokeDashOffset(), 0.0);
+        }
+        if (expected instanceof Text) {
+            assertEquals(((Text) expected).getX(), ((Text) actual).getX(), 0.0);
+            assertEquals(((Text) expected).getY(), ((Text) actual).getY(), 0.0);
+            assertEquals(((Text) expected).getText(), ((Text) actual).getText());
+            assertEquals(((Text) expected).getFont(), ((Text) actual).getFont());
+        }
+        if (expected instanceof SVGPath) {
+            assertEquals(((SVGPath) expected).getContent(), ((SVGPath) actual).getContent());
+        }
+        if (expected instanceof Group) {
+            Group expectedGroup = (Group) expected;
+            Group actualGroup = (Group) actual;
+            assertEquals(expectedGroup.getChildren().size(), actualGroup.getChildren().size());
+            for (int i = 0;  i < expectedGroup.getChildren().size();  i++) {
+                assertSameTree(expectedGroup.getChildren().get(i),
+                               actualGroup.getChildren().get(i));
+            }
+        }
+    }
+}
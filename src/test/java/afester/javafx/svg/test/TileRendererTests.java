@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 Andreas Fester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package afester.javafx.svg.test;
+
+
+import static afester.javafx.svg.test.SvgTestUtils.getDrawing;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import afester.javafx.svg.SvgLoader;
+import afester.javafx.svg.SvgTileRenderer;
+import afester.javafx.svg.SvgTileView;
+
+import javafx.geometry.BoundingBox;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.paint.Color;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+
+public class TileRendererTests {
+
+    private static SvgTileRenderer createRenderer(int maximumTiles, Executor executor) {
+        return SvgLoader.builder().build().loadSvgTiles(getDrawing("tiles.svg"), 32,
+                                                        maximumTiles, executor);
+    }
+
+
+    @Test
+    public void testLevels() {
+        SvgTileRenderer renderer = createRenderer(64, Runnable::run);
+
+        assertEquals(0, renderer.getLevel(1.0));
+        assertEquals(1, renderer.getLevel(1.5));
+        assertEquals(1, renderer.getLevel(2.0));
+        assertEquals(-1, renderer.getLevel(0.4));
+        assertEquals(SvgTileRenderer.MAX_LEVEL, renderer.getLevel(1000.0));
+        assertEquals(16.0, renderer.getTileExtent(1), 0.0);
+    }
+
+
+    @Test
+    public void testViewport() {
+        SvgTileRenderer renderer = createRenderer(64, Runnable::run);
+
+        // four visible tiles and their neighbors
+        renderer.setViewport(new BoundingBox(0, 0, 50, 50), 1.0);
+        assertEquals(9, renderer.getTileCount());
+        assertEquals(9, renderer.getRenderedCount());
+        assertNull(renderer.getTile(0, 3, 0));
+
+        Image tile = renderer.getTile(0, 0, 0);
+        assertEquals(32, tile.getWidth(), 0.0);
+        assertEquals(Color.RED, tile.getPixelReader().getColor(16, 16));
+        assertEquals(Color.BLUE, renderer.getTile(0, 2, 0).getPixelReader().getColor(16, 16));
+    }
+
+
+    @Test
+    public void testLevelResolution() {
+        SvgTileRenderer renderer = createRenderer(64, Runnable::run);
+
+        // covers 0..64 in both directions
+        Image tile = renderer.requestTile(-1, 0, 0).join();
+        assertEquals(Color.RED, tile.getPixelReader().getColor(10, 10));
+        assertEquals(Color.BLUE, tile.getPixelReader().getColor(30, 10));
+
+        // covers 48..64 in both directions
+        tile = renderer.requestTile(1, 3, 0).join();
+        assertEquals(Color.RED, tile.getPixelReader().getColor(2, 2));
+        assertEquals(Color.BLUE, tile.getPixelReader().getColor(30, 2));
+    }
+
+
+    @Test
+    public void testDropStaleTiles() {
+        List<Runnable> tasks = new ArrayList<>();
+        SvgTileRenderer renderer = createRenderer(64, tasks::add);
+
+        renderer.setViewport(new BoundingBox(0, 0, 10, 10), 1.0);
+        assertEquals(4, tasks.size());
+
+        // only the tile at column 1 and row 1 is also part of the new viewport
+        renderer.setViewport(new BoundingBox(90, 90, 10, 10), 1.0);
+        assertEquals(12, tasks.size());
+
+        tasks.forEach(Runnable::run);
+        assertEquals(3, renderer.getDroppedCount());
+        assertEquals(9, renderer.getRenderedCount());
+    }
+
+
+    @Test
+    public void testEviction() {
+        SvgTileRenderer renderer = createRenderer(4, Runnable::run);
+
+        renderer.setViewport(new BoundingBox(0, 0, 50, 50), 1.0);
+        assertEquals(4, renderer.getTileCount());
+        assertEquals(5, renderer.getEvictionCount());
+    }
+
+
+    @Test
+    public void testTileView() {
+        SvgTileView view = new SvgTileView(createRenderer(64, Runnable::run));
+        view.resize(64, 64);
+        view.layout();
+        assertEquals(4, view.getChildrenUnmodifiable().size());
+
+        // tiles of the next level, each covering 16x16 user units
+        view.setZoom(2.0);
+        view.layout();
+        assertEquals(4, view.getChildrenUnmodifiable().size());
+        ImageView tile = (ImageView) view.getChildrenUnmodifiable().get(0);
+        assertEquals(32.0, tile.getFitWidth(), 0.0);
+
+        // scrolled to the right edge - columns 4 to 6, the last one is partially visible
+        view.setViewportX(68);
+        view.layout();
+        assertEquals(6, view.getChildrenUnmodifiable().size());
+
+        // columns 2 and 3, beyond the document there are no tiles
+        view.setZoom(1.0);
+        view.layout();
+        assertEquals(4, view.getChildrenUnmodifiable().size());
+    }
+}